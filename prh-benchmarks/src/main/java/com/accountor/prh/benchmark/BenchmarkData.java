@@ -0,0 +1,70 @@
+package com.accountor.prh.benchmark;
+
+import com.accountor.prh.autocomplete.CompanyNameIndex;
+import com.accountor.prh.cache.CompanyCache;
+import com.accountor.prh.cache.LastKnownGoodStore;
+import com.accountor.prh.config.PrhAutocompleteProperties;
+import com.accountor.prh.config.PrhFallbackProperties;
+import com.accountor.prh.config.PrhMirrorProperties;
+import com.accountor.prh.dto.CompanyApiDto;
+import com.accountor.prh.dto.CompanyResultApiDto;
+import com.accountor.prh.mirror.CompanyMirror;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Shared fixtures: a realistic PRH {@code /companies} response (two companies with every
+ * section populated) and an ObjectMapper configured the way Spring Boot configures it.
+ */
+final class BenchmarkData {
+
+    static final ObjectMapper OBJECT_MAPPER = Jackson2ObjectMapperBuilder.json().build();
+
+    static final byte[] COMPANIES_RESPONSE = load("/companies-response.json");
+
+    private BenchmarkData() {}
+
+    static CompanyResultApiDto fullResponse() {
+        try {
+            return OBJECT_MAPPER.readValue(COMPANIES_RESPONSE, CompanyResultApiDto.class);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    static CompanyApiDto firstCompany() {
+        return fullResponse().results().get(0);
+    }
+
+    static CompanyMirror disabledMirror() {
+        return new CompanyMirror(new PrhMirrorProperties(false, Path.of("target", "prh-mirror"), null, Duration.ofDays(30)),
+                OBJECT_MAPPER, new SimpleMeterRegistry());
+    }
+
+    static LastKnownGoodStore disabledLastKnownGood() {
+        return new LastKnownGoodStore(new PrhFallbackProperties(false, 1, Duration.ofHours(24)), new SimpleMeterRegistry());
+    }
+
+    static CompanyNameIndex disabledNameIndex(CompanyCache cache) {
+        return new CompanyNameIndex(new PrhAutocompleteProperties(false, 1, 1, 10, 50), cache, disabledMirror(),
+                new SimpleMeterRegistry());
+    }
+
+    private static byte[] load(String resource) {
+        try (InputStream in = BenchmarkData.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing benchmark resource " + resource);
+            }
+            return in.readAllBytes();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.accountor.prh.benchmark;
+
+import com.accountor.prh.client.CompanySummaryDecoder;
+import com.accountor.prh.dto.CompanyResultApiDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the full Jackson decode of a PRH response ({@code PrhClient.getFullCompaniesByBusinessId})
+ * with the incremental summary decode used by {@code PrhClient.getCompaniesByBusinessId}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DecodeBenchmark {
+
+    private final DefaultDataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+
+    @Benchmark
+    public CompanyResultApiDto fullDecode() throws IOException {
+        return BenchmarkData.OBJECT_MAPPER.readValue(BenchmarkData.COMPANIES_RESPONSE, CompanyResultApiDto.class);
+    }
+
+    @Benchmark
+    public CompanyResultApiDto summaryDecode() {
+        DataBuffer body = bufferFactory.wrap(BenchmarkData.COMPANIES_RESPONSE);
+        return new CompanySummaryDecoder(BenchmarkData.OBJECT_MAPPER)
+                .feed(body)
+                .finish();
+    }
+}
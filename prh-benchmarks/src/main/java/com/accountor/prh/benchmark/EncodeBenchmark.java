@@ -0,0 +1,38 @@
+package com.accountor.prh.benchmark;
+
+import com.accountor.prh.domain.CompanyDetailsDto;
+import com.accountor.prh.domain.CompanyMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EncodeBenchmark {
+
+    private CompanyDetailsDto companyDetails;
+
+    @Setup
+    public void setUp() {
+        companyDetails = CompanyMapper.toCompanyDetailsDto(CompanyMapper.toCompanyDetails(BenchmarkData.firstCompany()));
+    }
+
+    @Benchmark
+    public byte[] companyDetailsDtoToJson() throws JsonProcessingException {
+        return BenchmarkData.OBJECT_MAPPER.writeValueAsBytes(companyDetails);
+    }
+}
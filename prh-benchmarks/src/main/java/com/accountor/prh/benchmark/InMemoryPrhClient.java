@@ -0,0 +1,36 @@
+package com.accountor.prh.benchmark;
+
+import com.accountor.prh.api.PrhClient;
+import com.accountor.prh.domain.CompanySearchCriteria;
+import com.accountor.prh.dto.CompanyResultApiDto;
+import reactor.core.publisher.Mono;
+
+/**
+ * PrhClient stub that answers every lookup with pre-decoded responses, so the service pipeline
+ * can be measured without network or decoding cost.
+ */
+final class InMemoryPrhClient implements PrhClient {
+
+    private final Mono<CompanyResultApiDto> summaryResponse;
+    private final Mono<CompanyResultApiDto> fullResponse;
+
+    InMemoryPrhClient(CompanyResultApiDto summaryResponse, CompanyResultApiDto fullResponse) {
+        this.summaryResponse = Mono.just(summaryResponse);
+        this.fullResponse = Mono.just(fullResponse);
+    }
+
+    @Override
+    public Mono<CompanyResultApiDto> getCompaniesByBusinessId(String businessId) {
+        return summaryResponse;
+    }
+
+    @Override
+    public Mono<CompanyResultApiDto> getFullCompaniesByBusinessId(String businessId) {
+        return fullResponse;
+    }
+
+    @Override
+    public Mono<CompanyResultApiDto> searchCompanies(CompanySearchCriteria criteria, int page) {
+        return summaryResponse;
+    }
+}
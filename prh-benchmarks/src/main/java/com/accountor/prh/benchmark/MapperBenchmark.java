@@ -0,0 +1,46 @@
+package com.accountor.prh.benchmark;
+
+import com.accountor.prh.domain.CompanyDetails;
+import com.accountor.prh.domain.CompanyDetailsDto;
+import com.accountor.prh.domain.CompanyMapper;
+import com.accountor.prh.dto.CompanyApiDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapperBenchmark {
+
+    private CompanyApiDto company;
+    private CompanyDetails details;
+
+    @Setup
+    public void setUp() {
+        company = BenchmarkData.firstCompany();
+        details = CompanyMapper.toCompanyDetails(company);
+    }
+
+    @Benchmark
+    public CompanyDetails toCompanyDetails() {
+        return CompanyMapper.toCompanyDetails(company);
+    }
+
+    @Benchmark
+    public CompanyDetailsDto toCompanyDetailsDto() {
+        return CompanyMapper.toCompanyDetailsDto(details);
+    }
+}
@@ -0,0 +1,133 @@
+package com.accountor.prh.benchmark;
+
+import com.accountor.prh.config.PrhMirrorProperties;
+import com.accountor.prh.domain.CompanyDetailsDto;
+import com.accountor.prh.mirror.CompanyMirror;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Lookups against a {@link CompanyMirror} imported from a synthetic dump of {@code companies}
+ * companies: {@code hit} cycles through business IDs in the mirror, {@code miss} looks up one that
+ * is not.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MirrorBenchmark {
+
+    private static final int[] CHECK_DIGIT_WEIGHTS = {7, 9, 10, 5, 8, 4, 2};
+    private static final int LOOKUP_IDS = 1024;
+
+    @Param("200000")
+    private int companies;
+
+    private Path directory;
+    private CompanyMirror mirror;
+    private String[] businessIds;
+    private String missingBusinessId;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("prh-mirror-benchmark");
+        Path dump = directory.resolve("companies.json");
+        businessIds = new String[LOOKUP_IDS];
+
+        try (BufferedWriter out = Files.newBufferedWriter(dump, StandardCharsets.UTF_8)) {
+            out.write('[');
+            int written = 0;
+            for (int body = 1; written < companies; body++) {
+                String businessId = businessId(body);
+                if (businessId == null) {
+                    continue;
+                }
+                if (written > 0) {
+                    out.write(',');
+                }
+                out.write("{\"businessId\":{\"value\":\"" + businessId + "\"},"
+                        + "\"names\":[{\"name\":\"Company " + body + " Oy\",\"type\":\"1\"}],"
+                        + "\"registrationDate\":\"2001-01-01\","
+                        + "\"addresses\":[{\"type\":\"1\",\"street\":\"Katu " + body + "\",\"postCode\":\"00100\","
+                        + "\"postOffices\":[{\"city\":\"HELSINKI\",\"languageCode\":\"1\"}]}],"
+                        + "\"mainBusinessLine\":{\"type\":\"62010\",\"descriptions\":"
+                        + "[{\"languageCode\":\"3\",\"description\":\"Computer programming activities\"}]}}");
+                if (written % (companies / LOOKUP_IDS) == 0 && written / (companies / LOOKUP_IDS) < LOOKUP_IDS) {
+                    businessIds[written / (companies / LOOKUP_IDS)] = businessId;
+                }
+                written++;
+            }
+            out.write(']');
+        }
+
+        for (int body = 9_999_999; missingBusinessId == null; body--) {
+            missingBusinessId = businessId(body);
+        }
+
+        mirror = new CompanyMirror(
+                new PrhMirrorProperties(true, directory.resolve("mirror"), null, Duration.ofDays(30)),
+                BenchmarkData.OBJECT_MAPPER, new SimpleMeterRegistry());
+        mirror.importDump(dump);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        mirror.destroy();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public Optional<CompanyDetailsDto> hit() {
+        return mirror.find(businessIds[next++ & (LOOKUP_IDS - 1)]);
+    }
+
+    @Benchmark
+    public Optional<CompanyDetailsDto> miss() {
+        return mirror.find(missingBusinessId);
+    }
+
+    /**
+     * Returns the canonical business ID for a seven digit body, or null if the body has no valid
+     * check digit.
+     */
+    private static String businessId(int body) {
+        int sum = 0;
+        for (int i = CHECK_DIGIT_WEIGHTS.length - 1, rest = body; i >= 0; i--, rest /= 10) {
+            sum += (rest % 10) * CHECK_DIGIT_WEIGHTS[i];
+        }
+        int remainder = sum % 11;
+        if (remainder == 1) {
+            return null;
+        }
+        return String.format("%07d-%d", body, remainder == 0 ? 0 : 11 - remainder);
+    }
+}
@@ -0,0 +1,80 @@
+package com.accountor.prh.benchmark;
+
+import com.accountor.prh.cache.CompanyCache;
+import com.accountor.prh.cache.EncodedCompany;
+import com.accountor.prh.config.PrhCacheProperties;
+import com.accountor.prh.controller.CompanyResponseEncoder;
+import com.accountor.prh.domain.CompanyDetailsDto;
+import com.accountor.prh.domain.CompanyMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache-hit response bodies: what WebFlux does per request (Jackson into a fresh buffer) against
+ * wrapping the bytes pre-encoded on an entry's first hit, plus the one-off cost of that encoding.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseEncodingBenchmark {
+
+    private static final ResolvableType DETAILS_TYPE = ResolvableType.forClass(CompanyDetailsDto.class);
+
+    private final DefaultDataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+    private final Jackson2JsonEncoder jsonEncoder = new Jackson2JsonEncoder(BenchmarkData.OBJECT_MAPPER);
+
+    private CompanyDetailsDto companyDetails;
+    private CompanyResponseEncoder responseEncoder;
+    private EncodedCompany encoded;
+
+    @Setup
+    public void setUp() {
+        companyDetails = CompanyMapper.toCompanyDetailsDto(CompanyMapper.toCompanyDetails(BenchmarkData.firstCompany()));
+        PrhCacheProperties properties = new PrhCacheProperties(10, Duration.ofMinutes(10), Duration.ofMinutes(1),
+                Duration.ofMinutes(5), true, true, 10);
+        responseEncoder = new CompanyResponseEncoder(properties, new CompanyCache(properties, new SimpleMeterRegistry()),
+                BenchmarkData.OBJECT_MAPPER);
+        encoded = responseEncoder.encode(companyDetails);
+    }
+
+    @Benchmark
+    public DataBuffer perRequestJson() {
+        return jsonEncoder.encodeValue(companyDetails, bufferFactory, DETAILS_TYPE, MediaType.APPLICATION_JSON, Map.of());
+    }
+
+    @Benchmark
+    public DataBuffer preEncodedJson() {
+        return bufferFactory.wrap(encoded.json());
+    }
+
+    @Benchmark
+    public DataBuffer preEncodedGzip() {
+        return bufferFactory.wrap(encoded.gzip());
+    }
+
+    @Benchmark
+    public EncodedCompany firstHitEncode() {
+        return responseEncoder.encode(companyDetails);
+    }
+}
@@ -0,0 +1,102 @@
+package com.accountor.prh.benchmark;
+
+import com.accountor.prh.controller.CompanyMediaTypes;
+import com.accountor.prh.controller.CompanyProtobufEncoder;
+import com.accountor.prh.domain.CompanyDetailsDto;
+import com.accountor.prh.domain.CompanyMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.MimeType;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request encoding of a {@code CompanyDetailsDto} in each negotiable format, through the same
+ * encoders WebFlux writes responses with. Next to the encode cost, each format reports the size of
+ * its payload as the {@code payloadBytes} secondary result.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseFormatBenchmark {
+
+    private static final ResolvableType DETAILS_TYPE = ResolvableType.forClass(CompanyDetailsDto.class);
+
+    @Param({"json", "cbor", "smile", "protobuf"})
+    public String format;
+
+    private final DefaultDataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+
+    private CompanyDetailsDto companyDetails;
+    private Encoder<Object> encoder;
+    private MimeType mimeType;
+
+    @Setup
+    public void setUp() {
+        companyDetails = CompanyMapper.toCompanyDetailsDto(CompanyMapper.toCompanyDetails(BenchmarkData.firstCompany()));
+        switch (format) {
+            case "json" -> {
+                encoder = new Jackson2JsonEncoder(BenchmarkData.OBJECT_MAPPER);
+                mimeType = MediaType.APPLICATION_JSON;
+            }
+            case "cbor" -> {
+                encoder = new Jackson2CborEncoder(Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build(),
+                        MediaType.APPLICATION_CBOR);
+                mimeType = MediaType.APPLICATION_CBOR;
+            }
+            case "smile" -> {
+                encoder = new Jackson2SmileEncoder(Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build(),
+                        CompanyMediaTypes.APPLICATION_SMILE);
+                mimeType = CompanyMediaTypes.APPLICATION_SMILE;
+            }
+            case "protobuf" -> {
+                encoder = new CompanyProtobufEncoder();
+                mimeType = CompanyMediaTypes.APPLICATION_PROTOBUF;
+            }
+            default -> throw new IllegalArgumentException("Unknown format " + format);
+        }
+    }
+
+    @Benchmark
+    public DataBuffer encode(PayloadSize size) {
+        DataBuffer payload = encoder.encodeValue(companyDetails, bufferFactory, DETAILS_TYPE, mimeType, Map.of());
+        size.payloadBytes = payload.readableByteCount();
+        return payload;
+    }
+
+    /**
+     * Bytes of the last encoded payload. Every call encodes the same company, so the value is
+     * reported as is rather than as a rate.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PayloadSize {
+
+        public long payloadBytes;
+    }
+}
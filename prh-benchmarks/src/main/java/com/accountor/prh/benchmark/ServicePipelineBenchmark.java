@@ -0,0 +1,88 @@
+package com.accountor.prh.benchmark;
+
+import com.accountor.prh.cache.CompanyCache;
+import com.accountor.prh.client.CompanySummaryDecoder;
+import com.accountor.prh.config.PrhBatchProperties;
+import com.accountor.prh.config.PrhCacheProperties;
+import com.accountor.prh.config.PrhSearchProperties;
+import com.accountor.prh.domain.CompanyDetailsDto;
+import com.accountor.prh.dto.CompanyResultApiDto;
+import com.accountor.prh.metrics.PrhMetrics;
+import com.accountor.prh.service.PrhService;
+import com.accountor.prh.service.impl.PrhServiceImpl;
+import com.accountor.prh.utils.PrhValidator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@code PrhServiceImpl.getCompanyDetails} against an in-memory PrhClient: validation,
+ * cache lookup, scheduling and mapping. {@code cacheMiss} uses a cache whose entries expire
+ * immediately, so every call runs the full pipeline; {@code cacheHit} measures the cached path.
+ * {@code cacheMissConcurrent} runs {@value #CONCURRENT_LOOKUPS} uncached lookups concurrently per
+ * operation, the way simultaneous requests arrive on the event loop.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServicePipelineBenchmark {
+
+    private static final String BUSINESS_ID = "0112038-9";
+    private static final int CONCURRENT_LOOKUPS = 64;
+
+    private PrhService uncachedService;
+    private PrhService cachedService;
+
+    @Setup
+    public void setUp() {
+        CompanyResultApiDto summary = new CompanySummaryDecoder(BenchmarkData.OBJECT_MAPPER)
+                .feed(DefaultDataBufferFactory.sharedInstance.wrap(BenchmarkData.COMPANIES_RESPONSE))
+                .finish();
+        InMemoryPrhClient prhClient = new InMemoryPrhClient(summary, BenchmarkData.fullResponse());
+
+        uncachedService = service(prhClient, Duration.ZERO);
+        cachedService = service(prhClient, Duration.ofHours(1));
+        cachedService.getCompanyDetails(BUSINESS_ID).block();
+    }
+
+    @Benchmark
+    public CompanyDetailsDto cacheMiss() {
+        return uncachedService.getCompanyDetails(BUSINESS_ID).block();
+    }
+
+    @Benchmark
+    public CompanyDetailsDto cacheMissConcurrent() {
+        return Flux.range(0, CONCURRENT_LOOKUPS)
+                .flatMap(i -> uncachedService.getCompanyDetails(BUSINESS_ID), CONCURRENT_LOOKUPS)
+                .blockLast();
+    }
+
+    @Benchmark
+    public CompanyDetailsDto cacheHit() {
+        return cachedService.getCompanyDetails(BUSINESS_ID).block();
+    }
+
+    private static PrhService service(InMemoryPrhClient prhClient, Duration ttl) {
+        CompanyCache cache = new CompanyCache(new PrhCacheProperties(10_000, ttl, ttl, ttl, false, false, 1_000), new SimpleMeterRegistry());
+        return new PrhServiceImpl(prhClient, new PrhValidator(), cache, BenchmarkData.disabledMirror(),
+                BenchmarkData.disabledLastKnownGood(), BenchmarkData.disabledNameIndex(cache),
+                new PrhBatchProperties(1000, 16), new PrhSearchProperties(100, 1000, 1),
+                new PrhMetrics(new SimpleMeterRegistry()));
+    }
+}
@@ -0,0 +1,49 @@
+package com.accountor.prh.benchmark;
+
+import com.accountor.prh.utils.PrhValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidatorBenchmark {
+
+    private final PrhValidator validator = new PrhValidator();
+
+    private String validBusinessId = "0112038-9";
+    private String invalidBusinessId = "0112038-X";
+    private String vatFormBusinessId = "FI01120389";
+
+    @Benchmark
+    public boolean validateValid() {
+        return validator.validate(validBusinessId);
+    }
+
+    @Benchmark
+    public boolean validateInvalid() {
+        return validator.validate(invalidBusinessId);
+    }
+
+    @Benchmark
+    public String normalizeCanonical() {
+        return validator.normalize(validBusinessId);
+    }
+
+    @Benchmark
+    public String normalizeVatForm() {
+        return validator.normalize(vatFormBusinessId);
+    }
+}
@@ -0,0 +1,120 @@
+package com.accountor.prh.loadtest;
+
+import com.accountor.prh.loadtest.config.LoadTestProperties;
+import com.accountor.prh.loadtest.config.StandInProperties;
+import com.accountor.prh.loadtest.config.WorkloadProperties;
+import com.accountor.prh.loadtest.generator.LoadGenerator;
+import com.accountor.prh.loadtest.report.BaselineComparison;
+import com.accountor.prh.loadtest.report.LoadTestReport;
+import com.accountor.prh.loadtest.report.StageReport;
+import com.accountor.prh.loadtest.standin.CompanyPayloads;
+import com.accountor.prh.loadtest.standin.PrhStandIn;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Starts the PRH stand-in and, unless {@code loadtest.target-url} is set, the service against it;
+ * runs the warmup and each stage; writes the report; and fails the run with exit code 1 when it
+ * regressed from {@code loadtest.baseline}.
+ */
+@Component
+public class LoadTestRunner implements ApplicationRunner, ExitCodeGenerator {
+
+    private final Logger log = LoggerFactory.getLogger(LoadTestRunner.class);
+
+    private final LoadTestProperties properties;
+    private final StandInProperties standInProperties;
+    private final WorkloadProperties workload;
+    private final ObjectMapper objectMapper;
+
+    private int exitCode;
+
+    public LoadTestRunner(LoadTestProperties properties, StandInProperties standInProperties, WorkloadProperties workload,
+                          ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.standInProperties = standInProperties;
+        this.workload = workload;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        CompanyPayloads payloads = CompanyPayloads.load(objectMapper, standInProperties.payloadSize());
+        try (PrhStandIn standIn = new PrhStandIn(standInProperties, payloads)) {
+            String prhBaseUrl = "http://127.0.0.1:" + standIn.start();
+            log.info("PRH stand-in listening at {}", prhBaseUrl);
+            if (properties.mode() == LoadTestProperties.Mode.STAND_IN) {
+                standIn.awaitStop();
+                return;
+            }
+
+            LoadTestReport report;
+            if (properties.targetUrl() != null) {
+                report = run(properties.targetUrl(), standIn);
+            } else {
+                try (ServiceProcess service = ServiceProcess.start(properties, prhBaseUrl)) {
+                    report = run(service.baseUrl(), standIn);
+                }
+            }
+
+            Files.createDirectories(properties.report().toAbsolutePath().getParent());
+            objectMapper.writer(SerializationFeature.INDENT_OUTPUT).writeValue(properties.report().toFile(), report);
+            log.info("Report written to {}", properties.report().toAbsolutePath());
+            compareWithBaseline(report);
+        }
+    }
+
+    @Override
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    private LoadTestReport run(URI target, PrhStandIn standIn) {
+        Instant startedAt = Instant.now();
+        List<StageReport> stages = new ArrayList<>();
+        try (LoadGenerator generator = new LoadGenerator(workload, target)) {
+            if (!workload.warmup().isZero()) {
+                log.info("Warming up at {} requests/s for {}", workload.warmupRate(), workload.warmup());
+                generator.run(new WorkloadProperties.Stage("warmup", workload.warmupRate(), workload.warmup()));
+            }
+            for (WorkloadProperties.Stage stage : workload.stages()) {
+                log.info("Stage {}: {} requests/s for {}", stage.name(), stage.rate(), stage.duration());
+                PrhStandIn.Stats before = standIn.stats();
+                StageReport report = generator.run(stage).withUpstream(standIn.stats().minus(before));
+                StageReport.Latency latency = report.latency();
+                log.info("Stage {}: {} answered/s, p50 {} ms, p95 {} ms, p99 {} ms, p99.9 {} ms, error rate {}, statuses {}",
+                        stage.name(), report.throughput(), latency.p50(), latency.p95(), latency.p99(), latency.p999(),
+                        report.errorRate(), report.statuses());
+                stages.add(report);
+            }
+        }
+        return new LoadTestReport(properties.label(), startedAt, target.toString(), workload, standInProperties, stages);
+    }
+
+    private void compareWithBaseline(LoadTestReport report) throws IOException {
+        if (properties.baseline() == null) {
+            return;
+        }
+        LoadTestReport baseline = objectMapper.readValue(properties.baseline().toFile(), LoadTestReport.class);
+        List<String> regressions = BaselineComparison.regressions(baseline, report, properties);
+        if (regressions.isEmpty()) {
+            log.info("No regressions from {}", properties.baseline());
+            return;
+        }
+        regressions.forEach(regression -> log.error("Regression from {}: {}", properties.baseline(), regression));
+        exitCode = 1;
+    }
+}
@@ -0,0 +1,103 @@
+package com.accountor.prh.loadtest;
+
+import com.accountor.prh.loadtest.config.LoadTestProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * prh-service started from its executable jar in a JVM of its own, so the load generator does
+ * not compete with it for heap and GC. TLS is off and the PRH base URL points at the stand-in;
+ * its output goes to {@code service.log} next to the report.
+ */
+final class ServiceProcess implements AutoCloseable {
+
+    private final Logger log = LoggerFactory.getLogger(ServiceProcess.class);
+
+    private final Process process;
+    private final URI baseUrl;
+
+    private ServiceProcess(Process process, URI baseUrl) {
+        this.process = process;
+        this.baseUrl = baseUrl;
+    }
+
+    /**
+     * Starts the service and waits until its health endpoint answers 200.
+     */
+    static ServiceProcess start(LoadTestProperties properties, String prhBaseUrl) throws IOException, InterruptedException {
+        if (!Files.isRegularFile(properties.serviceJar())) {
+            throw new IllegalStateException("prh-service jar not found at " + properties.serviceJar().toAbsolutePath()
+                    + "; build it with mvn install, or set loadtest.service-jar or loadtest.target-url");
+        }
+
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(properties.serviceJvmArgs());
+        command.add("-jar");
+        command.add(properties.serviceJar().toString());
+        command.add("--server.port=" + properties.servicePort());
+        command.add("--server.ssl.enabled=false");
+        command.add("--prh.api.base-url=" + prhBaseUrl);
+        command.add("--logging.level.root=WARN");
+        command.addAll(properties.serviceArgs());
+
+        Path logFile = properties.report().toAbsolutePath().resolveSibling("service.log");
+        Files.createDirectories(logFile.getParent());
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(logFile.toFile())
+                .start();
+        ServiceProcess service = new ServiceProcess(process, URI.create("http://127.0.0.1:" + properties.servicePort()));
+        try {
+            service.awaitHealthy(properties.startupTimeout(), logFile);
+        } catch (RuntimeException | InterruptedException ex) {
+            service.close();
+            throw ex;
+        }
+        return service;
+    }
+
+    URI baseUrl() {
+        return baseUrl;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(30, TimeUnit.SECONDS)) {
+            log.warn("prh-service did not stop within 30s, killing it");
+            process.destroyForcibly().waitFor();
+        }
+    }
+
+    private void awaitHealthy(Duration timeout, Path logFile) throws InterruptedException {
+        HttpClient client = HttpClient.create().baseUrl(baseUrl.toString());
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("prh-service exited with " + process.exitValue() + ", see " + logFile);
+            }
+            Integer status = client.get()
+                    .uri("/actuator/health")
+                    .responseSingle((response, body) -> body.then(Mono.just(response.status().code())))
+                    .onErrorResume(ex -> Mono.empty())
+                    .block(Duration.ofSeconds(2));
+            if (status != null && status == 200) {
+                return;
+            }
+            Thread.sleep(250);
+        }
+        throw new IllegalStateException("prh-service did not report healthy within " + timeout + ", see " + logFile);
+    }
+}
@@ -0,0 +1,48 @@
+package com.accountor.prh.loadtest.config;
+
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * A distribution of non-negative values, used for the stand-in's latencies (milliseconds) and
+ * payload sizes (bytes).
+ *
+ * @param type   Shape of the distribution.
+ * @param median The value of {@code FIXED}; the median of {@code EXPONENTIAL} and {@code LOGNORMAL}.
+ * @param p99    99th percentile of {@code LOGNORMAL}, which sets how long its tail is.
+ * @param min    Lower bound of every sample; the lower end of {@code UNIFORM}.
+ * @param max    Upper bound of every sample, 0 for none; the upper end of {@code UNIFORM}.
+ */
+public record Distribution(
+        @DefaultValue("FIXED") Type type,
+        @DefaultValue("0") double median,
+        @DefaultValue("0") double p99,
+        @DefaultValue("0") double min,
+        @DefaultValue("0") double max) {
+
+    /**
+     * z-score of the 99th percentile of the standard normal distribution.
+     */
+    private static final double Z_99 = 2.3263478740408408;
+
+    public enum Type { FIXED, UNIFORM, EXPONENTIAL, LOGNORMAL }
+
+    public static Distribution fixed(double value) {
+        return new Distribution(Type.FIXED, value, 0, 0, 0);
+    }
+
+    public double sample(RandomGenerator random) {
+        double value = switch (type) {
+            case FIXED -> median;
+            case UNIFORM -> min + random.nextDouble() * (max - min);
+            case EXPONENTIAL -> -median / Math.log(2) * Math.log(1 - random.nextDouble());
+            case LOGNORMAL -> {
+                double sigma = p99 > median ? Math.log(p99 / median) / Z_99 : 0;
+                yield median * Math.exp(sigma * random.nextGaussian());
+            }
+        };
+        value = Math.max(value, min);
+        return max > 0 ? Math.min(value, max) : value;
+    }
+}
@@ -0,0 +1,47 @@
+package com.accountor.prh.loadtest.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * What a load test runs against and where its results go, bound from {@code loadtest.*}.
+ *
+ * @param mode                {@code RUN} runs the workload and exits; {@code STAND_IN} only serves the simulated
+ *                            PRH API until stopped, for a service started by hand.
+ * @param targetUrl           Base URL of a service that is already running. Unset starts {@code serviceJar}
+ *                            against the stand-in, and stops it afterwards.
+ * @param serviceJar          Executable jar of prh-service.
+ * @param servicePort         Port the started service listens on, without TLS.
+ * @param serviceJvmArgs      JVM options of the started service.
+ * @param serviceArgs         Further Spring Boot arguments of the started service, e.g. {@code --prh.cache.ttl=1m}.
+ * @param startupTimeout      Time the started service has to report healthy.
+ * @param label               Identifies the run in the report, e.g. the commit being tested.
+ * @param report              File the JSON report is written to.
+ * @param baseline            Earlier report to compare with. Regressions beyond the tolerances fail the run.
+ * @param latencyTolerance    Relative increase of a stage's p50, p95, p99 or p99.9 that counts as a regression.
+ * @param throughputTolerance Relative decrease of a stage's throughput that counts as a regression.
+ * @param errorTolerance      Increase of a stage's error rate, in absolute terms, that counts as a regression.
+ */
+@ConfigurationProperties(prefix = "loadtest")
+public record LoadTestProperties(
+        @DefaultValue("RUN") Mode mode,
+        URI targetUrl,
+        @DefaultValue("prh-service/target/prh-service-0.0.1-SNAPSHOT-exec.jar") Path serviceJar,
+        @DefaultValue("18080") int servicePort,
+        @DefaultValue({"-Xms1g", "-Xmx1g"}) List<String> serviceJvmArgs,
+        @DefaultValue List<String> serviceArgs,
+        @DefaultValue("60s") Duration startupTimeout,
+        String label,
+        @DefaultValue("prh-loadtest/target/loadtest/report.json") Path report,
+        Path baseline,
+        @DefaultValue("0.2") double latencyTolerance,
+        @DefaultValue("0.05") double throughputTolerance,
+        @DefaultValue("0.01") double errorTolerance) {
+
+    public enum Mode { RUN, STAND_IN }
+}
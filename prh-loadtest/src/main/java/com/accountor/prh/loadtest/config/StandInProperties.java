@@ -0,0 +1,38 @@
+package com.accountor.prh.loadtest.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Behaviour of the simulated PRH API, bound from {@code loadtest.stand-in.*}.
+ *
+ * @param port          Port to listen on; 0 picks a free one.
+ * @param latency       Response time of every answered call, in milliseconds.
+ * @param payloadSize   Size of each company in a response, in bytes. Companies are padded with name history up
+ *                      to the sampled size, so the service decodes realistically shaped JSON.
+ * @param errorRate     Share of calls answered with one of {@code errorStatuses}, after their latency.
+ * @param errorStatuses Statuses of failed calls, picked evenly.
+ * @param notFoundRate  Share of lookups answered with no results, which the service turns into 404.
+ * @param burstEvery    Interval between bursts of 429s, counted from startup; zero disables them.
+ * @param burstDuration Length of each burst. During a burst every call is answered 429 without delay.
+ * @param retryAfter    {@code Retry-After} sent with a 429.
+ * @param searchResults Companies in each search response.
+ * @param compression   Whether to gzip responses for callers that accept it, as PRH does.
+ */
+@ConfigurationProperties(prefix = "loadtest.stand-in")
+public record StandInProperties(
+        @DefaultValue("0") int port,
+        @DefaultValue Distribution latency,
+        @DefaultValue Distribution payloadSize,
+        @DefaultValue("0") double errorRate,
+        @DefaultValue({"500", "502", "503"}) List<Integer> errorStatuses,
+        @DefaultValue("0") double notFoundRate,
+        @DefaultValue("0s") Duration burstEvery,
+        @DefaultValue("0s") Duration burstDuration,
+        @DefaultValue("1s") Duration retryAfter,
+        @DefaultValue("20") int searchResults,
+        @DefaultValue("true") boolean compression) {
+}
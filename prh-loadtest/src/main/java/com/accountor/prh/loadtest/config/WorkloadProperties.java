@@ -0,0 +1,57 @@
+package com.accountor.prh.loadtest.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Traffic the load generator sends to the service, bound from {@code loadtest.workload.*}.
+ * Arrivals follow a schedule that does not wait for responses (an open model), so a slow service
+ * builds up requests in flight instead of slowing the load down.
+ *
+ * @param requests    Request mix. {@code {businessId}} in a path is replaced by a picked business ID.
+ * @param businessIds Number of distinct business IDs looked up, which bounds the service's cache hit ratio.
+ * @param skew        Zipf exponent of how often each business ID is picked: 0 is uniform, around 1 concentrates
+ *                    lookups on popular companies as real traffic does.
+ * @param arrivals    Whether requests arrive at fixed intervals or as a Poisson process of the same rate.
+ * @param warmup      Unreported run at {@code warmupRate} before the stages, to warm the JIT, pools and caches.
+ * @param warmupRate  Requests per second during warmup.
+ * @param stages      Reported runs, each at a fixed arrival rate, in order.
+ * @param timeout     Time after which a request counts as timed out.
+ * @param maxInFlight Requests in flight at which arrivals are dropped and counted rather than queued.
+ * @param compression Whether to send {@code Accept-Encoding: gzip}, as browsers do.
+ * @param seed        Seed of the business ID, request and arrival picks, so runs send the same sequence.
+ */
+@ConfigurationProperties(prefix = "loadtest.workload")
+public record WorkloadProperties(
+        @DefaultValue List<Request> requests,
+        @DefaultValue("1000") int businessIds,
+        @DefaultValue("1.0") double skew,
+        @DefaultValue("CONSTANT") Arrivals arrivals,
+        @DefaultValue("10s") Duration warmup,
+        @DefaultValue("50") double warmupRate,
+        @DefaultValue List<Stage> stages,
+        @DefaultValue("10s") Duration timeout,
+        @DefaultValue("10000") int maxInFlight,
+        @DefaultValue("true") boolean compression,
+        @DefaultValue("42") long seed) {
+
+    public enum Arrivals { CONSTANT, POISSON }
+
+    /**
+     * @param path   Path and query of a GET request.
+     * @param weight Relative share of the request in the mix.
+     */
+    public record Request(String path, @DefaultValue("1") double weight) {
+    }
+
+    /**
+     * @param name     Name the stage is reported and compared under.
+     * @param rate     Requests per second.
+     * @param duration Time requests are sent for.
+     */
+    public record Stage(String name, double rate, Duration duration) {
+    }
+}
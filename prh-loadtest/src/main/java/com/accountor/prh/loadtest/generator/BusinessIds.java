@@ -0,0 +1,64 @@
+package com.accountor.prh.loadtest.generator;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * A fixed set of valid business IDs, picked with a Zipf distribution: the ID of rank {@code k} is
+ * picked with a probability proportional to {@code 1 / k^skew}.
+ */
+public final class BusinessIds {
+
+    private static final int[] CHECK_DIGIT_WEIGHTS = {7, 9, 10, 5, 8, 4, 2};
+
+    private final String[] ids;
+    private final double[] cumulative;
+
+    public BusinessIds(int count, double skew, RandomGenerator random) {
+        ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = random(random);
+        }
+
+        cumulative = new double[count];
+        double total = 0;
+        for (int rank = 1; rank <= count; rank++) {
+            total += 1 / Math.pow(rank, skew);
+            cumulative[rank - 1] = total;
+        }
+        for (int i = 0; i < count; i++) {
+            cumulative[i] /= total;
+        }
+    }
+
+    public String pick(RandomGenerator random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return ids[Math.min(index < 0 ? -index - 1 : index, ids.length - 1)];
+    }
+
+    /**
+     * @return A random business ID with a valid modulus-11 check digit, in canonical {@code XXXXXXX-X} form.
+     */
+    public static String random(RandomGenerator random) {
+        while (true) {
+            int body = random.nextInt(10_000_000);
+            int checkDigit = checkDigit(body);
+            if (checkDigit >= 0) {
+                return String.format("%07d-%d", body, checkDigit);
+            }
+        }
+    }
+
+    /**
+     * @return The check digit of the seven-digit {@code body}, or -1 for bodies no business ID has.
+     */
+    static int checkDigit(int body) {
+        int sum = 0;
+        for (int i = 6; i >= 0; i--) {
+            sum += body % 10 * CHECK_DIGIT_WEIGHTS[i];
+            body /= 10;
+        }
+        int remainder = sum % 11;
+        return remainder == 0 ? 0 : remainder == 1 ? -1 : 11 - remainder;
+    }
+}
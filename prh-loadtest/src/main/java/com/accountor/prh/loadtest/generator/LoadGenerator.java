@@ -0,0 +1,197 @@
+package com.accountor.prh.loadtest.generator;
+
+import com.accountor.prh.loadtest.config.WorkloadProperties;
+import com.accountor.prh.loadtest.report.StageReport;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends the workload's requests at a fixed arrival rate per stage (an open model). One thread
+ * keeps the schedule and only sends; responses are handled on the client's own event loops, so a
+ * slow service never delays the next arrival. Each latency is measured from the time its request
+ * was scheduled, which keeps queueing in the generator from hiding slow responses. Requests without
+ * an answer are recorded too: timeouts and failures when they gave up, drops at the request timeout.
+ */
+public class LoadGenerator implements AutoCloseable {
+
+    private final WorkloadProperties workload;
+    private final LoopResources loops;
+    private final ConnectionProvider connectionProvider;
+    private final HttpClient client;
+    private final SplittableRandom random;
+    private final BusinessIds businessIds;
+    private final double[] cumulativeWeights;
+
+    public LoadGenerator(WorkloadProperties workload, URI target) {
+        if (workload.requests().isEmpty()) {
+            throw new IllegalArgumentException("loadtest.workload.requests lists no requests");
+        }
+        this.workload = workload;
+        loops = LoopResources.create("loadtest-client");
+        connectionProvider = ConnectionProvider.builder("loadtest")
+                .maxConnections(workload.maxInFlight())
+                .pendingAcquireMaxCount(-1)
+                .build();
+        client = HttpClient.create(connectionProvider)
+                .runOn(loops)
+                .baseUrl(target.toString())
+                .compress(workload.compression());
+        random = new SplittableRandom(workload.seed());
+        businessIds = new BusinessIds(workload.businessIds(), workload.skew(), random);
+
+        List<WorkloadProperties.Request> requests = workload.requests();
+        cumulativeWeights = new double[requests.size()];
+        double total = 0;
+        for (int i = 0; i < requests.size(); i++) {
+            total += requests.get(i).weight();
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    /**
+     * Runs {@code stage}, then waits up to the request timeout for the requests still in flight.
+     */
+    public StageReport run(WorkloadProperties.Stage stage) {
+        StageRun run = new StageRun();
+        double interval = TimeUnit.SECONDS.toNanos(1) / stage.rate();
+        long start = System.nanoTime();
+        long end = start + stage.duration().toNanos();
+        double next = start;
+        while (next < end) {
+            long scheduledAt = (long) next;
+            long wait = scheduledAt - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            send(run, scheduledAt);
+            next += workload.arrivals() == WorkloadProperties.Arrivals.POISSON
+                    ? -Math.log(1 - random.nextDouble()) * interval
+                    : interval;
+        }
+        run.awaitInFlight(System.nanoTime() + workload.timeout().plusSeconds(1).toNanos());
+        return run.report(stage);
+    }
+
+    @Override
+    public void close() {
+        connectionProvider.disposeLater().block(Duration.ofSeconds(10));
+        loops.disposeLater().block(Duration.ofSeconds(10));
+    }
+
+    private void send(StageRun run, long scheduledAt) {
+        if (run.inFlight.get() >= workload.maxInFlight()) {
+            run.dropped(workload.timeout().toNanos());
+            return;
+        }
+        run.inFlight.incrementAndGet();
+        run.sent.increment();
+        client.get()
+                .uri(nextPath())
+                .responseSingle((response, body) -> body.asByteArray().then(Mono.just(response.status().code())))
+                .timeout(workload.timeout())
+                .doFinally(signal -> run.inFlight.decrementAndGet())
+                .subscribe(status -> run.answered(status, System.nanoTime() - scheduledAt),
+                        error -> run.failed(error, System.nanoTime() - scheduledAt));
+    }
+
+    private String nextPath() {
+        double picked = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+        int index = 0;
+        while (index < cumulativeWeights.length - 1 && cumulativeWeights[index] <= picked) {
+            index++;
+        }
+        String path = workload.requests().get(index).path();
+        return path.contains("{businessId}") ? path.replace("{businessId}", businessIds.pick(random)) : path;
+    }
+
+    private static double round(double value, int decimals) {
+        double scale = Math.pow(10, decimals);
+        return Math.round(value * scale) / scale;
+    }
+
+    /**
+     * Counters of one stage, updated from the client's event loops.
+     */
+    private static final class StageRun {
+
+        private final Histogram latencies = new ConcurrentHistogram(3);
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        void answered(int status, long latencyNanos) {
+            latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+            statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+        }
+
+        void failed(Throwable error, long latencyNanos) {
+            latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+            (error instanceof TimeoutException ? timeouts : failures).increment();
+        }
+
+        void dropped(long timeoutNanos) {
+            latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(timeoutNanos));
+            dropped.increment();
+        }
+
+        void awaitInFlight(long deadline) {
+            while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+            }
+        }
+
+        StageReport report(WorkloadProperties.Stage stage) {
+            TreeMap<Integer, Long> byStatus = new TreeMap<>();
+            statuses.forEach((status, count) -> byStatus.put(status, count.sum()));
+            long completed = byStatus.values().stream().mapToLong(Long::longValue).sum();
+            long rejected = byStatus.entrySet().stream()
+                    .filter(entry -> entry.getKey() == 429 || entry.getKey() >= 500)
+                    .mapToLong(Map.Entry::getValue)
+                    .sum();
+            long scheduled = sent.sum() + dropped.sum();
+            double errorRate = scheduled == 0 ? 0
+                    : (double) (dropped.sum() + timeouts.sum() + failures.sum() + rejected) / scheduled;
+            double seconds = stage.duration().toNanos() / (double) TimeUnit.SECONDS.toNanos(1);
+
+            return new StageReport(stage.name(), stage.rate(), stage.duration(), sent.sum(), dropped.sum(), completed,
+                    timeouts.sum(), failures.sum(), round(completed / seconds, 1), round(errorRate, 5), byStatus,
+                    latency(), null);
+        }
+
+        private StageReport.Latency latency() {
+            if (latencies.getTotalCount() == 0) {
+                return new StageReport.Latency(0, 0, 0, 0, 0, 0);
+            }
+            return new StageReport.Latency(millis(latencies.getValueAtPercentile(50)),
+                    millis(latencies.getValueAtPercentile(95)),
+                    millis(latencies.getValueAtPercentile(99)),
+                    millis(latencies.getValueAtPercentile(99.9)),
+                    millis(latencies.getMaxValue()),
+                    round(latencies.getMean() / 1000, 3));
+        }
+
+        private static double millis(long micros) {
+            return round(micros / 1000.0, 3);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.accountor.prh.loadtest.report;
+
+import com.accountor.prh.loadtest.config.LoadTestProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Compares a report with a baseline report stage by stage, matching stages by name.
+ */
+public final class BaselineComparison {
+
+    /**
+     * Latency changes below this many milliseconds are never regressions, as relative changes of
+     * sub-millisecond latencies are mostly noise.
+     */
+    static final double MIN_LATENCY_CHANGE_MILLIS = 1;
+
+    private static final List<Map.Entry<String, ToDoubleFunction<StageReport.Latency>>> PERCENTILES = List.of(
+            Map.entry("p50", StageReport.Latency::p50),
+            Map.entry("p95", StageReport.Latency::p95),
+            Map.entry("p99", StageReport.Latency::p99),
+            Map.entry("p99.9", StageReport.Latency::p999));
+
+    private BaselineComparison() {}
+
+    /**
+     * @return A description of each regression, empty if there are none.
+     */
+    public static List<String> regressions(LoadTestReport baseline, LoadTestReport report, LoadTestProperties properties) {
+        Map<String, StageReport> baselineStages = baseline.stages().stream()
+                .collect(Collectors.toMap(StageReport::name, Function.identity(), (first, second) -> first));
+        List<String> regressions = new ArrayList<>();
+        for (StageReport stage : report.stages()) {
+            StageReport before = baselineStages.get(stage.name());
+            if (before == null) {
+                continue;
+            }
+
+            for (Map.Entry<String, ToDoubleFunction<StageReport.Latency>> percentile : PERCENTILES) {
+                double was = percentile.getValue().applyAsDouble(before.latency());
+                double is = percentile.getValue().applyAsDouble(stage.latency());
+                if (is > was * (1 + properties.latencyTolerance()) && is - was >= MIN_LATENCY_CHANGE_MILLIS) {
+                    regressions.add(String.format(Locale.ROOT, "%s: %s latency %.3f ms -> %.3f ms (%+.0f%%)",
+                            stage.name(), percentile.getKey(), was, is, percentChange(was, is)));
+                }
+            }
+            if (stage.throughput() < before.throughput() * (1 - properties.throughputTolerance())) {
+                regressions.add(String.format(Locale.ROOT, "%s: throughput %.1f/s -> %.1f/s (%+.0f%%)",
+                        stage.name(), before.throughput(), stage.throughput(), percentChange(before.throughput(), stage.throughput())));
+            }
+            if (stage.errorRate() > before.errorRate() + properties.errorTolerance()) {
+                regressions.add(String.format(Locale.ROOT, "%s: error rate %.5f -> %.5f",
+                        stage.name(), before.errorRate(), stage.errorRate()));
+            }
+        }
+        return regressions;
+    }
+
+    private static double percentChange(double was, double is) {
+        return was == 0 ? 100 : (is - was) / was * 100;
+    }
+}
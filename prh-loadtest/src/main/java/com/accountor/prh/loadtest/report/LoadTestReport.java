@@ -0,0 +1,27 @@
+package com.accountor.prh.loadtest.report;
+
+import com.accountor.prh.loadtest.config.StandInProperties;
+import com.accountor.prh.loadtest.config.WorkloadProperties;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * The machine-readable result of a load test, written as JSON. The workload and stand-in settings
+ * are included, so a diff between two reports also shows what was run differently.
+ *
+ * @param label     The run's label, e.g. the commit tested.
+ * @param startedAt When the first stage started.
+ * @param target    Base URL of the service under test.
+ * @param workload  Workload settings.
+ * @param standIn   PRH stand-in settings.
+ * @param stages    Results of each stage, in the order they ran.
+ */
+public record LoadTestReport(
+        String label,
+        Instant startedAt,
+        String target,
+        WorkloadProperties workload,
+        StandInProperties standIn,
+        List<StageReport> stages) {
+}
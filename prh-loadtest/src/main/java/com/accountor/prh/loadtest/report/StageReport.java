@@ -0,0 +1,57 @@
+package com.accountor.prh.loadtest.report;
+
+import com.accountor.prh.loadtest.standin.PrhStandIn;
+
+import java.time.Duration;
+import java.util.SortedMap;
+
+/**
+ * Results of one stage. Latency is measured from the time a request was scheduled to be sent, not
+ * from when it was, so a service or generator that falls behind shows up in the percentiles.
+ *
+ * @param name       Name of the stage.
+ * @param rate       Scheduled requests per second.
+ * @param duration   Time requests were sent for.
+ * @param sent       Requests sent.
+ * @param dropped    Requests not sent because {@code maxInFlight} requests were in flight.
+ * @param completed  Requests answered with any status.
+ * @param timeouts   Requests without an answer within {@code timeout}.
+ * @param failures   Requests that failed without an answer, e.g. on a refused connection.
+ * @param throughput Requests answered per second.
+ * @param errorRate  Share of scheduled requests that were dropped, timed out, failed, or answered 429 or 5xx.
+ * @param statuses   Answered requests by status.
+ * @param latency    Latency percentiles of every scheduled request, in milliseconds. Timeouts and failures count
+ *                   at the time they gave up, dropped requests at {@code timeout}.
+ * @param upstream   Calls the PRH stand-in answered during the stage.
+ */
+public record StageReport(
+        String name,
+        double rate,
+        Duration duration,
+        long sent,
+        long dropped,
+        long completed,
+        long timeouts,
+        long failures,
+        double throughput,
+        double errorRate,
+        SortedMap<Integer, Long> statuses,
+        Latency latency,
+        PrhStandIn.Stats upstream) {
+
+    public StageReport withUpstream(PrhStandIn.Stats upstream) {
+        return new StageReport(name, rate, duration, sent, dropped, completed, timeouts, failures, throughput, errorRate,
+                statuses, latency, upstream);
+    }
+
+    /**
+     * @param p50  Median.
+     * @param p95  95th percentile.
+     * @param p99  99th percentile.
+     * @param p999 99.9th percentile.
+     * @param max  Slowest request.
+     * @param mean Mean.
+     */
+    public record Latency(double p50, double p95, double p99, double p999, double max, double mean) {
+    }
+}
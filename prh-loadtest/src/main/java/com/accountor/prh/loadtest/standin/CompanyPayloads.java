@@ -0,0 +1,170 @@
+package com.accountor.prh.loadtest.standin;
+
+import com.accountor.prh.loadtest.config.Distribution;
+import com.accountor.prh.loadtest.generator.BusinessIds;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * PRH {@code /companies} response bodies built from a template company with every section
+ * populated ({@code prh/company.json}). Variants of the company padded with name history are
+ * rendered once, in sizes growing by a quarter up to the largest size of the distribution, and
+ * each response only splices the business ID into a variant of the sampled size.
+ */
+public final class CompanyPayloads {
+
+    static final byte[] NO_RESULTS = "{\"totalResults\":0,\"companies\":[]}".getBytes(StandardCharsets.UTF_8);
+
+    private static final String BUSINESS_ID_PLACEHOLDER = "{businessId}";
+    private static final int DEFAULT_LARGEST_SIZE = 64 * 1024;
+    private static final double SIZE_STEP = 1.25;
+
+    private final Distribution size;
+    private final List<Variant> variants = new ArrayList<>();
+
+    private CompanyPayloads(ObjectMapper objectMapper, ObjectNode template, Distribution size) {
+        this.size = size;
+        double largest = size.max() > 0 ? size.max() : DEFAULT_LARGEST_SIZE;
+        ObjectNode company = template.deepCopy();
+        company.withObject("/businessId").put("value", BUSINESS_ID_PLACEHOLDER);
+        ArrayNode names = company.withArray("/names");
+        int version = names.size();
+
+        byte[] rendered = render(objectMapper, company);
+        double target = rendered.length;
+        while (true) {
+            variants.add(new Variant(rendered));
+            if (rendered.length >= largest) {
+                break;
+            }
+            target = Math.min(target * SIZE_STEP, largest);
+            while (rendered.length < target) {
+                version++;
+                names.addObject()
+                        .put("name", template.at("/names/0/name").asText() + " (" + version + ")")
+                        .put("type", "1")
+                        .put("registrationDate", (1900 + version % 100) + "-01-01")
+                        .put("endDate", (1901 + version % 100) + "-01-01")
+                        .put("version", version)
+                        .put("source", "1");
+                rendered = render(objectMapper, company);
+            }
+        }
+    }
+
+    public static CompanyPayloads load(ObjectMapper objectMapper, Distribution size) {
+        try (InputStream in = CompanyPayloads.class.getResourceAsStream("/prh/company.json")) {
+            if (in == null) {
+                throw new IllegalStateException("Missing stand-in resource /prh/company.json");
+            }
+            return new CompanyPayloads(objectMapper, (ObjectNode) objectMapper.readTree(in), size);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * @return The response to a lookup of {@code businessId}.
+     */
+    public byte[] lookup(String businessId, RandomGenerator random) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(DEFAULT_LARGEST_SIZE / 4);
+        out.writeBytes("{\"totalResults\":1,\"companies\":[".getBytes(StandardCharsets.UTF_8));
+        variant(random).write(out, businessId);
+        out.writeBytes("]}".getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+
+    /**
+     * @return A single page of {@code count} companies with random business IDs.
+     */
+    public byte[] search(int count, RandomGenerator random) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(DEFAULT_LARGEST_SIZE);
+        out.writeBytes(("{\"totalResults\":" + count + ",\"companies\":[").getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            variant(random).write(out, BusinessIds.random(random));
+        }
+        out.writeBytes("]}".getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+
+    /**
+     * @return The smallest variant of at least the sampled size, or the largest one.
+     */
+    private Variant variant(RandomGenerator random) {
+        double sampled = size.sample(random);
+        for (Variant variant : variants) {
+            if (variant.size() >= sampled) {
+                return variant;
+            }
+        }
+        return variants.get(variants.size() - 1);
+    }
+
+    int smallestSize() {
+        return variants.get(0).size();
+    }
+
+    int largestSize() {
+        return variants.get(variants.size() - 1).size();
+    }
+
+    private static byte[] render(ObjectMapper objectMapper, ObjectNode company) {
+        try {
+            return objectMapper.writeValueAsBytes(company);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * A rendered company split around its business ID.
+     */
+    private record Variant(byte[] prefix, byte[] suffix) {
+
+        Variant(byte[] rendered) {
+            this(rendered, indexOf(rendered, BUSINESS_ID_PLACEHOLDER.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        private Variant(byte[] rendered, int placeholder) {
+            this(Arrays.copyOfRange(rendered, 0, placeholder),
+                    Arrays.copyOfRange(rendered, placeholder + BUSINESS_ID_PLACEHOLDER.length(), rendered.length));
+        }
+
+        int size() {
+            return prefix.length + 9 + suffix.length;
+        }
+
+        void write(ByteArrayOutputStream out, String businessId) {
+            out.writeBytes(prefix);
+            out.writeBytes(businessId.getBytes(StandardCharsets.US_ASCII));
+            out.writeBytes(suffix);
+        }
+
+        private static int indexOf(byte[] bytes, byte[] part) {
+            outer:
+            for (int i = 0; i <= bytes.length - part.length; i++) {
+                for (int j = 0; j < part.length; j++) {
+                    if (bytes[i + j] != part[j]) {
+                        continue outer;
+                    }
+                }
+                return i;
+            }
+            throw new IllegalStateException("Business ID placeholder not found in rendered company");
+        }
+    }
+}
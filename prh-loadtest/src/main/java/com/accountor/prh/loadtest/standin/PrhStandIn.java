@@ -0,0 +1,144 @@
+package com.accountor.prh.loadtest.standin;
+
+import com.accountor.prh.loadtest.config.StandInProperties;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A local stand-in for the PRH {@code /companies} endpoint, serving lookups by business ID and
+ * single-page searches. Calls are answered after a sampled latency, fail at the configured error
+ * rate, and are all rejected with 429 during periodic bursts. The path prefix is not checked, so
+ * the service can keep the base URL path of the real API.
+ */
+public class PrhStandIn implements AutoCloseable {
+
+    private final StandInProperties properties;
+    private final CompanyPayloads payloads;
+    private final long startedAt = System.nanoTime();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder notFound = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder tooManyRequests = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    private DisposableServer server;
+
+    public PrhStandIn(StandInProperties properties, CompanyPayloads payloads) {
+        this.properties = properties;
+        this.payloads = payloads;
+    }
+
+    /**
+     * @return The port the stand-in listens on.
+     */
+    public int start() {
+        server = HttpServer.create()
+                .host("127.0.0.1")
+                .port(properties.port())
+                .compress(properties.compression())
+                .handle(this::handle)
+                .bindNow();
+        return server.port();
+    }
+
+    /**
+     * Blocks until the stand-in is stopped.
+     */
+    public void awaitStop() {
+        server.onDispose().block();
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.disposeNow();
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(lookups.sum(), searches.sum(), notFound.sum(), errors.sum(), tooManyRequests.sum(), bytes.sum());
+    }
+
+    private Publisher<Void> handle(HttpServerRequest request, HttpServerResponse response) {
+        if (!request.fullPath().endsWith("/companies")) {
+            return response.status(404).send();
+        }
+        if (inBurst()) {
+            tooManyRequests.increment();
+            return response.status(429)
+                    .header(HttpHeaderNames.RETRY_AFTER, Long.toString(Math.max(1, properties.retryAfter().toSeconds())))
+                    .send();
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Duration latency = Duration.ofNanos((long) (properties.latency().sample(random) * 1_000_000));
+        if (random.nextDouble() < properties.errorRate()) {
+            errors.increment();
+            List<Integer> statuses = properties.errorStatuses();
+            int status = statuses.get(random.nextInt(statuses.size()));
+            return Mono.delay(latency).then(response.status(status).send().then());
+        }
+
+        String businessId = firstParameter(request.uri(), "businessId");
+        byte[] body;
+        if (businessId != null) {
+            lookups.increment();
+            if (random.nextDouble() < properties.notFoundRate()) {
+                notFound.increment();
+                body = CompanyPayloads.NO_RESULTS;
+            } else {
+                body = payloads.lookup(businessId, random);
+            }
+        } else {
+            searches.increment();
+            body = payloads.search(properties.searchResults(), random);
+        }
+        bytes.add(body.length);
+        return Mono.delay(latency).then(response
+                .header(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON)
+                .sendByteArray(Mono.just(body))
+                .then());
+    }
+
+    private boolean inBurst() {
+        long every = properties.burstEvery().toNanos();
+        return every > 0 && (System.nanoTime() - startedAt) % every < properties.burstDuration().toNanos();
+    }
+
+    private static String firstParameter(String uri, String name) {
+        List<String> values = new QueryStringDecoder(uri).parameters().get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    /**
+     * Calls answered so far.
+     *
+     * @param lookups         Lookups by business ID answered with 200, including those without results.
+     * @param searches        Searches answered with 200.
+     * @param notFound        Lookups answered without results.
+     * @param errors          Calls answered with an error status.
+     * @param tooManyRequests Calls answered with 429 during a burst.
+     * @param bytes           Bytes of the bodies answered with 200, before compression.
+     */
+    public record Stats(long lookups, long searches, long notFound, long errors, long tooManyRequests, long bytes) {
+
+        public Stats minus(Stats earlier) {
+            return new Stats(lookups - earlier.lookups, searches - earlier.searches, notFound - earlier.notFound,
+                    errors - earlier.errors, tooManyRequests - earlier.tooManyRequests, bytes - earlier.bytes);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.accountor.prh.loadtest.generator;
+
+import com.accountor.prh.loadtest.config.Distribution;
+import com.accountor.prh.loadtest.config.StandInProperties;
+import com.accountor.prh.loadtest.config.WorkloadProperties;
+import com.accountor.prh.loadtest.report.StageReport;
+import com.accountor.prh.loadtest.standin.CompanyPayloads;
+import com.accountor.prh.loadtest.standin.PrhStandIn;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LoadGeneratorTests {
+
+    private static WorkloadProperties workload(int maxInFlight) {
+        return new WorkloadProperties(List.of(new WorkloadProperties.Request("/companies?businessId={businessId}", 1)),
+                100, 1.0, WorkloadProperties.Arrivals.CONSTANT, Duration.ZERO, 0, List.of(), Duration.ofSeconds(5),
+                maxInFlight, false, 42);
+    }
+
+    private static PrhStandIn standIn(Distribution latency) {
+        StandInProperties properties = new StandInProperties(0, latency, Distribution.fixed(0), 0, List.of(503), 0,
+                Duration.ZERO, Duration.ZERO, Duration.ofSeconds(1), 1, false);
+        return new PrhStandIn(properties, CompanyPayloads.load(new ObjectMapper(), Distribution.fixed(0)));
+    }
+
+    @Test
+    @DisplayName("Should send at the stage's rate and measure latency from the scheduled send time")
+    void run_shouldSendAtFixedRate() {
+        try (PrhStandIn standIn = standIn(Distribution.fixed(20));
+             LoadGenerator generator = new LoadGenerator(workload(1000), URI.create("http://127.0.0.1:" + standIn.start()))) {
+
+            StageReport report = generator.run(new WorkloadProperties.Stage("100rps", 100, Duration.ofSeconds(1)));
+
+            assertThat(report.sent()).isEqualTo(100);
+            assertThat(report.completed()).isEqualTo(100);
+            assertThat(report.statuses()).containsEntry(200, 100L);
+            assertThat(report.errorRate()).isZero();
+            assertThat(report.latency().p50()).isGreaterThanOrEqualTo(20);
+            assertThat(report.latency().p999()).isGreaterThanOrEqualTo(report.latency().p99());
+            assertThat(standIn.stats().lookups()).isEqualTo(100);
+        }
+    }
+
+    @Test
+    @DisplayName("Should drop arrivals beyond maxInFlight and count them at the request timeout in the latencies")
+    void run_shouldDropArrivalsBeyondMaxInFlight() {
+        try (PrhStandIn standIn = standIn(Distribution.fixed(2000));
+             LoadGenerator generator = new LoadGenerator(workload(5), URI.create("http://127.0.0.1:" + standIn.start()))) {
+
+            StageReport report = generator.run(new WorkloadProperties.Stage("overload", 50, Duration.ofMillis(500)));
+
+            assertThat(report.sent()).isEqualTo(5);
+            assertThat(report.dropped()).isEqualTo(20);
+            assertThat(report.completed()).isEqualTo(5);
+            assertThat(report.errorRate()).isEqualTo(0.8);
+            assertThat(report.latency().p50()).isCloseTo(5000, within(10.0));
+            assertThat(report.latency().p99()).isCloseTo(5000, within(10.0));
+        }
+    }
+
+    @Test
+    @DisplayName("Should only pick business IDs with a valid check digit, favouring the top ranks under skew")
+    void businessIds_shouldBeValidAndSkewed() {
+        SplittableRandom random = new SplittableRandom(7);
+        BusinessIds businessIds = new BusinessIds(100, 1.0, random);
+        Map<String, Integer> picks = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            String businessId = businessIds.pick(random);
+            assertThat(BusinessIds.checkDigit(Integer.parseInt(businessId.substring(0, 7))))
+                    .isEqualTo(businessId.charAt(8) - '0');
+            picks.merge(businessId, 1, Integer::sum);
+        }
+
+        // The top rank of a Zipf distribution with exponent 1 over 100 IDs gets 1 / H(100), about 19%, of the picks
+        assertThat(Collections.max(picks.values())).isBetween(1700, 2200);
+        assertThat(BusinessIds.checkDigit(112038)).isEqualTo(9);
+        assertThat(BusinessIds.checkDigit(100007)).isEqualTo(-1);
+    }
+}
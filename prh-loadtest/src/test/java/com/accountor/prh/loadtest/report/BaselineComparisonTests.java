@@ -0,0 +1,60 @@
+package com.accountor.prh.loadtest.report;
+
+import com.accountor.prh.loadtest.config.LoadTestProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BaselineComparisonTests {
+
+    private final LoadTestProperties properties = new LoadTestProperties(LoadTestProperties.Mode.RUN, null,
+            Path.of("service.jar"), 18080, List.of(), List.of(), Duration.ofSeconds(60), null, Path.of("report.json"),
+            null, 0.2, 0.05, 0.01);
+
+    private static LoadTestReport report(double throughput, double errorRate, double p50, double p99) {
+        StageReport stage = new StageReport("200rps", 200, Duration.ofSeconds(30), 6000, 0, 6000, 0, 0, throughput,
+                errorRate, new TreeMap<>(), new StageReport.Latency(p50, p50, p99, p99, p99, p50), null);
+        return new LoadTestReport("test", Instant.EPOCH, "http://127.0.0.1:18080", null, null, List.of(stage));
+    }
+
+    @Test
+    @DisplayName("Should report latency, throughput and error rate changes beyond the tolerances as regressions")
+    void regressions_shouldReportChangesBeyondTolerances() {
+        List<String> regressions = BaselineComparison.regressions(report(200, 0, 10, 50), report(180, 0.02, 11, 80),
+                properties);
+
+        assertThat(regressions).containsExactly(
+                "200rps: p99 latency 50.000 ms -> 80.000 ms (+60%)",
+                "200rps: p99.9 latency 50.000 ms -> 80.000 ms (+60%)",
+                "200rps: throughput 200.0/s -> 180.0/s (-10%)",
+                "200rps: error rate 0.00000 -> 0.02000");
+    }
+
+    @Test
+    @DisplayName("Should ignore changes within the tolerances and sub-millisecond latency changes")
+    void regressions_shouldIgnoreNoise() {
+        assertThat(BaselineComparison.regressions(report(200, 0, 0.2, 50), report(195, 0.005, 0.6, 55), properties))
+                .isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should read back a written report as a baseline")
+    void report_shouldRoundTripThroughJson() throws Exception {
+        ObjectMapper objectMapper = JsonMapper.builder().addModule(new JavaTimeModule()).build();
+        LoadTestReport report = report(200, 0, 10, 50);
+
+        LoadTestReport read = objectMapper.readValue(objectMapper.writeValueAsBytes(report), LoadTestReport.class);
+
+        assertThat(read).isEqualTo(report);
+    }
+}
@@ -0,0 +1,106 @@
+package com.accountor.prh.loadtest.standin;
+
+import com.accountor.prh.loadtest.config.Distribution;
+import com.accountor.prh.loadtest.config.StandInProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.netty.http.client.HttpClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrhStandInTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private PrhStandIn standIn;
+    private HttpClient client;
+
+    @AfterEach
+    void tearDown() {
+        if (standIn != null) {
+            standIn.close();
+        }
+    }
+
+    private void start(Distribution payloadSize, double errorRate, Duration burstEvery, Duration burstDuration) {
+        StandInProperties properties = new StandInProperties(0, Distribution.fixed(5), payloadSize, errorRate,
+                List.of(503), 0, burstEvery, burstDuration, Duration.ofSeconds(2), 3, false);
+        standIn = new PrhStandIn(properties, CompanyPayloads.load(objectMapper, payloadSize));
+        client = HttpClient.create().baseUrl("http://127.0.0.1:" + standIn.start());
+    }
+
+    private Response get(String uri) {
+        return client.get()
+                .uri(uri)
+                .responseSingle((response, body) -> body.asString()
+                        .defaultIfEmpty("")
+                        .map(text -> new Response(response.status().code(), response.responseHeaders().get("Retry-After"), text)))
+                .block(Duration.ofSeconds(5));
+    }
+
+    @Test
+    @DisplayName("Should answer a lookup with the requested business ID in a company of the sampled size")
+    void lookup_shouldAnswerCompanyOfSampledSize() throws Exception {
+        start(new Distribution(Distribution.Type.FIXED, 20_000, 0, 0, 40_000), 0, Duration.ZERO, Duration.ZERO);
+
+        Response response = get("/opendata-ytj-api/v3/companies?businessId=0112038-9");
+
+        assertThat(response.status()).isEqualTo(200);
+        JsonNode company = objectMapper.readTree(response.body()).at("/companies/0");
+        assertThat(company.at("/businessId/value").asText()).isEqualTo("0112038-9");
+        assertThat(company.at("/names/0/name").asText()).isEqualTo("Example Oyj");
+        assertThat(objectMapper.writeValueAsBytes(company).length).isBetween(20_000, 25_000);
+
+        JsonNode search = objectMapper.readTree(get("/companies?name=Example&page=1").body());
+        assertThat(search.at("/totalResults").asInt()).isEqualTo(3);
+        assertThat(search.at("/companies").size()).isEqualTo(3);
+        assertThat(standIn.stats().lookups()).isEqualTo(1);
+        assertThat(standIn.stats().searches()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should render company variants from the template size up to the largest payload size")
+    void load_shouldRenderVariantsUpToLargestSize() {
+        CompanyPayloads payloads = CompanyPayloads.load(objectMapper,
+                new Distribution(Distribution.Type.LOGNORMAL, 4000, 24_000, 0, 30_000));
+
+        assertThat(payloads.smallestSize()).isLessThan(4000);
+        assertThat(payloads.largestSize()).isBetween(30_000, 30_200);
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < 100; i++) {
+            assertThat(payloads.lookup("0112038-9", random).length).isBetween(payloads.smallestSize(), 30_300);
+        }
+    }
+
+    @Test
+    @DisplayName("Should fail calls at the configured error rate")
+    void companies_shouldFailAtErrorRate() {
+        start(Distribution.fixed(0), 1, Duration.ZERO, Duration.ZERO);
+
+        assertThat(get("/companies?businessId=0112038-9").status()).isEqualTo(503);
+        assertThat(standIn.stats().errors()).isEqualTo(1);
+        assertThat(standIn.stats().lookups()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should reject every call with 429 and Retry-After during a burst")
+    void companies_shouldAnswer429DuringBurst() {
+        start(Distribution.fixed(0), 0, Duration.ofHours(1), Duration.ofMinutes(1));
+
+        Response response = get("/companies?businessId=0112038-9");
+
+        assertThat(response.status()).isEqualTo(429);
+        assertThat(response.retryAfter()).isEqualTo("2");
+        assertThat(standIn.stats().tooManyRequests()).isEqualTo(1);
+    }
+
+    private record Response(int status, String retryAfter, String body) {
+    }
+}
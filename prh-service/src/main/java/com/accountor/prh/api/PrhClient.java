@@ -1,10 +1,26 @@
 package com.accountor.prh.api;
 
+import com.accountor.prh.domain.CompanySearchCriteria;
 import com.accountor.prh.dto.CompanyResultApiDto;
 import reactor.core.publisher.Mono;
 
 public interface PrhClient {
 
+    /**
+     * Looks up a company by business ID, decoding only the first company and only the fields
+     * needed to build company details.
+     */
     Mono<CompanyResultApiDto> getCompaniesByBusinessId(String businessId);
 
+    /**
+     * Looks up companies by business ID, decoding every company with every section of the response.
+     */
+    Mono<CompanyResultApiDto> getFullCompaniesByBusinessId(String businessId);
+
+    /**
+     * Fetches one page of companies matching the criteria, decoding only the fields needed to build
+     * company details. Pages are numbered from 1.
+     */
+    Mono<CompanyResultApiDto> searchCompanies(CompanySearchCriteria criteria, int page);
+
 }
\ No newline at end of file
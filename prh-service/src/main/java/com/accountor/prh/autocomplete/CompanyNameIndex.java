@@ -0,0 +1,532 @@
+package com.accountor.prh.autocomplete;
+
+import com.accountor.prh.cache.CompanyCache;
+import com.accountor.prh.config.PrhAutocompleteProperties;
+import com.accountor.prh.domain.CompanyDetailsDto;
+import com.accountor.prh.domain.CompanySuggestionDto;
+import com.accountor.prh.mirror.CompanyMirror;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Schedulers;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-memory prefix index over the names and business IDs of the companies the service has seen,
+ * for typeahead without calling PRH.
+ * <p>
+ * Names are folded to lower case without accents, so {@code "Äänekosken Öljy Oy"} is indexed as
+ * {@code "aanekosken oljy oy"} and typing with or without Finnish letters finds the same companies.
+ * Each company is indexed at the start of each of its first {@value #MAX_WORDS} words and at its
+ * business ID. The index proper is an immutable {@link Segment} holding one {@code long} per indexed
+ * word, sorted by the folded text that follows the word, so a prefix lookup is a binary search
+ * followed by a scan of consecutive entries, as in a suffix array.
+ * <p>
+ * Companies added since the segment was built are kept in a small delta that lookups scan as well.
+ * Once the delta holds {@code prh.autocomplete.merge-threshold} companies it is merged into a new
+ * segment in the background. The segment's keys are already sorted and only the delta's keys need
+ * sorting, so a merge is linear in the size of the index, and lookups use the previous segment
+ * until the new one is in place.
+ * <p>
+ * Companies are indexed on every {@link CompanyCache} put, which covers PRH lookups, background
+ * refreshes and search results, and from the {@link CompanyMirror} after each import.
+ */
+@Component
+public class CompanyNameIndex {
+
+    private static final int MAX_WORDS = 8;
+    private static final int OFFSET_BITS = 16;
+    private static final int MAX_TEXT_LENGTH = 1 << OFFSET_BITS;
+    private static final int BULK_SIZE = 65_536;
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private final Logger log = LoggerFactory.getLogger(CompanyNameIndex.class);
+
+    private final boolean enabled;
+    private final int maxCompanies;
+    private final int mergeThreshold;
+    private final int defaultLimit;
+    private final int maxLimit;
+    private final CompanyMirror companyMirror;
+    private final Map<String, Entry> delta = new ConcurrentHashMap<>();
+    private final AtomicBoolean mergeScheduled = new AtomicBoolean();
+    private final Object mergeLock = new Object();
+
+    private volatile Segment segment = Segment.EMPTY;
+
+    public CompanyNameIndex(PrhAutocompleteProperties properties, CompanyCache companyCache,
+                            CompanyMirror companyMirror, MeterRegistry meterRegistry) {
+        this.enabled = properties.enabled();
+        this.maxCompanies = properties.maxCompanies();
+        this.mergeThreshold = properties.mergeThreshold();
+        this.defaultLimit = properties.defaultLimit();
+        this.maxLimit = properties.maxLimit();
+        this.companyMirror = companyMirror;
+        Gauge.builder("prh.autocomplete.companies", this, CompanyNameIndex::size)
+                .description("Number of companies in the autocomplete index")
+                .register(meterRegistry);
+
+        if (enabled) {
+            companyCache.onPut(this::add);
+            companyMirror.onImport(this::indexMirror);
+        }
+    }
+
+    /**
+     * Indexes the mirror imported before startup, in the background once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void indexMirrorOnStartup() {
+        if (enabled) {
+            indexMirror();
+        }
+    }
+
+    /**
+     * Returns companies whose name has a word starting with {@code query}, or whose business ID
+     * starts with it, ignoring case, accents and punctuation. Suggestions are ordered by the folded
+     * text from the matching word on.
+     */
+    public List<CompanySuggestionDto> suggest(String query, int limit) {
+        String prefix = fold(query);
+        if (prefix.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        Segment current = segment;
+        List<Match> matches = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (int i = current.lowerBound(prefix); i < current.keys.length && seen.size() < limit; i++) {
+            int ordinal = ordinal(current.keys[i]);
+            int offset = offset(current.keys[i]);
+            String text = current.texts[ordinal];
+            if (!text.startsWith(prefix, offset)) {
+                break;
+            }
+            String businessId = current.businessIds[ordinal];
+            if (!delta.containsKey(businessId) && seen.add(businessId)) {
+                matches.add(new Match(text, offset, businessId, current.names[ordinal]));
+            }
+        }
+        for (Entry entry : delta.values()) {
+            for (int offset : entry.wordStarts) {
+                if (entry.text.startsWith(prefix, offset)) {
+                    matches.add(new Match(entry.text, offset, entry.businessId, entry.name));
+                    break;
+                }
+            }
+        }
+
+        matches.sort(Match.ORDER);
+        List<CompanySuggestionDto> suggestions = new ArrayList<>(Math.min(limit, matches.size()));
+        for (int i = 0; i < matches.size() && suggestions.size() < limit; i++) {
+            suggestions.add(new CompanySuggestionDto(matches.get(i).businessId, matches.get(i).name));
+        }
+        return suggestions;
+    }
+
+    /**
+     * Indexes or re-indexes one company. Companies whose name is already indexed are skipped.
+     */
+    public void add(String businessId, CompanyDetailsDto details) {
+        Entry entry = Entry.of(businessId, details.name());
+        if (entry == null || isIndexed(entry)) {
+            return;
+        }
+        if (!delta.containsKey(businessId) && segment.ordinalOf(entry.idKey) < 0 && size() >= maxCompanies) {
+            return;
+        }
+        delta.put(businessId, entry);
+        scheduleMergeIfFull();
+    }
+
+    public int size() {
+        return segment.size() + delta.size();
+    }
+
+    public int defaultLimit() {
+        return defaultLimit;
+    }
+
+    public int maxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * Merges the delta into a new segment on the calling thread.
+     */
+    void mergeDelta() {
+        synchronized (mergeLock) {
+            List<Entry> batch = new ArrayList<>(delta.values());
+            if (batch.isEmpty()) {
+                return;
+            }
+            segment = segment.merge(batch);
+            for (Entry entry : batch) {
+                delta.remove(entry.businessId, entry);
+            }
+        }
+    }
+
+    private void scheduleMergeIfFull() {
+        if (delta.size() >= mergeThreshold && mergeScheduled.compareAndSet(false, true)) {
+            Schedulers.boundedElastic().schedule(() -> {
+                try {
+                    mergeDelta();
+                } catch (RuntimeException ex) {
+                    log.warn("Could not merge companies into the autocomplete index: {}", ex.getMessage(), ex);
+                } finally {
+                    mergeScheduled.set(false);
+                }
+                scheduleMergeIfFull();
+            });
+        }
+    }
+
+    /**
+     * Adds a large batch straight to the segment rather than through the delta, so bulk loads cost
+     * one merge per batch. Companies in the delta are newer and keep precedence.
+     */
+    private void addAll(List<CompanyDetailsDto> companies) {
+        synchronized (mergeLock) {
+            List<Entry> batch = new ArrayList<>(companies.size());
+            int room = maxCompanies - size();
+            for (CompanyDetailsDto details : companies) {
+                Entry entry = Entry.of(details.businessId(), details.name());
+                if (entry == null || delta.containsKey(entry.businessId) || isIndexed(entry)) {
+                    continue;
+                }
+                if (segment.ordinalOf(entry.idKey) < 0) {
+                    if (room <= 0) {
+                        continue;
+                    }
+                    room--;
+                }
+                batch.add(entry);
+            }
+            if (!batch.isEmpty()) {
+                segment = segment.merge(batch);
+            }
+        }
+    }
+
+    private boolean isIndexed(Entry entry) {
+        Entry pending = delta.get(entry.businessId);
+        if (pending != null) {
+            return pending.name.equals(entry.name);
+        }
+        Segment current = segment;
+        int ordinal = current.ordinalOf(entry.idKey);
+        return ordinal >= 0 && current.names[ordinal].equals(entry.name);
+    }
+
+    private void indexMirror() {
+        long start = System.nanoTime();
+        companyMirror.companies()
+                .buffer(BULK_SIZE)
+                .doOnNext(this::addAll)
+                .reduce(0L, (indexed, batch) -> indexed + batch.size())
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(indexed -> {
+                            if (indexed > 0) {
+                                log.info("Indexed {} mirrored companies for autocomplete in {} ms",
+                                        indexed, (System.nanoTime() - start) / 1_000_000);
+                            }
+                        },
+                        ex -> log.error("Could not index the PRH mirror for autocomplete: {}", ex.getMessage(), ex));
+    }
+
+    /**
+     * Folds text for matching: lower case, accents removed and every run of characters other than
+     * letters and digits turned into a single space.
+     */
+    static String fold(String value) {
+        if (value == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(value, Normalizer.Form.NFD);
+        StringBuilder folded = new StringBuilder(decomposed.length());
+        boolean separator = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                if (separator && !folded.isEmpty()) {
+                    folded.append(' ');
+                }
+                separator = false;
+                folded.append(Character.toLowerCase(c));
+            } else {
+                separator = true;
+            }
+        }
+        return folded.toString();
+    }
+
+    private static long key(int ordinal, int offset) {
+        return ((long) ordinal << OFFSET_BITS) | offset;
+    }
+
+    private static int ordinal(long key) {
+        return (int) (key >>> OFFSET_BITS);
+    }
+
+    private static int offset(long key) {
+        return (int) (key & (MAX_TEXT_LENGTH - 1));
+    }
+
+    /**
+     * Compares the text from {@code aFrom} on with the text from {@code bFrom} on, like
+     * {@link String#compareTo} but without copying.
+     */
+    private static int compare(String a, int aFrom, String b, int bFrom) {
+        int aLength = a.length() - aFrom;
+        int bLength = b.length() - bFrom;
+        for (int i = 0, n = Math.min(aLength, bLength); i < n; i++) {
+            int diff = a.charAt(aFrom + i) - b.charAt(bFrom + i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return aLength - bLength;
+    }
+
+    private record Match(String text, int offset, String businessId, String name) {
+
+        static final Comparator<Match> ORDER = (a, b) -> compare(a.text, a.offset, b.text, b.offset);
+    }
+
+    /**
+     * A company ready to be indexed. Its text is the folded name followed by the folded business ID.
+     */
+    private record Entry(String businessId, String name, String text, int idKey, int[] wordStarts) {
+
+        static Entry of(String businessId, String name) {
+            int idKey = idKey(businessId);
+            String foldedName = fold(name);
+            if (idKey < 0 || foldedName.isEmpty()) {
+                return null;
+            }
+            String text = foldedName + ' ' + fold(businessId);
+            if (text.length() > MAX_TEXT_LENGTH) {
+                return null;
+            }
+            return new Entry(businessId, name, text, idKey, wordStarts(text, foldedName.length() + 1));
+        }
+
+        private static int[] wordStarts(String text, int idStart) {
+            int[] starts = new int[MAX_WORDS + 1];
+            int count = 0;
+            starts[count++] = 0;
+            for (int i = 1; i < idStart - 1 && count < MAX_WORDS; i++) {
+                if (text.charAt(i - 1) == ' ') {
+                    starts[count++] = i;
+                }
+            }
+            starts[count++] = idStart;
+            return Arrays.copyOf(starts, count);
+        }
+
+        /**
+         * Packs the digits of a canonical {@code XXXXXXX-X} business ID into an int, or returns -1.
+         */
+        private static int idKey(String businessId) {
+            if (businessId == null || businessId.length() != 9 || businessId.charAt(7) != '-') {
+                return -1;
+            }
+            int key = 0;
+            for (int i = 0; i < 9; i++) {
+                if (i == 7) {
+                    continue;
+                }
+                char c = businessId.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                key = key * 10 + (c - '0');
+            }
+            return key;
+        }
+    }
+
+    /**
+     * One immutable generation of the index. Companies are stored by ordinal in parallel arrays.
+     * {@code keys} packs an ordinal and the offset of an indexed word in the company's text, sorted
+     * by the text from that offset on; {@code byId} packs a business ID key and an ordinal, sorted
+     * by business ID.
+     */
+    private static final class Segment {
+
+        static final Segment EMPTY = new Segment(new String[0], new String[0], new String[0], new long[0], new long[0]);
+
+        final String[] businessIds;
+        final String[] names;
+        final String[] texts;
+        final long[] byId;
+        final long[] keys;
+
+        Segment(String[] businessIds, String[] names, String[] texts, long[] byId, long[] keys) {
+            this.businessIds = businessIds;
+            this.names = names;
+            this.texts = texts;
+            this.byId = byId;
+            this.keys = keys;
+        }
+
+        int size() {
+            return businessIds.length;
+        }
+
+        int ordinalOf(int idKey) {
+            int low = 0;
+            int high = byId.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int midKey = (int) (byId[mid] >>> 32);
+                if (midKey < idKey) {
+                    low = mid + 1;
+                } else if (midKey > idKey) {
+                    high = mid - 1;
+                } else {
+                    return (int) byId[mid];
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return The position of the first key whose text is not less than {@code prefix}.
+         */
+        int lowerBound(String prefix) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compare(texts[ordinal(keys[mid])], offset(keys[mid]), prefix, 0) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Builds the next generation: companies of the batch replace those with the same business
+         * ID, the surviving keys keep their order and the batch's sorted keys are merged in.
+         */
+        Segment merge(List<Entry> batch) {
+            Set<String> replaced = new HashSet<>();
+            for (Entry entry : batch) {
+                replaced.add(entry.businessId);
+            }
+
+            int[] remap = new int[size()];
+            int kept = 0;
+            for (int ordinal = 0; ordinal < size(); ordinal++) {
+                remap[ordinal] = replaced.contains(businessIds[ordinal]) ? -1 : kept++;
+            }
+            int total = kept + batch.size();
+            String[] newIds = new String[total];
+            String[] newNames = new String[total];
+            String[] newTexts = new String[total];
+            for (int ordinal = 0; ordinal < size(); ordinal++) {
+                if (remap[ordinal] >= 0) {
+                    newIds[remap[ordinal]] = businessIds[ordinal];
+                    newNames[remap[ordinal]] = names[ordinal];
+                    newTexts[remap[ordinal]] = texts[ordinal];
+                }
+            }
+            long[] added = new long[batch.size() * (MAX_WORDS + 1)];
+            int addedCount = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                Entry entry = batch.get(i);
+                int ordinal = kept + i;
+                newIds[ordinal] = entry.businessId;
+                newNames[ordinal] = entry.name;
+                newTexts[ordinal] = entry.text;
+                for (int offset : entry.wordStarts) {
+                    added[addedCount++] = key(ordinal, offset);
+                }
+            }
+
+            long[] survivors = new long[keys.length];
+            int survivorCount = 0;
+            for (long key : keys) {
+                int ordinal = remap[ordinal(key)];
+                if (ordinal >= 0) {
+                    survivors[survivorCount++] = key(ordinal, offset(key));
+                }
+            }
+            sort(added, 0, addedCount, new long[addedCount], newTexts);
+            long[] newKeys = new long[survivorCount + addedCount];
+            mergeRuns(survivors, 0, survivorCount, added, 0, addedCount, newKeys, 0, newTexts);
+
+            long[] newById = new long[total];
+            for (int ordinal = 0; ordinal < total; ordinal++) {
+                newById[ordinal] = ((long) Entry.idKey(newIds[ordinal]) << 32) | ordinal;
+            }
+            Arrays.sort(newById);
+            return new Segment(newIds, newNames, newTexts, newById, newKeys);
+        }
+
+        private static int compareKeys(long a, long b, String[] texts) {
+            return compare(texts[ordinal(a)], offset(a), texts[ordinal(b)], offset(b));
+        }
+
+        /**
+         * Stable merge sort of {@code keys[from, to)} by text, without boxing.
+         */
+        private static void sort(long[] keys, int from, int to, long[] scratch, String[] texts) {
+            if (to - from <= INSERTION_SORT_THRESHOLD) {
+                for (int i = from + 1; i < to; i++) {
+                    long key = keys[i];
+                    int j = i - 1;
+                    while (j >= from && compareKeys(keys[j], key, texts) > 0) {
+                        keys[j + 1] = keys[j];
+                        j--;
+                    }
+                    keys[j + 1] = key;
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            sort(keys, from, mid, scratch, texts);
+            sort(keys, mid, to, scratch, texts);
+            System.arraycopy(keys, from, scratch, from, to - from);
+            mergeRuns(scratch, from, mid, scratch, mid, to, keys, from, texts);
+        }
+
+        private static void mergeRuns(long[] left, int leftFrom, int leftTo, long[] right, int rightFrom, int rightTo,
+                                      long[] out, int outFrom, String[] texts) {
+            int l = leftFrom;
+            int r = rightFrom;
+            int o = outFrom;
+            while (l < leftTo && r < rightTo) {
+                out[o++] = compareKeys(right[r], left[l], texts) < 0 ? right[r++] : left[l++];
+            }
+            while (l < leftTo) {
+                out[o++] = left[l++];
+            }
+            while (r < rightTo) {
+                out[o++] = right[r++];
+            }
+        }
+    }
+}
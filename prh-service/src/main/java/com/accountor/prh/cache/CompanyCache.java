@@ -0,0 +1,266 @@
+package com.accountor.prh.cache;
+
+import com.accountor.prh.config.PrhCacheProperties;
+import com.accountor.prh.domain.CompanyDetailsDto;
+import com.accountor.prh.dto.CompanyApiDto;
+import com.accountor.prh.exception.CompanyNotFoundException;
+import com.accountor.prh.utils.SingleFlight;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Bounded in-process cache of mapped company details keyed by business ID.
+ * Found companies live for {@code prh.cache.ttl}, "not found" answers for the shorter
+ * {@code prh.cache.negative-ttl}. Hit, miss and eviction counts are published under the
+ * {@code cache.*} meters with {@code cache=companyDetails}.
+ * <p>
+ * Found companies older than {@code prh.cache.refresh-after} are stale-while-revalidate: they are
+ * still served, and {@link #refreshIfStale} reloads them in the background, at most once at a
+ * time per business ID. Refreshes are counted in {@code prh.cache.refreshes} by {@code result}.
+ * <p>
+ * The optional sections of companies requested with {@code ?include=} are kept separately, as PRH
+ * returned them, for {@code prh.cache.ttl}, published with {@code cache=companySections}.
+ * <p>
+ * With a {@link CompanyCacheStore} behind it, found companies are also written to disk and misses
+ * can be looked up there through {@link #getStored}, so that entries survive a restart with the
+ * age they already had.
+ */
+@Component
+public class CompanyCache {
+
+    public static final String CACHE_NAME = "companyDetails";
+    public static final String SECTIONS_CACHE_NAME = "companySections";
+
+    private final Logger log = LoggerFactory.getLogger(CompanyCache.class);
+
+    private final Cache<String, CompanyCacheEntry> cache;
+    private final Cache<String, CompanyApiDto> sections;
+    private final long refreshAfterNanos;
+    private final SingleFlight<String, CompanyDetailsDto> refreshes;
+    private final Counter refreshedFound;
+    private final Counter refreshedNotFound;
+    private final Counter refreshFailed;
+    private volatile BiConsumer<String, CompanyDetailsDto> putListener = (businessId, details) -> { };
+    private volatile CompanyCacheStore store;
+
+    public CompanyCache(PrhCacheProperties properties, MeterRegistry meterRegistry) {
+        this.refreshAfterNanos = properties.refreshAfter().toNanos();
+        this.refreshes = new SingleFlight<>(meterRegistry.counter("prh.cache.refreshes.coalesced"));
+        this.refreshedFound = refreshCounter(meterRegistry, "found");
+        this.refreshedNotFound = refreshCounter(meterRegistry, "not_found");
+        this.refreshFailed = refreshCounter(meterRegistry, "error");
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.maximumSize())
+                .expireAfter(new EntryExpiry(properties.ttl().toNanos(), properties.negativeTtl().toNanos()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        this.sections = Caffeine.newBuilder()
+                .maximumSize(properties.sectionsMaximumSize())
+                .expireAfterWrite(properties.ttl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, sections, SECTIONS_CACHE_NAME);
+    }
+
+    /**
+     * Returns the entry held in memory. Misses are not looked up in the durable store, which reads
+     * from disk; see {@link #getStored}.
+     */
+    public Optional<CompanyCacheEntry> get(String businessId) {
+        return Optional.ofNullable(cache.getIfPresent(businessId));
+    }
+
+    /**
+     * Looks up a company missing from memory in the durable store, on
+     * {@link Schedulers#boundedElastic()} since the read blocks on the disk, and caches it again.
+     *
+     * @return A Mono emitting the found entry, or empty without leaving the caller's thread if there
+     * is no store or it does not hold the business ID.
+     */
+    public Mono<CompanyCacheEntry> getStored(String businessId) {
+        CompanyCacheStore current = store;
+        if (current == null || !current.contains(businessId)) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> current.find(businessId).map(stored -> promote(businessId, stored)).orElse(null))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public void put(String businessId, CompanyDetailsDto details) {
+        cache.put(businessId, CompanyCacheEntry.found(details));
+        putListener.accept(businessId, details);
+        CompanyCacheStore current = store;
+        if (current != null) {
+            current.write(businessId, details);
+        }
+    }
+
+    /**
+     * Returns the entry without counting a hit or a miss, e.g. to read more of an entry that
+     * {@link #get} already returned.
+     */
+    public Optional<CompanyCacheEntry> peek(String businessId) {
+        return Optional.ofNullable(cache.policy().getIfPresentQuietly(businessId));
+    }
+
+    /**
+     * Registers the single listener told about every found company put in the cache, including
+     * background refreshes, e.g. to index it.
+     */
+    public void onPut(BiConsumer<String, CompanyDetailsDto> listener) {
+        this.putListener = listener;
+    }
+
+    /**
+     * Replaces the entries of the given companies that are cached, in memory or in the durable
+     * store, including negative entries, e.g. with changes fetched in bulk. Other companies are
+     * not added.
+     *
+     * @return The business IDs whose entries were replaced.
+     */
+    public Set<String> putIfCached(Map<String, CompanyDetailsDto> companies) {
+        CompanyCacheStore current = store;
+        Set<String> replaced = new HashSet<>();
+        companies.forEach((businessId, details) -> {
+            if (cache.policy().getIfPresentQuietly(businessId) != null
+                    || current != null && current.contains(businessId)) {
+                put(businessId, details);
+                replaced.add(businessId);
+            }
+        });
+        return replaced;
+    }
+
+    public void putNotFound(String businessId) {
+        cache.put(businessId, CompanyCacheEntry.notFound());
+        sections.invalidate(businessId);
+        removeFromStore(businessId);
+    }
+
+    public void invalidate(String businessId) {
+        cache.invalidate(businessId);
+        sections.invalidate(businessId);
+        removeFromStore(businessId);
+    }
+
+    /**
+     * @return The optional sections of a company as PRH returned them, if fetched within {@code prh.cache.ttl}.
+     */
+    public Optional<CompanyApiDto> getSections(String businessId) {
+        return Optional.ofNullable(sections.getIfPresent(businessId));
+    }
+
+    /**
+     * Keeps the optional sections of a company unmapped, so that each request maps only the
+     * sections it includes. Only {@code companyForms}, {@code companySituations},
+     * {@code registeredEntries} and {@code mainBusinessLine} of {@code company} are kept.
+     */
+    public void putSections(String businessId, CompanyApiDto company) {
+        sections.put(businessId, new CompanyApiDto(company.businessId(), null, null, null, null,
+                company.companyForms(), company.companySituations(), null, company.mainBusinessLine(),
+                company.registeredEntries(), null, null));
+    }
+
+    /**
+     * Sets the durable store written behind every put and read by {@link #getStored}.
+     */
+    public void backWith(CompanyCacheStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Reloads a found entry in the background through {@code loader} once it is older than
+     * {@code prh.cache.refresh-after}. A refresh that is already running for the business ID is
+     * joined rather than repeated. On success the entry is replaced, a {@link CompanyNotFoundException}
+     * turns it into a negative entry, and any other error keeps serving the current entry until
+     * its hard TTL.
+     *
+     * @return true if a refresh was started or joined.
+     */
+    public boolean refreshIfStale(String businessId, CompanyCacheEntry entry,
+                                  Function<String, Mono<CompanyDetailsDto>> loader) {
+        if (entry.isNotFound() || System.nanoTime() - entry.writtenAtNanos() < refreshAfterNanos) {
+            return false;
+        }
+
+        refreshes.execute(businessId, id -> loader.apply(id)
+                        .doOnNext(details -> {
+                            put(id, details);
+                            refreshedFound.increment();
+                        })
+                        .doOnError(ex -> {
+                            if (ex instanceof CompanyNotFoundException) {
+                                putNotFound(id);
+                                refreshedNotFound.increment();
+                            } else {
+                                refreshFailed.increment();
+                                log.warn("Background refresh failed for business ID {}: {}", id, ex.getMessage());
+                            }
+                        }))
+                .subscribe(details -> { }, ex -> { });
+        return true;
+    }
+
+    /**
+     * Caches a company read back from the store, keeping the time it was originally cached so that
+     * it is refreshed and expires on the same schedule as before.
+     */
+    private CompanyCacheEntry promote(String businessId, CompanyCacheStore.StoredCompany stored) {
+        long ageNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, System.currentTimeMillis() - stored.writtenAtMillis()));
+        CompanyCacheEntry entry = new CompanyCacheEntry(stored.details(), System.nanoTime() - ageNanos);
+        cache.put(businessId, entry);
+        putListener.accept(businessId, stored.details());
+        return entry;
+    }
+
+    private void removeFromStore(String businessId) {
+        CompanyCacheStore current = store;
+        if (current != null) {
+            current.remove(businessId);
+        }
+    }
+
+    private static Counter refreshCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("prh.cache.refreshes")
+                .description("Background refreshes of stale company cache entries")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private record EntryExpiry(long ttlNanos, long negativeTtlNanos) implements Expiry<String, CompanyCacheEntry> {
+
+        @Override
+        public long expireAfterCreate(String key, CompanyCacheEntry value, long currentTime) {
+            long ttl = value.isNotFound() ? negativeTtlNanos : ttlNanos;
+            return Math.max(0, ttl - Math.max(0, currentTime - value.writtenAtNanos()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, CompanyCacheEntry value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, CompanyCacheEntry value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
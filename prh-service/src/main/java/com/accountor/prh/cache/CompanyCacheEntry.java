@@ -0,0 +1,64 @@
+package com.accountor.prh.cache;
+
+import com.accountor.prh.domain.CompanyDetailsDto;
+
+import java.util.function.Function;
+
+/**
+ * A cached lookup result. A {@code null} {@code details} marks a negative entry, i.e. PRH
+ * reported that no company exists for the business ID. {@code writtenAtNanos} is the
+ * {@link System#nanoTime()} at which the entry was cached.
+ * <p>
+ * A found entry can also hold the pre-encoded response body of its company, encoded by
+ * {@link #encoded} the first time a response is written from the entry rather than when it is
+ * cached, so puts that are never read back, e.g. from bulk lookups, cost no encoding.
+ */
+public final class CompanyCacheEntry {
+
+    private final CompanyDetailsDto details;
+    private final long writtenAtNanos;
+    private volatile EncodedCompany encoded;
+
+    CompanyCacheEntry(CompanyDetailsDto details, long writtenAtNanos) {
+        this.details = details;
+        this.writtenAtNanos = writtenAtNanos;
+    }
+
+    public static CompanyCacheEntry found(CompanyDetailsDto details) {
+        return new CompanyCacheEntry(details, System.nanoTime());
+    }
+
+    public static CompanyCacheEntry notFound() {
+        return new CompanyCacheEntry(null, System.nanoTime());
+    }
+
+    public CompanyDetailsDto details() {
+        return details;
+    }
+
+    public long writtenAtNanos() {
+        return writtenAtNanos;
+    }
+
+    public boolean isNotFound() {
+        return details == null;
+    }
+
+    /**
+     * Returns the pre-encoded response body, encoding it with {@code encoder} on first use. Two
+     * concurrent first uses may both encode; either result is kept.
+     *
+     * @return The encoded body, or {@code null} for a negative entry or if {@code encoder} returned {@code null}.
+     */
+    public EncodedCompany encoded(Function<CompanyDetailsDto, EncodedCompany> encoder) {
+        if (details == null) {
+            return null;
+        }
+        EncodedCompany current = encoded;
+        if (current == null) {
+            current = encoder.apply(details);
+            encoded = current;
+        }
+        return current;
+    }
+}
@@ -0,0 +1,590 @@
+package com.accountor.prh.cache;
+
+import com.accountor.prh.config.PrhCacheProperties;
+import com.accountor.prh.config.PrhCacheStoreProperties;
+import com.accountor.prh.domain.CompanyDetailsDto;
+import com.accountor.prh.mirror.CompanyRecordCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Durable second level under {@link CompanyCache}, so that a restarted service answers from the
+ * companies it had cached instead of sending a burst of lookups to PRH.
+ * <p>
+ * Puts are collected in memory, one pending write per business ID, and appended to a log file in
+ * batches every {@code prh.cache-store.flush-interval} or once {@code batch-size} are pending; the
+ * lookup never waits for the disk. Each record holds the business ID, the time it was cached and
+ * the company as a {@link CompanyRecordCodec} record, or no company for a removed entry. At startup
+ * the log is scanned in the background into an in-memory index of record offsets, and companies
+ * are read from the file one at a time, off the event loop, when {@link CompanyCache} misses.
+ * Companies older than {@code prh.cache.ttl} are not served, and are dropped from the index when
+ * the log is loaded and after every flush, together with the oldest companies beyond
+ * {@code prh.cache.maximum-size}. A torn record at the end of the log, left by a crash during a
+ * flush, is cut off when the log is loaded, and the log is rewritten with only the indexed records
+ * once more than half of it is superseded, expired or evicted. Reads that are still running keep
+ * the replaced log open until they finish.
+ * <p>
+ * Lookups are counted in {@code prh.cache.store.lookups} by {@code result} (hit, miss, expired),
+ * writes in {@code prh.cache.store.writes} by {@code result} (written, dropped, failed), companies
+ * dropped from the index in {@code prh.cache.store.evictions}, and the startup load is timed in
+ * {@code prh.cache.store.load}.
+ */
+@Component
+public class CompanyCacheStore implements DisposableBean {
+
+    static final String LOG_FILE = "companies.log";
+
+    private static final int MAGIC = 0x5052484C;    // "PRHL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_PENDING_BATCHES = 16;
+    private static final int MIN_COMPACTION_RECORDS = 1024;
+
+    private final Logger log = LoggerFactory.getLogger(CompanyCacheStore.class);
+
+    private final PrhCacheStoreProperties properties;
+    private final long ttlMillis;
+    private final long maxEntries;
+    private final int maxPending;
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Timer loadTimer;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter expired;
+    private final Counter written;
+    private final Counter dropped;
+    private final Counter failed;
+    private final Counter evictions;
+
+    private volatile Generation generation;
+    private volatile Disposable flushes;
+    private long records;
+
+    public CompanyCacheStore(PrhCacheStoreProperties properties, PrhCacheProperties cacheProperties,
+                             CompanyCache companyCache, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.ttlMillis = cacheProperties.ttl().toMillis();
+        this.maxEntries = cacheProperties.maximumSize();
+        this.maxPending = properties.batchSize() * MAX_PENDING_BATCHES;
+        this.loadTimer = Timer.builder("prh.cache.store.load")
+                .description("Time to load the cache store's index at startup")
+                .register(meterRegistry);
+        this.hits = lookupCounter(meterRegistry, "hit");
+        this.misses = lookupCounter(meterRegistry, "miss");
+        this.expired = lookupCounter(meterRegistry, "expired");
+        this.written = writeCounter(meterRegistry, "written");
+        this.dropped = writeCounter(meterRegistry, "dropped");
+        this.failed = writeCounter(meterRegistry, "failed");
+        this.evictions = Counter.builder("prh.cache.store.evictions")
+                .description("Expired or excess companies dropped from the durable cache store")
+                .register(meterRegistry);
+        Gauge.builder("prh.cache.store.entries", this, CompanyCacheStore::size)
+                .description("Number of companies in the durable cache store")
+                .register(meterRegistry);
+
+        if (properties.enabled()) {
+            companyCache.backWith(this);
+        }
+    }
+
+    /**
+     * Looks up a company written to the store. Blocks on the disk unless the write is still pending.
+     *
+     * @return The company and when it was cached, or empty if the store does not hold it, has not
+     * been loaded yet, holds it for longer than {@code prh.cache.ttl} or could not read it.
+     */
+    public Optional<StoredCompany> find(String businessId) {
+        Pending write = pending.get(businessId);
+        if (write != null) {
+            return found(write.details() != null ? new StoredCompany(write.details(), write.writtenAtMillis()) : null);
+        }
+
+        Generation current = acquire();
+        if (current == null) {
+            return found(null);
+        }
+        try {
+            Location location = current.index().get(businessId);
+            if (location == null) {
+                return found(null);
+            }
+            if (System.currentTimeMillis() - location.writtenAtMillis() >= ttlMillis) {
+                expired.increment();
+                return Optional.empty();
+            }
+            return found(new StoredCompany(current.read(location), location.writtenAtMillis()));
+        } catch (IOException ex) {
+            log.warn("Could not read business ID {} from the cache store: {}", businessId, ex.getMessage());
+            return found(null);
+        } finally {
+            current.release();
+        }
+    }
+
+    /**
+     * @return Whether the store holds a company for the business ID, expired or not, without reading it.
+     */
+    public boolean contains(String businessId) {
+        Pending write = pending.get(businessId);
+        if (write != null) {
+            return write.details() != null;
+        }
+        Generation current = generation;
+        return current != null && current.index().containsKey(businessId);
+    }
+
+    /**
+     * Queues {@code details} to be written with the next batch.
+     */
+    public void write(String businessId, CompanyDetailsDto details) {
+        enqueue(businessId, new Pending(details, System.currentTimeMillis()));
+    }
+
+    /**
+     * Queues the removal of a business ID, e.g. once PRH reports that the company does not exist.
+     */
+    public void remove(String businessId) {
+        enqueue(businessId, new Pending(null, System.currentTimeMillis()));
+    }
+
+    /**
+     * Loads the store in the background once the application is ready and starts flushing writes.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (!properties.enabled()) {
+            return;
+        }
+
+        Mono.fromCallable(() -> {
+                    load();
+                    return true;
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(loaded -> flushes = Flux.interval(properties.flushInterval(), Schedulers.boundedElastic())
+                                .subscribe(tick -> flush()),
+                        ex -> log.error("Could not load the cache store in {}: {}", properties.directory(), ex.getMessage(), ex));
+    }
+
+    /**
+     * Opens the log and indexes its records, blocking until done. Lookups miss until then.
+     */
+    public synchronized void load() throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(properties.directory());
+        Path file = properties.directory().resolve(LOG_FILE);
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Map<String, Location> index = new ConcurrentHashMap<>();
+        try {
+            records = scan(channel, index);
+        } catch (IOException ex) {
+            log.warn("Discarding unreadable cache store {}: {}", file, ex.getMessage());
+            channel.truncate(0);
+            records = 0;
+            index.clear();
+        }
+        if (channel.size() == 0) {
+            writeHeader(channel);
+        }
+        evict(index);
+        generation = new Generation(channel, index);
+        compactIfWasteful();
+        loadTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.info("Loaded {} companies from the cache store in {} ms", index.size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Appends every pending write to the log in one batch. Does nothing before the store is loaded.
+     */
+    public synchronized void flush() {
+        flushScheduled.set(false);
+        Generation current = generation;
+        if (current == null || pending.isEmpty()) {
+            return;
+        }
+
+        ByteArrayOutputStream batch = new ByteArrayOutputStream(properties.batchSize() * 256);
+        Map<String, Location> locations = new HashMap<>();
+        Map<String, Pending> flushed = new HashMap<>();
+        try {
+            long position = current.channel().size();
+            for (Map.Entry<String, Pending> write : pending.entrySet()) {
+                byte[] payload = payload(write.getKey(), write.getValue());
+                appendRecord(batch, payload);
+                flushed.put(write.getKey(), write.getValue());
+                if (write.getValue().details() != null) {
+                    locations.put(write.getKey(), new Location(position + batch.size() - payload.length,
+                            payload.length, write.getValue().writtenAtMillis()));
+                }
+            }
+            writeFully(current.channel(), ByteBuffer.wrap(batch.toByteArray()), position);
+            current.channel().force(false);
+        } catch (IOException ex) {
+            log.warn("Could not write {} companies to the cache store: {}", flushed.size(), ex.getMessage());
+            flushed.forEach(pending::remove);
+            failed.increment(flushed.size());
+            return;
+        }
+
+        for (Map.Entry<String, Pending> write : flushed.entrySet()) {
+            Location location = locations.get(write.getKey());
+            if (location != null) {
+                current.index().put(write.getKey(), location);
+            } else {
+                current.index().remove(write.getKey());
+            }
+            // A newer write queued meanwhile stays pending for the next batch.
+            pending.remove(write.getKey(), write.getValue());
+        }
+        records += flushed.size();
+        written.increment(flushed.size());
+        evict(current.index());
+        compactIfWasteful();
+    }
+
+    public long size() {
+        Generation current = generation;
+        return current != null ? current.index().size() : 0;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        Disposable current = flushes;
+        if (current != null) {
+            current.dispose();
+        }
+        flush();
+        Generation closing = generation;
+        generation = null;
+        if (closing != null) {
+            closing.release();
+        }
+    }
+
+    private void enqueue(String businessId, Pending write) {
+        if (pending.size() >= maxPending && !pending.containsKey(businessId)) {
+            dropped.increment();
+            return;
+        }
+        pending.put(businessId, write);
+        if (pending.size() >= properties.batchSize() && generation != null && flushScheduled.compareAndSet(false, true)) {
+            Schedulers.boundedElastic().schedule(this::flush);
+        }
+    }
+
+    /**
+     * @return The current generation, kept open until {@link Generation#release released}, or null
+     * before the store is loaded.
+     */
+    private Generation acquire() {
+        while (true) {
+            Generation current = generation;
+            if (current == null || current.retain()) {
+                return current;
+            }
+            // Replaced by a compaction meanwhile; the next read of the field sees its successor.
+        }
+    }
+
+    /**
+     * Drops expired companies from the index and, beyond {@code prh.cache.maximum-size}, the ones
+     * cached longest ago. Their records stay in the log as waste until the next compaction.
+     */
+    private void evict(Map<String, Location> index) {
+        int before = index.size();
+        long now = System.currentTimeMillis();
+        index.values().removeIf(location -> now - location.writtenAtMillis() >= ttlMillis);
+        long excess = index.size() - maxEntries;
+        if (excess > 0) {
+            index.entrySet().stream()
+                    .sorted(Comparator.comparingLong(entry -> entry.getValue().writtenAtMillis()))
+                    .limit(excess)
+                    .map(Map.Entry::getKey)
+                    .toList()
+                    .forEach(index::remove);
+        }
+        evictions.increment(before - index.size());
+    }
+
+    private Optional<StoredCompany> found(StoredCompany stored) {
+        (stored != null ? hits : misses).increment();
+        return Optional.ofNullable(stored);
+    }
+
+    /**
+     * Rewrites the log with only the indexed, unexpired records once it holds more than twice as
+     * many records as indexed companies. The replaced log is closed once no read is using it.
+     */
+    private void compactIfWasteful() {
+        Generation current = generation;
+        if (records < MIN_COMPACTION_RECORDS || records <= 2L * current.index().size()) {
+            return;
+        }
+
+        Path file = properties.directory().resolve(LOG_FILE);
+        Path compacted = properties.directory().resolve(LOG_FILE + ".tmp");
+        long now = System.currentTimeMillis();
+        Map<String, Location> index = new ConcurrentHashMap<>();
+        try {
+            try (FileChannel target = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                writeHeader(target);
+                ByteArrayOutputStream batch = new ByteArrayOutputStream();
+                long position = HEADER_SIZE;
+                for (Map.Entry<String, Location> entry : current.index().entrySet()) {
+                    Location location = entry.getValue();
+                    if (now - location.writtenAtMillis() >= ttlMillis) {
+                        continue;
+                    }
+                    byte[] payload = current.readPayload(location);
+                    appendRecord(batch, payload);
+                    index.put(entry.getKey(), new Location(position + batch.size() - payload.length,
+                            payload.length, location.writtenAtMillis()));
+                }
+                writeFully(target, ByteBuffer.wrap(batch.toByteArray()), position);
+                target.force(true);
+            }
+            Files.move(compacted, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            generation = new Generation(FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE), index);
+            log.info("Compacted the cache store from {} records to {} companies", records, index.size());
+            records = index.size();
+            current.release();
+        } catch (IOException ex) {
+            log.warn("Could not compact the cache store: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Indexes every record of the log, cutting off a torn or corrupt tail.
+     *
+     * @return The number of intact records.
+     */
+    private static long scan(FileChannel channel, Map<String, Location> index) throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            return 0;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0)), 64 * 1024));
+        if (size < HEADER_SIZE || in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Unsupported cache store format");
+        }
+        in.readLong();
+
+        long position = HEADER_SIZE;
+        long count = 0;
+        CRC32 crc = new CRC32();
+        while (position < size) {
+            byte[] payload;
+            try {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length <= 0 || position + RECORD_HEADER_SIZE + length > size) {
+                    break;
+                }
+                payload = new byte[length];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+            } catch (EOFException ex) {
+                break;
+            }
+
+            ByteBuffer record = ByteBuffer.wrap(payload);
+            long writtenAtMillis = record.getLong();
+            byte[] id = new byte[record.getShort()];
+            record.get(id);
+            String businessId = new String(id, StandardCharsets.UTF_8);
+            if (record.get() != 0) {
+                index.put(businessId, new Location(position + RECORD_HEADER_SIZE, payload.length, writtenAtMillis));
+            } else {
+                index.remove(businessId);
+            }
+            position += RECORD_HEADER_SIZE + payload.length;
+            count++;
+        }
+        if (position < size) {
+            channel.truncate(position);
+        }
+        return count;
+    }
+
+    /**
+     * Cached-at time, business ID and, unless the write is a removal, the encoded company.
+     */
+    private static byte[] payload(String businessId, Pending write) throws IOException {
+        byte[] id = businessId.getBytes(StandardCharsets.UTF_8);
+        byte[] details = write.details() != null ? CompanyRecordCodec.encode(write.details()) : new byte[0];
+        ByteBuffer payload = ByteBuffer.allocate(Long.BYTES + Short.BYTES + id.length + 1 + details.length)
+                .putLong(write.writtenAtMillis())
+                .putShort((short) id.length)
+                .put(id)
+                .put((byte) (write.details() != null ? 1 : 0))
+                .put(details);
+        return payload.array();
+    }
+
+    private static void appendRecord(ByteArrayOutputStream batch, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        DataOutputStream out = new DataOutputStream(batch);
+        out.writeInt(payload.length);
+        out.writeInt((int) crc.getValue());
+        out.write(payload);
+    }
+
+    private static void writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(System.currentTimeMillis())
+                .flip();
+        writeFully(channel, header, 0);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("prh.cache.store.lookups")
+                .description("Company cache misses looked up in the durable cache store")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static Counter writeCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("prh.cache.store.writes")
+                .description("Company cache writes behind to the durable cache store")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * A company read from the store and the epoch millis at which it was cached.
+     */
+    public record StoredCompany(CompanyDetailsDto details, long writtenAtMillis) {
+    }
+
+    private record Pending(CompanyDetailsDto details, long writtenAtMillis) {
+    }
+
+    /**
+     * Offset and length of a record's payload in the log.
+     */
+    private record Location(long offset, int length, long writtenAtMillis) {
+    }
+
+    /**
+     * The open log and the index of its records; replaced as a whole when the log is compacted.
+     * Holds one reference for the store and one per read in progress, and closes the log when the
+     * last is released.
+     */
+    private static final class Generation {
+
+        private final FileChannel channel;
+        private final Map<String, Location> index;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        Generation(FileChannel channel, Map<String, Location> index) {
+            this.channel = channel;
+            this.index = index;
+        }
+
+        FileChannel channel() {
+            return channel;
+        }
+
+        Map<String, Location> index() {
+            return index;
+        }
+
+        /**
+         * @return false if the log is already closed.
+         */
+        boolean retain() {
+            int count;
+            do {
+                count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                close();
+            }
+        }
+
+        byte[] readPayload(Location location) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(location.length());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, location.offset() + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of cache store");
+                }
+            }
+            return buffer.array();
+        }
+
+        CompanyDetailsDto read(Location location) throws IOException {
+            byte[] payload = readPayload(location);
+            int detailsOffset = Long.BYTES + Short.BYTES + ByteBuffer.wrap(payload, Long.BYTES, Short.BYTES).getShort() + 1;
+            return CompanyRecordCodec.decode(payload, detailsOffset, payload.length - detailsOffset);
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Nothing left to release.
+            }
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.accountor.prh.cache;
+
+/**
+ * The response body of a cached company, encoded once when it was first served: its UTF-8 JSON
+ * and, if enabled, the gzip-compressed JSON, each with its strong ETag. The arrays are shared by
+ * every response written from them and must not be modified.
+ */
+public record EncodedCompany(byte[] json, String eTag, byte[] gzip, String gzipETag) {
+}
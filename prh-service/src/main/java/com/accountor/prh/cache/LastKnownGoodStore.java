@@ -0,0 +1,83 @@
+package com.accountor.prh.cache;
+
+import com.accountor.prh.config.PrhFallbackProperties;
+import com.accountor.prh.domain.CompanyDetailsDto;
+import com.accountor.prh.domain.LastKnownCompanyDetails;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * The most recent company details fetched from PRH, kept for {@code prh.fallback.max-age} so that
+ * lookups can still be answered while the PRH circuit is open, the rate limiter rejects calls or
+ * retries are exhausted. Unlike {@link CompanyCache}, entries are never served while PRH is healthy.
+ * Fallback lookups are counted in {@code prh.fallback.lookups} by {@code result} (hit, miss).
+ */
+@Component
+public class LastKnownGoodStore {
+
+    private final boolean enabled;
+    private final Cache<String, LastKnownCompanyDetails> store;
+    private final Counter hits;
+    private final Counter misses;
+
+    public LastKnownGoodStore(PrhFallbackProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.enabled();
+        this.store = Caffeine.newBuilder()
+                .maximumSize(properties.maximumSize())
+                .expireAfterWrite(properties.maxAge())
+                .build();
+        this.hits = lookupCounter(meterRegistry, "hit");
+        this.misses = lookupCounter(meterRegistry, "miss");
+    }
+
+    public void put(String businessId, CompanyDetailsDto details) {
+        if (enabled) {
+            store.put(businessId, new LastKnownCompanyDetails(details, Instant.now()));
+        }
+    }
+
+    /**
+     * Replaces the stored details of the given companies that are already stored; other companies
+     * are not added.
+     *
+     * @return The business IDs whose details were replaced.
+     */
+    public Set<String> putIfStored(Map<String, CompanyDetailsDto> companies) {
+        Set<String> replaced = new HashSet<>();
+        if (enabled) {
+            Instant now = Instant.now();
+            companies.forEach((businessId, details) -> {
+                if (store.asMap().replace(businessId, new LastKnownCompanyDetails(details, now)) != null) {
+                    replaced.add(businessId);
+                }
+            });
+        }
+        return replaced;
+    }
+
+    public void invalidate(String businessId) {
+        store.invalidate(businessId);
+    }
+
+    public Optional<LastKnownCompanyDetails> find(String businessId) {
+        LastKnownCompanyDetails lastKnown = store.getIfPresent(businessId);
+        (lastKnown != null ? hits : misses).increment();
+        return Optional.ofNullable(lastKnown);
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("prh.fallback.lookups")
+                .description("Lookups of last-known-good company details while PRH is unavailable")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
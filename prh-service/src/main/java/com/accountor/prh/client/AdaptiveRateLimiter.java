@@ -0,0 +1,267 @@
+package com.accountor.prh.client;
+
+import com.accountor.prh.config.PrhRateLimitProperties;
+import com.accountor.prh.exception.ExternalApiException;
+import com.accountor.prh.exception.PrhThrottledException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate limiter for PRH calls that learns PRH's capacity instead of using a fixed rate.
+ * <p>
+ * Calls are paced at the current rate. A call that can't start right away reserves the next free
+ * slot and waits for it; the reservations form a bounded FIFO queue. A call is rejected on arrival,
+ * with {@link RateLimitRejectedException}, when the queue is full or its slot is further away than
+ * {@code prh.rate-limit.max-wait}, so callers never wait only to time out.
+ * <p>
+ * The rate follows AIMD: every healthy call raises it by {@code additive-increase / rate}, about
+ * {@code additive-increase} per second at full use, up to {@code max-rate}. A 429, a 5xx, a
+ * connection failure or a call slower than {@code latency-threshold} multiplies it by
+ * {@code decrease-factor}, down to {@code min-rate}. Only calls started after the previous decrease
+ * can decrease it again, so one burst of failures halves the rate once. The rate in force at the
+ * last decrease is kept as the learned capacity. A 429 also pauses all calls for its
+ * {@code Retry-After}. Calls that arrive during the pause, and queued calls whose slot fell inside
+ * it, get new slots paced at the current rate from the end of the pause, so they don't all reach
+ * PRH the moment it stops throttling.
+ */
+@Component
+public class AdaptiveRateLimiter {
+
+    public enum Backoff { THROTTLED, SERVER_ERROR, LATENCY, ERROR }
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long QUEUE_FULL = -1;
+    private static final long WAIT_TOO_LONG = -2;
+
+    private final double minRate;
+    private final double maxRate;
+    private final double additiveIncrease;
+    private final double decreaseFactor;
+    private final long latencyThresholdNanos;
+    private final int maxQueueSize;
+    private final long maxWaitNanos;
+    private final Duration defaultRetryAfter;
+    private final Duration maxRetryAfter;
+    private final LongSupplier nanoClock;
+
+    private double rate;
+    private double learnedCapacity;
+    private long nextSlotNanos;
+    private long pausedUntilNanos;
+    private long lastDecreaseNanos;
+    private int queued;
+    private Consumer<Backoff> backoffListener = backoff -> { };
+
+    @Autowired
+    public AdaptiveRateLimiter(PrhRateLimitProperties properties) {
+        this(properties, System::nanoTime);
+    }
+
+    AdaptiveRateLimiter(PrhRateLimitProperties properties, LongSupplier nanoClock) {
+        this.minRate = properties.minRate();
+        this.maxRate = properties.maxRate();
+        this.additiveIncrease = properties.additiveIncrease();
+        this.decreaseFactor = properties.decreaseFactor();
+        this.latencyThresholdNanos = properties.latencyThreshold().toNanos();
+        this.maxQueueSize = properties.maxQueueSize();
+        this.maxWaitNanos = properties.maxWait().toNanos();
+        this.defaultRetryAfter = properties.defaultRetryAfter();
+        this.maxRetryAfter = properties.maxRetryAfter();
+        this.nanoClock = nanoClock;
+        this.rate = Math.min(Math.max(properties.initialRate(), minRate), maxRate);
+        this.learnedCapacity = maxRate;
+        long now = nanoClock.getAsLong();
+        this.nextSlotNanos = now;
+        this.pausedUntilNanos = now;
+        this.lastDecreaseNanos = now - 1;
+    }
+
+    /**
+     * Runs {@code call} once it is admitted and feeds its outcome back into the rate. Admitted calls
+     * that don't have to wait are subscribed to on the calling thread.
+     */
+    public <T> Mono<T> limit(Mono<T> call) {
+        return Mono.defer(() -> {
+            long admittedAt = nanoClock.getAsLong();
+            long wait = reserve(admittedAt);
+            if (wait < 0) {
+                return Mono.error(new RateLimitRejectedException(rejectionMessage(wait)));
+            }
+            if (wait == 0) {
+                return observed(call);
+            }
+            return Mono.delay(Duration.ofNanos(wait))
+                    .doFinally(signal -> dequeue())
+                    .then(Mono.defer(() -> afterPause(call, admittedAt)));
+        });
+    }
+
+    /**
+     * Runs {@code call} only if it can start right away, without queuing; otherwise completes empty.
+     * Meant for optional extra calls such as hedges, which are worthless once they have to wait.
+     */
+    public <T> Mono<T> limitIfIdle(Mono<T> call) {
+        return Mono.defer(() -> reserveNow(nanoClock.getAsLong()) ? observed(call) : Mono.empty());
+    }
+
+    /**
+     * Registers the single listener told about every rate decrease, e.g. to count them.
+     */
+    public synchronized void onBackoff(Consumer<Backoff> listener) {
+        this.backoffListener = listener;
+    }
+
+    /**
+     * @return The calls per second currently allowed.
+     */
+    public synchronized double currentRate() {
+        return rate;
+    }
+
+    /**
+     * @return The rate in force when PRH last pushed back, or {@code max-rate} if it never has.
+     */
+    public synchronized double learnedCapacity() {
+        return learnedCapacity;
+    }
+
+    /**
+     * @return The number of admitted calls waiting for their slot.
+     */
+    public synchronized int queued() {
+        return queued;
+    }
+
+    /**
+     * Reserves the next free slot and returns how long to wait for it, or a negative reason code if
+     * the call is rejected. Rejected calls reserve nothing.
+     */
+    synchronized long reserve(long now) {
+        long slot = Math.max(now, Math.max(nextSlotNanos, pausedUntilNanos));
+        long wait = slot - now;
+        if (wait > 0 && queued >= maxQueueSize) {
+            return QUEUE_FULL;
+        }
+        if (wait > maxWaitNanos) {
+            return WAIT_TOO_LONG;
+        }
+        nextSlotNanos = slot + (long) (NANOS_PER_SECOND / rate);
+        if (wait > 0) {
+            queued++;
+        }
+        return wait;
+    }
+
+    synchronized boolean reserveNow(long now) {
+        if (Math.max(nextSlotNanos, pausedUntilNanos) > now) {
+            return false;
+        }
+        nextSlotNanos = now + (long) (NANOS_PER_SECOND / rate);
+        return true;
+    }
+
+    /**
+     * Reserves a new slot after the pause for a queued call whose slot fell inside a Retry-After
+     * pause that began while it waited. The call is rejected if that slot is further than
+     * {@code max-wait} from when it was admitted.
+     *
+     * @return How long to wait for the new slot, 0 if no pause is in force, or a negative reason code.
+     */
+    synchronized long reschedule(long now, long admittedAt) {
+        if (pausedUntilNanos <= now) {
+            return 0;
+        }
+        long slot = Math.max(nextSlotNanos, pausedUntilNanos);
+        if (slot - admittedAt > maxWaitNanos) {
+            return WAIT_TOO_LONG;
+        }
+        nextSlotNanos = slot + (long) (NANOS_PER_SECOND / rate);
+        queued++;
+        return slot - now;
+    }
+
+    private synchronized void dequeue() {
+        queued--;
+    }
+
+    /**
+     * A Retry-After that arrived while the call was queued still applies to it; see {@link #reschedule}.
+     */
+    private <T> Mono<T> afterPause(Mono<T> call, long admittedAt) {
+        long wait = reschedule(nanoClock.getAsLong(), admittedAt);
+        if (wait < 0) {
+            return Mono.error(new RateLimitRejectedException(rejectionMessage(wait)));
+        }
+        if (wait == 0) {
+            return observed(call);
+        }
+        return Mono.delay(Duration.ofNanos(wait))
+                .doFinally(signal -> dequeue())
+                .then(observed(call));
+    }
+
+    private <T> Mono<T> observed(Mono<T> call) {
+        return Mono.defer(() -> {
+            long start = nanoClock.getAsLong();
+            return call
+                    .doOnSuccess(value -> onSuccess(start))
+                    .doOnError(ex -> onError(start, ex));
+        });
+    }
+
+    synchronized void onSuccess(long startNanos) {
+        if (nanoClock.getAsLong() - startNanos > latencyThresholdNanos) {
+            decrease(startNanos, Backoff.LATENCY);
+        } else {
+            rate = Math.min(maxRate, rate + additiveIncrease / rate);
+        }
+    }
+
+    synchronized void onError(long startNanos, Throwable ex) {
+        if (ex instanceof PrhThrottledException throttled) {
+            pause(throttled.getRetryAfter());
+            decrease(startNanos, Backoff.THROTTLED);
+        } else if (ex instanceof ExternalApiException apiException && isServerError(apiException.getErrorCode())) {
+            decrease(startNanos, Backoff.SERVER_ERROR);
+        } else if (PrhClientImpl.isTransportFailure(ex)) {
+            decrease(startNanos, Backoff.ERROR);
+        } else {
+            // 404s, other 4xx and local failures say nothing about PRH's capacity.
+            onSuccess(startNanos);
+        }
+    }
+
+    private void pause(Duration retryAfter) {
+        Duration pause = retryAfter == null || retryAfter.isNegative() ? defaultRetryAfter : retryAfter;
+        if (pause.compareTo(maxRetryAfter) > 0) {
+            pause = maxRetryAfter;
+        }
+        pausedUntilNanos = Math.max(pausedUntilNanos, nanoClock.getAsLong() + pause.toNanos());
+        nextSlotNanos = Math.max(nextSlotNanos, pausedUntilNanos);
+    }
+
+    private void decrease(long startNanos, Backoff reason) {
+        if (startNanos <= lastDecreaseNanos) {
+            return;
+        }
+        learnedCapacity = rate;
+        rate = Math.max(minRate, rate * decreaseFactor);
+        lastDecreaseNanos = nanoClock.getAsLong();
+        backoffListener.accept(reason);
+    }
+
+    private String rejectionMessage(long reason) {
+        return reason == QUEUE_FULL
+                ? "PRH rate limiter queue is full (" + maxQueueSize + " calls waiting)."
+                : "No PRH rate limiter slot is available within " + Duration.ofNanos(maxWaitNanos).toMillis() + " ms.";
+    }
+
+    private static boolean isServerError(String errorCode) {
+        return errorCode != null && errorCode.length() == 3 && errorCode.charAt(0) == '5';
+    }
+}
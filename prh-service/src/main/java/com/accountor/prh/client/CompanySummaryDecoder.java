@@ -0,0 +1,229 @@
+package com.accountor.prh.client;
+
+import com.accountor.prh.dto.CompanyApiDto;
+import com.accountor.prh.dto.CompanyResultApiDto;
+import com.accountor.prh.exception.MappingException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Incremental decoder for PRH {@code /companies} responses that only materialises what
+ * {@link com.accountor.prh.domain.CompanyMapper} needs.
+ * <p>
+ * Body chunks are fed to a non-blocking Jackson parser as they arrive. Tokens of the wanted fields
+ * of the first {@code maxCompanies} companies are recorded; every other section
+ * ({@code companyForms}, {@code companySituations}, {@code registeredEntries}, ...) is skipped token
+ * by token without building objects. Once enough companies are complete, remaining chunks are no
+ * longer parsed.
+ * <p>
+ * An instance holds parser state for one response and must not be shared.
+ */
+public final class CompanySummaryDecoder {
+
+    private static final Set<String> COMPANY_FIELDS = Set.of(
+            "businessId", "names", "addresses", "registrationDate", "mainBusinessLine", "website", "lastModified");
+
+    private static final int ROOT_DEPTH = 1;
+    private static final int COMPANY_DEPTH = 3;
+
+    private enum Pending { NONE, TOTAL_RESULTS, COMPANIES, COPY_VALUE, SKIP_VALUE }
+
+    private final ObjectMapper objectMapper;
+    private final JsonParser parser;
+    private final ByteBufferFeeder feeder;
+    private final int maxCompanies;
+
+    private Pending pending = Pending.NONE;
+    private int depth;
+    private int valueReturnDepth = -1;
+    private boolean copyingValue;
+    private boolean inCompanies;
+    private boolean done;
+    private long totalResults = -1;
+    private TokenBuffer company;
+    private final List<TokenBuffer> companies = new ArrayList<>();
+
+    /**
+     * Creates a decoder for the first company of a response, as needed for a business ID lookup.
+     */
+    public CompanySummaryDecoder(ObjectMapper objectMapper) {
+        this(objectMapper, 1);
+    }
+
+    /**
+     * Creates a decoder for up to {@code maxCompanies} companies, e.g. a page of search results.
+     */
+    public CompanySummaryDecoder(ObjectMapper objectMapper, int maxCompanies) {
+        this.objectMapper = objectMapper;
+        this.maxCompanies = maxCompanies;
+        try {
+            this.parser = objectMapper.getFactory().createNonBlockingByteBufferParser();
+        } catch (IOException ex) {
+            throw new MappingException("Could not create PRH response parser: " + ex.getMessage());
+        }
+        this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Feeds the next body chunk. The caller keeps ownership of the buffer and may release it once
+     * this method returns.
+     */
+    public CompanySummaryDecoder feed(DataBuffer dataBuffer) {
+        if (done) {
+            return this;
+        }
+        try (DataBuffer.ByteBufferIterator chunks = dataBuffer.readableByteBuffers()) {
+            while (chunks.hasNext() && !done) {
+                ByteBuffer chunk = chunks.next();
+                feeder.feedInput(chunk);
+                drainTokens();
+            }
+        } catch (IOException ex) {
+            throw new MappingException("Could not decode PRH response: " + ex.getMessage());
+        }
+        return this;
+    }
+
+    /**
+     * Signals the end of the body and returns the decoded result, holding at most
+     * {@code maxCompanies} companies.
+     */
+    public CompanyResultApiDto finish() {
+        try {
+            if (!done) {
+                feeder.endOfInput();
+                drainTokens();
+            }
+            parser.close();
+
+            if (companies.isEmpty()) {
+                return new CompanyResultApiDto(Math.max(totalResults, 0), List.of());
+            }
+            List<CompanyApiDto> results = new ArrayList<>(companies.size());
+            for (TokenBuffer tokens : companies) {
+                results.add(objectMapper.readValue(tokens.asParser(objectMapper), CompanyApiDto.class));
+            }
+            return new CompanyResultApiDto(Math.max(totalResults, results.size()), List.copyOf(results));
+        } catch (IOException ex) {
+            throw new MappingException("Could not decode PRH response: " + ex.getMessage());
+        }
+    }
+
+    private void drainTokens() throws IOException {
+        JsonToken token;
+        while (!done && (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            handle(token);
+        }
+    }
+
+    private void handle(JsonToken token) throws IOException {
+        if (valueReturnDepth >= 0) {
+            consumeValueToken(token);
+            return;
+        }
+
+        switch (pending) {
+            case COPY_VALUE, SKIP_VALUE -> {
+                copyingValue = pending == Pending.COPY_VALUE;
+                pending = Pending.NONE;
+                valueReturnDepth = depth;
+                consumeValueToken(token);
+                return;
+            }
+            case TOTAL_RESULTS -> {
+                pending = Pending.NONE;
+                if (token.isNumeric()) {
+                    totalResults = parser.getLongValue();
+                } else {
+                    startSkipping(token);
+                }
+                return;
+            }
+            case COMPANIES -> {
+                pending = Pending.NONE;
+                if (token == JsonToken.START_ARRAY) {
+                    depth++;
+                    inCompanies = true;
+                } else {
+                    startSkipping(token);
+                }
+                return;
+            }
+            default -> {
+            }
+        }
+
+        switch (token) {
+            case START_OBJECT -> {
+                depth++;
+                if (inCompanies && depth == COMPANY_DEPTH) {
+                    company = new TokenBuffer(parser);
+                    company.writeStartObject();
+                }
+            }
+            case END_OBJECT -> {
+                if (inCompanies && depth == COMPANY_DEPTH) {
+                    company.writeEndObject();
+                    companies.add(company);
+                    company = null;
+                    done = companies.size() >= maxCompanies;
+                }
+                depth--;
+            }
+            case START_ARRAY -> depth++;
+            case END_ARRAY -> {
+                depth--;
+                if (inCompanies && depth == ROOT_DEPTH) {
+                    inCompanies = false;
+                }
+            }
+            case FIELD_NAME -> onFieldName(parser.currentName());
+            default -> {
+                // Scalar outside any field we track, e.g. a non-object element of "companies".
+            }
+        }
+    }
+
+    private void onFieldName(String name) throws IOException {
+        if (depth == ROOT_DEPTH && "totalResults".equals(name)) {
+            pending = Pending.TOTAL_RESULTS;
+        } else if (depth == ROOT_DEPTH && "companies".equals(name)) {
+            pending = Pending.COMPANIES;
+        } else if (inCompanies && depth == COMPANY_DEPTH && COMPANY_FIELDS.contains(name)) {
+            company.writeFieldName(name);
+            pending = Pending.COPY_VALUE;
+        } else {
+            pending = Pending.SKIP_VALUE;
+        }
+    }
+
+    private void startSkipping(JsonToken token) throws IOException {
+        copyingValue = false;
+        valueReturnDepth = depth;
+        consumeValueToken(token);
+    }
+
+    private void consumeValueToken(JsonToken token) throws IOException {
+        if (copyingValue) {
+            company.copyCurrentEvent(parser);
+        }
+        if (token.isStructStart()) {
+            depth++;
+        } else if (token.isStructEnd()) {
+            depth--;
+        }
+        if (depth == valueReturnDepth) {
+            valueReturnDepth = -1;
+        }
+    }
+}
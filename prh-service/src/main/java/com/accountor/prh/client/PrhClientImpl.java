@@ -1,51 +1,239 @@
 package com.accountor.prh.client;
 
 import com.accountor.prh.api.PrhClient;
+import com.accountor.prh.domain.CompanySearchCriteria;
 import com.accountor.prh.dto.CompanyResultApiDto;
 import com.accountor.prh.exception.CompanyNotFoundException;
 import com.accountor.prh.exception.ExternalApiException;
-import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
-import io.github.resilience4j.ratelimiter.annotation.RateLimiter;
-import io.github.resilience4j.retry.annotation.Retry;
-import lombok.RequiredArgsConstructor;
+import com.accountor.prh.exception.PrhThrottledException;
+import com.accountor.prh.exception.PrhUnavailableException;
+import com.accountor.prh.utils.SingleFlight;
+import com.accountor.prh.metrics.PrhMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.github.resilience4j.reactor.retry.RetryOperator;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * WebClient based {@link PrhClient}. Each upstream call passes, from the inside out, the
+ * {@link AdaptiveRateLimiter}, and the {@code prhService} circuit breaker and retry configured under
+ * {@code resilience4j.*}. They are applied inside the {@link SingleFlight}, so collapsed callers
+ * share one permit, one breaker call and one retry sequence. Every retry waits for a new permit,
+ * so retries also honour a {@code Retry-After} that PRH sent meanwhile.
+ */
 @Component
-@RequiredArgsConstructor
 public class PrhClientImpl implements PrhClient {
 
+    static final String RESILIENCE_INSTANCE = "prhService";
+
     private final WebClient prhWebClient;
+    private final ObjectMapper objectMapper;
+    private final PrhMetrics metrics;
+    private final AdaptiveRateLimiter rateLimiter;
+    private final RequestHedger hedger;
+    private final CircuitBreaker circuitBreaker;
+    private final Retry retry;
+    private final SingleFlight<String, CompanyResultApiDto> inFlightLookups;
+    private final SingleFlight<String, CompanyResultApiDto> inFlightFullLookups;
+    private final SingleFlight<SearchPage, CompanyResultApiDto> inFlightSearches;
     private final Logger log = LoggerFactory.getLogger(PrhClientImpl.class);
 
+    public PrhClientImpl(WebClient prhWebClient, ObjectMapper objectMapper, PrhMetrics metrics,
+                         AdaptiveRateLimiter rateLimiter, RequestHedger hedger,
+                         CircuitBreakerRegistry circuitBreakerRegistry, RetryRegistry retryRegistry) {
+        this.prhWebClient = prhWebClient;
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+        this.rateLimiter = rateLimiter;
+        this.hedger = hedger;
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(RESILIENCE_INSTANCE);
+        this.retry = retryRegistry.retry(RESILIENCE_INSTANCE);
+        metrics.bind(rateLimiter);
+        metrics.bind(circuitBreaker);
+        metrics.bind(retry);
+        this.inFlightLookups = new SingleFlight<>(metrics.coalescedRequests());
+        this.inFlightFullLookups = new SingleFlight<>(metrics.coalescedRequests());
+        this.inFlightSearches = new SingleFlight<>(metrics.coalescedRequests());
+    }
+
+    /**
+     * Looks up a company by business ID. The body is decoded incrementally by
+     * {@link CompanySummaryDecoder}, so only the first company's summary fields are materialised.
+     * Concurrent calls for the same business ID share a single upstream request; see {@link SingleFlight}.
+     * With {@code prh.hedging.enabled}, a slow request is hedged; see {@link RequestHedger}.
+     */
     @Override
-    @Retry(name = "prhService", fallbackMethod = "retryFallback")
-    @CircuitBreaker(name = "prhService", fallbackMethod = "circuitBreakerFallback")
-    @RateLimiter(name = "prhService", fallbackMethod = "rateLimiterFallback")
     public Mono<CompanyResultApiDto> getCompaniesByBusinessId(String businessId) {
+        return inFlightLookups.execute(businessId, id -> resilient(id, true, retrieveCompanies(id)
+                .bodyToFlux(DataBuffer.class)
+                .reduceWith(() -> new CompanySummaryDecoder(objectMapper), (decoder, dataBuffer) -> {
+                    try {
+                        return decoder.feed(dataBuffer);
+                    } finally {
+                        DataBufferUtils.release(dataBuffer);
+                    }
+                })
+                .map(CompanySummaryDecoder::finish)));
+    }
+
+    /**
+     * Fetches one page of search results. Like {@link #getCompaniesByBusinessId}, the body is decoded
+     * incrementally and only the summary fields of each company are materialised. Concurrent calls
+     * for the same criteria and page share a single upstream request.
+     */
+    @Override
+    public Mono<CompanyResultApiDto> searchCompanies(CompanySearchCriteria criteria, int page) {
+        return inFlightSearches.execute(new SearchPage(criteria, page), key -> resilient(key.toString(), false,
+                searchRequest(key)
+                        .bodyToFlux(DataBuffer.class)
+                        .reduceWith(() -> new CompanySummaryDecoder(objectMapper, Integer.MAX_VALUE), (decoder, dataBuffer) -> {
+                            try {
+                                return decoder.feed(dataBuffer);
+                            } finally {
+                                DataBufferUtils.release(dataBuffer);
+                            }
+                        })
+                        .map(CompanySummaryDecoder::finish)));
+    }
+
+    /**
+     * Looks up companies by business ID and decodes the complete response. Concurrent calls for
+     * the same business ID share a single upstream request; see {@link SingleFlight}.
+     */
+    @Override
+    public Mono<CompanyResultApiDto> getFullCompaniesByBusinessId(String businessId) {
+        return inFlightFullLookups.execute(businessId, id -> resilient(id, false, retrieveCompanies(id)
+                .bodyToMono(CompanyResultApiDto.class)));
+    }
+
+    /**
+     * Wraps one upstream call in the rate limiter, circuit breaker and retry, recording how long
+     * each attempt waited for its rate limiter permit. Rejections, an open circuit, exhausted
+     * retries and transport failures, such as a refused connection or a response slower than the
+     * read or response timeout, surface as {@link PrhUnavailableException}s carrying the original
+     * cause. A hedged
+     * attempt counts as one call for the breaker and retry; its hedge only runs if the rate limiter
+     * has a slot free right away.
+     */
+    private Mono<CompanyResultApiDto> resilient(String businessId, boolean hedged, Mono<CompanyResultApiDto> call) {
+        Mono<CompanyResultApiDto> attempt = hedged ? hedger.hedge(call, call, rateLimiter::limitIfIdle) : call;
+        return Mono.defer(() -> {
+            AtomicInteger attempts = new AtomicInteger();
+            return Mono.defer(() -> {
+                        long permitRequested = System.nanoTime();
+                        return Mono.defer(() -> {
+                                    metrics.recordRateLimiterWait(System.nanoTime() - permitRequested);
+                                    attempts.incrementAndGet();
+                                    return attempt;
+                                })
+                                .transform(rateLimiter::limit);
+                    })
+                    .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                    .transformDeferred(RetryOperator.of(retry))
+                    .onErrorMap(ex -> translateError(businessId, ex, attempts.get()));
+        });
+    }
+
+    private Throwable translateError(String businessId, Throwable ex, int attempts) {
+        if (ex instanceof RateLimitRejectedException) {
+            metrics.recordRateLimiterRejection();
+            log.error("Rate limit exceeded for businessId: {}. Cause: {}", businessId, ex.getMessage());
+            return new PrhUnavailableException("Rate limit for PRH API has been exceeded. Please try again later.", ex);
+        }
+        if (ex instanceof CallNotPermittedException) {
+            log.error("Circuit breaker is open for businessId: {}. Cause: {}", businessId, ex.getMessage());
+            return new PrhUnavailableException("PRH API is currently unavailable. The circuit is open.", ex);
+        }
+        if (ex instanceof ExternalApiException && attempts > 1) {
+            log.error("All {} attempts failed for businessId: {}. Cause: {}", attempts, businessId, ex.getMessage());
+            return new PrhUnavailableException("PRH API is not responding after multiple attempts. Please check the service status.", ex);
+        }
+        if (isTransportFailure(ex)) {
+            log.error("PRH API could not be reached in {} attempts for businessId: {}. Cause: {}", attempts, businessId, ex.getMessage());
+            return new PrhUnavailableException("PRH API could not be reached or did not answer in time. Please try again later.", ex);
+        }
+        return ex;
+    }
+
+    /**
+     * Failures to connect or to read the whole response, including timeouts. Error statuses are
+     * mapped by {@link #handleErrors}, so a {@link WebClientResponseException} here means the
+     * response broke off after its headers.
+     */
+    static boolean isTransportFailure(Throwable ex) {
+        return ex instanceof WebClientRequestException
+                || ex instanceof WebClientResponseException
+                || ex instanceof TimeoutException;
+    }
+
+    private WebClient.ResponseSpec retrieveCompanies(String businessId) {
         log.info("Attempting to get company details for businessId: {}", businessId);
 
-        return prhWebClient.get()
+        return handleErrors(prhWebClient.get()
                 .uri(uriBuilder -> uriBuilder
                         .path("/companies")
                         .queryParam("businessId", businessId)
                         .build())
-                .retrieve()
+                .retrieve(), "Company not found for business ID: " + businessId);
+    }
+
+    private WebClient.ResponseSpec searchRequest(SearchPage key) {
+        log.info("Searching companies: {}", key);
+        CompanySearchCriteria criteria = key.criteria();
+
+        return handleErrors(prhWebClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path("/companies")
+                        .queryParamIfPresent("name", Optional.ofNullable(criteria.name()))
+                        .queryParamIfPresent("location", Optional.ofNullable(criteria.location()))
+                        .queryParamIfPresent("postCode", Optional.ofNullable(criteria.postCode()))
+                        .queryParamIfPresent("registrationDateStart", Optional.ofNullable(criteria.registrationDateStart()))
+                        .queryParamIfPresent("registrationDateEnd", Optional.ofNullable(criteria.registrationDateEnd()))
+                        .queryParam("page", key.page())
+                        .build())
+                .retrieve(), "No companies found for " + key);
+    }
+
+    private WebClient.ResponseSpec handleErrors(WebClient.ResponseSpec responseSpec, String notFoundMessage) {
+        return responseSpec
                 .onStatus(HttpStatusCode::is4xxClientError, clientResponse ->
                         clientResponse.bodyToMono(String.class)
+                                // A bodyless 4xx, e.g. a bare 429, must still fail rather than decode as an empty result.
+                                .defaultIfEmpty("")
                                 .flatMap(errorBody -> {
                                     log.error("Client error from PRH API. Status: {}, Body: {}",
                                             clientResponse.statusCode(), errorBody);
                                     if (clientResponse.statusCode() == HttpStatus.NOT_FOUND) {
-                                        return Mono.error(new CompanyNotFoundException("Company not found for business ID: " + businessId));
+                                        return Mono.error(new CompanyNotFoundException(notFoundMessage));
                                     }
                                     if (clientResponse.statusCode() == HttpStatus.TOO_MANY_REQUESTS) {
-                                        return Mono.error(new ExternalApiException("Too many requests to external API.", String.valueOf(clientResponse.statusCode().value()), errorBody));
+                                        return Mono.error(new PrhThrottledException("Too many requests to external API.",
+                                                String.valueOf(clientResponse.statusCode().value()), errorBody,
+                                                retryAfter(clientResponse.headers().asHttpHeaders().getFirst(HttpHeaders.RETRY_AFTER))));
                                     }
                                     return Mono.error(new ExternalApiException(
                                             "Client error from external API: " + clientResponse.statusCode().value(),
@@ -57,23 +245,30 @@ public class PrhClientImpl implements PrhClient {
                         Mono.error(new ExternalApiException(
                                 "Server error from external API: " + clientResponse.statusCode().value(),
                                 String.valueOf(clientResponse.statusCode().value()),
-                                "The external service is likely down or unstable.")))
-                .bodyToMono(CompanyResultApiDto.class);
+                                "The external service is likely down or unstable.")));
     }
 
-    private Mono<CompanyResultApiDto> retryFallback(String businessId, Throwable ex) {
-        log.error("All retries exhausted for businessId: {}. Falling back. Cause: {}", businessId, ex.getMessage());
-        return Mono.error(new ExternalApiException("PRH API is not responding after multiple attempts. Please check the service status.", ex));
+    private record SearchPage(CompanySearchCriteria criteria, int page) {
     }
 
-    private Mono<CompanyResultApiDto> circuitBreakerFallback(String businessId, Throwable ex) {
-        log.error("Circuit breaker is open for businessId: {}. Falling back. Cause: {}", businessId, ex.getMessage());
-        return Mono.error(new ExternalApiException("PRH API is currently unavailable. The circuit is open.", ex));
-    }
-
-
-    private Mono<CompanyResultApiDto> rateLimiterFallback(String businessId, Throwable ex) {
-        log.error("Rate limit exceeded for businessId: {}. Falling back. Cause: {}", businessId, ex.getMessage());
-        return Mono.error(new ExternalApiException("Rate limit for PRH API has been exceeded. Please try again later.", ex));
+    /**
+     * Parses a {@code Retry-After} header given either in seconds or as an HTTP date.
+     *
+     * @return The requested wait, or null if the header is missing or malformed.
+     */
+    static Duration retryAfter(String header) {
+        if (header == null || header.isBlank()) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Long.parseLong(header.trim()));
+        } catch (NumberFormatException ex) {
+            try {
+                ZonedDateTime retryAt = ZonedDateTime.parse(header.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Duration.between(ZonedDateTime.now(retryAt.getZone()), retryAt);
+            } catch (DateTimeParseException invalidDate) {
+                return null;
+            }
+        }
     }
-}
\ No newline at end of file
+}
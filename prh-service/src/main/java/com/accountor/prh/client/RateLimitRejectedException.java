@@ -0,0 +1,12 @@
+package com.accountor.prh.client;
+
+/**
+ * Raised by {@link AdaptiveRateLimiter} when a call can't be admitted: the wait queue is full, or
+ * the call could not start within {@code prh.rate-limit.max-wait}.
+ */
+public class RateLimitRejectedException extends RuntimeException {
+
+    public RateLimitRejectedException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,160 @@
+package com.accountor.prh.client;
+
+import com.accountor.prh.config.PrhHedgingProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Sends a second copy of a slow PRH call to cut tail latency.
+ * <p>
+ * If the first call has not answered within the hedge delay, the backup call is sent and whichever
+ * answers first wins; the other is cancelled. The delay is {@code prh.hedging.delay} or, when unset,
+ * the {@code percentile} of the last {@value #WINDOW} successful calls. Hedges are paid for from a
+ * budget that earns {@code prh.hedging.budget} tokens per call, so they stay a fixed share of all
+ * calls, and the backup only runs if its caller has capacity for it right away.
+ * <p>
+ * Hedges are counted in {@code prh.hedge.requests} by {@code result}: {@code sent}, {@code won}
+ * (the hedge answered first), {@code over_budget} and {@code rate_limited}. The current delay is
+ * the {@code prh.hedge.delay} gauge.
+ */
+@Component
+public class RequestHedger {
+
+    static final int WINDOW = 1024;
+    private static final int RECOMPUTE_EVERY = 64;
+    private static final double MAX_TOKENS = 10;
+
+    private final boolean enabled;
+    private final Duration fixedDelay;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final double budget;
+    private final LongSupplier nanoClock;
+
+    private final long[] latencies = new long[WINDOW];
+    private int recorded;
+    private long delayNanos;
+    private double tokens = 1;
+
+    private final Counter sent;
+    private final Counter won;
+    private final Counter overBudget;
+    private final Counter rateLimited;
+
+    @Autowired
+    public RequestHedger(PrhHedgingProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, System::nanoTime);
+    }
+
+    RequestHedger(PrhHedgingProperties properties, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.enabled = properties.enabled();
+        this.fixedDelay = properties.delay();
+        this.percentile = properties.percentile();
+        this.minDelayNanos = properties.minDelay().toNanos();
+        this.maxDelayNanos = properties.maxDelay().toNanos();
+        this.budget = properties.budget();
+        this.nanoClock = nanoClock;
+        this.delayNanos = fixedDelay != null ? fixedDelay.toNanos() : maxDelayNanos;
+        this.sent = hedgeCounter(meterRegistry, "sent");
+        this.won = hedgeCounter(meterRegistry, "won");
+        this.overBudget = hedgeCounter(meterRegistry, "over_budget");
+        this.rateLimited = hedgeCounter(meterRegistry, "rate_limited");
+        Gauge.builder("prh.hedge.delay", this, hedger -> hedger.delay().toNanos())
+                .description("Time PRH calls wait for a response before they are hedged")
+                .baseUnit("nanoseconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code primary} and, if it hasn't answered within the hedge delay and the budget allows,
+     * also {@code backup}. An error of the primary call is returned as is; an error of the backup
+     * call leaves the primary call to answer.
+     */
+    public <T> Mono<T> hedge(Mono<T> primary, Mono<T> backup) {
+        return hedge(primary, backup, UnaryOperator.identity());
+    }
+
+    /**
+     * Like {@link #hedge(Mono, Mono)}, but the backup call is only sent if {@code admission} lets it
+     * through, e.g. {@link AdaptiveRateLimiter#limitIfIdle}. An admission that completes empty
+     * without subscribing to the backup is counted as {@code rate_limited}, and the budget spent on
+     * the hedge is refunded.
+     */
+    public <T> Mono<T> hedge(Mono<T> primary, Mono<T> backup, UnaryOperator<Mono<T>> admission) {
+        if (!enabled) {
+            return primary;
+        }
+        return Mono.defer(() -> {
+            long start = nanoClock.getAsLong();
+            earnBudget();
+            Mono<T> timedPrimary = primary.doOnSuccess(value -> recordLatency(nanoClock.getAsLong() - start));
+            Mono<T> delayedBackup = Mono.delay(delay())
+                    .then(Mono.defer(() -> {
+                        if (!spendBudget()) {
+                            overBudget.increment();
+                            return Mono.never();
+                        }
+                        return admission.apply(backup.doOnSubscribe(subscription -> sent.increment()))
+                                .doOnNext(value -> won.increment())
+                                .switchIfEmpty(Mono.defer(() -> {
+                                    rateLimited.increment();
+                                    refundBudget();
+                                    return Mono.never();
+                                }))
+                                .onErrorResume(ex -> Mono.never());
+                    }));
+            return Mono.firstWithSignal(timedPrimary, delayedBackup);
+        });
+    }
+
+    /**
+     * @return The time a call waits for its response before it is hedged.
+     */
+    public synchronized Duration delay() {
+        return Duration.ofNanos(delayNanos);
+    }
+
+    synchronized void recordLatency(long nanos) {
+        latencies[recorded % WINDOW] = nanos;
+        recorded++;
+        if (fixedDelay == null && recorded >= WINDOW / 4 && recorded % RECOMPUTE_EVERY == 0) {
+            long[] window = Arrays.copyOf(latencies, Math.min(recorded, WINDOW));
+            Arrays.sort(window);
+            long learned = window[(int) Math.min(window.length - 1, Math.ceil(percentile * window.length) - 1)];
+            delayNanos = Math.max(minDelayNanos, Math.min(maxDelayNanos, learned));
+        }
+    }
+
+    private synchronized void earnBudget() {
+        tokens = Math.min(MAX_TOKENS, tokens + budget);
+    }
+
+    private synchronized boolean spendBudget() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    private synchronized void refundBudget() {
+        tokens = Math.min(MAX_TOKENS, tokens + 1);
+    }
+
+    private static Counter hedgeCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("prh.hedge.requests")
+                .description("Hedged PRH calls")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
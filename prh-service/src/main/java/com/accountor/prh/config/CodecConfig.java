@@ -0,0 +1,65 @@
+package com.accountor.prh.config;
+
+import com.accountor.prh.controller.CompanyMediaTypes;
+import com.accountor.prh.controller.CompanyProtobufEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.json.AbstractJackson2Encoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.MimeType;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+/**
+ * Binary encoders next to JSON. CBOR and Smile use ObjectMappers from the application's
+ * {@link Jackson2ObjectMapperBuilder}, so they carry the same modules and date handling as JSON;
+ * Protobuf is written by {@link CompanyProtobufEncoder}. JSON remains the default, since the
+ * company endpoints list it first in {@code produces}.
+ * <p>
+ * WebFlux consults custom encoders before JSON, so they only take part when their media type is
+ * asked for, and JSON stays the default of endpoints that don't list binary types.
+ */
+@Configuration
+public class CodecConfig implements WebFluxConfigurer {
+
+    private final ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder;
+
+    public CodecConfig(ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder) {
+        this.objectMapperBuilder = objectMapperBuilder;
+    }
+
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        ObjectMapper smileMapper = objectMapperBuilder.getObject().factory(new SmileFactory()).build();
+        configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(smileMapper,
+                CompanyMediaTypes.APPLICATION_SMILE, new MimeType("application", "*+x-jackson-smile")));
+
+        ObjectMapper cborMapper = objectMapperBuilder.getObject().factory(new CBORFactory()).build();
+        configurer.customCodecs().register(new CborEncoder(cborMapper));
+
+        configurer.customCodecs().register(new CompanyProtobufEncoder());
+    }
+
+    /**
+     * CBOR through the plain Jackson encoder: a single value, or an array for a stream. Spring's
+     * {@code Jackson2CborEncoder} rejects {@code encode} outright, which WebFlux calls for every
+     * response body.
+     */
+    static class CborEncoder extends AbstractJackson2Encoder {
+
+        CborEncoder(ObjectMapper cborMapper) {
+            super(cborMapper, MediaType.APPLICATION_CBOR);
+        }
+
+        @Override
+        public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+            return mimeType != null && super.canEncode(elementType, mimeType);
+        }
+    }
+}
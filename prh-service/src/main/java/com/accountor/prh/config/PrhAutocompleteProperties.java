@@ -0,0 +1,24 @@
+package com.accountor.prh.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for the company name autocomplete index, bound from {@code prh.autocomplete.*}.
+ *
+ * @param enabled        Whether companies seen by the service are indexed.
+ * @param maxCompanies   Upper bound on the number of companies indexed; further companies are ignored. The index
+ *                       is on the heap at roughly 250-300 bytes per company.
+ * @param mergeThreshold Number of recently added companies after which they are merged into the
+ *                       compact index in the background.
+ * @param defaultLimit   Number of suggestions returned when the request doesn't set a limit.
+ * @param maxLimit       Upper bound on the number of suggestions returned for one request.
+ */
+@ConfigurationProperties(prefix = "prh.autocomplete")
+public record PrhAutocompleteProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("200000") int maxCompanies,
+        @DefaultValue("1024") int mergeThreshold,
+        @DefaultValue("10") int defaultLimit,
+        @DefaultValue("50") int maxLimit) {
+}
@@ -0,0 +1,16 @@
+package com.accountor.prh.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for batch lookups, bound from {@code prh.batch.*}.
+ *
+ * @param maxSize     Maximum number of distinct business IDs accepted in one batch request.
+ * @param concurrency Maximum number of lookups of a batch that are in progress at the same time.
+ */
+@ConfigurationProperties(prefix = "prh.batch")
+public record PrhBatchProperties(
+        @DefaultValue("1000") int maxSize,
+        @DefaultValue("16") int concurrency) {
+}
@@ -0,0 +1,33 @@
+package com.accountor.prh.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for the in-process company cache, bound from {@code prh.cache.*}.
+ *
+ * @param maximumSize         Upper bound on the number of cached business IDs.
+ * @param ttl                 How long a successfully mapped company is served from the cache at most (hard TTL).
+ * @param negativeTtl         How long a "company not found" answer is remembered.
+ * @param refreshAfter        Age after which a cached company is still served but reloaded from PRH in the
+ *                            background (soft TTL). Must be shorter than {@code ttl} to have any effect.
+ * @param encodedResponses    Whether the JSON response body and ETag of each company are encoded once, the
+ *                            first time it is served from the cache, so later hits are written without
+ *                            running Jackson. Costs the size of the JSON per company served.
+ * @param gzipResponses       Whether a gzip-compressed copy of the body is kept as well, for clients that
+ *                            accept gzip. Only used with {@code encodedResponses}.
+ * @param sectionsMaximumSize Upper bound on the number of companies whose optional sections
+ *                            ({@code ?include=}) are kept, unmapped, for {@code ttl}.
+ */
+@ConfigurationProperties(prefix = "prh.cache")
+public record PrhCacheProperties(
+        @DefaultValue("10000") long maximumSize,
+        @DefaultValue("10m") Duration ttl,
+        @DefaultValue("1m") Duration negativeTtl,
+        @DefaultValue("5m") Duration refreshAfter,
+        @DefaultValue("false") boolean encodedResponses,
+        @DefaultValue("false") boolean gzipResponses,
+        @DefaultValue("1000") long sectionsMaximumSize) {
+}
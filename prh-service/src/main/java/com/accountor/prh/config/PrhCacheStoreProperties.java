@@ -0,0 +1,24 @@
+package com.accountor.prh.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings for the durable second-level store under the company cache, bound from
+ * {@code prh.cache-store.*}.
+ *
+ * @param enabled       Whether cached companies are also written to disk and read back after a restart.
+ * @param directory     Directory holding the store's log file.
+ * @param flushInterval How often pending writes are appended to the log.
+ * @param batchSize     Number of pending writes that triggers a flush before the interval ends.
+ */
+@ConfigurationProperties(prefix = "prh.cache-store")
+public record PrhCacheStoreProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("/data/prh-cache") Path directory,
+        @DefaultValue("1s") Duration flushInterval,
+        @DefaultValue("500") int batchSize) {
+}
@@ -0,0 +1,24 @@
+package com.accountor.prh.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+
+/**
+ * Compression of our responses, bound from {@code prh.compression.*}.
+ *
+ * @param enabled         Whether to compress responses for clients that send {@code Accept-Encoding}.
+ * @param brotli          Whether to offer {@code br} next to gzip and deflate; needs the Brotli native library.
+ * @param minResponseSize Responses with a smaller {@code Content-Length} are sent as they are.
+ * @param mimeTypes       Content types to compress; streamed types such as {@code text/event-stream} are best left out.
+ */
+@ConfigurationProperties(prefix = "prh.compression")
+public record PrhCompressionProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("true") boolean brotli,
+        @DefaultValue("1KB") DataSize minResponseSize,
+        @DefaultValue({"application/json", "application/problem+json", "application/x-ndjson", "text/csv"})
+        List<String> mimeTypes) {
+}
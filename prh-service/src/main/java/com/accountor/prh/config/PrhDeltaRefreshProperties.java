@@ -0,0 +1,29 @@
+package com.accountor.prh.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings for the scheduled incremental refresh of locally held companies, bound from
+ * {@code prh.delta-refresh.*}.
+ *
+ * @param enabled         Whether companies registered since the last run are fetched and the local copies updated.
+ * @param interval        Time between runs.
+ * @param watermarkFile   File holding the first registration date not yet fully refreshed, kept across restarts.
+ * @param initialLookback How far back the first run starts when no watermark has been saved yet.
+ * @param overlap         How far before the watermark each run starts again, to pick up registrations PRH
+ *                        publishes late. Rounded down to whole days.
+ * @param zone            Time zone of PRH's registration dates.
+ */
+@ConfigurationProperties(prefix = "prh.delta-refresh")
+public record PrhDeltaRefreshProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("1h") Duration interval,
+        @DefaultValue("/data/prh-delta/watermark.json") Path watermarkFile,
+        @DefaultValue("7d") Duration initialLookback,
+        @DefaultValue("1d") Duration overlap,
+        @DefaultValue("Europe/Helsinki") String zone) {
+}
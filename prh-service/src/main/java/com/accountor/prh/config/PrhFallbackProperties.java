@@ -0,0 +1,21 @@
+package com.accountor.prh.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for serving last-known-good company details while PRH is unavailable, bound from
+ * {@code prh.fallback.*}.
+ *
+ * @param enabled     Whether companies fetched from PRH are kept for the fallback.
+ * @param maximumSize Upper bound on the number of companies kept.
+ * @param maxAge      Age after which a company is too old to be served in place of PRH.
+ */
+@ConfigurationProperties(prefix = "prh.fallback")
+public record PrhFallbackProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("100000") long maximumSize,
+        @DefaultValue("24h") Duration maxAge) {
+}
@@ -0,0 +1,27 @@
+package com.accountor.prh.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for hedged PRH lookups, bound from {@code prh.hedging.*}.
+ *
+ * @param enabled    Whether a slow lookup may be sent to PRH a second time.
+ * @param delay      Fixed time to wait for the first response before hedging. When unset, the delay is
+ *                   learned as the {@code percentile} of recent PRH response times.
+ * @param percentile Percentile of recent response times used as the learned delay.
+ * @param minDelay   Lower bound on the learned delay.
+ * @param maxDelay   Upper bound on the learned delay, and the delay used until enough calls were seen.
+ * @param budget     Maximum hedges per lookup, e.g. {@code 0.05} allows one hedge per 20 lookups.
+ */
+@ConfigurationProperties(prefix = "prh.hedging")
+public record PrhHedgingProperties(
+        @DefaultValue("false") boolean enabled,
+        Duration delay,
+        @DefaultValue("0.95") double percentile,
+        @DefaultValue("50ms") Duration minDelay,
+        @DefaultValue("2s") Duration maxDelay,
+        @DefaultValue("0.05") double budget) {
+}
@@ -0,0 +1,43 @@
+package com.accountor.prh.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Connection pool and timeout settings for the PRH WebClient, bound from {@code prh.http.*}.
+ *
+ * @param maxConnections         Maximum number of pooled connections to PRH.
+ * @param pendingAcquireMaxCount Maximum number of requests queued while waiting for a pooled connection.
+ * @param pendingAcquireTimeout  How long a request may wait for a pooled connection before failing.
+ * @param maxIdleTime            Idle time after which a pooled connection is closed.
+ * @param maxLifeTime            Age after which a pooled connection is closed, regardless of use.
+ * @param evictInBackground      Interval of the background sweep that closes idle and expired connections.
+ * @param connectTimeout         TCP connect timeout.
+ * @param readTimeout            Maximum time without any inbound data on an open connection.
+ * @param responseTimeout        Maximum time to wait for the response after the request has been sent.
+ * @param http2                  Whether to offer HTTP/2 (negotiated via ALPN, falling back to HTTP/1.1).
+ * @param warmup                 Whether to initialise event loops, DNS resolver and TLS at startup.
+ * @param prewarmConnections     Number of connections to open to PRH once the application is ready.
+ * @param metricsEnabled         Whether to publish Reactor Netty pool and client metrics to Micrometer.
+ * @param compression            Whether to send {@code Accept-Encoding: gzip} and decompress PRH responses as
+ *                               they stream in.
+ */
+@ConfigurationProperties(prefix = "prh.http")
+public record PrhHttpProperties(
+        @DefaultValue("100") int maxConnections,
+        @DefaultValue("500") int pendingAcquireMaxCount,
+        @DefaultValue("2s") Duration pendingAcquireTimeout,
+        @DefaultValue("30s") Duration maxIdleTime,
+        @DefaultValue("5m") Duration maxLifeTime,
+        @DefaultValue("30s") Duration evictInBackground,
+        @DefaultValue("2s") Duration connectTimeout,
+        @DefaultValue("5s") Duration readTimeout,
+        @DefaultValue("5s") Duration responseTimeout,
+        @DefaultValue("false") boolean http2,
+        @DefaultValue("true") boolean warmup,
+        @DefaultValue("0") int prewarmConnections,
+        @DefaultValue("true") boolean metricsEnabled,
+        @DefaultValue("true") boolean compression) {
+}
@@ -0,0 +1,40 @@
+package com.accountor.prh.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings for bulk enrichment jobs, bound from {@code prh.jobs.*}.
+ *
+ * @param directory          Directory holding each job's upload, results and checkpoint.
+ * @param concurrency        Maximum number of lookups of the running job in progress at the same time.
+ * @param upstreamQueueLimit Number of PRH calls waiting for the rate limiter at or above which the job starts no
+ *                           further lookups, leaving the rate budget to interactive traffic.
+ * @param checkpointEvery    Number of results after which progress is saved, so a restart resumes from there.
+ * @param maxAttempts        Attempts per business ID while PRH is unavailable before its 503 result is kept.
+ * @param retryDelay         Wait between those attempts.
+ * @param maxUploadSize      Largest accepted upload.
+ * @param retention          Time after which finished jobs and their results are deleted.
+ * @param maxActiveJobs      Number of jobs queued or running at which further uploads are refused with 429.
+ * @param maxStoredJobs      Number of jobs kept, finished ones included, at which further uploads are refused with 507.
+ * @param maxTotalSize       Disk space all jobs' uploads and results may take; uploads that would exceed it are
+ *                           refused with 507.
+ */
+@ConfigurationProperties(prefix = "prh.jobs")
+public record PrhJobProperties(
+        @DefaultValue("/data/prh-jobs") Path directory,
+        @DefaultValue("4") int concurrency,
+        @DefaultValue("8") int upstreamQueueLimit,
+        @DefaultValue("500") int checkpointEvery,
+        @DefaultValue("5") int maxAttempts,
+        @DefaultValue("10s") Duration retryDelay,
+        @DefaultValue("64MB") DataSize maxUploadSize,
+        @DefaultValue("7d") Duration retention,
+        @DefaultValue("4") int maxActiveJobs,
+        @DefaultValue("100") int maxStoredJobs,
+        @DefaultValue("1GB") DataSize maxTotalSize) {
+}
@@ -0,0 +1,23 @@
+package com.accountor.prh.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings for the local mirror of the PRH bulk company dump, bound from {@code prh.mirror.*}.
+ *
+ * @param enabled    Whether lookups consult the local mirror before calling PRH.
+ * @param directory  Directory holding the mirror's data and index files.
+ * @param importFile Optional bulk dump (JSON, .gz or .zip) imported at startup when it is newer than the mirror.
+ * @param maxAge     Age of the mirror after which its entries are treated as stale and PRH is called instead.
+ */
+@ConfigurationProperties(prefix = "prh.mirror")
+public record PrhMirrorProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("/data/prh-mirror") Path directory,
+        Path importFile,
+        @DefaultValue("30d") Duration maxAge) {
+}
@@ -0,0 +1,35 @@
+package com.accountor.prh.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for the adaptive PRH rate limiter, bound from {@code prh.rate-limit.*}.
+ *
+ * @param initialRate       Calls per second allowed at startup.
+ * @param minRate           Lowest rate the limiter backs off to.
+ * @param maxRate           Highest rate the limiter probes up to.
+ * @param additiveIncrease  Calls per second added for every second of healthy calls at the current rate.
+ * @param decreaseFactor    Factor the rate is multiplied by when PRH throttles, fails or slows down.
+ * @param latencyThreshold  Call duration above which PRH is treated as overloaded.
+ * @param maxQueueSize      Maximum number of calls waiting for their turn; further calls are rejected.
+ * @param maxWait           Longest a call may wait for its turn. Calls that could not start in time are
+ *                          rejected on arrival instead of timing out in the queue.
+ * @param defaultRetryAfter Pause after a 429 that carries no {@code Retry-After} header.
+ * @param maxRetryAfter     Upper bound on the pause requested by a {@code Retry-After} header.
+ */
+@ConfigurationProperties(prefix = "prh.rate-limit")
+public record PrhRateLimitProperties(
+        @DefaultValue("20") double initialRate,
+        @DefaultValue("1") double minRate,
+        @DefaultValue("100") double maxRate,
+        @DefaultValue("1") double additiveIncrease,
+        @DefaultValue("0.5") double decreaseFactor,
+        @DefaultValue("2s") Duration latencyThreshold,
+        @DefaultValue("200") int maxQueueSize,
+        @DefaultValue("2s") Duration maxWait,
+        @DefaultValue("1s") Duration defaultRetryAfter,
+        @DefaultValue("60s") Duration maxRetryAfter) {
+}
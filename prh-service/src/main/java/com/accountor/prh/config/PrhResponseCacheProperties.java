@@ -0,0 +1,22 @@
+package com.accountor.prh.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * HTTP caching headers for company responses, bound from {@code prh.response-cache.*}.
+ *
+ * @param maxAge               {@code Cache-Control: max-age}; zero sends {@code no-cache}, so clients always revalidate.
+ * @param publicCache          Whether shared caches such as nginx may store responses ({@code public}) or only browsers ({@code private}).
+ * @param staleWhileRevalidate {@code Cache-Control: stale-while-revalidate}; zero omits the directive.
+ * @param zone                 Time zone of PRH's {@code lastModified} timestamps, used for {@code Last-Modified}.
+ */
+@ConfigurationProperties(prefix = "prh.response-cache")
+public record PrhResponseCacheProperties(
+        @DefaultValue("5m") Duration maxAge,
+        @DefaultValue("true") boolean publicCache,
+        @DefaultValue("0s") Duration staleWhileRevalidate,
+        @DefaultValue("Europe/Helsinki") String zone) {
+}
@@ -0,0 +1,18 @@
+package com.accountor.prh.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for company searches, bound from {@code prh.search.*}.
+ *
+ * @param defaultLimit  Number of companies streamed when the request doesn't set a limit.
+ * @param maxLimit      Upper bound on the number of companies streamed for one search.
+ * @param prefetchPages Number of result pages requested from PRH ahead of the page being streamed.
+ */
+@ConfigurationProperties(prefix = "prh.search")
+public record PrhSearchProperties(
+        @DefaultValue("100") int defaultLimit,
+        @DefaultValue("1000") int maxLimit,
+        @DefaultValue("1") int prefetchPages) {
+}
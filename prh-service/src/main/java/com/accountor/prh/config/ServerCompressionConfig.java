@@ -0,0 +1,134 @@
+package com.accountor.prh.config;
+
+import com.accountor.prh.metrics.PrhMetrics;
+import io.netty.handler.codec.compression.Brotli;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.web.embedded.netty.NettyServerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.server.WebFilter;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiPredicate;
+import java.util.stream.Collectors;
+
+/**
+ * Compression and byte counting for the Netty server. Compression is decided per response by
+ * {@link #compressible}; Netty then picks br, gzip or deflate from the client's
+ * {@code Accept-Encoding} and compresses the body chunk by chunk as it is written.
+ */
+@Configuration
+public class ServerCompressionConfig {
+
+    private static final String WIRE_BYTES_HANDLER = "prhWireBytes";
+
+    private final Logger log = LoggerFactory.getLogger(ServerCompressionConfig.class);
+
+    /**
+     * Counts the bytes written to each connection, after compression, and with
+     * {@code prh.compression.enabled} compresses the responses that {@link #compressible} accepts.
+     */
+    @Bean
+    public NettyServerCustomizer prhServerCompression(PrhCompressionProperties properties, PrhMetrics metrics) {
+        if (properties.enabled() && properties.brotli() && !Brotli.isAvailable()) {
+            log.warn("Brotli is not available on this platform, responses are compressed with gzip only. Cause: {}",
+                    Brotli.cause() == null ? "unknown" : Brotli.cause().getMessage());
+        }
+        BiPredicate<HttpServerRequest, HttpServerResponse> compressible = compressible(properties);
+        return httpServer -> {
+            httpServer = httpServer.doOnChannelInit((observer, channel, remoteAddress) ->
+                    channel.pipeline().addFirst(WIRE_BYTES_HANDLER, metrics.serverWireBytes()));
+            return properties.enabled() ? httpServer.compress(compressible) : httpServer;
+        };
+    }
+
+    @Bean
+    public WebFilter prhServerBodyBytes(PrhMetrics metrics) {
+        return metrics.serverBodyBytes();
+    }
+
+    /**
+     * Compresses a response unless it already carries a {@code Content-Encoding}, such as the
+     * pre-gzipped company responses, its {@code Content-Length} is below
+     * {@code prh.compression.min-response-size}, or its content type is not listed in
+     * {@code prh.compression.mime-types}. Streamed responses without a {@code Content-Length} are
+     * compressed. A strong {@code ETag} of a compressed response is made weak, as the bytes differ
+     * from the identity representation.
+     * <p>
+     * Netty only reads the request's {@code Accept-Encoding} once this predicate accepted the
+     * response, so without {@code prh.compression.brotli} {@code br} is taken out of it here.
+     */
+    static BiPredicate<HttpServerRequest, HttpServerResponse> compressible(PrhCompressionProperties properties) {
+        long minResponseSize = properties.minResponseSize().toBytes();
+        List<MimeType> mimeTypes = properties.mimeTypes().stream()
+                .map(MimeTypeUtils::parseMimeType)
+                .toList();
+        return (request, response) -> {
+            HttpHeaders headers = response.responseHeaders();
+            if (headers.contains(HttpHeaderNames.CONTENT_ENCODING)) {
+                return false;
+            }
+            String contentLength = headers.get(HttpHeaderNames.CONTENT_LENGTH);
+            if (contentLength != null && Long.parseLong(contentLength) < minResponseSize) {
+                return false;
+            }
+            if (!isListed(headers.get(HttpHeaderNames.CONTENT_TYPE), mimeTypes)) {
+                return false;
+            }
+
+            String acceptEncoding = request.requestHeaders().get(HttpHeaderNames.ACCEPT_ENCODING);
+            if (acceptEncoding == null) {
+                return false;
+            }
+            if (!properties.brotli()) {
+                request.requestHeaders().set(HttpHeaderNames.ACCEPT_ENCODING, withoutBrotli(acceptEncoding));
+            }
+            String etag = headers.get(HttpHeaderNames.ETAG);
+            if (etag != null && !etag.startsWith("W/")) {
+                headers.set(HttpHeaderNames.ETAG, "W/" + etag);
+            }
+            return true;
+        };
+    }
+
+    private static boolean isListed(String contentType, List<MimeType> mimeTypes) {
+        if (contentType == null) {
+            return false;
+        }
+        try {
+            MimeType mimeType = MimeTypeUtils.parseMimeType(contentType);
+            return mimeTypes.stream().anyMatch(listed -> listed.includes(mimeType));
+        } catch (InvalidMimeTypeException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Drops {@code br} from an {@code Accept-Encoding} header, and refuses it explicitly if the
+     * client accepts any encoding with {@code *}.
+     */
+    static String withoutBrotli(String acceptEncoding) {
+        List<String> codings = Arrays.stream(acceptEncoding.split(","))
+                .map(String::trim)
+                .filter(coding -> !coding.isEmpty() && !codingName(coding).equalsIgnoreCase("br"))
+                .collect(Collectors.toList());
+        if (codings.stream().anyMatch(coding -> codingName(coding).equals("*"))) {
+            codings.add("br;q=0");
+        }
+        return String.join(", ", codings);
+    }
+
+    private static String codingName(String coding) {
+        int parameters = coding.indexOf(';');
+        return (parameters < 0 ? coding : coding.substring(0, parameters)).trim();
+    }
+}
@@ -1,23 +1,140 @@
 package com.accountor.prh.config;
 
+import com.accountor.prh.metrics.PrhMetrics;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.ConnectionObserver;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 public class WebClientConfig {
 
+    private static final String READ_TIMEOUT_HANDLER = "prhReadTimeout";
+    private static final String WIRE_BYTES_HANDLER = "prhWireBytes";
+
+    private final Logger log = LoggerFactory.getLogger(WebClientConfig.class);
+
     @Value("${prh.api.base-url}")
     private String prhApiBaseUrl;
 
+    private final PrhHttpProperties properties;
+    private final PrhMetrics metrics;
+
+    public WebClientConfig(PrhHttpProperties properties, PrhMetrics metrics) {
+        this.properties = properties;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Connection pool for PRH. With {@code prh.http.metrics-enabled} the pool publishes its
+     * {@code reactor.netty.connection.provider.*} gauges (active, idle, pending) to Micrometer.
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider prhConnectionProvider() {
+        return ConnectionProvider.builder("prh")
+                .maxConnections(properties.maxConnections())
+                .pendingAcquireMaxCount(properties.pendingAcquireMaxCount())
+                .pendingAcquireTimeout(properties.pendingAcquireTimeout())
+                .maxIdleTime(properties.maxIdleTime())
+                .maxLifeTime(properties.maxLifeTime())
+                .evictInBackground(properties.evictInBackground())
+                .metrics(properties.metricsEnabled())
+                .build();
+    }
+
+    /**
+     * Reactor Netty client for PRH. With {@code prh.http.compression} it asks for gzip and inflates
+     * responses in the pipeline as their chunks arrive, so decoders downstream see plain JSON without
+     * the body ever being buffered whole. Bytes read from each connection are counted before they
+     * are inflated.
+     * <p>
+     * The read timeout only applies while an exchange is in progress. It is removed once the
+     * response was read, and again whenever the connection goes back to the pool, so connections
+     * released after a failed or cancelled exchange, such as a losing hedge, don't time out idle.
+     */
     @Bean
-    public WebClient prhWebClient() {
+    public HttpClient prhHttpClient(ConnectionProvider prhConnectionProvider) {
+        HttpClient httpClient = HttpClient.create(prhConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) properties.connectTimeout().toMillis())
+                .compress(properties.compression())
+                .doOnChannelInit((observer, channel, remoteAddress) ->
+                        channel.pipeline().addFirst(WIRE_BYTES_HANDLER, metrics.upstreamWireBytes()))
+                .responseTimeout(properties.responseTimeout())
+                .doOnRequest((request, connection) -> connection.addHandlerLast(READ_TIMEOUT_HANDLER,
+                        new ReadTimeoutHandler(properties.readTimeout().toMillis(), TimeUnit.MILLISECONDS)))
+                .doAfterResponseSuccess((response, connection) -> connection.removeHandler(READ_TIMEOUT_HANDLER))
+                .observe((connection, state) -> {
+                    if (state == ConnectionObserver.State.RELEASED) {
+                        connection.removeHandler(READ_TIMEOUT_HANDLER);
+                    }
+                })
+                .metrics(properties.metricsEnabled(), WebClientConfig::stripQuery);
+
+        if (properties.http2()) {
+            httpClient = prhApiBaseUrl.startsWith("https")
+                    ? httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11).secure()
+                    : httpClient.protocol(HttpProtocol.H2C, HttpProtocol.HTTP11);
+        }
+
+        if (properties.warmup()) {
+            httpClient.warmup().block();
+        }
+        return httpClient;
+    }
+
+    @Bean
+    public WebClient prhWebClient(HttpClient prhHttpClient, PrhMetrics prhMetrics) {
         return WebClient.builder()
                 .baseUrl(prhApiBaseUrl)
+                .clientConnector(new ReactorClientHttpConnector(prhHttpClient))
+                .filter(prhMetrics.upstreamTimer())
+                .filter(prhMetrics.upstreamBodyBytes())
                 .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
                 .build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Opens {@code prh.http.prewarm-connections} pooled connections to PRH once the application
+     * is ready, so the first user requests don't pay for TCP and TLS handshakes.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void prewarmConnections() {
+        int connections = Math.min(properties.prewarmConnections(), properties.maxConnections());
+        if (connections <= 0) {
+            return;
+        }
+
+        Flux.range(0, connections)
+                .flatMap(i -> prhHttpClient(prhConnectionProvider()).head()
+                        .uri(prhApiBaseUrl)
+                        .response()
+                        .onErrorResume(ex -> {
+                            log.warn("Could not pre-warm connection to PRH API: {}", ex.getMessage());
+                            return Mono.empty();
+                        }), connections)
+                .count()
+                .subscribe(opened -> log.info("Pre-warmed {} connections to PRH API", opened));
+    }
+
+    private static String stripQuery(String uri) {
+        int queryStart = uri.indexOf('?');
+        return queryStart < 0 ? uri : uri.substring(0, queryStart);
+    }
+}
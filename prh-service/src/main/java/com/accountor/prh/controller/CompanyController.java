@@ -1,41 +1,94 @@
 package com.accountor.prh.controller;
 
+import com.accountor.prh.cache.EncodedCompany;
+import com.accountor.prh.config.PrhResponseCacheProperties;
 import com.accountor.prh.domain.CompanyDetailsDto;
+import com.accountor.prh.domain.CompanyLookupResultDto;
+import com.accountor.prh.domain.CompanyProjection;
+import com.accountor.prh.domain.CompanySearchCriteria;
+import com.accountor.prh.domain.CompanySectionsDto;
+import com.accountor.prh.domain.CompanySuggestionDto;
+import com.accountor.prh.domain.LastKnownCompanyDetails;
+import com.accountor.prh.exception.PrhUnavailableException;
 import com.accountor.prh.service.PrhService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.NotAcceptableStatusException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+
 
 @RestController
 @RequestMapping("/api/v1/prh/companies")
 @Tag(name = "Company", description = "Endpoints for retrieving company data from the PRH API.")
 public class CompanyController {
+
+    /**
+     * Set to {@code true} on responses served from last-known-good data while PRH is unavailable.
+     */
+    public static final String STALE_HEADER = "X-Prh-Stale";
+
     private final PrhService prhService;
+    private final CompanyResponseEncoder responseEncoder;
+    private final CacheControl cacheControl;
+    private final ZoneId lastModifiedZone;
 
-    public CompanyController(PrhService prhService) {
+    public CompanyController(PrhService prhService, CompanyResponseEncoder responseEncoder,
+                             PrhResponseCacheProperties responseCacheProperties) {
         this.prhService = prhService;
+        this.responseEncoder = responseEncoder;
+        this.cacheControl = cacheControl(responseCacheProperties);
+        this.lastModifiedZone = ZoneId.of(responseCacheProperties.zone());
     }
 
 
     @Operation(
             summary = "Retrieve company details by business ID",
-            description = "Fetches comprehensive details for a company using its Finnish business ID (y-tunnus).",
+            description = "Fetches comprehensive details for a company using its Finnish business ID (y-tunnus). " +
+                    "Responses carry a strong ETag, Last-Modified and Cache-Control; send the ETag back in " +
+                    "If-None-Match to get a bodiless 304 when the details haven't changed. While PRH is " +
+                    "unavailable, the last details fetched from PRH are returned with X-Prh-Stale: true and " +
+                    "their age in seconds in the Age header. fields= limits the response to the listed fields, " +
+                    "and include= adds the optional sections companyForms, companySituations, registeredEntries " +
+                    "and descriptions (the main business line in every language). Besides JSON, the default, " +
+                    "Accept selects CBOR (application/cbor), Smile (application/x-jackson-smile) or Protobuf " +
+                    "(application/x-protobuf, full details only; schema in proto/company.proto).",
             tags = {"Company"}
     )
     @ApiResponse(
             responseCode = "200",
             description = "Company details successfully retrieved.",
-            content = @Content(schema = @Schema(implementation = CompanyDetailsDto.class))
+            content = {
+                    @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = CompanyDetailsDto.class)),
+                    @Content(mediaType = MediaType.APPLICATION_CBOR_VALUE),
+                    @Content(mediaType = CompanyMediaTypes.APPLICATION_SMILE_VALUE),
+                    @Content(mediaType = CompanyMediaTypes.APPLICATION_PROTOBUF_VALUE)
+            }
+    )
+    @ApiResponse(
+            responseCode = "304",
+            description = "The company details still match the ETag given in If-None-Match."
     )
     @ApiResponse(
             responseCode = "400",
-            description = "Invalid business ID format.",
+            description = "Invalid business ID format, or an unknown field or section.",
             content = @Content(schema = @Schema(implementation = String.class))
     )
     @ApiResponse(
@@ -48,9 +101,272 @@ public class CompanyController {
             description = "An internal server error occurred.",
             content = @Content(schema = @Schema(implementation = String.class))
     )
-    @GetMapping("/{businessId}")
+    @ApiResponse(
+            responseCode = "503",
+            description = "PRH is unavailable and no earlier details of the company are known.",
+            content = @Content(schema = @Schema(implementation = String.class))
+    )
+    @GetMapping(value = "/{businessId}",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+                    CompanyMediaTypes.APPLICATION_SMILE_VALUE, CompanyMediaTypes.APPLICATION_PROTOBUF_VALUE})
+    public Mono<ResponseEntity<?>> getCompanyDetails(
+            @PathVariable String businessId,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String include,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        MediaType binaryType = CompanyMediaTypes.preferredBinaryType(accept);
+        return Mono.fromSupplier(() -> CompanyProjection.of(fields, include))
+                .flatMap(projection -> projection.isDefault()
+                        ? getFullCompanyDetails(businessId, binaryType, acceptEncoding)
+                        : getProjectedCompanyDetails(businessId, projection, binaryType));
+    }
+
+    @Operation(
+            summary = "Retrieve company details for a batch of business IDs",
+            description = "Looks up every distinct business ID in the request body and streams one result per ID " +
+                    "as newline-delimited JSON as soon as each lookup completes. Failed lookups are reported " +
+                    "in-line with their status and message instead of failing the whole batch. Accept selects " +
+                    "a Smile stream (application/stream+x-jackson-smile) or length-delimited Protobuf " +
+                    "(application/x-protobuf) instead.",
+            tags = {"Company"}
+    )
+    @ApiResponse(
+            responseCode = "200",
+            description = "Stream of per-ID lookup results.",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                    schema = @Schema(implementation = CompanyLookupResultDto.class))
+    )
+    @ApiResponse(
+            responseCode = "400",
+            description = "The batch is empty or exceeds the maximum batch size.",
+            content = @Content(schema = @Schema(implementation = String.class))
+    )
+    @PostMapping(value = "/batch",
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, CompanyMediaTypes.APPLICATION_STREAM_SMILE_VALUE,
+                    CompanyMediaTypes.APPLICATION_PROTOBUF_VALUE})
     @ResponseStatus(HttpStatus.OK)
-    public Mono<CompanyDetailsDto> getCompanyDetails(@PathVariable String businessId) {
-        return prhService.getCompanyDetails(businessId);
+    public Flux<CompanyLookupResultDto> getCompanyDetailsBatch(@RequestBody List<String> businessIds) {
+        return prhService.getCompanyDetailsBatch(businessIds);
+    }
+
+    @Operation(
+            summary = "Search companies by name and location",
+            description = "Searches PRH for companies matching every given filter and streams the details of each " +
+                    "match as newline-delimited JSON, or as server-sent events, while PRH's result pages arrive. " +
+                    "Smile (application/stream+x-jackson-smile) and length-delimited Protobuf " +
+                    "(application/x-protobuf) streams are also available. At least one filter must be given.",
+            tags = {"Company"}
+    )
+    @ApiResponse(
+            responseCode = "200",
+            description = "Stream of matching companies, possibly empty.",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                    schema = @Schema(implementation = CompanyDetailsDto.class))
+    )
+    @ApiResponse(
+            responseCode = "400",
+            description = "No filter was given or the limit is out of range.",
+            content = @Content(schema = @Schema(implementation = String.class))
+    )
+    @GetMapping(value = "/search",
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE,
+                    CompanyMediaTypes.APPLICATION_STREAM_SMILE_VALUE, CompanyMediaTypes.APPLICATION_PROTOBUF_VALUE})
+    public Flux<CompanyDetailsDto> searchCompanies(@RequestParam(required = false) String name,
+                                                   @RequestParam(required = false) String location,
+                                                   @RequestParam(required = false) String postCode,
+                                                   @RequestParam(required = false) Integer limit) {
+        return prhService.searchCompanies(new CompanySearchCriteria(name, location, postCode), limit);
+    }
+
+    @Operation(
+            summary = "Suggest companies for typeahead",
+            description = "Returns companies whose name has a word starting with the query, or whose business ID " +
+                    "starts with it, ignoring case and accents. Suggestions come from a local index of the " +
+                    "companies the service has already seen and never call PRH.",
+            tags = {"Company"}
+    )
+    @ApiResponse(
+            responseCode = "200",
+            description = "Matching companies, possibly none.",
+            content = @Content(array = @ArraySchema(schema = @Schema(implementation = CompanySuggestionDto.class)))
+    )
+    @ApiResponse(
+            responseCode = "400",
+            description = "The query is blank or the limit is out of range.",
+            content = @Content(schema = @Schema(implementation = String.class))
+    )
+    @GetMapping("/suggest")
+    public Mono<List<CompanySuggestionDto>> suggestCompanies(@RequestParam("q") String query,
+                                                             @RequestParam(required = false) Integer limit) {
+        return prhService.suggestCompanies(query, limit);
+    }
+
+    /**
+     * Answers with the full details. The pre-encoded body of a cached company is JSON, so it is only
+     * used when JSON was negotiated.
+     */
+    private Mono<ResponseEntity<?>> getFullCompanyDetails(String businessId, MediaType binaryType, String acceptEncoding) {
+        return prhService.getCompanyDetails(businessId)
+                .<ResponseEntity<?>>map(details -> {
+                    EncodedCompany encoded = binaryType == null ? responseEncoder.cached(details) : null;
+                    return encoded != null
+                            ? encodedResponse(details, encoded, acceptEncoding)
+                            : cacheableResponse(details, binaryType);
+                })
+                .onErrorResume(PrhUnavailableException.class, ex -> prhService.getLastKnownCompanyDetails(businessId)
+                        .map(lastKnown -> staleResponse(lastKnown, binaryType))
+                        .switchIfEmpty(Mono.error(ex)));
+    }
+
+    /**
+     * Answers with only the projected fields and the included sections. Sections are fetched first,
+     * since fetching them also caches the details. Last-known-good details served while PRH is
+     * unavailable carry the projected fields, and included sections as null. The Protobuf schema
+     * has no projections, so they are not acceptable as Protobuf.
+     */
+    private Mono<ResponseEntity<?>> getProjectedCompanyDetails(String businessId, CompanyProjection projection,
+                                                               MediaType binaryType) {
+        if (CompanyMediaTypes.APPLICATION_PROTOBUF.equals(binaryType)) {
+            return Mono.error(new NotAcceptableStatusException(List.of(MediaType.APPLICATION_JSON,
+                    MediaType.APPLICATION_CBOR, CompanyMediaTypes.APPLICATION_SMILE)));
+        }
+        return prhService.getCompanySections(businessId, projection.sections())
+                .flatMap(sections -> prhService.getCompanyDetails(businessId)
+                        .<ResponseEntity<?>>map(details -> withValidators(ResponseEntity.ok().cacheControl(cacheControl),
+                                details, projection, binaryType, projection.apply(details, sections))))
+                .onErrorResume(PrhUnavailableException.class, ex -> prhService.getLastKnownCompanyDetails(businessId)
+                        .<ResponseEntity<?>>map(lastKnown -> withValidators(staleHeaders(lastKnown), lastKnown.details(),
+                                projection, binaryType, projection.apply(lastKnown.details(), CompanySectionsDto.NONE)))
+                        .switchIfEmpty(Mono.error(ex)));
+    }
+
+    /**
+     * Wraps the details with validators and caching headers. For a GET whose {@code If-None-Match}
+     * or {@code If-Modified-Since} matches, WebFlux answers 304 from these headers and never
+     * serialises the body.
+     */
+    private ResponseEntity<CompanyDetailsDto> cacheableResponse(CompanyDetailsDto details, MediaType binaryType) {
+        return withValidators(ResponseEntity.ok().cacheControl(cacheControl), details, binaryType);
+    }
+
+    /**
+     * Writes the body pre-encoded when the company was cached (see {@link CompanyResponseEncoder})
+     * as a buffer wrapping the shared bytes, with the same headers as {@link #cacheableResponse}.
+     * The gzip copy is sent to clients that accept gzip.
+     */
+    private ResponseEntity<DataBuffer> encodedResponse(CompanyDetailsDto details, EncodedCompany encoded,
+                                                       String acceptEncoding) {
+        boolean gzip = encoded.gzip() != null && acceptsGzip(acceptEncoding);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .cacheControl(cacheControl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(gzip ? encoded.gzipETag() : encoded.eTag());
+        if (details.lastModified() != null) {
+            response.lastModified(details.lastModified().atZone(lastModifiedZone));
+        }
+        if (encoded.gzip() != null) {
+            response.varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        } else {
+            response.varyBy(HttpHeaders.ACCEPT);
+        }
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(DefaultDataBufferFactory.sharedInstance.wrap(gzip ? encoded.gzip() : encoded.json()));
+    }
+
+    /**
+     * Last-known-good details served while PRH is unavailable. They keep their validators, so
+     * clients can still revalidate, but must not be stored as fresh by shared caches.
+     */
+    private ResponseEntity<CompanyDetailsDto> staleResponse(LastKnownCompanyDetails lastKnown, MediaType binaryType) {
+        return withValidators(staleHeaders(lastKnown), lastKnown.details(), binaryType);
+    }
+
+    private static ResponseEntity.BodyBuilder staleHeaders(LastKnownCompanyDetails lastKnown) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .header(HttpHeaders.AGE, String.valueOf(lastKnown.ageSeconds(Instant.now())))
+                .header(STALE_HEADER, "true");
+    }
+
+    private ResponseEntity<CompanyDetailsDto> withValidators(ResponseEntity.BodyBuilder response, CompanyDetailsDto details,
+                                                             MediaType binaryType) {
+        representation(response, CompanyETags.of(details), binaryType);
+        if (details.lastModified() != null) {
+            response.lastModified(details.lastModified().atZone(lastModifiedZone));
+        }
+        return response.body(details);
+    }
+
+    /**
+     * Like {@link #withValidators(ResponseEntity.BodyBuilder, CompanyDetailsDto, MediaType)} for a
+     * projected body, whose ETag carries the projection's variant because it is a different representation.
+     */
+    private <T> ResponseEntity<T> withValidators(ResponseEntity.BodyBuilder response, CompanyDetailsDto details,
+                                                 CompanyProjection projection, MediaType binaryType, T body) {
+        representation(response, CompanyETags.of(details, projection.variant()), binaryType);
+        if (details.lastModified() != null) {
+            response.lastModified(details.lastModified().atZone(lastModifiedZone));
+        }
+        return response.body(body);
+    }
+
+    /**
+     * Sets the ETag of the negotiated representation. A binary one gets its own ETag, and its
+     * Content-Type is set so that WebFlux writes exactly the representation the ETag names.
+     */
+    private static void representation(ResponseEntity.BodyBuilder response, String eTag, MediaType binaryType) {
+        response.varyBy(HttpHeaders.ACCEPT);
+        if (binaryType == null) {
+            response.eTag(eTag);
+        } else {
+            response.contentType(binaryType).eTag(CompanyMediaTypes.eTag(eTag, binaryType));
+        }
+    }
+
+    /**
+     * @return Whether {@code Accept-Encoding} accepts gzip: listed without {@code q=0}, or not
+     * listed but covered by an accepted {@code *}.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            boolean accepted = true;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=") && parameter.substring(2).trim().matches("0(\\.0*)?")) {
+                    accepted = false;
+                }
+            }
+            if (name.equalsIgnoreCase("gzip")) {
+                return accepted;
+            }
+            if (name.equals("*")) {
+                wildcard = accepted;
+            }
+        }
+        return Boolean.TRUE.equals(wildcard);
+    }
+
+    private static CacheControl cacheControl(PrhResponseCacheProperties properties) {
+        if (properties.maxAge().isZero()) {
+            return CacheControl.noCache();
+        }
+        CacheControl cacheControl = CacheControl.maxAge(properties.maxAge());
+        cacheControl = properties.publicCache() ? cacheControl.cachePublic() : cacheControl.cachePrivate();
+        if (!properties.staleWhileRevalidate().isZero()) {
+            cacheControl = cacheControl.staleWhileRevalidate(properties.staleWhileRevalidate());
+        }
+        return cacheControl;
     }
 }
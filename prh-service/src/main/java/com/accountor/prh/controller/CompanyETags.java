@@ -0,0 +1,85 @@
+package com.accountor.prh.controller;
+
+import com.accountor.prh.domain.CompanyDetailsDto;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Strong entity tags for {@link CompanyDetailsDto} responses, computed from the DTO's fields
+ * rather than its serialised JSON. The tag is a 64-bit FNV-1a hash over every field, so it changes
+ * whenever any value in the representation does. {@link #VERSION} is part of the hash and must be
+ * bumped whenever the JSON representation changes for the same field values.
+ */
+final class CompanyETags {
+
+    private static final int VERSION = 1;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final char FIELD_SEPARATOR = '\u001f';
+    private static final char NULL_MARKER = '\u0000';
+
+    private CompanyETags() {}
+
+    /**
+     * @return The quoted strong ETag value, e.g. {@code "9c3e2a1b0f4d5e6a"}.
+     */
+    static String of(CompanyDetailsDto details) {
+        long hash = FNV_OFFSET_BASIS;
+        hash = mix(hash, VERSION);
+        hash = hash(hash, details.businessId());
+        hash = hash(hash, details.name());
+        hash = hash(hash, details.registrationDate());
+        hash = hash(hash, details.websiteUrl());
+        hash = hash(hash, details.street());
+        hash = hash(hash, details.city());
+        hash = hash(hash, details.postalCode());
+        hash = hash(hash, details.mainBusinessLineCode());
+        hash = hash(hash, details.mainBusinessLineDescription());
+        hash = hash(hash, details.lastModified());
+
+        String hex = Long.toHexString(hash);
+        return "\"" + "0".repeat(16 - hex.length()) + hex + "\"";
+    }
+
+    /**
+     * @return The ETag of a projection of the details, e.g. {@code "9c3e2a1b0f4d5e6a-p3ff"}.
+     */
+    static String of(CompanyDetailsDto details, String variant) {
+        String eTag = of(details);
+        return eTag.substring(0, eTag.length() - 1) + "-p" + variant + '"';
+    }
+
+    private static long hash(long hash, String value) {
+        if (value == null) {
+            return mix(hash, NULL_MARKER);
+        }
+        for (int i = 0, length = value.length(); i < length; i++) {
+            hash = mix(hash, value.charAt(i));
+        }
+        return mix(hash, FIELD_SEPARATOR);
+    }
+
+    private static long hash(long hash, LocalDate value) {
+        return value == null ? mix(hash, NULL_MARKER) : mix(mix(hash, value.toEpochDay()), FIELD_SEPARATOR);
+    }
+
+    private static long hash(long hash, LocalDateTime value) {
+        if (value == null) {
+            return mix(hash, NULL_MARKER);
+        }
+        return mix(mix(mix(hash, value.toLocalDate().toEpochDay()), value.toLocalTime().toNanoOfDay()), FIELD_SEPARATOR);
+    }
+
+    private static long mix(long hash, long value) {
+        for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+            hash = (hash ^ ((value >>> shift) & 0xff)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, char value) {
+        hash = (hash ^ (value & 0xff)) * FNV_PRIME;
+        return (hash ^ (value >>> 8)) * FNV_PRIME;
+    }
+}
@@ -0,0 +1,73 @@
+package com.accountor.prh.controller;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary representations of company responses for service-to-service callers, negotiated with
+ * {@code Accept}: CBOR, Smile and Protobuf (see {@code proto/company.proto}). JSON stays the
+ * default; streams are offered as Smile and delimited Protobuf, as Spring cannot stream CBOR.
+ */
+public final class CompanyMediaTypes {
+
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+    public static final String APPLICATION_STREAM_SMILE_VALUE = "application/stream+x-jackson-smile";
+    public static final String APPLICATION_PROTOBUF_VALUE = "application/x-protobuf";
+
+    public static final MediaType APPLICATION_SMILE = MediaType.parseMediaType(APPLICATION_SMILE_VALUE);
+    public static final MediaType APPLICATION_PROTOBUF = MediaType.parseMediaType(APPLICATION_PROTOBUF_VALUE);
+
+    private static final List<MediaType> BINARY = List.of(MediaType.APPLICATION_CBOR, APPLICATION_SMILE, APPLICATION_PROTOBUF);
+
+    private CompanyMediaTypes() {}
+
+    /**
+     * Picks the representation for a single company from {@code Accept}: the binary type ranked
+     * first by quality and specificity, unless a type that JSON satisfies, wildcards included,
+     * ranks before it.
+     *
+     * @return The binary media type to answer with, or null for JSON, which is also the answer
+     * without or with an unparsable {@code Accept}.
+     */
+    static MediaType preferredBinaryType(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return null;
+        }
+        List<MediaType> acceptable;
+        try {
+            acceptable = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException ex) {
+            return null;
+        }
+        MimeTypeUtils.sortBySpecificity(acceptable);
+        for (MediaType type : acceptable) {
+            if (type.getQualityValue() == 0) {
+                continue;
+            }
+            if (type.includes(MediaType.APPLICATION_JSON)) {
+                return null;
+            }
+            for (MediaType binary : BINARY) {
+                if (binary.equalsTypeAndSubtype(type)) {
+                    return binary;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The ETag of the {@code mediaType} representation of a company whose JSON
+     * representation has {@code eTag}, e.g. {@code "9c3e2a1b0f4d5e6a-cbor"}.
+     */
+    static String eTag(String eTag, MediaType mediaType) {
+        String suffix = mediaType.equals(MediaType.APPLICATION_CBOR) ? "cbor"
+                : mediaType.equals(APPLICATION_SMILE) ? "smile"
+                : "pb";
+        return eTag.substring(0, eTag.length() - 1) + '-' + suffix + '"';
+    }
+}
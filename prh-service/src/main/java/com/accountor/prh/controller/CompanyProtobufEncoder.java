@@ -0,0 +1,168 @@
+package com.accountor.prh.controller;
+
+import com.accountor.prh.domain.CompanyDetailsDto;
+import com.accountor.prh.domain.CompanyLookupResultDto;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.EncodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.HttpMessageEncoder;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes {@link CompanyDetailsDto} and {@link CompanyLookupResultDto} as the Protobuf messages of
+ * {@code proto/company.proto}, without generated classes: the DTOs are written field by field
+ * straight into an exactly sized buffer. A single value is one message; a stream is written as
+ * length-delimited messages, flushed one by one, as Spring's own {@code ProtobufEncoder} does.
+ * Protobuf is only written when it was asked for, never as a default.
+ */
+public class CompanyProtobufEncoder implements HttpMessageEncoder<Object> {
+
+    private static final MediaType APPLICATION_PROTOBUF = CompanyMediaTypes.APPLICATION_PROTOBUF;
+    private static final List<MimeType> MIME_TYPES = List.of(APPLICATION_PROTOBUF);
+    private static final List<MediaType> STREAMING_MEDIA_TYPES = List.of(APPLICATION_PROTOBUF);
+
+    @Override
+    public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+        Class<?> type = elementType.toClass();
+        return (CompanyDetailsDto.class.isAssignableFrom(type) || CompanyLookupResultDto.class.isAssignableFrom(type))
+                && mimeType != null && APPLICATION_PROTOBUF.isCompatibleWith(mimeType);
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory, ResolvableType elementType,
+                                   MimeType mimeType, Map<String, Object> hints) {
+        if (inputStream instanceof Mono<?> mono) {
+            return mono.map(value -> bufferFactory.wrap(encode(value, false))).flux();
+        }
+        return Flux.from(inputStream).map(value -> bufferFactory.wrap(encode(value, true)));
+    }
+
+    @Override
+    public DataBuffer encodeValue(Object value, DataBufferFactory bufferFactory, ResolvableType valueType,
+                                  MimeType mimeType, Map<String, Object> hints) {
+        return bufferFactory.wrap(encode(value, false));
+    }
+
+    @Override
+    public List<MimeType> getEncodableMimeTypes() {
+        return MIME_TYPES;
+    }
+
+    @Override
+    public List<MediaType> getStreamingMediaTypes() {
+        return STREAMING_MEDIA_TYPES;
+    }
+
+    /**
+     * @param delimited Whether to prefix the message with its varint length.
+     */
+    static byte[] encode(Object value, boolean delimited) {
+        int size = value instanceof CompanyLookupResultDto result ? size(result) : size((CompanyDetailsDto) value);
+        byte[] bytes = new byte[(delimited ? CodedOutputStream.computeUInt32SizeNoTag(size) : 0) + size];
+        CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+        try {
+            if (delimited) {
+                out.writeUInt32NoTag(size);
+            }
+            if (value instanceof CompanyLookupResultDto result) {
+                write(out, result);
+            } else {
+                write(out, (CompanyDetailsDto) value);
+            }
+            out.checkNoSpaceLeft();
+        } catch (IOException ex) {
+            throw new EncodingException("Could not write " + value.getClass().getSimpleName() + " as Protobuf", ex);
+        }
+        return bytes;
+    }
+
+    private static int size(CompanyLookupResultDto result) {
+        int size = stringSize(1, result.businessId())
+                + CodedOutputStream.computeInt32Size(2, result.status())
+                + stringSize(4, result.error());
+        if (result.company() != null) {
+            int companySize = size(result.company());
+            size += CodedOutputStream.computeTagSize(3) + CodedOutputStream.computeUInt32SizeNoTag(companySize) + companySize;
+        }
+        if (result.age() != null) {
+            size += CodedOutputStream.computeInt64Size(5, result.age());
+        }
+        return size;
+    }
+
+    private static void write(CodedOutputStream out, CompanyLookupResultDto result) throws IOException {
+        writeString(out, 1, result.businessId());
+        out.writeInt32(2, result.status());
+        if (result.company() != null) {
+            out.writeTag(3, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(size(result.company()));
+            write(out, result.company());
+        }
+        writeString(out, 4, result.error());
+        if (result.age() != null) {
+            out.writeInt64(5, result.age());
+        }
+    }
+
+    private static int size(CompanyDetailsDto details) {
+        return stringSize(1, details.businessId())
+                + stringSize(2, details.name())
+                + stringSize(3, registrationDate(details))
+                + stringSize(4, details.websiteUrl())
+                + stringSize(5, details.street())
+                + stringSize(6, details.city())
+                + stringSize(7, details.postalCode())
+                + stringSize(8, details.mainBusinessLineCode())
+                + stringSize(9, details.mainBusinessLineDescription())
+                + stringSize(10, lastModified(details));
+    }
+
+    private static void write(CodedOutputStream out, CompanyDetailsDto details) throws IOException {
+        writeString(out, 1, details.businessId());
+        writeString(out, 2, details.name());
+        writeString(out, 3, registrationDate(details));
+        writeString(out, 4, details.websiteUrl());
+        writeString(out, 5, details.street());
+        writeString(out, 6, details.city());
+        writeString(out, 7, details.postalCode());
+        writeString(out, 8, details.mainBusinessLineCode());
+        writeString(out, 9, details.mainBusinessLineDescription());
+        writeString(out, 10, lastModified(details));
+    }
+
+    /**
+     * Formatted like Jackson formats them for JSON.
+     */
+    private static String registrationDate(CompanyDetailsDto details) {
+        return details.registrationDate() == null ? null : DateTimeFormatter.ISO_LOCAL_DATE.format(details.registrationDate());
+    }
+
+    private static String lastModified(CompanyDetailsDto details) {
+        return details.lastModified() == null ? null : DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(details.lastModified());
+    }
+
+    /**
+     * Proto3 leaves empty strings unset, so null and empty are both written as absent.
+     */
+    private static int stringSize(int field, String value) {
+        return value == null || value.isEmpty() ? 0 : CodedOutputStream.computeStringSize(field, value);
+    }
+
+    private static void writeString(CodedOutputStream out, int field, String value) throws IOException {
+        if (value != null && !value.isEmpty()) {
+            out.writeString(field, value);
+        }
+    }
+}
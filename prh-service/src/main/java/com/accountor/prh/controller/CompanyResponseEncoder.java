@@ -0,0 +1,86 @@
+package com.accountor.prh.controller;
+
+import com.accountor.prh.cache.CompanyCache;
+import com.accountor.prh.cache.EncodedCompany;
+import com.accountor.prh.config.PrhCacheProperties;
+import com.accountor.prh.domain.CompanyDetailsDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encodes company responses once per {@link CompanyCache} entry, the first time a response is
+ * written from it, and keeps them in the entry, so that further cache hits are written as the
+ * stored bytes instead of going through Jackson on every request. Companies cached without being
+ * served, e.g. by batch lookups, jobs or background refreshes, are never encoded. The
+ * body is encoded with the application's {@link ObjectMapper}, the same one WebFlux uses, so both
+ * paths send identical JSON under identical ETags. Enabled with {@code prh.cache.encoded-responses};
+ * {@code prh.cache.gzip-responses} also keeps a gzip-compressed copy, whose ETag carries a
+ * {@code -gzip} suffix because it is a different representation.
+ */
+@Component
+public class CompanyResponseEncoder {
+
+    private static final String GZIP_ETAG_SUFFIX = "-gzip";
+
+    private final Logger log = LoggerFactory.getLogger(CompanyResponseEncoder.class);
+
+    private final ObjectMapper objectMapper;
+    private final CompanyCache companyCache;
+    private final boolean enabled;
+    private final boolean gzip;
+
+    public CompanyResponseEncoder(PrhCacheProperties properties, CompanyCache companyCache, ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.companyCache = companyCache;
+        this.enabled = properties.encodedResponses();
+        this.gzip = properties.gzipResponses();
+    }
+
+    /**
+     * @return The pre-encoded response for {@code details} if exactly these details are cached,
+     * encoding and keeping it on first use, otherwise {@code null}.
+     */
+    public EncodedCompany cached(CompanyDetailsDto details) {
+        if (!enabled || details.businessId() == null) {
+            return null;
+        }
+        return companyCache.peek(details.businessId())
+                .filter(entry -> entry.details() == details)
+                .map(entry -> entry.encoded(this::encode))
+                .orElse(null);
+    }
+
+    /**
+     * Encodes the response body and ETag of {@code details}.
+     *
+     * @return The encoded response, or {@code null} if the details could not be encoded, in which
+     * case they are encoded per request as usual.
+     */
+    public EncodedCompany encode(CompanyDetailsDto details) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(details);
+            String eTag = CompanyETags.of(details);
+            if (!gzip) {
+                return new EncodedCompany(json, eTag, null, null);
+            }
+            return new EncodedCompany(json, eTag, gzip(json), eTag.substring(0, eTag.length() - 1) + GZIP_ETAG_SUFFIX + '"');
+        } catch (IOException ex) {
+            log.warn("Could not pre-encode the response for business ID {}: {}", details.businessId(), ex.getMessage());
+            return null;
+        }
+    }
+
+    private static byte[] gzip(byte[] json) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 2 + 32);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(json);
+        }
+        return compressed.toByteArray();
+    }
+}
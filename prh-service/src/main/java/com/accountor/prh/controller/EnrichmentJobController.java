@@ -0,0 +1,103 @@
+package com.accountor.prh.controller;
+
+import com.accountor.prh.domain.CompanyLookupResultDto;
+import com.accountor.prh.domain.EnrichmentJobDto;
+import com.accountor.prh.jobs.EnrichmentJobs;
+import com.accountor.prh.jobs.JobInputFormat;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+
+
+@RestController
+@RequestMapping("/api/v1/prh/companies/jobs")
+@Tag(name = "Enrichment jobs", description = "Endpoints for looking up large files of business IDs in the background.")
+public class EnrichmentJobController {
+
+    private final EnrichmentJobs enrichmentJobs;
+
+    public EnrichmentJobController(EnrichmentJobs enrichmentJobs) {
+        this.enrichmentJobs = enrichmentJobs;
+    }
+
+    @Operation(
+            summary = "Start an enrichment job",
+            description = "Uploads a file with one business ID per line, either CSV (first column, optional header) " +
+                    "or newline-delimited JSON (a string or an object with a businessId field per line), and " +
+                    "queues a job that looks every row up. Answers with the job and its URL in Location.",
+            tags = {"Enrichment jobs"}
+    )
+    @ApiResponse(
+            responseCode = "202",
+            description = "The upload was stored and the job queued.",
+            content = @Content(schema = @Schema(implementation = EnrichmentJobDto.class))
+    )
+    @ApiResponse(
+            responseCode = "400",
+            description = "The upload is empty, too large or of an unsupported type.",
+            content = @Content(schema = @Schema(implementation = String.class))
+    )
+    @PostMapping
+    public Mono<ResponseEntity<EnrichmentJobDto>> createJob(
+            @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) MediaType contentType,
+            @RequestBody Flux<DataBuffer> upload) {
+        return Mono.fromSupplier(() -> JobInputFormat.of(contentType))
+                .flatMap(format -> enrichmentJobs.create(upload, format))
+                .map(job -> ResponseEntity.accepted()
+                        .location(URI.create("/api/v1/prh/companies/jobs/" + job.id()))
+                        .body(job));
+    }
+
+    @Operation(
+            summary = "Get the progress of an enrichment job",
+            tags = {"Enrichment jobs"}
+    )
+    @ApiResponse(
+            responseCode = "200",
+            description = "The job's status and progress.",
+            content = @Content(schema = @Schema(implementation = EnrichmentJobDto.class))
+    )
+    @ApiResponse(
+            responseCode = "404",
+            description = "No job with the ID exists.",
+            content = @Content(schema = @Schema(implementation = String.class))
+    )
+    @GetMapping("/{jobId}")
+    public Mono<EnrichmentJobDto> getJob(@PathVariable String jobId) {
+        return enrichmentJobs.status(jobId);
+    }
+
+    @Operation(
+            summary = "Download the results of an enrichment job",
+            description = "Streams one lookup result per row of the upload, in upload order, as newline-delimited " +
+                    "JSON. While the job runs, the results up to its last checkpoint are returned.",
+            tags = {"Enrichment jobs"}
+    )
+    @ApiResponse(
+            responseCode = "200",
+            description = "Stream of per-row lookup results.",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                    schema = @Schema(implementation = CompanyLookupResultDto.class))
+    )
+    @ApiResponse(
+            responseCode = "404",
+            description = "No job with the ID exists.",
+            content = @Content(schema = @Schema(implementation = String.class))
+    )
+    @GetMapping(value = "/{jobId}/results", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<DataBuffer> getJobResults(@PathVariable String jobId) {
+        return enrichmentJobs.results(jobId);
+    }
+}
@@ -1,6 +1,7 @@
 package com.accountor.prh.domain;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 public record CompanyDetails(
         String businessId,
@@ -11,5 +12,6 @@ public record CompanyDetails(
         String city,
         String postalCode,
         String mainBusinessLineCode,
-        String mainBusinessLineDescription) {
+        String mainBusinessLineDescription,
+        LocalDateTime lastModified) {
 }
\ No newline at end of file
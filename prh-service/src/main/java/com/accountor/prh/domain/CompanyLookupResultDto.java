@@ -0,0 +1,30 @@
+package com.accountor.prh.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of a single lookup within a batch: either the company details or the HTTP status
+ * and message the single-lookup endpoint would have answered with. {@code age} is only set when
+ * the company was served from last-known-good data because PRH was unavailable, and holds the
+ * seconds since it was fetched.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CompanyLookupResultDto(
+        String businessId,
+        int status,
+        CompanyDetailsDto company,
+        String error,
+        Long age) {
+
+    public static CompanyLookupResultDto found(String businessId, CompanyDetailsDto company) {
+        return new CompanyLookupResultDto(businessId, 200, company, null, null);
+    }
+
+    public static CompanyLookupResultDto stale(String businessId, CompanyDetailsDto company, long age) {
+        return new CompanyLookupResultDto(businessId, 200, company, null, age);
+    }
+
+    public static CompanyLookupResultDto failed(String businessId, int status, String error) {
+        return new CompanyLookupResultDto(businessId, status, null, error, null);
+    }
+}
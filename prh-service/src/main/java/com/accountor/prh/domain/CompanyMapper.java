@@ -2,70 +2,170 @@ package com.accountor.prh.domain;
 
 import com.accountor.prh.dto.*;
 
-import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 public final class CompanyMapper {
 
+    private static final String CURRENT_NAME_TYPE = "1";
+    private static final String FINNISH_LANGUAGE_CODE = "1";
+    private static final String SWEDISH_LANGUAGE_CODE = "2";
+    private static final String ENGLISH_LANGUAGE_CODE = "3";
+
     private CompanyMapper() {}
 
     /**
-     * Maps the raw API DTO to our internal domain model.
+     * Maps the raw API DTO to our internal domain model in a single pass over each list,
+     * without streams or intermediate Optionals.
      *
      * @param apiDto The DTO received from the external API.
      * @return Our clean domain model.
      */
 
     public static CompanyDetails toCompanyDetails(CompanyApiDto apiDto) {
-        String currentName = apiDto.names().stream()
-                .filter(nameDto -> "1".equals(nameDto.type()))
-                .map(NameApiDto::name)
-                .findFirst()
-                .orElse(null);
-
-        String websiteUrl = apiDto.website()
-                .map(WebsiteApiDto::url)
-                .orElse(null);
-
-        String street = apiDto.addresses().stream()
-                .map(AddressApiDto::street)
-                .findFirst()
-                .orElse(null);
-
-        String city = apiDto.addresses().stream()
-                .map(AddressApiDto::street)
-                .findFirst()
-                .orElse(null);
-
-        String postCode = apiDto.addresses().stream()
-                .map(AddressApiDto::postCode)
-                .findFirst()
-                .orElse(null);
-
-        String mainBusinessLineCode = Optional.ofNullable(apiDto.mainBusinessLine())
-                .map(MainBusinessLineApiDto::typeCode)
-                .orElse(null);
-
-        String mainBusinessLineDescription = Optional.ofNullable(apiDto.mainBusinessLine())
-                .flatMap(line -> line.descriptions().stream()
-                        .filter(desc -> "3".equals(desc.languageCode())) // "3" for English
-                        .map(DescriptionApiDto::description)
-                        .findFirst())
-                .orElse(null);
+        AddressApiDto address = first(apiDto.addresses());
+        MainBusinessLineApiDto mainBusinessLine = apiDto.mainBusinessLine();
 
         return new CompanyDetails(
                 apiDto.businessId().value(),
-                currentName,
+                currentName(apiDto.names()),
                 apiDto.registrationDate(),
-                websiteUrl,
-                street,
-                city,
-                postCode,
-                mainBusinessLineCode,
-                mainBusinessLineDescription
+                websiteUrl(apiDto.website()),
+                address != null ? address.street() : null,
+                address != null ? city(address.postOffices()) : null,
+                address != null ? address.postCode() : null,
+                mainBusinessLine != null ? mainBusinessLine.typeCode() : null,
+                mainBusinessLine != null ? englishDescription(mainBusinessLine.descriptions()) : null,
+                apiDto.lastModified()
         );
     }
 
+    private static String currentName(List<NameApiDto> names) {
+        if (names == null) {
+            return null;
+        }
+        for (int i = 0, size = names.size(); i < size; i++) {
+            NameApiDto name = names.get(i);
+            if (CURRENT_NAME_TYPE.equals(name.type())) {
+                return name.name();
+            }
+        }
+        return null;
+    }
+
+    private static String websiteUrl(Optional<WebsiteApiDto> website) {
+        return website != null && website.isPresent() ? website.get().url() : null;
+    }
+
+    private static String city(List<PostOfficeApiDto> postOffices) {
+        PostOfficeApiDto postOffice = first(postOffices);
+        return postOffice != null ? postOffice.city() : null;
+    }
+
+    private static String englishDescription(List<DescriptionApiDto> descriptions) {
+        if (descriptions == null) {
+            return null;
+        }
+        for (int i = 0, size = descriptions.size(); i < size; i++) {
+            DescriptionApiDto description = descriptions.get(i);
+            if (ENGLISH_LANGUAGE_CODE.equals(description.languageCode())) {
+                return description.description();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Maps only the requested optional sections of a company; the others are left null. Lists PRH
+     * leaves out are mapped as empty.
+     *
+     * @param apiDto   The DTO received from the external API, decoded with every section.
+     * @param sections The sections to map.
+     * @return The mapped sections.
+     */
+    public static CompanySectionsDto toCompanySections(CompanyApiDto apiDto, Set<CompanySection> sections) {
+        MainBusinessLineApiDto mainBusinessLine = apiDto.mainBusinessLine();
+        return new CompanySectionsDto(
+                sections.contains(CompanySection.COMPANY_FORMS) ? companyForms(apiDto.companyForms()) : null,
+                sections.contains(CompanySection.COMPANY_SITUATIONS) ? companySituations(apiDto.companySituations()) : null,
+                sections.contains(CompanySection.REGISTERED_ENTRIES) ? registeredEntries(apiDto.registeredEntries()) : null,
+                sections.contains(CompanySection.DESCRIPTIONS)
+                        ? descriptions(mainBusinessLine != null ? mainBusinessLine.descriptions() : null)
+                        : null
+        );
+    }
+
+    private static List<CompanyRegisterEntryDto> companyForms(List<CompanyFormApiDto> forms) {
+        if (forms == null) {
+            return List.of();
+        }
+        List<CompanyRegisterEntryDto> entries = new ArrayList<>(forms.size());
+        for (int i = 0, size = forms.size(); i < size; i++) {
+            CompanyFormApiDto form = forms.get(i);
+            entries.add(new CompanyRegisterEntryDto(form.type(), descriptions(form.descriptions()), null,
+                    form.endDate(), null, null));
+        }
+        return entries;
+    }
+
+    private static List<CompanyRegisterEntryDto> companySituations(List<CompanySituationApiDto> situations) {
+        if (situations == null) {
+            return List.of();
+        }
+        List<CompanyRegisterEntryDto> entries = new ArrayList<>(situations.size());
+        for (int i = 0, size = situations.size(); i < size; i++) {
+            CompanySituationApiDto situation = situations.get(i);
+            entries.add(new CompanyRegisterEntryDto(situation.type(), descriptions(situation.descriptions()),
+                    situation.registrationDate(), situation.endDate(), situation.register(), situation.authority()));
+        }
+        return entries;
+    }
+
+    private static List<CompanyRegisterEntryDto> registeredEntries(List<RegisteredEntryApiDto> registered) {
+        if (registered == null) {
+            return List.of();
+        }
+        List<CompanyRegisterEntryDto> entries = new ArrayList<>(registered.size());
+        for (int i = 0, size = registered.size(); i < size; i++) {
+            RegisteredEntryApiDto entry = registered.get(i);
+            entries.add(new CompanyRegisterEntryDto(entry.type(), descriptions(entry.descriptions()),
+                    entry.registrationDate(), entry.endDate(), entry.register(), entry.authority()));
+        }
+        return entries;
+    }
+
+    private static Map<String, String> descriptions(List<DescriptionApiDto> descriptions) {
+        Map<String, String> byLanguage = new LinkedHashMap<>();
+        if (descriptions == null) {
+            return byLanguage;
+        }
+        for (int i = 0, size = descriptions.size(); i < size; i++) {
+            DescriptionApiDto description = descriptions.get(i);
+            byLanguage.put(language(description.languageCode()), description.description());
+        }
+        return byLanguage;
+    }
+
+    private static String language(String languageCode) {
+        if (languageCode == null) {
+            return "unknown";
+        }
+        return switch (languageCode) {
+            case FINNISH_LANGUAGE_CODE -> "fi";
+            case SWEDISH_LANGUAGE_CODE -> "sv";
+            case ENGLISH_LANGUAGE_CODE -> "en";
+            default -> languageCode;
+        };
+    }
+
+    private static <T> T first(List<T> items) {
+        return items == null || items.isEmpty() ? null : items.get(0);
+    }
+
     /**
      * Maps our internal domain model to the DTO for API responses.
      *
@@ -82,7 +182,8 @@ public final class CompanyMapper {
                 domain.city(),
                 domain.postalCode(),
                 domain.mainBusinessLineCode(),
-                domain.mainBusinessLineDescription()
+                domain.mainBusinessLineDescription(),
+                domain.lastModified()
         );
     }
 
@@ -0,0 +1,165 @@
+package com.accountor.prh.domain;
+
+import com.accountor.prh.exception.InvalidInputException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The shape of a company response requested with {@code ?fields=} and {@code ?include=}: which
+ * {@link CompanyDetailsDto} fields to return, and which optional {@link CompanySection}s to add.
+ * Without either parameter the projection is the {@link #isDefault() default} one, and the full
+ * {@link CompanyDetailsDto} is returned as before.
+ */
+public final class CompanyProjection {
+
+    private enum Field {
+        BUSINESS_ID("businessId", CompanyDetailsDto::businessId),
+        NAME("name", CompanyDetailsDto::name),
+        REGISTRATION_DATE("registrationDate", CompanyDetailsDto::registrationDate),
+        WEBSITE_URL("websiteUrl", CompanyDetailsDto::websiteUrl),
+        STREET("street", CompanyDetailsDto::street),
+        CITY("city", CompanyDetailsDto::city),
+        POSTAL_CODE("postalCode", CompanyDetailsDto::postalCode),
+        MAIN_BUSINESS_LINE_CODE("mainBusinessLineCode", CompanyDetailsDto::mainBusinessLineCode),
+        MAIN_BUSINESS_LINE_DESCRIPTION("mainBusinessLineDescription", CompanyDetailsDto::mainBusinessLineDescription),
+        LAST_MODIFIED("lastModified", CompanyDetailsDto::lastModified);
+
+        private final String name;
+        private final Function<CompanyDetailsDto, Object> accessor;
+
+        Field(String name, Function<CompanyDetailsDto, Object> accessor) {
+            this.name = name;
+            this.accessor = accessor;
+        }
+    }
+
+    private static final Set<Field> ALL_FIELDS = EnumSet.allOf(Field.class);
+
+    public static final CompanyProjection DEFAULT = new CompanyProjection(ALL_FIELDS, EnumSet.noneOf(CompanySection.class));
+
+    private final Set<Field> fields;
+    private final Set<CompanySection> sections;
+
+    private CompanyProjection(Set<Field> fields, Set<CompanySection> sections) {
+        this.fields = fields;
+        this.sections = sections;
+    }
+
+    /**
+     * Parses the comma-separated {@code fields} and {@code include} parameters. Without
+     * {@code fields}, every field is returned.
+     *
+     * @throws InvalidInputException If a field or section is unknown.
+     */
+    public static CompanyProjection of(String fields, String include) {
+        Set<CompanySection> sections = CompanySection.parse(include);
+        if ((fields == null || fields.isBlank()) && sections.isEmpty()) {
+            return DEFAULT;
+        }
+        return new CompanyProjection(parseFields(fields), sections);
+    }
+
+    /**
+     * @return Whether the full {@link CompanyDetailsDto} is returned without any section.
+     */
+    public boolean isDefault() {
+        return fields.equals(ALL_FIELDS) && sections.isEmpty();
+    }
+
+    public Set<CompanySection> sections() {
+        return sections;
+    }
+
+    /**
+     * @return A short tag identifying this projection, e.g. to derive an ETag of the projected
+     * representation from the ETag of the full one.
+     */
+    public String variant() {
+        int mask = 0;
+        for (Field field : fields) {
+            mask |= 1 << field.ordinal();
+        }
+        for (CompanySection section : sections) {
+            mask |= 1 << (Field.values().length + section.ordinal());
+        }
+        return Integer.toHexString(mask);
+    }
+
+    /**
+     * Builds the response body: the requested fields in {@link CompanyDetailsDto} order, followed by
+     * the included sections. The body is written straight from {@code details} and
+     * {@code companySections} when it is serialised, without an intermediate copy.
+     */
+    public JsonSerializable apply(CompanyDetailsDto details, CompanySectionsDto companySections) {
+        return new Body(details, companySections);
+    }
+
+    private static Set<Field> parseFields(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL_FIELDS;
+        }
+        Set<Field> parsed = EnumSet.noneOf(Field.class);
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (!trimmed.isEmpty()) {
+                parsed.add(field(trimmed));
+            }
+        }
+        return parsed;
+    }
+
+    private static Field field(String name) {
+        for (Field field : Field.values()) {
+            if (field.name.equals(name)) {
+                return field;
+            }
+        }
+        throw new InvalidInputException("Unknown field '" + name + "'.");
+    }
+
+    private final class Body extends JsonSerializable.Base {
+
+        private final CompanyDetailsDto details;
+        private final CompanySectionsDto companySections;
+
+        private Body(CompanyDetailsDto details, CompanySectionsDto companySections) {
+            this.details = details;
+            this.companySections = companySections;
+        }
+
+        @Override
+        public void serialize(JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject();
+            for (Field field : fields) {
+                provider.defaultSerializeField(field.name, field.accessor.apply(details), generator);
+            }
+            if (sections.contains(CompanySection.COMPANY_FORMS)) {
+                provider.defaultSerializeField("companyForms", companySections.companyForms(), generator);
+            }
+            if (sections.contains(CompanySection.COMPANY_SITUATIONS)) {
+                provider.defaultSerializeField("companySituations", companySections.companySituations(), generator);
+            }
+            if (sections.contains(CompanySection.REGISTERED_ENTRIES)) {
+                provider.defaultSerializeField("registeredEntries", companySections.registeredEntries(), generator);
+            }
+            if (sections.contains(CompanySection.DESCRIPTIONS)) {
+                provider.defaultSerializeField("mainBusinessLineDescriptions",
+                        companySections.mainBusinessLineDescriptions(), generator);
+            }
+            generator.writeEndObject();
+        }
+
+        @Override
+        public void serializeWithType(JsonGenerator generator, SerializerProvider provider, TypeSerializer typeSerializer)
+                throws IOException {
+            serialize(generator, provider);
+        }
+    }
+}
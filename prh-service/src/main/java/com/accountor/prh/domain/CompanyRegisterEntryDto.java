@@ -0,0 +1,21 @@
+package com.accountor.prh.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * One entry of an optional section: a company form, a company situation or a registered entry.
+ * {@code descriptions} maps language codes ({@code fi}, {@code sv}, {@code en}) to the entry's
+ * description in that language. Fields PRH does not give for the kind of entry are omitted.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CompanyRegisterEntryDto(
+        String type,
+        Map<String, String> descriptions,
+        LocalDate registrationDate,
+        LocalDate endDate,
+        String register,
+        String authority) {
+}
@@ -0,0 +1,46 @@
+package com.accountor.prh.domain;
+
+import java.time.LocalDate;
+
+/**
+ * Filters of a company search, passed to PRH as the {@code /companies} query parameters of the
+ * same names. Blank filters are treated as absent.
+ *
+ * @param name                  Company name, or part of it.
+ * @param location              Town or city of the company's address.
+ * @param postCode              Postal code of the company's address.
+ * @param registrationDateStart First registration date of the companies, inclusive.
+ * @param registrationDateEnd   Last registration date of the companies, inclusive.
+ */
+public record CompanySearchCriteria(String name, String location, String postCode,
+                                    LocalDate registrationDateStart, LocalDate registrationDateEnd) {
+
+    public CompanySearchCriteria {
+        name = trimToNull(name);
+        location = trimToNull(location);
+        postCode = trimToNull(postCode);
+    }
+
+    public CompanySearchCriteria(String name, String location, String postCode) {
+        this(name, location, postCode, null, null);
+    }
+
+    /**
+     * @return Criteria matching the companies registered between the two dates, inclusive.
+     */
+    public static CompanySearchCriteria registeredBetween(LocalDate start, LocalDate end) {
+        return new CompanySearchCriteria(null, null, null, start, end);
+    }
+
+    /**
+     * @return Whether no filter is set, which would match every company in the register.
+     */
+    public boolean isEmpty() {
+        return name == null && location == null && postCode == null
+                && registrationDateStart == null && registrationDateEnd == null;
+    }
+
+    private static String trimToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
@@ -0,0 +1,62 @@
+package com.accountor.prh.domain;
+
+import com.accountor.prh.exception.InvalidInputException;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Optional sections of a company response, requested with {@code ?include=}. They are not part of
+ * {@link CompanyDetailsDto}, so they are only fetched and mapped when a request includes them.
+ */
+public enum CompanySection {
+
+    /** Legal forms (Oy, Oyj, Ky, ...) with their descriptions in every language. */
+    COMPANY_FORMS("companyForms"),
+    /** Situations such as liquidation or bankruptcy. */
+    COMPANY_SITUATIONS("companySituations"),
+    /** Entries in the trade, tax, VAT and other registers. */
+    REGISTERED_ENTRIES("registeredEntries"),
+    /** The main business line's description in every language, not only in English. */
+    DESCRIPTIONS("descriptions");
+
+    private final String parameterName;
+
+    CompanySection(String parameterName) {
+        this.parameterName = parameterName;
+    }
+
+    public String parameterName() {
+        return parameterName;
+    }
+
+    /**
+     * Parses a comma-separated {@code include} parameter. Blank entries are ignored.
+     *
+     * @return The sections, empty if {@code include} is null or blank.
+     * @throws InvalidInputException If a section is unknown.
+     */
+    public static Set<CompanySection> parse(String include) {
+        Set<CompanySection> sections = EnumSet.noneOf(CompanySection.class);
+        if (include == null || include.isBlank()) {
+            return sections;
+        }
+        for (String name : include.split(",")) {
+            String trimmed = name.trim();
+            if (!trimmed.isEmpty()) {
+                sections.add(of(trimmed));
+            }
+        }
+        return sections;
+    }
+
+    private static CompanySection of(String parameterName) {
+        for (CompanySection section : values()) {
+            if (section.parameterName.equals(parameterName)) {
+                return section;
+            }
+        }
+        throw new InvalidInputException("Unknown section '" + parameterName
+                + "'. Supported sections are companyForms, companySituations, registeredEntries and descriptions.");
+    }
+}
@@ -0,0 +1,20 @@
+package com.accountor.prh.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The optional sections of a company that a request included; sections it did not include are null
+ * and omitted. See {@link CompanySection}.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CompanySectionsDto(
+        List<CompanyRegisterEntryDto> companyForms,
+        List<CompanyRegisterEntryDto> companySituations,
+        List<CompanyRegisterEntryDto> registeredEntries,
+        Map<String, String> mainBusinessLineDescriptions) {
+
+    public static final CompanySectionsDto NONE = new CompanySectionsDto(null, null, null, null);
+}
@@ -0,0 +1,7 @@
+package com.accountor.prh.domain;
+
+/**
+ * One autocomplete suggestion: a company whose name or business ID starts with the typed text.
+ */
+public record CompanySuggestionDto(String businessId, String name) {
+}
@@ -0,0 +1,24 @@
+package com.accountor.prh.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+
+/**
+ * State of a bulk enrichment job. {@code progress} is the share of the uploaded file processed so
+ * far, from 0 to 1; {@code processed} counts the result lines written, of which {@code failed} are
+ * not {@code 200}. {@code error} is only set when the job itself failed.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record EnrichmentJobDto(
+        String id,
+        Status status,
+        Instant createdAt,
+        Instant finishedAt,
+        double progress,
+        long processed,
+        long failed,
+        String error) {
+
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED }
+}
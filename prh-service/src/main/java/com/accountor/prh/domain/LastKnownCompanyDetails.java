@@ -0,0 +1,20 @@
+package com.accountor.prh.domain;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Company details as last successfully fetched from PRH, kept to answer while PRH is unavailable.
+ *
+ * @param details   The company details.
+ * @param fetchedAt When PRH returned them.
+ */
+public record LastKnownCompanyDetails(CompanyDetailsDto details, Instant fetchedAt) {
+
+    /**
+     * @return Whole seconds since the details were fetched, as sent in the HTTP {@code Age} header.
+     */
+    public long ageSeconds(Instant now) {
+        return Math.max(0, Duration.between(fetchedAt, now).getSeconds());
+    }
+}
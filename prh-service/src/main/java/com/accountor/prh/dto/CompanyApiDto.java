@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,6 +20,7 @@ public record CompanyApiDto(
         @JsonProperty("tradeRegisterStatus") String tradeRegisterStatus,
         @JsonProperty("mainBusinessLine") MainBusinessLineApiDto mainBusinessLine,
         @JsonProperty("registeredEntries") List<RegisteredEntryApiDto> registeredEntries,
-        Optional<WebsiteApiDto> website
+        Optional<WebsiteApiDto> website,
+        @JsonProperty("lastModified") LocalDateTime lastModified
 ) {
 }
\ No newline at end of file
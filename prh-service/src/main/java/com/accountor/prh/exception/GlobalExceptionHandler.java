@@ -4,6 +4,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.server.NotAcceptableStatusException;
 import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.server.ServerWebInputException;
 import reactor.core.publisher.Mono;
@@ -21,6 +22,30 @@ public class GlobalExceptionHandler {
                 exchange);
     }
 
+    @ExceptionHandler(JobNotFoundException.class)
+    public Mono<ProblemDetail> handleJobNotFoundException(JobNotFoundException ex, ServerWebExchange exchange) {
+        return buildProblemDetail(
+                HttpStatus.NOT_FOUND,
+                ex.getMessage(),
+                exchange);
+    }
+
+    @ExceptionHandler(TooManyJobsException.class)
+    public Mono<ProblemDetail> handleTooManyJobsException(TooManyJobsException ex, ServerWebExchange exchange) {
+        return buildProblemDetail(
+                HttpStatus.TOO_MANY_REQUESTS,
+                ex.getMessage(),
+                exchange);
+    }
+
+    @ExceptionHandler(JobStorageFullException.class)
+    public Mono<ProblemDetail> handleJobStorageFullException(JobStorageFullException ex, ServerWebExchange exchange) {
+        return buildProblemDetail(
+                HttpStatus.INSUFFICIENT_STORAGE,
+                ex.getMessage(),
+                exchange);
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     public Mono<ProblemDetail> handleIllegalArgumentException(IllegalArgumentException ex, ServerWebExchange exchange) {
         return buildProblemDetail(
@@ -60,6 +85,13 @@ public class GlobalExceptionHandler {
                 exchange);
     }
 
+    @ExceptionHandler(NotAcceptableStatusException.class)
+    public Mono<ProblemDetail> handleNotAcceptableStatusException(NotAcceptableStatusException ex, ServerWebExchange exchange) {
+        return buildProblemDetail(HttpStatus.NOT_ACCEPTABLE,
+                "The requested representation is not available. Supported: " + ex.getSupportedMediaTypes(),
+                exchange);
+    }
+
     @ExceptionHandler(InvalidInputException.class)
     public Mono<ProblemDetail> handleInvalidInputException(InvalidInputException ex, ServerWebExchange exchange) {
         return buildProblemDetail(HttpStatus.BAD_REQUEST,
@@ -0,0 +1,13 @@
+package com.accountor.prh.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class JobNotFoundException extends RuntimeException {
+
+    public JobNotFoundException(String message) {
+        super(message);
+    }
+
+}
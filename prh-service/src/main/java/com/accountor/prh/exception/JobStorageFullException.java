@@ -0,0 +1,17 @@
+package com.accountor.prh.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * An enrichment job upload was refused because the stored jobs already reach
+ * {@code prh.jobs.max-stored-jobs} or would exceed {@code prh.jobs.max-total-size}.
+ */
+@ResponseStatus(HttpStatus.INSUFFICIENT_STORAGE)
+public class JobStorageFullException extends RuntimeException {
+
+    public JobStorageFullException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.accountor.prh.exception;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * PRH answered 429 Too Many Requests. {@code retryAfter} is the wait PRH asked for in its
+ * {@code Retry-After} header, or null if it sent none.
+ */
+@Getter
+public class PrhThrottledException extends ExternalApiException {
+
+    private final Duration retryAfter;
+
+    public PrhThrottledException(String message, String errorCode, String details, Duration retryAfter) {
+        super(message, errorCode, details);
+        this.retryAfter = retryAfter;
+    }
+}
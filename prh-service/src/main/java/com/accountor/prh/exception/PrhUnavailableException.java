@@ -0,0 +1,12 @@
+package com.accountor.prh.exception;
+
+/**
+ * PRH was not asked or gave up answering: the circuit breaker is open, the rate limiter rejected the
+ * call, or every retry failed. Callers may answer from last-known-good data instead of failing.
+ */
+public class PrhUnavailableException extends ExternalApiException {
+
+    public PrhUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
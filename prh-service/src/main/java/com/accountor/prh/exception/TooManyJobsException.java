@@ -0,0 +1,17 @@
+package com.accountor.prh.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * An enrichment job upload was refused because {@code prh.jobs.max-active-jobs} jobs are already
+ * queued or running.
+ */
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class TooManyJobsException extends RuntimeException {
+
+    public TooManyJobsException(String message) {
+        super(message);
+    }
+
+}
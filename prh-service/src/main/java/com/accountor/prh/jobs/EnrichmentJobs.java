@@ -0,0 +1,520 @@
+package com.accountor.prh.jobs;
+
+import com.accountor.prh.client.AdaptiveRateLimiter;
+import com.accountor.prh.config.PrhJobProperties;
+import com.accountor.prh.domain.CompanyLookupResultDto;
+import com.accountor.prh.domain.EnrichmentJobDto;
+import com.accountor.prh.domain.EnrichmentJobDto.Status;
+import com.accountor.prh.exception.InvalidInputException;
+import com.accountor.prh.exception.JobNotFoundException;
+import com.accountor.prh.exception.JobStorageFullException;
+import com.accountor.prh.exception.TooManyJobsException;
+import com.accountor.prh.service.PrhService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Bulk enrichment jobs: an uploaded file of business IDs is looked up one row at a time through
+ * {@link PrhService}, and one {@link CompanyLookupResultDto} per row is written as NDJSON to a
+ * results file, in the order of the upload.
+ * <p>
+ * Neither the upload nor its results are held in memory: the upload is streamed to
+ * {@code prh.jobs.directory}, rows are read from disk only as lookups complete, and results are
+ * appended to disk and downloaded from there. Jobs run one at a time, with at most
+ * {@code prh.jobs.concurrency} lookups in progress, and start no lookup while
+ * {@code upstream-queue-limit} or more PRH calls are waiting for the rate limiter, so interactive
+ * lookups keep the rate budget. A row whose lookup finds PRH unavailable is retried after
+ * {@code retry-delay}, up to {@code max-attempts} times.
+ * <p>
+ * Every {@code checkpoint-every} results the results file is synced and the job's progress saved
+ * next to it; after a restart, unfinished jobs resume from their last checkpoint. Rows are read on
+ * {@link Schedulers#boundedElastic()}, never on the threads completing the lookups. Results are
+ * counted in {@code prh.jobs.results} by {@code result} (found, failed).
+ * <p>
+ * Uploads count against {@code max-active-jobs} and {@code max-stored-jobs} from the moment they
+ * start, and their bytes against {@code max-total-size} as they arrive.
+ */
+@Component
+public class EnrichmentJobs implements DisposableBean {
+
+    static final String INPUT_FILE = "input";
+    static final String RESULTS_FILE = "results.ndjson";
+    static final String CHECKPOINT_FILE = "job.json";
+
+    private static final Duration BUDGET_POLL_INTERVAL = Duration.ofMillis(100);
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final Logger log = LoggerFactory.getLogger(EnrichmentJobs.class);
+
+    private final PrhJobProperties properties;
+    private final PrhService prhService;
+    private final AdaptiveRateLimiter rateLimiter;
+    private final ObjectMapper objectMapper;
+    private final Counter found;
+    private final Counter failed;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final Sinks.Many<Job> queue = Sinks.many().unicast().onBackpressureBuffer();
+    private final AtomicInteger uploads = new AtomicInteger();
+    private final AtomicLong uploadedBytes = new AtomicLong();
+    private final Disposable runner;
+
+    public EnrichmentJobs(PrhJobProperties properties, PrhService prhService, AdaptiveRateLimiter rateLimiter,
+                          ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.prhService = prhService;
+        this.rateLimiter = rateLimiter;
+        this.objectMapper = objectMapper;
+        this.found = resultCounter(meterRegistry, "found");
+        this.failed = resultCounter(meterRegistry, "failed");
+        Gauge.builder("prh.jobs.pending", jobs, all -> all.values().stream()
+                        .filter(job -> job.status == Status.QUEUED || job.status == Status.RUNNING)
+                        .count())
+                .description("Enrichment jobs queued or running")
+                .register(meterRegistry);
+        this.runner = queue.asFlux()
+                .concatMap(this::run)
+                .subscribe();
+    }
+
+    /**
+     * Stores an upload and queues a job for it.
+     *
+     * @return A Mono emitting the queued job once the upload is stored.
+     * @throws InvalidInputException   If the upload is empty or larger than {@code prh.jobs.max-upload-size}.
+     * @throws TooManyJobsException    If {@code prh.jobs.max-active-jobs} jobs are queued or running.
+     * @throws JobStorageFullException If {@code prh.jobs.max-stored-jobs} jobs are kept, or the upload would
+     *                                 take the jobs past {@code prh.jobs.max-total-size}.
+     */
+    public Mono<EnrichmentJobDto> create(Flux<DataBuffer> upload, JobInputFormat format) {
+        return Mono.fromRunnable(this::admit)
+                .subscribeOn(Schedulers.boundedElastic())
+                .then(Mono.defer(() -> store(upload, format)).doFinally(signal -> uploads.decrementAndGet()));
+    }
+
+    private Mono<EnrichmentJobDto> store(Flux<DataBuffer> upload, JobInputFormat format) {
+        String id = UUID.randomUUID().toString();
+        Path directory = properties.directory().resolve(id);
+        long maxUploadBytes = properties.maxUploadSize().toBytes();
+        AtomicLong uploaded = new AtomicLong();
+        Flux<DataBuffer> limited = upload.handle((buffer, sink) -> {
+            int size = buffer.readableByteCount();
+            uploadedBytes.addAndGet(size);
+            if (uploaded.addAndGet(size) > maxUploadBytes) {
+                DataBufferUtils.release(buffer);
+                sink.error(new InvalidInputException("An upload may be at most " + properties.maxUploadSize() + "."));
+            } else if (storedBytes() + uploadedBytes.get() > properties.maxTotalSize().toBytes()) {
+                DataBufferUtils.release(buffer);
+                sink.error(new JobStorageFullException(
+                        "Enrichment jobs may take at most " + properties.maxTotalSize() + " of storage."));
+            } else {
+                sink.next(buffer);
+            }
+        });
+
+        return Mono.fromCallable(() -> Files.createDirectories(directory))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then(DataBufferUtils.write(limited, directory.resolve(INPUT_FILE)))
+                .then(Mono.fromCallable(() -> {
+                    long inputSize = Files.size(directory.resolve(INPUT_FILE));
+                    if (inputSize == 0) {
+                        throw new InvalidInputException("The upload is empty.");
+                    }
+                    Job job = new Job(new JobCheckpoint(id, format, Status.QUEUED, Instant.now(), null,
+                            inputSize, 0, 0, 0, 0, null));
+                    save(job);
+                    jobs.put(id, job);
+                    EnrichmentJobDto queued = job.toDto();
+                    submit(job);
+                    log.info("Queued enrichment job {} for {} bytes of {}", id, inputSize, format);
+                    return queued;
+                }).subscribeOn(Schedulers.boundedElastic()))
+                .doFinally(signal -> uploadedBytes.addAndGet(-uploaded.get()))
+                .onErrorResume(ex -> Mono.fromRunnable(() -> delete(directory))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .then(Mono.error(ex)));
+    }
+
+    /**
+     * Counts an upload against the job limits, after deleting the jobs past their retention.
+     */
+    private synchronized void admit() {
+        deleteExpired();
+        long active = jobs.values().stream().filter(job -> !job.isFinished()).count();
+        if (active + uploads.get() >= properties.maxActiveJobs()) {
+            throw new TooManyJobsException("At most " + properties.maxActiveJobs()
+                    + " enrichment jobs may be queued or running. Try again once one has finished.");
+        }
+        if (jobs.size() + uploads.get() >= properties.maxStoredJobs()) {
+            throw new JobStorageFullException("At most " + properties.maxStoredJobs()
+                    + " enrichment jobs are kept. Try again once finished jobs have expired.");
+        }
+        uploads.incrementAndGet();
+    }
+
+    /**
+     * @return The bytes taken by the uploads of unfinished jobs and the results of all jobs.
+     */
+    private long storedBytes() {
+        long total = 0;
+        for (Job job : jobs.values()) {
+            total += job.resultsSize + (job.status == Status.COMPLETED ? 0 : job.inputSize);
+        }
+        return total;
+    }
+
+    /**
+     * @throws JobNotFoundException If there is no job with the ID.
+     */
+    public Mono<EnrichmentJobDto> status(String id) {
+        return Mono.fromSupplier(() -> find(id).toDto());
+    }
+
+    /**
+     * Streams the results written up to the job's last checkpoint, all of them once it has completed.
+     *
+     * @throws JobNotFoundException If there is no job with the ID.
+     */
+    public Flux<DataBuffer> results(String id) {
+        return Flux.defer(() -> {
+            Job job = find(id);
+            long committed = job.resultsSize;
+            if (committed == 0) {
+                return Flux.empty();
+            }
+            Flux<DataBuffer> file = DataBufferUtils.read(directory(job).resolve(RESULTS_FILE),
+                    DefaultDataBufferFactory.sharedInstance, READ_BUFFER_SIZE);
+            return DataBufferUtils.takeUntilByteCount(file, committed);
+        });
+    }
+
+    /**
+     * Loads the jobs kept in {@code prh.jobs.directory} once the application is ready, resumes the
+     * unfinished ones in the order they were created and deletes finished ones past their retention.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeOnStartup() {
+        Mono.fromRunnable(this::resume)
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(done -> { },
+                        ex -> log.error("Could not resume enrichment jobs in {}: {}", properties.directory(), ex.getMessage(), ex));
+    }
+
+    void resume() {
+        if (!Files.isDirectory(properties.directory())) {
+            return;
+        }
+        List<Job> unfinished = new ArrayList<>();
+        try (Stream<Path> directories = Files.list(properties.directory())) {
+            for (Path directory : directories.filter(Files::isDirectory).toList()) {
+                Path checkpointFile = directory.resolve(CHECKPOINT_FILE);
+                if (!Files.isRegularFile(checkpointFile)) {
+                    continue;
+                }
+                try {
+                    Job job = new Job(objectMapper.readValue(checkpointFile.toFile(), JobCheckpoint.class));
+                    if (isExpired(job)) {
+                        delete(directory);
+                    } else if (jobs.putIfAbsent(job.id, job) == null && !job.isFinished()) {
+                        unfinished.add(job);
+                    }
+                } catch (IOException ex) {
+                    log.warn("Could not read enrichment job checkpoint {}: {}", checkpointFile, ex.getMessage());
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        unfinished.sort(Comparator.comparing(job -> job.createdAt));
+        for (Job job : unfinished) {
+            log.info("Resuming enrichment job {} after {} results", job.id, job.processed);
+            job.status = Status.QUEUED;
+            submit(job);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        runner.dispose();
+    }
+
+    private synchronized void submit(Job job) {
+        queue.emitNext(job, Sinks.EmitFailureHandler.FAIL_FAST);
+    }
+
+    private Job find(String id) {
+        Job job = jobs.get(id);
+        if (job == null) {
+            throw new JobNotFoundException("No enrichment job found with ID: " + id);
+        }
+        return job;
+    }
+
+    /**
+     * Runs a job from its last checkpoint to the end of its upload. Never fails: a job that can't
+     * be run is marked as failed.
+     */
+    private Mono<Void> run(Job job) {
+        return Flux.using(() -> new JobRun(job),
+                        run -> Flux.<JobInputReader.Row>generate(sink -> {
+                                    try {
+                                        JobInputReader.Row row = run.reader.next();
+                                        if (row != null) {
+                                            sink.next(row);
+                                        } else {
+                                            sink.complete();
+                                        }
+                                    } catch (IOException ex) {
+                                        sink.error(ex);
+                                    }
+                                })
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .flatMapSequential(row -> awaitUpstreamBudget()
+                                                .then(lookup(row.businessId(), 1))
+                                                .map(result -> new RowResult(row, result)),
+                                        properties.concurrency(), 1)
+                                .publishOn(Schedulers.boundedElastic(), properties.concurrency())
+                                .doOnNext(run::write)
+                                .doOnComplete(run::checkpoint),
+                        JobRun::close)
+                .subscribeOn(Schedulers.boundedElastic())
+                .then(Mono.fromRunnable(() -> finish(job, Status.COMPLETED, null)))
+                .onErrorResume(ex -> {
+                    log.error("Enrichment job {} failed: {}", job.id, ex.getMessage(), ex);
+                    return Mono.fromRunnable(() -> finish(job, Status.FAILED, ex.getMessage()));
+                })
+                .then();
+    }
+
+    /**
+     * Completes once fewer than {@code prh.jobs.upstream-queue-limit} PRH calls are waiting for the
+     * rate limiter.
+     */
+    private Mono<Void> awaitUpstreamBudget() {
+        return Mono.fromSupplier(rateLimiter::queued)
+                .filter(queued -> queued < properties.upstreamQueueLimit())
+                .repeatWhenEmpty(emptyRounds -> emptyRounds.delayElements(BUDGET_POLL_INTERVAL))
+                .then();
+    }
+
+    private Mono<CompanyLookupResultDto> lookup(String businessId, int attempt) {
+        return prhService.getCompanyLookupResult(businessId)
+                .flatMap(result -> result.status() == HttpStatus.SERVICE_UNAVAILABLE.value() && attempt < properties.maxAttempts()
+                        ? Mono.delay(properties.retryDelay()).then(lookup(businessId, attempt + 1))
+                        : Mono.just(result));
+    }
+
+    private void finish(Job job, Status status, String error) {
+        job.status = status;
+        job.error = error;
+        job.finishedAt = Instant.now();
+        try {
+            save(job);
+            if (status == Status.COMPLETED) {
+                Files.deleteIfExists(directory(job).resolve(INPUT_FILE));
+            }
+        } catch (IOException ex) {
+            log.warn("Could not save enrichment job {}: {}", job.id, ex.getMessage());
+        }
+        log.info("Enrichment job {} {} after {} results, {} failed", job.id, status, job.processed, job.failed);
+        deleteExpired();
+    }
+
+    private void deleteExpired() {
+        jobs.values().removeIf(job -> {
+            if (!isExpired(job)) {
+                return false;
+            }
+            delete(directory(job));
+            return true;
+        });
+    }
+
+    private boolean isExpired(Job job) {
+        return job.finishedAt != null && job.finishedAt.plus(properties.retention()).isBefore(Instant.now());
+    }
+
+    private void save(Job job) throws IOException {
+        Path checkpointFile = directory(job).resolve(CHECKPOINT_FILE);
+        Path temporary = directory(job).resolve(CHECKPOINT_FILE + ".tmp");
+        Files.write(temporary, objectMapper.writeValueAsBytes(job.checkpoint()));
+        Files.move(temporary, checkpointFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path directory(Job job) {
+        return properties.directory().resolve(job.id);
+    }
+
+    private void delete(Path directory) {
+        try {
+            FileSystemUtils.deleteRecursively(directory);
+        } catch (IOException ex) {
+            log.warn("Could not delete enrichment job directory {}: {}", directory, ex.getMessage());
+        }
+    }
+
+    private static Counter resultCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("prh.jobs.results")
+                .description("Results written by enrichment jobs")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private record RowResult(JobInputReader.Row row, CompanyLookupResultDto result) {
+    }
+
+    /**
+     * A job's live state. Only the thread running the job writes it; status requests read it.
+     */
+    private static final class Job {
+
+        final String id;
+        final JobInputFormat format;
+        final Instant createdAt;
+        final long inputSize;
+        volatile Status status;
+        volatile Instant finishedAt;
+        volatile long inputOffset;
+        volatile long resultsSize;
+        volatile long processed;
+        volatile long failed;
+        volatile String error;
+
+        Job(JobCheckpoint checkpoint) {
+            this.id = checkpoint.id();
+            this.format = checkpoint.format();
+            this.createdAt = checkpoint.createdAt();
+            this.inputSize = checkpoint.inputSize();
+            this.status = checkpoint.status();
+            this.finishedAt = checkpoint.finishedAt();
+            this.inputOffset = checkpoint.inputOffset();
+            this.resultsSize = checkpoint.resultsSize();
+            this.processed = checkpoint.processed();
+            this.failed = checkpoint.failed();
+            this.error = checkpoint.error();
+        }
+
+        boolean isFinished() {
+            return status == Status.COMPLETED || status == Status.FAILED;
+        }
+
+        JobCheckpoint checkpoint() {
+            return new JobCheckpoint(id, format, status, createdAt, finishedAt, inputSize, inputOffset, resultsSize,
+                    processed, failed, error);
+        }
+
+        EnrichmentJobDto toDto() {
+            double progress = status == Status.COMPLETED ? 1 : (double) inputOffset / inputSize;
+            return new EnrichmentJobDto(id, status, createdAt, finishedAt, progress, processed, failed, error);
+        }
+    }
+
+    /**
+     * The open upload and results file of a running job, positioned at its last checkpoint.
+     */
+    private final class JobRun implements Closeable {
+
+        private final Job job;
+        private final JobInputReader reader;
+        private final FileChannel results;
+        private final OutputStream out;
+        private int sinceCheckpoint;
+
+        JobRun(Job job) throws IOException {
+            this.job = job;
+            Path directory = directory(job);
+            this.results = FileChannel.open(directory.resolve(RESULTS_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            results.truncate(job.resultsSize).position(job.resultsSize);
+            this.out = new BufferedOutputStream(Channels.newOutputStream(results), READ_BUFFER_SIZE);
+            this.reader = JobInputReader.open(directory.resolve(INPUT_FILE), job.inputOffset, job.format, objectMapper);
+            job.status = Status.RUNNING;
+            save(job);
+        }
+
+        void write(RowResult rowResult) {
+            try {
+                out.write(objectMapper.writeValueAsBytes(rowResult.result()));
+                out.write('\n');
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            job.inputOffset = rowResult.row().endOffset();
+            job.processed++;
+            if (rowResult.result().status() == HttpStatus.OK.value()) {
+                found.increment();
+            } else {
+                job.failed++;
+                failed.increment();
+            }
+            if (++sinceCheckpoint >= properties.checkpointEvery()) {
+                checkpoint();
+            }
+        }
+
+        /**
+         * Syncs the results written so far and saves how far the job got.
+         */
+        void checkpoint() {
+            try {
+                out.flush();
+                results.force(false);
+                job.resultsSize = results.position();
+                save(job);
+                sinceCheckpoint = 0;
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                reader.close();
+                results.close();
+            } catch (IOException ex) {
+                log.warn("Could not close the files of enrichment job {}: {}", job.id, ex.getMessage());
+            }
+        }
+    }
+}
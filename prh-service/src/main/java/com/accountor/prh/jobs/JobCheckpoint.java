@@ -0,0 +1,24 @@
+package com.accountor.prh.jobs;
+
+import com.accountor.prh.domain.EnrichmentJobDto.Status;
+
+import java.time.Instant;
+
+/**
+ * What is saved of a job in its {@code job.json}. {@code inputOffset} is the byte offset in the
+ * upload after the last row whose result is among the first {@code resultsSize} bytes of the
+ * results file; a resumed job truncates the results to that size and reads on from that offset.
+ */
+record JobCheckpoint(
+        String id,
+        JobInputFormat format,
+        Status status,
+        Instant createdAt,
+        Instant finishedAt,
+        long inputSize,
+        long inputOffset,
+        long resultsSize,
+        long processed,
+        long failed,
+        String error) {
+}
@@ -0,0 +1,27 @@
+package com.accountor.prh.jobs;
+
+import com.accountor.prh.exception.InvalidInputException;
+import org.springframework.http.MediaType;
+
+/**
+ * Formats accepted for enrichment job uploads: one business ID per line, either as the first
+ * column of a CSV file (comma, semicolon or tab separated, with an optional header row) or as
+ * newline-delimited JSON, each line a string or an object with a {@code businessId} field.
+ */
+public enum JobInputFormat {
+
+    CSV,
+    NDJSON;
+
+    public static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
+    public static JobInputFormat of(MediaType contentType) {
+        if (contentType == null || TEXT_CSV.isCompatibleWith(contentType) || MediaType.TEXT_PLAIN.isCompatibleWith(contentType)) {
+            return CSV;
+        }
+        if (MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType)) {
+            return NDJSON;
+        }
+        throw new InvalidInputException("Uploads must be text/csv or application/x-ndjson, not " + contentType + ".");
+    }
+}
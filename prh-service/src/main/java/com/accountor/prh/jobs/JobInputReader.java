@@ -0,0 +1,121 @@
+package com.accountor.prh.jobs;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the business IDs of an uploaded job file one line at a time, tracking the byte offset
+ * after each line so a job can be resumed from a checkpoint without re-reading what it has done.
+ * Blank lines are skipped, as is a CSV header, i.e. a first line without any digit in its first
+ * column. A line that holds no business ID is returned as is, so its lookup reports it as invalid.
+ */
+final class JobInputReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    record Row(String businessId, long endOffset) {
+    }
+
+    private final InputStream in;
+    private final JobInputFormat format;
+    private final ObjectMapper objectMapper;
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+    private long offset;
+
+    private JobInputReader(InputStream in, long offset, JobInputFormat format, ObjectMapper objectMapper) {
+        this.in = in;
+        this.offset = offset;
+        this.format = format;
+        this.objectMapper = objectMapper;
+    }
+
+    static JobInputReader open(Path input, long offset, JobInputFormat format, ObjectMapper objectMapper) throws IOException {
+        FileChannel channel = FileChannel.open(input, StandardOpenOption.READ).position(offset);
+        return new JobInputReader(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE),
+                offset, format, objectMapper);
+    }
+
+    /**
+     * @return The next row, or {@code null} at the end of the file.
+     */
+    Row next() throws IOException {
+        while (true) {
+            boolean firstLine = offset == 0;
+            line.reset();
+            int read;
+            while ((read = in.read()) >= 0) {
+                offset++;
+                if (read == '\n') {
+                    break;
+                }
+                line.write(read);
+            }
+            if (read < 0 && line.size() == 0) {
+                return null;
+            }
+
+            String text = line.toString(StandardCharsets.UTF_8);
+            if (firstLine && !text.isEmpty() && text.charAt(0) == BYTE_ORDER_MARK) {
+                text = text.substring(1);
+            }
+            text = text.strip();
+            if (text.isEmpty()) {
+                continue;
+            }
+            String businessId = format == JobInputFormat.CSV ? firstColumn(text) : jsonBusinessId(text);
+            if (firstLine && format == JobInputFormat.CSV && businessId.chars().noneMatch(Character::isDigit)) {
+                continue;
+            }
+            return new Row(businessId, offset);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private static String firstColumn(String text) {
+        int end = text.length();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ',' || c == ';' || c == '\t') {
+                end = i;
+                break;
+            }
+        }
+        String cell = text.substring(0, end).strip();
+        if (cell.length() >= 2 && cell.startsWith("\"") && cell.endsWith("\"")) {
+            cell = cell.substring(1, cell.length() - 1).strip();
+        }
+        return cell;
+    }
+
+    private String jsonBusinessId(String text) {
+        try {
+            JsonNode node = objectMapper.readTree(text);
+            if (node.isTextual()) {
+                return node.asText();
+            }
+            if (node.hasNonNull("businessId")) {
+                return node.get("businessId").asText();
+            }
+        } catch (JsonProcessingException ex) {
+            // Not JSON; reported as an invalid business ID.
+        }
+        return text;
+    }
+}
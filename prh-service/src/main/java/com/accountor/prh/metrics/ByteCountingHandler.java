@@ -0,0 +1,52 @@
+package com.accountor.prh.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * Counts the bytes read from and written to a connection. Placed first in a channel pipeline it
+ * sees what goes over the socket, i.e. after compression and before decompression. Either counter
+ * may be null to count only one direction. One instance is shared by all connections.
+ */
+@ChannelHandler.Sharable
+final class ByteCountingHandler extends ChannelDuplexHandler {
+
+    private final Counter received;
+    private final Counter sent;
+
+    ByteCountingHandler(Counter received, Counter sent) {
+        this.received = received;
+        this.sent = sent;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (received != null) {
+            received.increment(readableBytes(msg));
+        }
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (sent != null) {
+            sent.increment(readableBytes(msg));
+        }
+        super.write(ctx, msg, promise);
+    }
+
+    private static int readableBytes(Object msg) {
+        if (msg instanceof ByteBuf buffer) {
+            return buffer.readableBytes();
+        }
+        if (msg instanceof ByteBufHolder holder) {
+            return holder.content().readableBytes();
+        }
+        return 0;
+    }
+}
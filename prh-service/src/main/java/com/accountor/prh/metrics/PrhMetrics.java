@@ -0,0 +1,285 @@
+package com.accountor.prh.metrics;
+
+import com.accountor.prh.client.AdaptiveRateLimiter;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.retry.Retry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ChannelHandler;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.server.WebFilter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timers and counters for the lookup hot path. Every meter has a fixed, small set of tag values,
+ * so they are registered once up front and recording never touches the registry.
+ * <ul>
+ *     <li>{@code prh.upstream.requests}: PRH call latency by {@code status} class ({@code 2xx} ... {@code 5xx},
+ *     {@code error} when no response arrived)</li>
+ *     <li>{@code prh.ratelimiter.wait}: time spent waiting for a rate limiter permit;
+ *     {@code prh.ratelimiter.rejections}: calls rejected because the queue was full or the wait too long;
+ *     {@code prh.ratelimiter.backoffs}: rate decreases by {@code reason};
+ *     {@code prh.ratelimiter.rate}, {@code prh.ratelimiter.capacity} and {@code prh.ratelimiter.queue}:
+ *     current and learned calls per second and calls waiting</li>
+ *     <li>{@code prh.retry.attempts}: retries by {@code outcome} ({@code retry}, {@code exhausted})</li>
+ *     <li>{@code prh.circuitbreaker.transitions}: circuit breaker state changes by {@code from} and {@code to}</li>
+ *     <li>{@code prh.mapping}: time to map a PRH company to {@code CompanyDetailsDto}</li>
+ *     <li>{@code prh.lookup}: end-to-end lookup latency by {@code source} and {@code outcome}</li>
+ *     <li>{@code prh.upstream.bytes}: bytes of PRH responses, by {@code stage}: {@code wire} as read from the
+ *     connection, {@code body} after decompression; {@code prh.server.bytes}: bytes of our responses,
+ *     {@code body} as written by the handlers, {@code wire} after compression</li>
+ * </ul>
+ * Latency timers publish percentile histograms for {@code histogram_quantile} in Prometheus.
+ */
+@Component
+public class PrhMetrics {
+
+    public enum LookupSource { CACHE, MIRROR, UPSTREAM, NONE }
+
+    public enum LookupOutcome { FOUND, NOT_FOUND, INVALID, ERROR }
+
+    private static final String[] STATUS_CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    private final MeterRegistry registry;
+    private final Timer[] upstreamByStatusClass = new Timer[STATUS_CLASSES.length];
+    private final Timer upstreamError;
+    private final Timer rateLimiterWait;
+    private final Counter rateLimiterRejections;
+    private final Counter retries;
+    private final Counter retriesExhausted;
+    private final Timer mapping;
+    private final Timer[][] lookups = new Timer[LookupSource.values().length][LookupOutcome.values().length];
+    private final Counter coalescedRequests;
+    private final Counter upstreamBodyBytes;
+    private final Counter serverBodyBytes;
+    private final ChannelHandler upstreamWireBytes;
+    private final ChannelHandler serverWireBytes;
+
+    public PrhMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (int i = 0; i < STATUS_CLASSES.length; i++) {
+            upstreamByStatusClass[i] = upstreamTimer(STATUS_CLASSES[i]);
+        }
+        this.upstreamError = upstreamTimer("error");
+        this.rateLimiterWait = Timer.builder("prh.ratelimiter.wait")
+                .description("Time spent waiting for a PRH rate limiter permit")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(5))
+                .register(registry);
+        this.rateLimiterRejections = Counter.builder("prh.ratelimiter.rejections")
+                .description("PRH calls rejected because the rate limiter queue was full or the wait too long")
+                .register(registry);
+        this.retries = retryCounter("retry");
+        this.retriesExhausted = retryCounter("exhausted");
+        this.mapping = Timer.builder("prh.mapping")
+                .description("Time to map a PRH company to CompanyDetailsDto")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(1_000))
+                .maximumExpectedValue(Duration.ofMillis(10))
+                .register(registry);
+        for (LookupSource source : LookupSource.values()) {
+            for (LookupOutcome outcome : LookupOutcome.values()) {
+                lookups[source.ordinal()][outcome.ordinal()] = Timer.builder("prh.lookup")
+                        .description("End-to-end company lookup latency")
+                        .tag("source", tagValue(source))
+                        .tag("outcome", tagValue(outcome))
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(Duration.ofNanos(1_000))
+                        .maximumExpectedValue(Duration.ofSeconds(30))
+                        .register(registry);
+            }
+        }
+        this.coalescedRequests = registry.counter("prh.client.requests.coalesced");
+        this.upstreamBodyBytes = byteCounter("prh.upstream.bytes", "Bytes of PRH responses", "body");
+        this.upstreamWireBytes = new ByteCountingHandler(
+                byteCounter("prh.upstream.bytes", "Bytes of PRH responses", "wire"), null);
+        this.serverBodyBytes = byteCounter("prh.server.bytes", "Bytes of responses to our clients", "body");
+        this.serverWireBytes = new ByteCountingHandler(
+                null, byteCounter("prh.server.bytes", "Bytes of responses to our clients", "wire"));
+    }
+
+    /**
+     * Netty handler counting the bytes read from PRH connections, to be placed first in their
+     * pipeline so that it counts the compressed bytes.
+     */
+    public ChannelHandler upstreamWireBytes() {
+        return upstreamWireBytes;
+    }
+
+    /**
+     * WebClient filter that counts the bytes of each PRH response body as the client reads it,
+     * i.e. after decompression.
+     */
+    public ExchangeFilterFunction upstreamBodyBytes() {
+        return (request, next) -> next.exchange(request)
+                .map(response -> response.mutate()
+                        .body(body -> body.doOnNext(buffer -> upstreamBodyBytes.increment(buffer.readableByteCount())))
+                        .build());
+    }
+
+    /**
+     * Netty handler counting the bytes written to client connections, to be placed first in their
+     * pipeline so that it counts the compressed bytes.
+     */
+    public ChannelHandler serverWireBytes() {
+        return serverWireBytes;
+    }
+
+    /**
+     * WebFilter that counts the bytes of each response body as the handlers write it, i.e. before
+     * compression.
+     */
+    public WebFilter serverBodyBytes() {
+        return (exchange, chain) -> chain.filter(exchange.mutate()
+                .response(new ServerHttpResponseDecorator(exchange.getResponse()) {
+                    @Override
+                    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                        return super.writeWith(body instanceof Mono<? extends DataBuffer> mono
+                                ? mono.doOnNext(PrhMetrics.this::recordServerBodyBytes)
+                                : Flux.from(body).doOnNext(PrhMetrics.this::recordServerBodyBytes));
+                    }
+
+                    @Override
+                    public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+                        return super.writeAndFlushWith(Flux.from(body)
+                                .map(part -> Flux.from(part).doOnNext(PrhMetrics.this::recordServerBodyBytes)));
+                    }
+                })
+                .build());
+    }
+
+    private void recordServerBodyBytes(DataBuffer buffer) {
+        serverBodyBytes.increment(buffer.readableByteCount());
+    }
+
+    /**
+     * WebClient filter that times each PRH exchange from sending the request until the response
+     * status arrives, tagged with the status class.
+     */
+    public ExchangeFilterFunction upstreamTimer() {
+        return (request, next) -> Mono.defer(() -> {
+            long start = System.nanoTime();
+            return next.exchange(request)
+                    .doOnSuccess(response -> upstreamTimer(response.statusCode()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                    .doOnError(ex -> upstreamError.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    /**
+     * Publishes the current rate, learned capacity and queue length of the adaptive rate limiter as
+     * gauges, and counts its backoffs by reason.
+     */
+    public void bind(AdaptiveRateLimiter rateLimiter) {
+        Gauge.builder("prh.ratelimiter.rate", rateLimiter, AdaptiveRateLimiter::currentRate)
+                .description("PRH calls per second currently allowed")
+                .baseUnit("requests/s")
+                .register(registry);
+        Gauge.builder("prh.ratelimiter.capacity", rateLimiter, AdaptiveRateLimiter::learnedCapacity)
+                .description("PRH calls per second allowed when PRH last pushed back")
+                .baseUnit("requests/s")
+                .register(registry);
+        Gauge.builder("prh.ratelimiter.queue", rateLimiter, AdaptiveRateLimiter::queued)
+                .description("PRH calls waiting for a rate limiter slot")
+                .register(registry);
+
+        AdaptiveRateLimiter.Backoff[] reasons = AdaptiveRateLimiter.Backoff.values();
+        Counter[] backoffs = new Counter[reasons.length];
+        for (AdaptiveRateLimiter.Backoff reason : reasons) {
+            backoffs[reason.ordinal()] = Counter.builder("prh.ratelimiter.backoffs")
+                    .description("Decreases of the PRH rate limit")
+                    .tag("reason", tagValue(reason))
+                    .register(registry);
+        }
+        rateLimiter.onBackoff(reason -> backoffs[reason.ordinal()].increment());
+    }
+
+    /**
+     * Counts retries and exhausted retries of a Resilience4j retry instance.
+     */
+    public void bind(Retry retry) {
+        retry.getEventPublisher()
+                .onRetry(event -> retries.increment())
+                .onError(event -> retriesExhausted.increment());
+    }
+
+    /**
+     * Counts state transitions of a Resilience4j circuit breaker.
+     */
+    public void bind(CircuitBreaker circuitBreaker) {
+        circuitBreaker.getEventPublisher().onStateTransition(event -> Counter.builder("prh.circuitbreaker.transitions")
+                .description("PRH circuit breaker state transitions")
+                .tag("from", event.getStateTransition().getFromState().name().toLowerCase(Locale.ROOT))
+                .tag("to", event.getStateTransition().getToState().name().toLowerCase(Locale.ROOT))
+                .register(registry)
+                .increment());
+    }
+
+    public void recordRateLimiterWait(long nanos) {
+        rateLimiterWait.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRateLimiterRejection() {
+        rateLimiterRejections.increment();
+    }
+
+    public void recordMapping(long nanos) {
+        mapping.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordLookup(LookupSource source, LookupOutcome outcome, long startNanos) {
+        lookups[source.ordinal()][outcome.ordinal()].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public Counter coalescedRequests() {
+        return coalescedRequests;
+    }
+
+    private Timer upstreamTimer(HttpStatusCode status) {
+        int statusClass = status.value() / 100;
+        return statusClass >= 1 && statusClass <= STATUS_CLASSES.length
+                ? upstreamByStatusClass[statusClass - 1]
+                : upstreamError;
+    }
+
+    private Timer upstreamTimer(String statusClass) {
+        return Timer.builder("prh.upstream.requests")
+                .description("Latency of PRH API calls until the response status arrives")
+                .tag("status", statusClass)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry);
+    }
+
+    private Counter byteCounter(String name, String description, String stage) {
+        return Counter.builder(name)
+                .description(description)
+                .baseUnit("bytes")
+                .tag("stage", stage)
+                .register(registry);
+    }
+
+    private Counter retryCounter(String outcome) {
+        return Counter.builder("prh.retry.attempts")
+                .description("Retries of PRH calls")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private static String tagValue(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,394 @@
+package com.accountor.prh.mirror;
+
+import com.accountor.prh.config.PrhMirrorProperties;
+import com.accountor.prh.domain.CompanyDetailsDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local, read-only mirror of the PRH bulk company dump.
+ * <p>
+ * Lookups binary-search a memory-mapped index of business IDs and read one record from the data
+ * file, so neither file is held on the heap and the OS page cache decides how much of the mirror
+ * stays in memory. The whole mirror is considered stale once it is older than
+ * {@code prh.mirror.max-age}; stale and missing entries are reported as empty so callers fall back
+ * to the PRH API. An import replaces the mirror as a whole; lookups and {@link #companies()}
+ * streams that are still reading the previous one keep it open until they finish. Lookup outcomes
+ * are counted in {@code prh.mirror.lookups} by {@code result}.
+ */
+@Component
+public class CompanyMirror implements DisposableBean {
+
+    private static final int READ_AHEAD = 512;
+
+    private final Logger log = LoggerFactory.getLogger(CompanyMirror.class);
+
+    private final PrhMirrorProperties properties;
+    private final CompanyMirrorImporter importer;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter staleHits;
+
+    private volatile Snapshot snapshot;
+    private volatile Runnable importListener = () -> { };
+
+    public CompanyMirror(PrhMirrorProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.importer = new CompanyMirrorImporter(objectMapper);
+        this.hits = lookupCounter(meterRegistry, "hit");
+        this.misses = lookupCounter(meterRegistry, "miss");
+        this.staleHits = lookupCounter(meterRegistry, "stale");
+        Gauge.builder("prh.mirror.entries", this, CompanyMirror::size)
+                .description("Number of companies in the local PRH mirror")
+                .register(meterRegistry);
+        Gauge.builder("prh.mirror.age", this, mirror -> mirror.age().toSeconds())
+                .description("Time since the local PRH mirror was imported")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+
+        if (properties.enabled()) {
+            this.snapshot = openExisting(properties.directory());
+        }
+    }
+
+    /**
+     * Looks up a company in the mirror.
+     *
+     * @param canonicalBusinessId A business ID in the canonical {@code XXXXXXX-X} form.
+     * @return The mirrored company details, or empty if the mirror is disabled, stale, does not hold
+     * the company or could not be read.
+     */
+    public Optional<CompanyDetailsDto> find(String canonicalBusinessId) {
+        Snapshot current = acquire();
+        if (current == null) {
+            return Optional.empty();
+        }
+
+        try {
+            long offset = current.offsetOf(MirrorFiles.key(canonicalBusinessId));
+            if (offset < 0) {
+                misses.increment();
+                return Optional.empty();
+            }
+            if (isStale(current)) {
+                staleHits.increment();
+                return Optional.empty();
+            }
+
+            CompanyDetailsDto details = current.read(offset);
+            hits.increment();
+            return Optional.of(details);
+        } catch (IOException ex) {
+            log.warn("Could not read business ID {} from the PRH mirror: {}", canonicalBusinessId, ex.getMessage());
+            misses.increment();
+            return Optional.empty();
+        } finally {
+            current.release();
+        }
+    }
+
+    /**
+     * Replaces the mirror with the contents of a PRH bulk dump. Blocks for the duration of the
+     * import; lookups keep using the previous mirror until the new one is in place.
+     */
+    public synchronized MirrorImportResult importDump(Path dump) throws IOException {
+        MirrorImportResult result = importer.importDump(dump, properties.directory(), Instant.now());
+        Snapshot previous = snapshot;
+        snapshot = Snapshot.open(properties.directory());
+        if (previous != null) {
+            previous.release();
+        }
+        importListener.run();
+        return result;
+    }
+
+    /**
+     * Registers the single listener run after every import, e.g. to index the new mirror.
+     */
+    public void onImport(Runnable listener) {
+        this.importListener = listener;
+    }
+
+    /**
+     * Reads every company of the mirror in business ID order, one record at a time, e.g. to build a
+     * secondary index. Reads block, so subscribe on a scheduler that allows blocking. Empty if the
+     * mirror is disabled or stale.
+     */
+    public Flux<CompanyDetailsDto> companies() {
+        return Flux.defer(() -> {
+            Snapshot current = acquire();
+            if (current == null) {
+                return Flux.empty();
+            }
+            if (isStale(current)) {
+                current.release();
+                return Flux.empty();
+            }
+            return Flux.<CompanyDetailsDto, Long>generate(() -> 0L, (position, sink) -> {
+                if (position >= current.count()) {
+                    sink.complete();
+                    return position;
+                }
+                try {
+                    sink.next(current.read(current.offsetAt(position)));
+                } catch (IOException ex) {
+                    sink.error(ex);
+                }
+                return position + 1;
+            }, position -> current.release());
+        });
+    }
+
+    /**
+     * Imports {@code prh.mirror.import-file} in the background once the application is ready, if it
+     * is newer than the current mirror.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void importOnStartup() {
+        Path dump = properties.importFile();
+        if (!properties.enabled() || dump == null) {
+            return;
+        }
+
+        Mono.fromCallable(() -> {
+                    if (!Files.isRegularFile(dump)) {
+                        log.warn("PRH mirror import file {} does not exist", dump);
+                        return false;
+                    }
+                    Snapshot current = snapshot;
+                    if (current != null && !Files.getLastModifiedTime(dump).toInstant().isAfter(current.importedAt())) {
+                        log.info("PRH mirror is up to date with {}", dump);
+                        return false;
+                    }
+                    importDump(dump);
+                    return true;
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(imported -> { },
+                        ex -> log.error("Could not import PRH dump {} into the mirror: {}", dump, ex.getMessage(), ex));
+    }
+
+    public long size() {
+        Snapshot current = snapshot;
+        return current != null ? current.count() : 0;
+    }
+
+    public Duration age() {
+        Snapshot current = snapshot;
+        return current != null ? Duration.between(current.importedAt(), Instant.now()) : Duration.ZERO;
+    }
+
+    @Override
+    public void destroy() {
+        Snapshot current = snapshot;
+        snapshot = null;
+        if (current != null) {
+            current.release();
+        }
+    }
+
+    /**
+     * @return The current snapshot, kept open until {@link Snapshot#release released}, or null if
+     * there is no mirror.
+     */
+    private Snapshot acquire() {
+        while (true) {
+            Snapshot current = snapshot;
+            if (current == null || current.retain()) {
+                return current;
+            }
+            // Replaced by an import meanwhile; the next read of the field sees its successor.
+        }
+    }
+
+    private boolean isStale(Snapshot current) {
+        return !current.importedAt().plus(properties.maxAge()).isAfter(Instant.now());
+    }
+
+    private Snapshot openExisting(Path directory) {
+        if (!Files.exists(directory.resolve(MirrorFiles.INDEX_FILE))) {
+            log.info("No PRH mirror found in {}", directory);
+            return null;
+        }
+        try {
+            Snapshot opened = Snapshot.open(directory);
+            log.info("Opened PRH mirror with {} companies imported at {}", opened.count(), opened.importedAt());
+            return opened;
+        } catch (IOException ex) {
+            log.warn("Could not open PRH mirror in {}: {}", directory, ex.getMessage());
+            return null;
+        }
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("prh.mirror.lookups")
+                .description("Lookups served from the local PRH mirror")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * One imported generation of the mirror: the mapped index and an open channel on the data file.
+     * Holds one reference for the mirror and one per reader, and closes the data file when the last
+     * is released.
+     */
+    private static final class Snapshot {
+
+        private final MappedByteBuffer index;
+        private final FileChannel data;
+        private final long count;
+        private final Instant importedAt;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Snapshot(MappedByteBuffer index, FileChannel data, long count, Instant importedAt) {
+            this.index = index;
+            this.data = data;
+            this.count = count;
+            this.importedAt = importedAt;
+        }
+
+        static Snapshot open(Path directory) throws IOException {
+            MappedByteBuffer index;
+            try (FileChannel indexChannel = FileChannel.open(directory.resolve(MirrorFiles.INDEX_FILE), StandardOpenOption.READ)) {
+                index = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, indexChannel.size());
+            }
+            if (index.capacity() < MirrorFiles.INDEX_HEADER_SIZE
+                    || index.getInt(0) != MirrorFiles.INDEX_MAGIC
+                    || index.getInt(4) != MirrorFiles.VERSION) {
+                throw new IOException("Unsupported mirror index format");
+            }
+            long importedAt = index.getLong(8);
+            long count = index.getLong(16);
+            if (MirrorFiles.INDEX_HEADER_SIZE + count * Long.BYTES != index.capacity()) {
+                throw new IOException("Truncated mirror index");
+            }
+
+            FileChannel data = FileChannel.open(directory.resolve(MirrorFiles.DATA_FILE), StandardOpenOption.READ);
+            ByteBuffer header = ByteBuffer.allocate(MirrorFiles.DATA_HEADER_SIZE);
+            readFully(data, header, 0);
+            if (header.getInt(0) != MirrorFiles.DATA_MAGIC || header.getLong(8) != importedAt) {
+                data.close();
+                throw new IOException("Mirror data file does not match its index");
+            }
+            return new Snapshot(index, data, count, Instant.ofEpochMilli(importedAt));
+        }
+
+        /**
+         * Binary-searches the index for a key and returns the record offset, or -1 if absent.
+         */
+        long offsetOf(int key) {
+            long low = 0;
+            long high = count - 1;
+            while (low <= high) {
+                long mid = (low + high) >>> 1;
+                long entry = index.getLong((int) (MirrorFiles.INDEX_HEADER_SIZE + mid * Long.BYTES));
+                int midKey = MirrorFiles.keyOf(entry);
+                if (midKey < key) {
+                    low = mid + 1;
+                } else if (midKey > key) {
+                    high = mid - 1;
+                } else {
+                    return MirrorFiles.offsetOf(entry);
+                }
+            }
+            return -1;
+        }
+
+        long count() {
+            return count;
+        }
+
+        Instant importedAt() {
+            return importedAt;
+        }
+
+        /**
+         * @return false if the data file is already closed.
+         */
+        boolean retain() {
+            int held;
+            do {
+                held = references.get();
+                if (held == 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(held, held + 1));
+            return true;
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                close();
+            }
+        }
+
+        long offsetAt(long position) {
+            return MirrorFiles.offsetOf(index.getLong((int) (MirrorFiles.INDEX_HEADER_SIZE + position * Long.BYTES)));
+        }
+
+        /**
+         * Reads the record at {@code offset}, usually with a single positional read.
+         */
+        CompanyDetailsDto read(long offset) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(READ_AHEAD);
+            int read = readAtLeast(data, buffer, offset, Integer.BYTES);
+            int length = buffer.getInt(0);
+            if (Integer.BYTES + length > buffer.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(Integer.BYTES + length);
+                larger.put(buffer.array(), 0, read);
+                buffer = larger;
+            }
+            readAtLeast(data, buffer, offset, Integer.BYTES + length);
+            return CompanyRecordCodec.decode(buffer.array(), Integer.BYTES, length);
+        }
+
+        private void close() {
+            try {
+                data.close();
+            } catch (IOException ignored) {
+                // Nothing left to release.
+            }
+        }
+
+        private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            readAtLeast(channel, buffer, position, buffer.capacity());
+        }
+
+        /**
+         * Continues reading into {@code buffer} from its current position until it holds at least
+         * {@code minimum} bytes, returning the number of bytes held.
+         */
+        private static int readAtLeast(FileChannel channel, ByteBuffer buffer, long position, int minimum) throws IOException {
+            while (buffer.position() < minimum) {
+                int read = channel.read(buffer, position + buffer.position());
+                if (read < 0) {
+                    throw new IOException("Unexpected end of mirror data file");
+                }
+            }
+            return buffer.position();
+        }
+    }
+}
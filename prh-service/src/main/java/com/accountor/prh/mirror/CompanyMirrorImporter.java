@@ -0,0 +1,206 @@
+package com.accountor.prh.mirror;
+
+import com.accountor.prh.domain.CompanyDetailsDto;
+import com.accountor.prh.domain.CompanyMapper;
+import com.accountor.prh.dto.CompanyApiDto;
+import com.accountor.prh.utils.PrhValidator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Streams a PRH bulk company dump into the mirror's data and index files.
+ * <p>
+ * The dump is either a JSON array of companies or a {@code /companies} style object with a
+ * {@code companies} array, optionally gzip or zip compressed. Companies are parsed one at a time,
+ * mapped and appended to the data file, so the heap only ever holds the company being written plus
+ * one {@code long} index entry per company. Both files are written next to the live mirror and
+ * moved into place once complete.
+ */
+final class CompanyMirrorImporter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int INITIAL_INDEX_CAPACITY = 1 << 16;
+
+    private final Logger log = LoggerFactory.getLogger(CompanyMirrorImporter.class);
+
+    private final ObjectMapper objectMapper;
+    private final PrhValidator validator = new PrhValidator();
+
+    CompanyMirrorImporter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Imports the dump into {@code directory}, replacing any mirror already there.
+     *
+     * @return The number of companies imported and skipped.
+     */
+    MirrorImportResult importDump(Path dump, Path directory, Instant importedAt) throws IOException {
+        Files.createDirectories(directory);
+        Path dataFile = directory.resolve(MirrorFiles.DATA_FILE);
+        Path indexFile = directory.resolve(MirrorFiles.INDEX_FILE);
+        Path dataTmp = directory.resolve(MirrorFiles.DATA_FILE + ".tmp");
+        Path indexTmp = directory.resolve(MirrorFiles.INDEX_FILE + ".tmp");
+
+        long[] index = new long[INITIAL_INDEX_CAPACITY];
+        int count = 0;
+        long skipped = 0;
+
+        try (InputStream in = openDump(dump);
+             JsonParser parser = objectMapper.getFactory().createParser(in);
+             FileChannel dataChannel = FileChannel.open(dataTmp, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(dataChannel), BUFFER_SIZE));
+            out.writeInt(MirrorFiles.DATA_MAGIC);
+            out.writeInt(MirrorFiles.VERSION);
+            out.writeLong(importedAt.toEpochMilli());
+            long offset = MirrorFiles.DATA_HEADER_SIZE;
+
+            positionAtCompanies(parser);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                CompanyApiDto company = objectMapper.readValue(parser, CompanyApiDto.class);
+                String businessId = company.businessId() != null
+                        ? validator.normalize(company.businessId().value())
+                        : null;
+                if (businessId == null) {
+                    skipped++;
+                    continue;
+                }
+
+                CompanyDetailsDto details = CompanyMapper.toCompanyDetailsDto(CompanyMapper.toCompanyDetails(company));
+                byte[] record = CompanyRecordCodec.encode(details);
+                out.writeInt(record.length);
+                out.write(record);
+
+                if (count == index.length) {
+                    index = Arrays.copyOf(index, index.length + (index.length >> 1));
+                }
+                index[count++] = MirrorFiles.indexEntry(MirrorFiles.key(businessId), offset);
+                offset += Integer.BYTES + record.length;
+            }
+
+            out.flush();
+            dataChannel.force(true);
+        }
+
+        Arrays.sort(index, 0, count);
+        int distinct = deduplicate(index, count);
+        writeIndex(indexTmp, index, distinct, importedAt);
+
+        Files.move(dataTmp, dataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(indexTmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        log.info("Imported {} companies from {} into the PRH mirror ({} skipped, {} duplicates)",
+                distinct, dump, skipped, count - distinct);
+        return new MirrorImportResult(distinct, skipped, importedAt);
+    }
+
+    private InputStream openDump(Path dump) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(dump), BUFFER_SIZE);
+        String fileName = dump.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (fileName.endsWith(".gz")) {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        }
+        if (fileName.endsWith(".zip")) {
+            ZipInputStream zip = new ZipInputStream(in);
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (!entry.isDirectory()) {
+                    return zip;
+                }
+            }
+            zip.close();
+            throw new IOException("No company dump found in " + dump);
+        }
+        return in;
+    }
+
+    /**
+     * Advances the parser to the start of the companies array, so the next token is the first
+     * company or the end of the array.
+     */
+    private static void positionAtCompanies(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.START_ARRAY) {
+            return;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new IOException("PRH dump must be a JSON array or object, found " + token);
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("companies".equals(field) && value == JsonToken.START_ARRAY) {
+                return;
+            }
+            parser.skipChildren();
+        }
+        throw new IOException("PRH dump has no companies array");
+    }
+
+    /**
+     * Drops repeated business IDs from the sorted index, keeping the record written last.
+     */
+    private static int deduplicate(long[] index, int count) {
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct > 0 && MirrorFiles.keyOf(index[distinct - 1]) == MirrorFiles.keyOf(index[i])) {
+                index[distinct - 1] = index[i];
+            } else {
+                index[distinct++] = index[i];
+            }
+        }
+        return distinct;
+    }
+
+    private static void writeIndex(Path indexFile, long[] index, int count, Instant importedAt) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.putInt(MirrorFiles.INDEX_MAGIC)
+                    .putInt(MirrorFiles.VERSION)
+                    .putLong(importedAt.toEpochMilli())
+                    .putLong(count);
+            for (int i = 0; i < count; i++) {
+                if (buffer.remaining() < Long.BYTES) {
+                    writeFully(channel, buffer);
+                }
+                buffer.putLong(index[i]);
+            }
+            writeFully(channel, buffer);
+            channel.force(true);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
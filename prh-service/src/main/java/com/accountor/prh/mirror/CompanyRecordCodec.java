@@ -0,0 +1,104 @@
+package com.accountor.prh.mirror;
+
+import com.accountor.prh.domain.CompanyDetailsDto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Compact binary form of {@link CompanyDetailsDto} used by the mirror's data file and the cache
+ * store's log: a bit mask of the fields present, followed by those fields in declaration order.
+ * Strings are written with {@link DataOutputStream#writeUTF(String)}, the registration date as its
+ * epoch day and the last modification time as epoch seconds and nanos of the PRH local time.
+ */
+public final class CompanyRecordCodec {
+
+    private static final int BUSINESS_ID = 1;
+    private static final int NAME = 1 << 1;
+    private static final int REGISTRATION_DATE = 1 << 2;
+    private static final int WEBSITE_URL = 1 << 3;
+    private static final int STREET = 1 << 4;
+    private static final int CITY = 1 << 5;
+    private static final int POSTAL_CODE = 1 << 6;
+    private static final int MAIN_BUSINESS_LINE_CODE = 1 << 7;
+    private static final int MAIN_BUSINESS_LINE_DESCRIPTION = 1 << 8;
+    private static final int LAST_MODIFIED = 1 << 9;
+
+    private CompanyRecordCodec() {}
+
+    public static byte[] encode(CompanyDetailsDto details) throws IOException {
+        int mask = mask(BUSINESS_ID, details.businessId())
+                | mask(NAME, details.name())
+                | mask(REGISTRATION_DATE, details.registrationDate())
+                | mask(WEBSITE_URL, details.websiteUrl())
+                | mask(STREET, details.street())
+                | mask(CITY, details.city())
+                | mask(POSTAL_CODE, details.postalCode())
+                | mask(MAIN_BUSINESS_LINE_CODE, details.mainBusinessLineCode())
+                | mask(MAIN_BUSINESS_LINE_DESCRIPTION, details.mainBusinessLineDescription())
+                | mask(LAST_MODIFIED, details.lastModified());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeShort(mask);
+        writeString(out, details.businessId());
+        writeString(out, details.name());
+        if (details.registrationDate() != null) {
+            out.writeInt((int) details.registrationDate().toEpochDay());
+        }
+        writeString(out, details.websiteUrl());
+        writeString(out, details.street());
+        writeString(out, details.city());
+        writeString(out, details.postalCode());
+        writeString(out, details.mainBusinessLineCode());
+        writeString(out, details.mainBusinessLineDescription());
+        if (details.lastModified() != null) {
+            out.writeLong(details.lastModified().toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(details.lastModified().getNano());
+        }
+        return bytes.toByteArray();
+    }
+
+    public static CompanyDetailsDto decode(byte[] record, int offset, int length) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record, offset, length));
+        int mask = in.readUnsignedShort();
+        return new CompanyDetailsDto(
+                readString(in, mask, BUSINESS_ID),
+                readString(in, mask, NAME),
+                (mask & REGISTRATION_DATE) != 0 ? LocalDate.ofEpochDay(in.readInt()) : null,
+                readString(in, mask, WEBSITE_URL),
+                readString(in, mask, STREET),
+                readString(in, mask, CITY),
+                readString(in, mask, POSTAL_CODE),
+                readString(in, mask, MAIN_BUSINESS_LINE_CODE),
+                readString(in, mask, MAIN_BUSINESS_LINE_DESCRIPTION),
+                (mask & LAST_MODIFIED) != 0 ? LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC) : null);
+    }
+
+    private static int mask(int bit, Object value) {
+        return value != null ? bit : 0;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        try {
+            out.writeUTF(value);
+        } catch (UTFDataFormatException ex) {
+            // Longer than 64 KB when encoded; no PRH field we keep comes close.
+            throw new IOException("Field value too long for mirror record: " + value.length() + " chars", ex);
+        }
+    }
+
+    private static String readString(DataInputStream in, int mask, int bit) throws IOException {
+        return (mask & bit) != 0 ? in.readUTF() : null;
+    }
+}
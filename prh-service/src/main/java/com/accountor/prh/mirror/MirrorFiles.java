@@ -0,0 +1,57 @@
+package com.accountor.prh.mirror;
+
+/**
+ * Layout of the mirror's on-disk files.
+ * <p>
+ * {@value #DATA_FILE} starts with a 16 byte header (magic, version, import time in epoch millis)
+ * followed by length-prefixed {@link CompanyRecordCodec} records in dump order.
+ * <p>
+ * {@value #INDEX_FILE} starts with a 24 byte header (magic, version, import time, entry count)
+ * followed by one {@code long} per company, sorted ascending. Each entry packs the eight digits of
+ * the business ID into the upper {@value #KEY_BITS} bits and the record's offset in the data file
+ * into the lower {@value #OFFSET_BITS} bits, so sorting the entries sorts by business ID.
+ */
+final class MirrorFiles {
+
+    static final String DATA_FILE = "companies.dat";
+    static final String INDEX_FILE = "companies.idx";
+
+    static final int DATA_MAGIC = 0x50524844;   // "PRHD"
+    static final int INDEX_MAGIC = 0x50524849;  // "PRHI"
+    static final int VERSION = 1;
+
+    static final int DATA_HEADER_SIZE = 16;
+    static final int INDEX_HEADER_SIZE = 24;
+
+    static final int KEY_BITS = 27;
+    static final int OFFSET_BITS = Long.SIZE - KEY_BITS;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+
+    private MirrorFiles() {}
+
+    /**
+     * Packs the digits of a canonical {@code XXXXXXX-X} business ID into an int.
+     */
+    static int key(String canonicalBusinessId) {
+        int key = 0;
+        for (int i = 0; i < 7; i++) {
+            key = key * 10 + (canonicalBusinessId.charAt(i) - '0');
+        }
+        return key * 10 + (canonicalBusinessId.charAt(8) - '0');
+    }
+
+    static long indexEntry(int key, long offset) {
+        if (offset > OFFSET_MASK) {
+            throw new IllegalStateException("Mirror data file exceeds " + OFFSET_MASK + " bytes");
+        }
+        return ((long) key << OFFSET_BITS) | offset;
+    }
+
+    static int keyOf(long indexEntry) {
+        return (int) (indexEntry >>> OFFSET_BITS);
+    }
+
+    static long offsetOf(long indexEntry) {
+        return indexEntry & OFFSET_MASK;
+    }
+}
@@ -0,0 +1,13 @@
+package com.accountor.prh.mirror;
+
+import java.time.Instant;
+
+/**
+ * Outcome of importing a PRH bulk dump into the {@link CompanyMirror}.
+ *
+ * @param imported   Number of distinct companies written to the mirror.
+ * @param skipped    Number of companies left out because they had no valid business ID.
+ * @param importedAt Time of the import, from which the mirror's age is measured.
+ */
+public record MirrorImportResult(long imported, long skipped, Instant importedAt) {
+}
@@ -0,0 +1,267 @@
+package com.accountor.prh.refresh;
+
+import com.accountor.prh.api.PrhClient;
+import com.accountor.prh.autocomplete.CompanyNameIndex;
+import com.accountor.prh.cache.CompanyCache;
+import com.accountor.prh.cache.LastKnownGoodStore;
+import com.accountor.prh.config.PrhDeltaRefreshProperties;
+import com.accountor.prh.domain.CompanyDetailsDto;
+import com.accountor.prh.domain.CompanyMapper;
+import com.accountor.prh.domain.CompanySearchCriteria;
+import com.accountor.prh.dto.CompanyApiDto;
+import com.accountor.prh.dto.CompanyResultApiDto;
+import com.accountor.prh.exception.CompanyNotFoundException;
+import com.accountor.prh.utils.PrhValidator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Scheduled incremental refresh of the companies held locally. Instead of reloading each cached
+ * business ID, every {@code prh.delta-refresh.interval} it asks PRH's {@code /companies} for the
+ * companies registered since the watermark, one registration date at a time, and replaces the
+ * matching entries of the {@link CompanyCache}, its durable store and the {@link LastKnownGoodStore}
+ * a page at a time. Companies that are not held locally are not added to them, but every company
+ * returned is added to the {@link CompanyNameIndex}, so newly registered companies can be suggested.
+ * <p>
+ * PRH's {@code /companies} has no filter on modification date, so this only finds new
+ * registrations; changes to companies registered earlier still reach the cache through
+ * {@code prh.cache.refresh-after}. The refresh is off by default for that reason.
+ * <p>
+ * The watermark is the first registration date not yet fully refreshed. It advances after each
+ * completed day before today and is saved to {@code watermark-file}, so a restart or a failed run
+ * continues from there; each run starts again {@code overlap} before it to pick up registrations
+ * PRH publishes late. Today is queried again on every run.
+ * <p>
+ * {@code prh.delta.lag} is the age of the data, i.e. the time since the last run that completed;
+ * records are counted in {@code prh.delta.records} by {@code result} (updated, skipped) and runs in
+ * {@code prh.delta.runs} by {@code result} (success, failure).
+ */
+@Component
+public class CompanyDeltaRefresher implements DisposableBean {
+
+    private final Logger log = LoggerFactory.getLogger(CompanyDeltaRefresher.class);
+
+    private final PrhDeltaRefreshProperties properties;
+    private final PrhClient prhClient;
+    private final PrhValidator validator;
+    private final CompanyCache companyCache;
+    private final LastKnownGoodStore lastKnownGood;
+    private final CompanyNameIndex nameIndex;
+    private final ObjectMapper objectMapper;
+    private final ZoneId zone;
+    private final Counter updated;
+    private final Counter skipped;
+    private final Counter succeeded;
+    private final Counter failed;
+
+    private volatile DeltaWatermark watermark;
+    private volatile Disposable runs;
+
+    public CompanyDeltaRefresher(PrhDeltaRefreshProperties properties, PrhClient prhClient, PrhValidator validator,
+                                 CompanyCache companyCache, LastKnownGoodStore lastKnownGood,
+                                 CompanyNameIndex nameIndex, ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.prhClient = prhClient;
+        this.validator = validator;
+        this.companyCache = companyCache;
+        this.lastKnownGood = lastKnownGood;
+        this.nameIndex = nameIndex;
+        this.objectMapper = objectMapper;
+        this.zone = ZoneId.of(properties.zone());
+        this.updated = recordCounter(meterRegistry, "updated");
+        this.skipped = recordCounter(meterRegistry, "skipped");
+        this.succeeded = runCounter(meterRegistry, "success");
+        this.failed = runCounter(meterRegistry, "failure");
+        Gauge.builder("prh.delta.lag", this, CompanyDeltaRefresher::lagSeconds)
+                .description("Time since the last completed incremental refresh")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Loads the watermark and starts the scheduled runs once the application is ready; the first
+     * run starts right away.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleOnStartup() {
+        if (!properties.enabled()) {
+            return;
+        }
+
+        runs = Flux.interval(Duration.ZERO, properties.interval(), Schedulers.boundedElastic())
+                .onBackpressureDrop()
+                .concatMap(tick -> refresh().onErrorResume(ex -> Mono.empty()))
+                .subscribe();
+    }
+
+    /**
+     * Runs one incremental refresh.
+     *
+     * @return A Mono emitting the number of local entries updated. It fails if PRH could not be
+     * queried or the watermark not saved; the days completed before stay refreshed.
+     */
+    public Mono<Long> refresh() {
+        return Mono.fromCallable(this::watermark)
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(start -> {
+                    Instant started = Instant.now();
+                    LocalDate today = LocalDate.now(zone);
+                    LocalDate from = start.registeredFrom().minusDays(properties.overlap().toDays());
+                    if (from.isAfter(today)) {
+                        from = today;
+                    }
+                    log.info("Refreshing companies registered from {} to {}", from, today);
+
+                    return Flux.fromStream(from.datesUntil(today.plusDays(1)))
+                            .concatMap(date -> refreshDay(date)
+                                    .flatMap(count -> date.isBefore(today)
+                                            ? save(new DeltaWatermark(max(watermark.registeredFrom(), date.plusDays(1)),
+                                            watermark.refreshedAt())).thenReturn(count)
+                                            : Mono.just(count)))
+                            .reduce(0L, Long::sum)
+                            .flatMap(count -> save(new DeltaWatermark(watermark.registeredFrom(), started)).thenReturn(count));
+                })
+                .doOnSuccess(count -> {
+                    succeeded.increment();
+                    log.info("Incremental refresh updated {} companies", count);
+                })
+                .doOnError(ex -> {
+                    failed.increment();
+                    log.error("Incremental refresh failed. Cause: {}", ex.getMessage());
+                });
+    }
+
+    /**
+     * @return The saved watermark, loading it on first use. Without one, the watermark is
+     * {@code initial-lookback} before today.
+     */
+    synchronized DeltaWatermark watermark() throws IOException {
+        if (watermark == null) {
+            Path file = properties.watermarkFile();
+            watermark = Files.exists(file)
+                    ? objectMapper.readValue(file.toFile(), DeltaWatermark.class)
+                    : new DeltaWatermark(LocalDate.now(zone).minusDays(properties.initialLookback().toDays()), null);
+        }
+        return watermark;
+    }
+
+    @Override
+    public void destroy() {
+        Disposable current = runs;
+        if (current != null) {
+            current.dispose();
+        }
+    }
+
+    private Mono<Long> refreshDay(LocalDate date) {
+        CompanySearchCriteria criteria = CompanySearchCriteria.registeredBetween(date, date);
+        return page(criteria, 1)
+                .flatMapMany(firstPage -> {
+                    int pageSize = firstPage.results().size();
+                    int pages = pageSize == 0 ? 1 : (int) ((firstPage.totalResults() + pageSize - 1) / pageSize);
+                    return Flux.range(2, pages - 1)
+                            .concatMap(page -> page(criteria, page))
+                            .startWith(firstPage);
+                })
+                .map(page -> apply(page.results()))
+                .reduce(0L, Long::sum);
+    }
+
+    /**
+     * PRH answers a date without registrations with either an empty page or a 404.
+     */
+    private Mono<CompanyResultApiDto> page(CompanySearchCriteria criteria, int page) {
+        return prhClient.searchCompanies(criteria, page)
+                .filter(result -> result.results() != null)
+                .onErrorResume(CompanyNotFoundException.class, ex -> Mono.empty())
+                .defaultIfEmpty(new CompanyResultApiDto(0, List.of()));
+    }
+
+    /**
+     * Replaces the local entries of one page of companies in bulk and indexes every company's name.
+     *
+     * @return The number of companies that were held locally.
+     */
+    private long apply(List<CompanyApiDto> companies) {
+        Map<String, CompanyDetailsDto> page = new HashMap<>();
+        for (CompanyApiDto company : companies) {
+            CompanyDetailsDto details = CompanyMapper.toCompanyDetailsDto(CompanyMapper.toCompanyDetails(company));
+            String canonicalId = validator.normalize(details.businessId());
+            if (canonicalId != null) {
+                page.put(canonicalId, details);
+                nameIndex.add(canonicalId, details);
+            }
+        }
+        Set<String> replaced = new HashSet<>(companyCache.putIfCached(page));
+        replaced.addAll(lastKnownGood.putIfStored(page));
+        updated.increment(replaced.size());
+        skipped.increment(page.size() - replaced.size());
+        return replaced.size();
+    }
+
+    private Mono<Void> save(DeltaWatermark next) {
+        return Mono.<Void>fromCallable(() -> {
+                    Path file = properties.watermarkFile();
+                    Files.createDirectories(file.toAbsolutePath().getParent());
+                    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+                    Files.write(temporary, objectMapper.writeValueAsBytes(next));
+                    Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    watermark = next;
+                    return null;
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private double lagSeconds() {
+        DeltaWatermark current = watermark;
+        if (current == null || current.refreshedAt() == null) {
+            return Double.NaN;
+        }
+        return Duration.between(current.refreshedAt(), Instant.now()).toMillis() / 1000.0;
+    }
+
+    private static LocalDate max(LocalDate a, LocalDate b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static Counter recordCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("prh.delta.records")
+                .description("Companies returned by incremental refreshes")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static Counter runCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("prh.delta.runs")
+                .description("Incremental refresh runs")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,13 @@
+package com.accountor.prh.refresh;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Progress of the incremental refresh, saved between runs.
+ *
+ * @param registeredFrom First registration date whose companies have not all been refreshed yet.
+ * @param refreshedAt    Start of the last run that completed, or null if none has.
+ */
+record DeltaWatermark(LocalDate registeredFrom, Instant refreshedAt) {
+}
@@ -1,9 +1,31 @@
 package com.accountor.prh.service;
 
 import com.accountor.prh.domain.CompanyDetailsDto;
+import com.accountor.prh.domain.CompanyLookupResultDto;
+import com.accountor.prh.domain.CompanySearchCriteria;
+import com.accountor.prh.domain.CompanySection;
+import com.accountor.prh.domain.CompanySectionsDto;
+import com.accountor.prh.domain.CompanySuggestionDto;
+import com.accountor.prh.domain.LastKnownCompanyDetails;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Set;
+
 public interface PrhService {
 
     Mono<CompanyDetailsDto> getCompanyDetails(String businessId);
+
+    Mono<CompanySectionsDto> getCompanySections(String businessId, Set<CompanySection> sections);
+
+    Flux<CompanyLookupResultDto> getCompanyDetailsBatch(List<String> businessIds);
+
+    Mono<CompanyLookupResultDto> getCompanyLookupResult(String businessId);
+
+    Mono<LastKnownCompanyDetails> getLastKnownCompanyDetails(String businessId);
+
+    Flux<CompanyDetailsDto> searchCompanies(CompanySearchCriteria criteria, Integer limit);
+
+    Mono<List<CompanySuggestionDto>> suggestCompanies(String query, Integer limit);
 }
@@ -1,68 +1,406 @@
 package com.accountor.prh.service.impl;
 
 import com.accountor.prh.api.PrhClient;
+import com.accountor.prh.autocomplete.CompanyNameIndex;
+import com.accountor.prh.cache.CompanyCache;
+import com.accountor.prh.cache.CompanyCacheEntry;
+import com.accountor.prh.cache.LastKnownGoodStore;
+import com.accountor.prh.config.PrhBatchProperties;
+import com.accountor.prh.config.PrhSearchProperties;
 import com.accountor.prh.domain.CompanyDetailsDto;
+import com.accountor.prh.domain.CompanyLookupResultDto;
 import com.accountor.prh.domain.CompanyMapper;
+import com.accountor.prh.domain.CompanySearchCriteria;
+import com.accountor.prh.domain.CompanySection;
+import com.accountor.prh.domain.CompanySectionsDto;
+import com.accountor.prh.domain.CompanySuggestionDto;
+import com.accountor.prh.domain.LastKnownCompanyDetails;
+import com.accountor.prh.dto.CompanyApiDto;
+import com.accountor.prh.dto.CompanyResultApiDto;
 import com.accountor.prh.exception.CompanyNotFoundException;
 import com.accountor.prh.exception.InvalidInputException;
 import com.accountor.prh.exception.MappingException;
+import com.accountor.prh.exception.PrhUnavailableException;
+import com.accountor.prh.metrics.PrhMetrics;
+import com.accountor.prh.metrics.PrhMetrics.LookupOutcome;
+import com.accountor.prh.metrics.PrhMetrics.LookupSource;
+import com.accountor.prh.mirror.CompanyMirror;
 import com.accountor.prh.service.PrhService;
 import com.accountor.prh.utils.PrhValidator;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
 @Service
 @RequiredArgsConstructor
 public class PrhServiceImpl implements PrhService {
 
     private final PrhClient prhClient;
     private final PrhValidator validator;
+    private final CompanyCache companyCache;
+    private final CompanyMirror companyMirror;
+    private final LastKnownGoodStore lastKnownGood;
+    private final CompanyNameIndex nameIndex;
+    private final PrhBatchProperties batchProperties;
+    private final PrhSearchProperties searchProperties;
+    private final PrhMetrics metrics;
     private final Logger log = LoggerFactory.getLogger(PrhServiceImpl.class);
 
     /**
-     * Retrieves company details for a given business ID.
+     * Retrieves company details for a given business ID, serving repeat lookups from the
+     * {@link CompanyCache} and, on a miss, fresh entries from the local {@link CompanyMirror}.
+     * Cached companies past the cache's soft TTL are still returned immediately while
+     * {@link CompanyCache#refreshIfStale} reloads them from PRH in the background.
+     * PRH is only called when neither has the company. Reads from the durable cache store and the
+     * mirror go to disk, so they run on {@link Schedulers#boundedElastic()} rather than the event
+     * loop, and are skipped while the store does not hold the company or the mirror is empty. The
+     * lookup is timed in {@code prh.lookup} by where the answer came from. The business ID is
+     * validated, including its check digit, and normalised to the canonical {@code XXXXXXX-X} form
+     * before any lookup.
      *
      * @param businessId The Finnish Business ID (y-tunnus) to search for.
      * @return A Mono emitting CompanyDetailsDto if found, or an error if not found or an API issue occurs.
+     * @throws InvalidInputException    If the business ID is malformed or its check digit is wrong.
      * @throws CompanyNotFoundException If no company is found for the given business ID.
      * @throws MappingException         If there's an issue mapping the external API response to our domain.
      */
     @Override
     public Mono<CompanyDetailsDto> getCompanyDetails(String businessId) {
         log.info("Requesting details for business ID: {}", businessId);
+        long start = System.nanoTime();
 
-            if (!validator.validate(businessId)) {
+            String canonicalId = validator.normalize(businessId);
+            if (canonicalId == null) {
+                metrics.recordLookup(LookupSource.NONE, LookupOutcome.INVALID, start);
                 return Mono.error(
                         new InvalidInputException("Business ID must be in the format XXXXXXX-X.")
                 );
             }
 
+            Optional<CompanyCacheEntry> cached = companyCache.get(canonicalId);
+            if (cached.isPresent()) {
+                log.debug("Cache hit for business ID: {}", canonicalId);
+                companyCache.refreshIfStale(canonicalId, cached.get(), this::fetchCompanyDetails);
+                metrics.recordLookup(LookupSource.CACHE,
+                        cached.get().isNotFound() ? LookupOutcome.NOT_FOUND : LookupOutcome.FOUND, start);
+                return fromCacheEntry(canonicalId, cached.get());
+            }
 
-            return prhClient.getCompaniesByBusinessId(businessId)
+            return companyCache.getStored(canonicalId)
+                    .flatMap(stored -> {
+                        log.debug("Cache store hit for business ID: {}", canonicalId);
+                        companyCache.refreshIfStale(canonicalId, stored, this::fetchCompanyDetails);
+                        metrics.recordLookup(LookupSource.CACHE, LookupOutcome.FOUND, start);
+                        return fromCacheEntry(canonicalId, stored);
+                    })
+                    .switchIfEmpty(Mono.defer(() -> fromMirrorOrUpstream(canonicalId, start)));
+    }
+
+    private Mono<CompanyDetailsDto> fromMirrorOrUpstream(String canonicalId, long start) {
+        if (companyMirror.size() == 0) {
+            return fetchAndCache(canonicalId, start);
+        }
+        return Mono.fromCallable(() -> companyMirror.find(canonicalId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(mirrored -> mirrored
+                        .map(details -> {
+                            log.debug("Mirror hit for business ID: {}", canonicalId);
+                            companyCache.put(canonicalId, details);
+                            metrics.recordLookup(LookupSource.MIRROR, LookupOutcome.FOUND, start);
+                            return Mono.just(details);
+                        })
+                        .orElseGet(() -> fetchAndCache(canonicalId, start)));
+    }
+
+    private Mono<CompanyDetailsDto> fetchAndCache(String canonicalId, long start) {
+        return fetchCompanyDetails(canonicalId)
+                .doOnNext(details -> {
+                    companyCache.put(canonicalId, details);
+                    metrics.recordLookup(LookupSource.UPSTREAM, LookupOutcome.FOUND, start);
+                })
+                .doOnError(ex -> {
+                    if (ex instanceof CompanyNotFoundException) {
+                        companyCache.putNotFound(canonicalId);
+                        metrics.recordLookup(LookupSource.UPSTREAM, LookupOutcome.NOT_FOUND, start);
+                    } else {
+                        metrics.recordLookup(LookupSource.UPSTREAM, LookupOutcome.ERROR, start);
+                    }
+                });
+    }
+
+    /**
+     * Retrieves the optional sections of a company, which {@link #getCompanyDetails} does not decode.
+     * The company is fetched from PRH with every section once and kept unmapped in the
+     * {@link CompanyCache} for {@code prh.cache.ttl}; each call maps only the sections it asks for.
+     * A fetch also refreshes the company's details in the cache, so a following
+     * {@link #getCompanyDetails} for the same business ID does not call PRH again. A business ID
+     * cached as not found fails without calling PRH. The {@link CompanyMirror} holds no sections, so
+     * it can't answer here.
+     *
+     * @param businessId The Finnish Business ID (y-tunnus).
+     * @param sections   The sections to map. Without any, PRH is not called.
+     * @return A Mono emitting the requested sections, or an error as {@link #getCompanyDetails} would.
+     * @throws InvalidInputException    If the business ID is malformed or its check digit is wrong.
+     * @throws CompanyNotFoundException If no company is found for the given business ID.
+     */
+    @Override
+    public Mono<CompanySectionsDto> getCompanySections(String businessId, Set<CompanySection> sections) {
+        if (sections.isEmpty()) {
+            return Mono.just(CompanySectionsDto.NONE);
+        }
+        String canonicalId = validator.normalize(businessId);
+        if (canonicalId == null) {
+            return Mono.error(new InvalidInputException("Business ID must be in the format XXXXXXX-X."));
+        }
+        Optional<CompanyCacheEntry> cached = companyCache.get(canonicalId);
+        if (cached.isPresent() && cached.get().isNotFound()) {
+            return Mono.error(new CompanyNotFoundException("Company not found for business ID: " + canonicalId));
+        }
+        return Mono.justOrEmpty(companyCache.getSections(canonicalId))
+                .switchIfEmpty(Mono.defer(() -> fetchFullCompany(canonicalId)))
+                .map(company -> CompanyMapper.toCompanySections(company, sections));
+    }
+
+    /**
+     * Looks up several business IDs at once. IDs are normalised first, so different spellings of the
+     * same business ID are looked up only once. At most
+     * {@code prh.batch.concurrency} lookups run at the same time, and results are emitted in
+     * completion order rather than input order.
+     *
+     * @param businessIds The Finnish Business IDs (y-tunnus) to search for.
+     * @return A Flux emitting one CompanyLookupResultDto per distinct business ID, carrying either the
+     * company details or the status and message of the failed lookup.
+     * @throws InvalidInputException If the batch is empty or larger than {@code prh.batch.max-size}.
+     */
+    @Override
+    public Flux<CompanyLookupResultDto> getCompanyDetailsBatch(List<String> businessIds) {
+        Set<String> distinctIds = new LinkedHashSet<>();
+        if (businessIds != null) {
+            for (String businessId : businessIds) {
+                if (businessId != null) {
+                    String canonicalId = validator.normalize(businessId);
+                    distinctIds.add(canonicalId != null ? canonicalId : businessId.trim());
+                }
+            }
+        }
+
+        if (distinctIds.isEmpty()) {
+            return Flux.error(new InvalidInputException("At least one business ID must be provided."));
+        }
+        if (distinctIds.size() > batchProperties.maxSize()) {
+            return Flux.error(new InvalidInputException(
+                    "A batch may contain at most " + batchProperties.maxSize() + " distinct business IDs."));
+        }
+
+        log.info("Requesting details for a batch of {} business IDs", distinctIds.size());
+
+        return Flux.fromIterable(distinctIds)
+                .flatMap(this::getCompanyLookupResult, batchProperties.concurrency());
+    }
+
+    /**
+     * Looks up one business ID the way a batch does: a failed lookup is answered with
+     * last-known-good details if PRH is unavailable, and otherwise reported as the status and
+     * message the single-lookup endpoint would have answered with, rather than as an error.
+     *
+     * @param businessId The Finnish Business ID (y-tunnus), in any form accepted by {@link PrhValidator#normalize}.
+     * @return A Mono emitting the result, keyed by the canonical business ID if the ID is valid.
+     */
+    @Override
+    public Mono<CompanyLookupResultDto> getCompanyLookupResult(String businessId) {
+        String canonicalId = validator.normalize(businessId);
+        String resultId = canonicalId != null ? canonicalId : businessId.trim();
+        return getCompanyDetails(resultId)
+                .map(details -> CompanyLookupResultDto.found(resultId, details))
+                .onErrorResume(ex -> lastKnownResult(resultId, ex)
+                        .switchIfEmpty(Mono.fromSupplier(() -> toFailedResult(resultId, ex))));
+    }
+
+    /**
+     * Returns the company details last fetched from PRH, for answering while PRH is unavailable
+     * (see {@link PrhUnavailableException}). Companies PRH has since reported as not found, or
+     * fetched longer than {@code prh.fallback.max-age} ago, are not returned.
+     *
+     * @param businessId The Finnish Business ID (y-tunnus), in any form accepted by {@link PrhValidator#normalize}.
+     * @return A Mono emitting the last known details, or empty if there are none.
+     */
+    @Override
+    public Mono<LastKnownCompanyDetails> getLastKnownCompanyDetails(String businessId) {
+        String canonicalId = validator.normalize(businessId);
+        if (canonicalId == null) {
+            return Mono.empty();
+        }
+        return Mono.justOrEmpty(lastKnownGood.find(canonicalId))
+                .doOnNext(lastKnown -> log.warn("PRH is unavailable, serving details of business ID {} fetched at {}",
+                        canonicalId, lastKnown.fetchedAt()));
+    }
+
+    /**
+     * Searches PRH for companies matching the criteria and streams their details as PRH returns them.
+     * The first page tells how many pages there are; later pages are requested
+     * {@code prh.search.prefetch-pages} ahead of the page being streamed, and never beyond what the
+     * limit needs. Every company streamed is also put in the {@link CompanyCache}, so following
+     * lookups of search results don't call PRH again.
+     *
+     * @param criteria The search filters. At least one must be set.
+     * @param limit    Maximum number of companies to stream, or null for {@code prh.search.default-limit}.
+     * @return A Flux emitting the details of the matching companies in PRH's order.
+     * @throws InvalidInputException If no filter is set or the limit is outside 1..{@code prh.search.max-limit}.
+     */
+    @Override
+    public Flux<CompanyDetailsDto> searchCompanies(CompanySearchCriteria criteria, Integer limit) {
+        if (criteria == null || criteria.isEmpty()) {
+            return Flux.error(new InvalidInputException("At least one of name, location or postCode must be given."));
+        }
+        int maxResults = limit != null ? limit : searchProperties.defaultLimit();
+        if (maxResults < 1 || maxResults > searchProperties.maxLimit()) {
+            return Flux.error(new InvalidInputException(
+                    "The limit must be between 1 and " + searchProperties.maxLimit() + "."));
+        }
+
+        log.info("Searching companies by {} for at most {} results", criteria, maxResults);
+
+        return searchPage(criteria, 1)
+                .flatMapMany(firstPage -> {
+                    int pageSize = firstPage.results().size();
+                    long total = Math.min(firstPage.totalResults(), maxResults);
+                    int pages = pageSize == 0 ? 1 : (int) ((total + pageSize - 1) / pageSize);
+                    return Flux.range(2, pages - 1)
+                            .flatMapSequential(page -> searchPage(criteria, page), searchProperties.prefetchPages() + 1)
+                            .startWith(firstPage);
+                })
+                .concatMapIterable(CompanyResultApiDto::results)
+                .take(maxResults)
+                .map(company -> {
+                    long mappingStart = System.nanoTime();
+                    CompanyDetailsDto details = CompanyMapper.toCompanyDetailsDto(CompanyMapper.toCompanyDetails(company));
+                    metrics.recordMapping(System.nanoTime() - mappingStart);
+                    return details;
+                })
+                .doOnNext(details -> {
+                    String canonicalId = validator.normalize(details.businessId());
+                    if (canonicalId != null) {
+                        companyCache.put(canonicalId, details);
+                        lastKnownGood.put(canonicalId, details);
+                    }
+                });
+    }
+
+    /**
+     * Suggests companies for typeahead from the local {@link CompanyNameIndex}, without calling PRH.
+     * Only companies the service has already seen, through lookups, searches or the mirror, are
+     * suggested.
+     *
+     * @param query The typed text, matched against the start of any word of the name or the business ID.
+     * @param limit Maximum number of suggestions, or null for {@code prh.autocomplete.default-limit}.
+     * @return A Mono emitting the matching companies, possibly none.
+     * @throws InvalidInputException If the query is blank or the limit is outside 1..{@code prh.autocomplete.max-limit}.
+     */
+    @Override
+    public Mono<List<CompanySuggestionDto>> suggestCompanies(String query, Integer limit) {
+        if (query == null || query.isBlank()) {
+            return Mono.error(new InvalidInputException("A query must be given."));
+        }
+        int maxSuggestions = limit != null ? limit : nameIndex.defaultLimit();
+        if (maxSuggestions < 1 || maxSuggestions > nameIndex.maxLimit()) {
+            return Mono.error(new InvalidInputException(
+                    "The limit must be between 1 and " + nameIndex.maxLimit() + "."));
+        }
+        return Mono.fromSupplier(() -> nameIndex.suggest(query, maxSuggestions));
+    }
+
+    /**
+     * PRH answers a search without matches with either an empty page or a 404; both end the search.
+     */
+    private Mono<CompanyResultApiDto> searchPage(CompanySearchCriteria criteria, int page) {
+        return prhClient.searchCompanies(criteria, page)
+                .filter(result -> result.results() != null)
+                .onErrorResume(CompanyNotFoundException.class, ex -> Mono.empty())
+                .defaultIfEmpty(new CompanyResultApiDto(0, List.of()));
+    }
+
+    private Mono<CompanyLookupResultDto> lastKnownResult(String businessId, Throwable ex) {
+        if (!(ex instanceof PrhUnavailableException)) {
+            return Mono.empty();
+        }
+        return getLastKnownCompanyDetails(businessId)
+                .map(lastKnown -> CompanyLookupResultDto.stale(
+                        businessId, lastKnown.details(), lastKnown.ageSeconds(Instant.now())));
+    }
+
+    private static CompanyLookupResultDto toFailedResult(String businessId, Throwable ex) {
+        ResponseStatus responseStatus = AnnotatedElementUtils.findMergedAnnotation(ex.getClass(), ResponseStatus.class);
+        HttpStatus status = responseStatus != null ? responseStatus.code() : HttpStatus.INTERNAL_SERVER_ERROR;
+        return CompanyLookupResultDto.failed(businessId, status.value(), ex.getMessage());
+    }
 
-                    .publishOn(Schedulers.boundedElastic())
+    private Mono<CompanyDetailsDto> fromCacheEntry(String businessId, CompanyCacheEntry entry) {
+        if (entry.isNotFound()) {
+            return Mono.error(new CompanyNotFoundException("Company not found for business ID: " + businessId));
+        }
+        return Mono.just(entry.details());
+    }
 
-                    .flatMap(response -> {
+    private Mono<CompanyApiDto> fetchFullCompany(String businessId) {
+        return prhClient.getFullCompaniesByBusinessId(businessId)
+                .<CompanyApiDto>handle((response, sink) -> {
+                    if (response == null || response.results() == null || response.results().isEmpty()) {
+                        sink.error(new CompanyNotFoundException("Company not found for business ID: " + businessId));
+                        return;
+                    }
+                    sink.next(response.results().get(0));
+                })
+                .doOnNext(company -> {
+                    long mappingStart = System.nanoTime();
+                    CompanyDetailsDto details = CompanyMapper.toCompanyDetailsDto(CompanyMapper.toCompanyDetails(company));
+                    metrics.recordMapping(System.nanoTime() - mappingStart);
+                    companyCache.putSections(businessId, company);
+                    companyCache.put(businessId, details);
+                    lastKnownGood.put(businessId, details);
+                })
+                .doOnError(CompanyNotFoundException.class, ex -> {
+                    companyCache.putNotFound(businessId);
+                    lastKnownGood.invalidate(businessId);
+                });
+    }
 
+    private Mono<CompanyDetailsDto> fetchCompanyDetails(String businessId) {
+            return prhClient.getCompaniesByBusinessId(businessId)
+                    .<CompanyDetailsDto>handle((response, sink) -> {
                         if (response == null || response.totalResults() == 0) {
                             log.info("No company data or empty list found for business ID: {}", businessId);
-                            return Mono.error(
-                                    new CompanyNotFoundException("Company not found for business ID: " + businessId));
+                            sink.error(new CompanyNotFoundException("Company not found for business ID: " + businessId));
+                            return;
+                        }
+
+                        List<CompanyApiDto> companies = response.results();
+                        if (companies == null || companies.isEmpty()) {
+                            sink.error(new MappingException(
+                                    "API returned non-empty totalResults but an empty company list for business ID: " + businessId));
+                            return;
                         }
 
-                        return Mono.justOrEmpty(response.results().stream().findFirst())
-                                .map(CompanyMapper::toCompanyDetails)
-                                .map(CompanyMapper::toCompanyDetailsDto)
-                                .doOnNext(details ->
-                                        log.info("Successfully mapped company details for businessId: {}", details.businessId()))
-                                .switchIfEmpty(Mono.error(
-                                        new MappingException(
-                                                "API returned non-empty totalResults but an empty company list for business ID: " + businessId)));
-                    });
+                        long mappingStart = System.nanoTime();
+                        CompanyDetailsDto details = CompanyMapper.toCompanyDetailsDto(CompanyMapper.toCompanyDetails(companies.get(0)));
+                        metrics.recordMapping(System.nanoTime() - mappingStart);
+                        log.info("Successfully mapped company details for businessId: {}", details.businessId());
+                        sink.next(details);
+                    })
+                    .doOnNext(details -> lastKnownGood.put(businessId, details))
+                    .doOnError(CompanyNotFoundException.class, ex -> lastKnownGood.invalidate(businessId));
     }
 
 
@@ -1,22 +1,129 @@
 package com.accountor.prh.utils;
 
-import com.accountor.prh.exception.InvalidInputException;
 import org.springframework.stereotype.Component;
 
 @Component
 public class PrhValidator {
 
-    private static final String BUSINESS_ID_REGEX = "^\\d{7}-\\d{1}$";
+    private static final int INVALID = -1;
+    private static final int[] CHECK_DIGIT_WEIGHTS = {7, 9, 10, 5, 8, 4, 2};
 
     /**
-     * Checks if the provided business ID is in a valid format.
+     * Checks if the provided business ID is a valid Finnish business ID (y-tunnus) in any of the
+     * forms accepted by {@link #normalize(String)}, including a correct modulus-11 check digit.
+     * Does not allocate.
      *
      * @param businessId The business ID to validate.
-     * @return false if the business ID is null or does not match the required regex format.
+     * @return false if the business ID is null, malformed or has a wrong check digit.
      */
-
     public boolean validate(String businessId) {
-        return businessId != null && businessId.matches(BUSINESS_ID_REGEX);
+        return parse(businessId) != INVALID;
+    }
+
+    /**
+     * Converts a business ID into its canonical {@code XXXXXXX-X} form so caches and request
+     * coalescing see a single key per company. Accepted variants are surrounding or embedded
+     * whitespace, a missing leading zero ({@code 112038-9}), a missing hyphen ({@code 01120389})
+     * and the VAT number form ({@code FI01120389}).
+     *
+     * @param businessId The business ID as entered by the caller.
+     * @return The canonical business ID, the same instance if it already was canonical, or null if
+     * the business ID is malformed or has a wrong check digit.
+     */
+    public String normalize(String businessId) {
+        int digits = parse(businessId);
+        if (digits == INVALID) {
+            return null;
+        }
+        if (isCanonical(businessId)) {
+            return businessId;
+        }
+
+        char[] canonical = new char[9];
+        canonical[8] = (char) ('0' + digits % 10);
+        canonical[7] = '-';
+        int body = digits / 10;
+        for (int i = 6; i >= 0; i--) {
+            canonical[i] = (char) ('0' + body % 10);
+            body /= 10;
+        }
+        return new String(canonical);
+    }
+
+    /**
+     * Parses the seven body digits and the check digit into one int, or returns {@link #INVALID}.
+     */
+    private static int parse(String businessId) {
+        if (businessId == null) {
+            return INVALID;
+        }
+
+        int length = businessId.length();
+        int index = skipWhitespace(businessId, 0);
+        if (index + 1 < length
+                && (businessId.charAt(index) == 'F' || businessId.charAt(index) == 'f')
+                && (businessId.charAt(index + 1) == 'I' || businessId.charAt(index + 1) == 'i')) {
+            index += 2;
+        }
+
+        int value = 0;
+        int digitCount = 0;
+        int digitsAfterHyphen = -1;
+        for (; index < length; index++) {
+            char c = businessId.charAt(index);
+            if (c >= '0' && c <= '9') {
+                if (++digitCount > 8) {
+                    return INVALID;
+                }
+                value = value * 10 + (c - '0');
+                if (digitsAfterHyphen >= 0) {
+                    digitsAfterHyphen++;
+                }
+            } else if (c == '-' && digitsAfterHyphen < 0 && digitCount > 0) {
+                digitsAfterHyphen = 0;
+            } else if (!Character.isWhitespace(c)) {
+                return INVALID;
+            }
+        }
+
+        if (digitCount < 7 || (digitsAfterHyphen >= 0 && digitsAfterHyphen != 1)) {
+            return INVALID;
+        }
+        return hasValidCheckDigit(value) ? value : INVALID;
+    }
+
+    private static boolean hasValidCheckDigit(int digits) {
+        int checkDigit = digits % 10;
+        int body = digits / 10;
+        int sum = 0;
+        for (int i = CHECK_DIGIT_WEIGHTS.length - 1; i >= 0; i--) {
+            sum += (body % 10) * CHECK_DIGIT_WEIGHTS[i];
+            body /= 10;
+        }
+
+        int remainder = sum % 11;
+        if (remainder == 1) {
+            return false;
+        }
+        return checkDigit == (remainder == 0 ? 0 : 11 - remainder);
     }
 
-}
\ No newline at end of file
+    private static boolean isCanonical(String businessId) {
+        if (businessId.length() != 9 || businessId.charAt(7) != '-') {
+            return false;
+        }
+        for (int i = 0; i < 7; i++) {
+            if (businessId.charAt(i) < '0' || businessId.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipWhitespace(String value, int index) {
+        while (index < value.length() && Character.isWhitespace(value.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+}
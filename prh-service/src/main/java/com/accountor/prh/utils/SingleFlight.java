@@ -0,0 +1,62 @@
+package com.accountor.prh.utils;
+
+import io.micrometer.core.instrument.Counter;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Collapses concurrent calls for the same key into a single in-flight {@link Mono}.
+ * <p>
+ * The first subscriber for a key starts the call; subscribers arriving while it is still
+ * running join it and receive the same value or error. The upstream call is only cancelled
+ * once every subscriber has cancelled, and the key is released as soon as the call
+ * terminates, so later calls always start fresh.
+ *
+ * @param <K> The key type.
+ * @param <V> The value type emitted by the call.
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter collapsedCalls;
+
+    /**
+     * @param collapsedCalls Incremented each time a call joins one that is already in flight.
+     */
+    public SingleFlight(Counter collapsedCalls) {
+        this.collapsedCalls = collapsedCalls;
+    }
+
+    public Mono<V> execute(K key, Function<K, Mono<V>> call) {
+        return Mono.defer(() -> {
+            Flight flight = new Flight();
+            Mono<V> shared = inFlight.computeIfAbsent(key, k -> flight.start(k, call));
+            if (shared != flight.mono) {
+                collapsedCalls.increment();
+            }
+            return shared;
+        });
+    }
+
+    /**
+     * @return The number of keys that currently have a call in flight.
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private final class Flight {
+
+        private Mono<V> mono;
+
+        private Mono<V> start(K key, Function<K, Mono<V>> call) {
+            mono = call.apply(key)
+                    .doFinally(signal -> inFlight.remove(key, mono))
+                    .share();
+            return mono;
+        }
+    }
+}
@@ -73,7 +73,7 @@ class PrhServiceApplicationTests {
     @Test
     @DisplayName("Should return 404 when external API returns empty results")
     void getCompanyDetails_shouldReturn404_whenExternalApiReturnsEmptyResults() {
-        String businessId = "0123456-7";
+        String businessId = "0123456-2";
         String expectedDetailMessage = "Company not found for business ID: " + businessId;
 
         String emptyResultsJson = """
@@ -0,0 +1,97 @@
+package com.accountor.prh.autocomplete;
+
+import com.accountor.prh.cache.CompanyCache;
+import com.accountor.prh.config.PrhAutocompleteProperties;
+import com.accountor.prh.config.PrhCacheProperties;
+import com.accountor.prh.config.PrhMirrorProperties;
+import com.accountor.prh.domain.CompanyDetailsDto;
+import com.accountor.prh.domain.CompanySuggestionDto;
+import com.accountor.prh.mirror.CompanyMirror;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompanyNameIndexTests {
+
+    @TempDir
+    Path tempDir;
+
+    private final CompanyCache companyCache = new CompanyCache(
+            new PrhCacheProperties(100, Duration.ofMinutes(10), Duration.ofMinutes(1), Duration.ofMinutes(5),
+                    false, false, 100),
+            new SimpleMeterRegistry());
+
+    private CompanyNameIndex newIndex() {
+        CompanyMirror disabledMirror = new CompanyMirror(
+                new PrhMirrorProperties(false, tempDir.resolve("mirror"), null, Duration.ofDays(30)),
+                Jackson2ObjectMapperBuilder.json().build(), new SimpleMeterRegistry());
+        return new CompanyNameIndex(new PrhAutocompleteProperties(true, 1000, Integer.MAX_VALUE, 10, 50),
+                companyCache, disabledMirror, new SimpleMeterRegistry());
+    }
+
+    private static CompanyDetailsDto company(String businessId, String name) {
+        return new CompanyDetailsDto(businessId, name, null, null, null, null, null, null, null, null);
+    }
+
+    @Test
+    @DisplayName("Should fold case, Finnish accents and punctuation")
+    void fold_shouldRemoveCaseAccentsAndPunctuation() {
+        assertThat(CompanyNameIndex.fold("  Äänekosken Öljy-Huolto Oy ")).isEqualTo("aanekosken oljy huolto oy");
+        assertThat(CompanyNameIndex.fold("Ålands Båt & Co.")).isEqualTo("alands bat co");
+        assertThat(CompanyNameIndex.fold("0112038-9")).isEqualTo("0112038 9");
+    }
+
+    @Test
+    @DisplayName("Should suggest companies by any word of the name or by business ID, before and after a merge")
+    void suggest_shouldMatchWordStartsAndBusinessIds() {
+        CompanyNameIndex index = newIndex();
+        index.add("0100002-9", company("0100002-9", "Äänekosken Öljy Oy"));
+        index.add("0112038-9", company("0112038-9", "Example Oyj"));
+        index.add("0116297-6", company("0116297-6", "Öljy-Example Ab"));
+
+        for (int round = 0; round < 2; round++) {
+            assertThat(index.suggest("olj", 10)).extracting(CompanySuggestionDto::businessId)
+                    .containsExactly("0116297-6", "0100002-9");
+            assertThat(index.suggest("EXAMP", 10)).extracting(CompanySuggestionDto::name)
+                    .containsExactly("Öljy-Example Ab", "Example Oyj");
+            assertThat(index.suggest("0112", 10)).extracting(CompanySuggestionDto::businessId)
+                    .containsExactly("0112038-9");
+            assertThat(index.suggest("oy", 1)).hasSize(1);
+            assertThat(index.suggest("zz", 10)).isEmpty();
+            index.mergeDelta();
+        }
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should replace the indexed name of a renamed company")
+    void add_shouldReplaceRenamedCompany() {
+        CompanyNameIndex index = newIndex();
+        index.add("0100002-9", company("0100002-9", "Old Name Oy"));
+        index.mergeDelta();
+
+        index.add("0100002-9", company("0100002-9", "New Name Oy"));
+        assertThat(index.suggest("old", 10)).isEmpty();
+        index.mergeDelta();
+
+        assertThat(index.suggest("name", 10)).containsExactly(new CompanySuggestionDto("0100002-9", "New Name Oy"));
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should index companies put in the company cache")
+    void add_shouldIndexCachedCompanies() {
+        CompanyNameIndex index = newIndex();
+
+        companyCache.put("0112038-9", company("0112038-9", "Example Oyj"));
+
+        assertThat(index.suggest("exa", 10)).containsExactly(new CompanySuggestionDto("0112038-9", "Example Oyj"));
+    }
+}
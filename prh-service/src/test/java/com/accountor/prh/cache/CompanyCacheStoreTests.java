@@ -0,0 +1,178 @@
+package com.accountor.prh.cache;
+
+import com.accountor.prh.config.PrhCacheProperties;
+import com.accountor.prh.config.PrhCacheStoreProperties;
+import com.accountor.prh.domain.CompanyDetailsDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompanyCacheStoreTests {
+
+    private static final CompanyDetailsDto COMPANY = new CompanyDetailsDto("0112038-9", "Example Oyj",
+            LocalDate.of(1978, 3, 15), null, "Keilaranta 1", "ESPOO", "02150", "62010", "Computer programming",
+            LocalDateTime.of(2024, 5, 1, 12, 30));
+
+    private static final PrhCacheProperties CACHE_PROPERTIES = new PrhCacheProperties(100, Duration.ofMinutes(10),
+            Duration.ofMinutes(1), Duration.ofMinutes(5), false, false, 100);
+
+    @TempDir
+    Path tempDir;
+
+    private CompanyCacheStore store;
+
+    @AfterEach
+    void tearDown() {
+        if (store != null) {
+            store.destroy();
+        }
+    }
+
+    /**
+     * A fresh cache backed by a store on {@code tempDir}, as after a restart.
+     */
+    private CompanyCache restart() throws IOException {
+        return restart(CACHE_PROPERTIES);
+    }
+
+    private CompanyCache restart(PrhCacheProperties cacheProperties) throws IOException {
+        if (store != null) {
+            store.destroy();
+        }
+        CompanyCache cache = new CompanyCache(cacheProperties, new SimpleMeterRegistry());
+        store = new CompanyCacheStore(new PrhCacheStoreProperties(true, tempDir, Duration.ofSeconds(1), 500),
+                cacheProperties, cache, new SimpleMeterRegistry());
+        store.load();
+        return cache;
+    }
+
+    @Test
+    @DisplayName("Should serve companies cached before a restart from the store, keeping their age")
+    void get_shouldReadCompaniesWrittenBeforeRestart() throws IOException {
+        CompanyCache cache = restart();
+        cache.put(COMPANY.businessId(), COMPANY);
+        store.flush();
+
+        CompanyCache restarted = restart();
+
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(restarted.get(COMPANY.businessId())).isEmpty();
+        CompanyCacheEntry entry = restarted.getStored(COMPANY.businessId()).block();
+        assertThat(entry).isNotNull();
+        assertThat(entry.details()).isEqualTo(COMPANY);
+        assertThat(entry.writtenAtNanos()).isLessThanOrEqualTo(System.nanoTime());
+        assertThat(restarted.get(COMPANY.businessId())).contains(entry);
+        assertThat(restarted.getStored("0100002-9").blockOptional()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should serve pending writes before they are flushed and forget removed companies")
+    void get_shouldHonourPendingWritesAndRemovals() throws IOException {
+        CompanyCache cache = restart();
+        cache.put(COMPANY.businessId(), COMPANY);
+        assertThat(store.find(COMPANY.businessId())).get()
+                .extracting(CompanyCacheStore.StoredCompany::details)
+                .isEqualTo(COMPANY);
+        store.flush();
+
+        cache.putNotFound(COMPANY.businessId());
+        store.flush();
+
+        CompanyCache restarted = restart();
+        assertThat(store.size()).isZero();
+        assertThat(restarted.getStored(COMPANY.businessId()).blockOptional()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should cut off a torn record at the end of the log and keep the intact ones")
+    void load_shouldIgnoreTornTail() throws IOException {
+        CompanyCache cache = restart();
+        cache.put(COMPANY.businessId(), COMPANY);
+        store.flush();
+        cache.put("0100002-9", new CompanyDetailsDto("0100002-9", "Test Company", null, null, null, null, null,
+                null, null, null));
+        store.flush();
+        store.destroy();
+        store = null;
+
+        Path log = tempDir.resolve(CompanyCacheStore.LOG_FILE);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        CompanyCache restarted = restart();
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(restarted.getStored(COMPANY.businessId()).blockOptional()).isPresent();
+        assertThat(restarted.getStored("0100002-9").blockOptional()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should compact the log once most records are superseded")
+    void flush_shouldCompactSupersededRecords() throws IOException {
+        CompanyCache cache = restart();
+        for (int i = 0; i < 1500; i++) {
+            cache.put(COMPANY.businessId(), COMPANY);
+            store.flush();
+        }
+        long compactedSize;
+        try (FileChannel channel = FileChannel.open(tempDir.resolve(CompanyCacheStore.LOG_FILE))) {
+            compactedSize = channel.size();
+        }
+        assertThat(compactedSize).isLessThan(1024L * 100);
+
+        CompanyCache restarted = restart();
+        assertThat(restarted.getStored(COMPANY.businessId()).blockOptional()).get()
+                .extracting(CompanyCacheEntry::details)
+                .isEqualTo(COMPANY);
+    }
+
+    @Test
+    @DisplayName("Should keep only the companies cached most recently beyond prh.cache.maximum-size")
+    void flush_shouldEvictOldestBeyondMaximumSize() throws Exception {
+        CompanyCache cache = restart(new PrhCacheProperties(2, Duration.ofMinutes(10), Duration.ofMinutes(1),
+                Duration.ofMinutes(5), false, false, 100));
+        for (String businessId : new String[] {"0100002-9", "0112038-9", "0116297-6"}) {
+            cache.put(businessId, COMPANY);
+            Thread.sleep(5);
+        }
+        store.flush();
+
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(store.contains("0100002-9")).isFalse();
+        assertThat(store.contains("0112038-9")).isTrue();
+        assertThat(store.contains("0116297-6")).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should drop expired companies when loading and compact the log they leave behind")
+    void load_shouldDropExpiredCompaniesAndCompact() throws Exception {
+        PrhCacheProperties shortTtl = new PrhCacheProperties(2000, Duration.ofMillis(200), Duration.ofMillis(100),
+                Duration.ofMillis(100), false, false, 100);
+        CompanyCache cache = restart(shortTtl);
+        for (int i = 0; i < 1100; i++) {
+            cache.put(String.format("%07d-0", i), COMPANY);
+        }
+        store.flush();
+        assertThat(store.size()).isEqualTo(1100);
+        Thread.sleep(300);
+
+        restart(shortTtl);
+
+        assertThat(store.size()).isZero();
+        try (FileChannel channel = FileChannel.open(tempDir.resolve(CompanyCacheStore.LOG_FILE))) {
+            assertThat(channel.size()).isLessThan(1024L);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.accountor.prh.client;
+
+import com.accountor.prh.config.PrhRateLimitProperties;
+import com.accountor.prh.exception.CompanyNotFoundException;
+import com.accountor.prh.exception.ExternalApiException;
+import com.accountor.prh.exception.PrhThrottledException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class AdaptiveRateLimiterTests {
+
+    private static final long MILLIS = 1_000_000L;
+
+    private long now;
+    private final List<AdaptiveRateLimiter.Backoff> backoffs = new ArrayList<>();
+    private AdaptiveRateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        now = 0;
+        rateLimiter = limiter(10, 3, Duration.ofMillis(500));
+    }
+
+    private AdaptiveRateLimiter limiter(double initialRate, int maxQueueSize, Duration maxWait) {
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(new PrhRateLimitProperties(initialRate, 1, 100, 1, 0.5,
+                Duration.ofSeconds(1), maxQueueSize, maxWait, Duration.ofSeconds(2), Duration.ofSeconds(10)),
+                () -> now);
+        limiter.onBackoff(backoffs::add);
+        return limiter;
+    }
+
+    @Test
+    @DisplayName("Should pace calls at the current rate and queue the ones that can't start right away")
+    void reserve_shouldPaceCallsAtCurrentRate() {
+        assertThat(rateLimiter.reserve(now)).isZero();
+        assertThat(rateLimiter.reserve(now)).isEqualTo(100 * MILLIS);
+        assertThat(rateLimiter.reserve(now)).isEqualTo(200 * MILLIS);
+        assertThat(rateLimiter.queued()).isEqualTo(2);
+
+        now = 1_000 * MILLIS;
+        assertThat(rateLimiter.reserve(now)).isZero();
+    }
+
+    @Test
+    @DisplayName("Should reject calls on arrival when their slot is beyond the maximum wait or the queue is full")
+    void reserve_shouldRejectCalls_whenWaitTooLongOrQueueFull() {
+        rateLimiter = limiter(10, 100, Duration.ofMillis(500));
+        for (int i = 0; i < 6; i++) {
+            rateLimiter.reserve(now);
+        }
+        assertThat(rateLimiter.reserve(now)).isNegative();
+        assertThat(rateLimiter.queued()).isEqualTo(5);
+
+        AdaptiveRateLimiter smallQueue = limiter(10, 1, Duration.ofSeconds(5));
+        assertThat(smallQueue.reserve(now)).isZero();
+        assertThat(smallQueue.reserve(now)).isPositive();
+        assertThat(smallQueue.reserve(now)).isNegative();
+    }
+
+    @Test
+    @DisplayName("Should raise the rate additively on healthy calls and halve it once per burst of failures")
+    void feedback_shouldIncreaseAdditivelyAndDecreaseMultiplicatively() {
+        for (int i = 0; i < 10; i++) {
+            rateLimiter.onSuccess(now);
+        }
+        assertThat(rateLimiter.currentRate()).isCloseTo(11, within(0.1));
+
+        long burstStart = now;
+        now += 10 * MILLIS;
+        rateLimiter.onError(burstStart, new ExternalApiException("Server error", "503", null));
+        rateLimiter.onError(burstStart, new ExternalApiException("Server error", "502", null));
+        assertThat(rateLimiter.currentRate()).isCloseTo(5.5, within(0.1));
+        assertThat(rateLimiter.learnedCapacity()).isCloseTo(11, within(0.1));
+
+        now += 10 * MILLIS;
+        rateLimiter.onError(now - MILLIS, new CompanyNotFoundException("Company not found"));
+        assertThat(rateLimiter.currentRate()).isGreaterThan(5.5);
+        assertThat(backoffs).containsExactly(AdaptiveRateLimiter.Backoff.SERVER_ERROR);
+    }
+
+    @Test
+    @DisplayName("Should treat calls slower than the latency threshold as overload")
+    void onSuccess_shouldDecrease_whenCallIsSlow() {
+        long start = now;
+        now += 1_500 * MILLIS;
+        rateLimiter.onSuccess(start);
+
+        assertThat(rateLimiter.currentRate()).isEqualTo(5);
+        assertThat(backoffs).containsExactly(AdaptiveRateLimiter.Backoff.LATENCY);
+    }
+
+    @Test
+    @DisplayName("Should hold back every call for Retry-After, falling back to the default and capping it")
+    void onError_shouldPauseCalls_whenThrottled() {
+        rateLimiter = limiter(10, 100, Duration.ofSeconds(30));
+        rateLimiter.onError(now, new PrhThrottledException("Too many requests", "429", null, Duration.ofSeconds(3)));
+        assertThat(rateLimiter.reserve(now)).isEqualTo(3_000 * MILLIS);
+
+        now += 5_000 * MILLIS;
+        rateLimiter.onError(now, new PrhThrottledException("Too many requests", "429", null, null));
+        assertThat(rateLimiter.reserve(now)).isEqualTo(2_000 * MILLIS);
+
+        now += 5_000 * MILLIS;
+        rateLimiter.onError(now, new PrhThrottledException("Too many requests", "429", null, Duration.ofMinutes(5)));
+        assertThat(rateLimiter.reserve(now)).isEqualTo(10_000 * MILLIS);
+        assertThat(rateLimiter.currentRate()).isEqualTo(1.25);
+    }
+
+    @Test
+    @DisplayName("Should spread queued calls out at the current rate after a Retry-After pause instead of releasing them at once")
+    void reschedule_shouldPaceQueuedCallsAfterPause() {
+        rateLimiter = limiter(10, 100, Duration.ofMillis(1_300));
+        assertThat(rateLimiter.reserve(now)).isZero();
+        assertThat(rateLimiter.reserve(now)).isEqualTo(100 * MILLIS);
+        assertThat(rateLimiter.reserve(now)).isEqualTo(200 * MILLIS);
+
+        now = 50 * MILLIS;
+        rateLimiter.onError(0, new PrhThrottledException("Too many requests", "429", null, Duration.ofSeconds(1)));
+        assertThat(rateLimiter.currentRate()).isEqualTo(5);
+        assertThat(rateLimiter.reserve(now)).isEqualTo(1_000 * MILLIS);
+
+        now = 100 * MILLIS;
+        assertThat(rateLimiter.reschedule(now, 0)).isEqualTo(1_150 * MILLIS);
+        now = 200 * MILLIS;
+        assertThat(rateLimiter.reschedule(now, 0)).isNegative();
+
+        now = 1_050 * MILLIS;
+        assertThat(rateLimiter.reschedule(now, 0)).isZero();
+        assertThat(rateLimiter.reserve(now)).isEqualTo(400 * MILLIS);
+    }
+}
@@ -1,25 +1,70 @@
 package com.accountor.prh.client;
 
+import com.accountor.prh.autocomplete.CompanyNameIndex;
+import com.accountor.prh.cache.CompanyCache;
+import com.accountor.prh.cache.LastKnownGoodStore;
+import com.accountor.prh.config.PrhBatchProperties;
+import com.accountor.prh.config.PrhCacheProperties;
+import com.accountor.prh.config.PrhFallbackProperties;
+import com.accountor.prh.config.PrhHedgingProperties;
+import com.accountor.prh.config.PrhHttpProperties;
+import com.accountor.prh.config.PrhRateLimitProperties;
+import com.accountor.prh.config.PrhSearchProperties;
+import com.accountor.prh.config.WebClientConfig;
+import com.accountor.prh.domain.CompanyDetailsDto;
+import com.accountor.prh.domain.CompanySearchCriteria;
 import com.accountor.prh.exception.CompanyNotFoundException;
 import com.accountor.prh.exception.ExternalApiException;
+import com.accountor.prh.exception.PrhThrottledException;
+import com.accountor.prh.exception.PrhUnavailableException;
+import com.accountor.prh.metrics.PrhMetrics;
+import com.accountor.prh.mirror.CompanyMirror;
+import com.accountor.prh.service.impl.PrhServiceImpl;
+import com.accountor.prh.utils.PrhValidator;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.retry.RetryConfig;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
 import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpStatus;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.netty.resources.ConnectionProvider;
 import reactor.test.StepVerifier;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
 
 class PrhClientImplTests {
 
     private static MockWebServer mockPrhApi;
     private PrhClientImpl prhClient;
+    private SimpleMeterRegistry meterRegistry;
+    private ConnectionProvider connectionProvider;
 
     @BeforeAll
     static void setUpAll() throws IOException {
@@ -34,10 +79,87 @@ class PrhClientImplTests {
 
     @BeforeEach
     void setUp() {
+        prhClient = client(rateLimit(1000, 100, Duration.ofSeconds(1)), CircuitBreakerConfig.ofDefaults(),
+                RetryConfig.custom().maxAttempts(1).build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (connectionProvider != null) {
+            connectionProvider.dispose();
+        }
+    }
+
+    private static PrhRateLimitProperties rateLimit(double rate, int maxQueueSize, Duration maxWait) {
+        return new PrhRateLimitProperties(rate, 1, rate, 1, 0.5, Duration.ofSeconds(5), maxQueueSize, maxWait,
+                Duration.ofMillis(100), Duration.ofSeconds(5));
+    }
 
+    private PrhClientImpl client(PrhRateLimitProperties rateLimitProperties, CircuitBreakerConfig circuitBreakerConfig,
+                                 RetryConfig retryConfig) {
+        return client(new AdaptiveRateLimiter(rateLimitProperties), circuitBreakerConfig, retryConfig);
+    }
+
+    private PrhClientImpl client(AdaptiveRateLimiter rateLimiter, CircuitBreakerConfig circuitBreakerConfig,
+                                 RetryConfig retryConfig) {
+        return client(rateLimiter, new PrhHedgingProperties(false, null, 0.95, Duration.ofMillis(50), Duration.ofSeconds(2), 0.05),
+                circuitBreakerConfig, retryConfig);
+    }
+
+    private PrhClientImpl client(AdaptiveRateLimiter rateLimiter, PrhHedgingProperties hedgingProperties,
+                                 CircuitBreakerConfig circuitBreakerConfig, RetryConfig retryConfig) {
         String baseUrl = String.format("http://localhost:%s", mockPrhApi.getPort());
-        WebClient webClient = WebClient.builder().baseUrl(baseUrl).build();
-        prhClient = new PrhClientImpl(webClient);
+        meterRegistry = new SimpleMeterRegistry();
+        PrhMetrics metrics = new PrhMetrics(meterRegistry);
+        WebClient webClient = WebClient.builder()
+                .baseUrl(baseUrl)
+                .filter(metrics.upstreamTimer())
+                .build();
+        return new PrhClientImpl(webClient, Jackson2ObjectMapperBuilder.json().build(), metrics,
+                rateLimiter,
+                new RequestHedger(hedgingProperties, meterRegistry),
+                CircuitBreakerRegistry.of(circuitBreakerConfig),
+                RetryRegistry.of(retryConfig));
+    }
+
+    /**
+     * A client on the configured Reactor Netty client, with both the read and response timeout set
+     * to {@code timeout}, retrying transport failures twice as {@code application.yml} does.
+     */
+    private PrhClientImpl transportClient(String baseUrl, Duration timeout) {
+        meterRegistry = new SimpleMeterRegistry();
+        PrhMetrics metrics = new PrhMetrics(meterRegistry);
+        WebClientConfig config = new WebClientConfig(new PrhHttpProperties(10, 10, Duration.ofSeconds(1),
+                Duration.ofSeconds(30), Duration.ofMinutes(5), Duration.ofSeconds(30), Duration.ofSeconds(2),
+                timeout, timeout, false, false, 0, false, false), metrics);
+        ReflectionTestUtils.setField(config, "prhApiBaseUrl", baseUrl);
+        connectionProvider = config.prhConnectionProvider();
+        return new PrhClientImpl(config.prhWebClient(config.prhHttpClient(connectionProvider), metrics),
+                Jackson2ObjectMapperBuilder.json().build(), metrics,
+                new AdaptiveRateLimiter(rateLimit(1000, 100, Duration.ofSeconds(1))),
+                new RequestHedger(new PrhHedgingProperties(false, null, 0.95, Duration.ofMillis(50), Duration.ofSeconds(2), 0.05), meterRegistry),
+                CircuitBreakerRegistry.ofDefaults(),
+                RetryRegistry.of(RetryConfig.custom()
+                        .maxAttempts(2)
+                        .waitDuration(Duration.ofMillis(10))
+                        .retryExceptions(ExternalApiException.class, WebClientRequestException.class,
+                                WebClientResponseException.class, TimeoutException.class)
+                        .build()));
+    }
+
+    /**
+     * A service on {@code client} that holds last-known-good details of {@code businessId}.
+     */
+    private PrhServiceImpl serviceWithLastKnownGood(PrhClientImpl client, String businessId) {
+        LastKnownGoodStore lastKnownGood = new LastKnownGoodStore(new PrhFallbackProperties(true, 100, Duration.ofHours(24)),
+                meterRegistry);
+        lastKnownGood.put(businessId, new CompanyDetailsDto(businessId, "Example Oyj", null, null, null, null, null,
+                null, null, null));
+        return new PrhServiceImpl(client, new PrhValidator(),
+                new CompanyCache(new PrhCacheProperties(100, Duration.ofMinutes(10), Duration.ofMinutes(1),
+                        Duration.ofMinutes(5), false, false, 100), meterRegistry),
+                mock(CompanyMirror.class), lastKnownGood, mock(CompanyNameIndex.class),
+                new PrhBatchProperties(3, 2), new PrhSearchProperties(3, 5, 1), new PrhMetrics(meterRegistry));
     }
 
     @Test
@@ -90,10 +212,26 @@ class PrhClientImplTests {
         mockPrhApi.enqueue(new MockResponse()
                 .setResponseCode(429)
                 .addHeader("Content-Type", "text/plain")
+                .addHeader("Retry-After", "7")
                 .setBody("Too many requests, try again later."));
 
         StepVerifier.create(prhClient.getCompaniesByBusinessId("rate-limited"))
-                .expectErrorMatches(e -> e instanceof ExternalApiException && e.getMessage().contains("Too many requests to external API."))
+                .expectErrorMatches(e -> e instanceof PrhThrottledException throttled
+                        && e.getMessage().contains("Too many requests to external API.")
+                        && Duration.ofSeconds(7).equals(throttled.getRetryAfter()))
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Should throw PrhThrottledException when API returns 429 without a body")
+    void getCompaniesByBusinessId_shouldThrowThrottled_whenApiReturnsBodyless429() {
+        mockPrhApi.enqueue(new MockResponse()
+                .setResponseCode(429)
+                .addHeader("Retry-After", "5"));
+
+        StepVerifier.create(prhClient.getCompaniesByBusinessId("rate-limited"))
+                .expectErrorMatches(e -> e instanceof PrhThrottledException throttled
+                        && Duration.ofSeconds(5).equals(throttled.getRetryAfter()))
                 .verify();
     }
 
@@ -109,4 +247,390 @@ class PrhClientImplTests {
                 .expectErrorMatches(e -> e instanceof ExternalApiException && e.getMessage().contains("Server error from external API: 500"))
                 .verify();
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should collapse concurrent lookups for the same business ID into one upstream request")
+    void getCompaniesByBusinessId_shouldShareUpstreamRequest_whenCalledConcurrently() {
+        int requestsBefore = mockPrhApi.getRequestCount();
+        mockPrhApi.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .addHeader("Content-Type", "application/json")
+                .setBody("{\"totalResults\":1, \"companies\":[{\"businessId\":{\"value\":\"0100002-9\"}}]}")
+                .setBodyDelay(200, TimeUnit.MILLISECONDS));
+
+        StepVerifier.create(Mono.zip(
+                        prhClient.getCompaniesByBusinessId("0100002-9"),
+                        prhClient.getCompaniesByBusinessId("0100002-9"),
+                        prhClient.getCompaniesByBusinessId("0100002-9")))
+                .expectNextMatches(results -> results.getT1() == results.getT2() && results.getT2() == results.getT3())
+                .verifyComplete();
+
+        assertThat(mockPrhApi.getRequestCount() - requestsBefore).isEqualTo(1);
+        assertThat(meterRegistry.counter("prh.client.requests.coalesced").count()).isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("Should deliver the upstream error to every collapsed caller")
+    void getCompaniesByBusinessId_shouldPropagateErrorToAllCallers_whenSharedRequestFails() {
+        int requestsBefore = mockPrhApi.getRequestCount();
+        mockPrhApi.enqueue(new MockResponse()
+                .setResponseCode(500)
+                .addHeader("Content-Type", "application/json")
+                .setBody("{\"message\":\"Internal Server Error\"}")
+                .setHeadersDelay(200, TimeUnit.MILLISECONDS));
+
+        Mono<String> first = prhClient.getCompaniesByBusinessId("0100002-9")
+                .map(dto -> "ok")
+                .onErrorReturn(ExternalApiException.class, "failed");
+        Mono<String> second = prhClient.getCompaniesByBusinessId("0100002-9")
+                .map(dto -> "ok")
+                .onErrorReturn(ExternalApiException.class, "failed");
+
+        StepVerifier.create(Mono.zip(first, second))
+                .expectNextMatches(results -> "failed".equals(results.getT1()) && "failed".equals(results.getT2()))
+                .verifyComplete();
+
+        assertThat(mockPrhApi.getRequestCount() - requestsBefore).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should decode only the first company and its summary fields from a chunked PRH response")
+    void getCompaniesByBusinessId_shouldDecodeSummaryOfFirstCompanyOnly() throws IOException {
+        mockPrhApi.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .addHeader("Content-Type", "application/json")
+                .setBody(companiesResponse())
+                .throttleBody(257, 1, TimeUnit.MILLISECONDS));
+
+        StepVerifier.create(prhClient.getCompaniesByBusinessId("0112038-9"))
+                .assertNext(dto -> {
+                    assertThat(dto.totalResults()).isEqualTo(2);
+                    assertThat(dto.results()).hasSize(1);
+                    var company = dto.results().get(0);
+                    assertThat(company.businessId().value()).isEqualTo("0112038-9");
+                    assertThat(company.names()).extracting("name").contains("Example Oyj");
+                    assertThat(company.registrationDate()).hasToString("1978-03-15");
+                    assertThat(company.website()).hasValueSatisfying(website -> assertThat(website.url()).isEqualTo("www.example.fi"));
+                    assertThat(company.addresses().get(0).street()).isEqualTo("Karakaari");
+                    assertThat(company.mainBusinessLine().typeCode()).isEqualTo("70100");
+                    assertThat(company.companyForms()).isNull();
+                    assertThat(company.companySituations()).isNull();
+                    assertThat(company.registeredEntries()).isNull();
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should decode every company and section when the full response is requested")
+    void getFullCompaniesByBusinessId_shouldDecodeEverySection() throws IOException {
+        mockPrhApi.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .addHeader("Content-Type", "application/json")
+                .setBody(companiesResponse()));
+
+        StepVerifier.create(prhClient.getFullCompaniesByBusinessId("0112038-9"))
+                .assertNext(dto -> {
+                    assertThat(dto.results()).hasSize(2);
+                    assertThat(dto.results().get(0).companyForms()).hasSize(2);
+                    assertThat(dto.results().get(0).registeredEntries()).hasSize(4);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should pass search filters and page to PRH and decode the summary of every company")
+    void searchCompanies_shouldSendFiltersAndDecodeEveryCompany() throws Exception {
+        mockPrhApi.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .addHeader("Content-Type", "application/json")
+                .setBody(companiesResponse())
+                .throttleBody(257, 1, TimeUnit.MILLISECONDS));
+
+        StepVerifier.create(prhClient.searchCompanies(new CompanySearchCriteria("Example Oy", "Espoo", " "), 2))
+                .assertNext(dto -> {
+                    assertThat(dto.totalResults()).isEqualTo(2);
+                    assertThat(dto.results()).extracting(company -> company.businessId().value())
+                            .containsExactly("0112038-9", "0100002-9");
+                    assertThat(dto.results().get(1).names()).isNotEmpty();
+                    assertThat(dto.results().get(1).companyForms()).isNull();
+                })
+                .verifyComplete();
+
+        RecordedRequest request = lastRequest();
+        assertThat(request.getPath()).isEqualTo("/companies?name=Example%20Oy&location=Espoo&page=2");
+    }
+
+    @Test
+    @DisplayName("Should pass a registration date range to PRH as ISO dates")
+    void searchCompanies_shouldSendRegistrationDateRange() throws Exception {
+        mockPrhApi.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .addHeader("Content-Type", "application/json")
+                .setBody("{\"totalResults\":0,\"companies\":[]}"));
+
+        StepVerifier.create(prhClient.searchCompanies(
+                        CompanySearchCriteria.registeredBetween(LocalDate.of(2024, 5, 1), LocalDate.of(2024, 5, 2)), 1))
+                .expectNextMatches(dto -> dto.totalResults() == 0)
+                .verifyComplete();
+
+        assertThat(lastRequest().getPath())
+                .isEqualTo("/companies?registrationDateStart=2024-05-01&registrationDateEnd=2024-05-02&page=1");
+    }
+
+    @Test
+    @DisplayName("Should return an empty company list when the API reports no results")
+    void getCompaniesByBusinessId_shouldReturnEmptyList_whenApiReturnsNoCompanies() {
+        mockPrhApi.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .addHeader("Content-Type", "application/json")
+                .setBody("{\"totalResults\":0,\"companies\":[]}"));
+
+        StepVerifier.create(prhClient.getCompaniesByBusinessId("0100002-9"))
+                .expectNextMatches(dto -> dto.totalResults() == 0 && dto.results().isEmpty())
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should time upstream calls by status class and the rate limiter wait of each attempt")
+    void getCompaniesByBusinessId_shouldRecordUpstreamLatencyByStatusClass() {
+        mockPrhApi.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .addHeader("Content-Type", "application/json")
+                .setBody("{\"totalResults\":0,\"companies\":[]}"));
+        mockPrhApi.enqueue(new MockResponse()
+                .setResponseCode(503)
+                .addHeader("Content-Type", "application/json")
+                .setBody("{}"));
+
+        StepVerifier.create(prhClient.getCompaniesByBusinessId("0100002-9")).expectNextCount(1).verifyComplete();
+        StepVerifier.create(prhClient.getCompaniesByBusinessId("0112038-9")).expectError(ExternalApiException.class).verify();
+
+        assertThat(meterRegistry.get("prh.upstream.requests").tag("status", "2xx").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("prh.upstream.requests").tag("status", "5xx").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("prh.ratelimiter.wait").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should retry failed upstream calls and count the retries")
+    void getCompaniesByBusinessId_shouldRetryAndCountRetries_whenUpstreamFailsOnce() {
+        prhClient = client(rateLimit(1000, 100, Duration.ofSeconds(1)), CircuitBreakerConfig.ofDefaults(),
+                RetryConfig.custom()
+                        .maxAttempts(2)
+                        .waitDuration(Duration.ofMillis(10))
+                        .retryExceptions(ExternalApiException.class)
+                        .build());
+        mockPrhApi.enqueue(new MockResponse()
+                .setResponseCode(500)
+                .addHeader("Content-Type", "application/json")
+                .setBody("{}"));
+        mockPrhApi.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .addHeader("Content-Type", "application/json")
+                .setBody("{\"totalResults\":0,\"companies\":[]}"));
+
+        StepVerifier.create(prhClient.getCompaniesByBusinessId("0100002-9"))
+                .expectNextMatches(dto -> dto.totalResults() == 0)
+                .verifyComplete();
+
+        assertThat(meterRegistry.get("prh.retry.attempts").tag("outcome", "retry").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("prh.retry.attempts").tag("outcome", "exhausted").counter().count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should reject calls without contacting PRH once the circuit opens and count the transition")
+    void getCompaniesByBusinessId_shouldFailFastAndCountTransition_whenCircuitOpens() {
+        prhClient = client(rateLimit(1000, 100, Duration.ofSeconds(1)),
+                CircuitBreakerConfig.custom()
+                        .slidingWindowSize(2)
+                        .minimumNumberOfCalls(2)
+                        .failureRateThreshold(50)
+                        .build(),
+                RetryConfig.custom().maxAttempts(1).build());
+        for (int i = 0; i < 2; i++) {
+            mockPrhApi.enqueue(new MockResponse()
+                    .setResponseCode(500)
+                    .addHeader("Content-Type", "application/json")
+                    .setBody("{}"));
+            StepVerifier.create(prhClient.getCompaniesByBusinessId("0100002-9"))
+                    .expectError(ExternalApiException.class)
+                    .verify();
+        }
+        int requestsBefore = mockPrhApi.getRequestCount();
+
+        StepVerifier.create(prhClient.getCompaniesByBusinessId("0100002-9"))
+                .expectErrorMatches(e -> e instanceof ExternalApiException && e.getMessage().contains("The circuit is open"))
+                .verify();
+
+        assertThat(mockPrhApi.getRequestCount()).isEqualTo(requestsBefore);
+        assertThat(meterRegistry.get("prh.circuitbreaker.transitions")
+                .tag("from", "closed").tag("to", "open").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should reject calls and count them when no rate limiter slot is available in time")
+    void getCompaniesByBusinessId_shouldRejectAndCount_whenRateLimitIsExhausted() {
+        prhClient = client(rateLimit(1, 100, Duration.ZERO),
+                CircuitBreakerConfig.ofDefaults(),
+                RetryConfig.custom().maxAttempts(1).build());
+        mockPrhApi.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .addHeader("Content-Type", "application/json")
+                .setBody("{\"totalResults\":0,\"companies\":[]}"));
+
+        StepVerifier.create(prhClient.getCompaniesByBusinessId("0100002-9")).expectNextCount(1).verifyComplete();
+        StepVerifier.create(prhClient.getCompaniesByBusinessId("0112038-9"))
+                .expectErrorMatches(e -> e instanceof ExternalApiException && e.getMessage().contains("Rate limit"))
+                .verify();
+
+        assertThat(meterRegistry.get("prh.ratelimiter.rejections").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should halve the rate and hold back the next call for Retry-After when PRH answers 429")
+    void getCompaniesByBusinessId_shouldBackOffAndHonourRetryAfter_whenThrottled() {
+        AdaptiveRateLimiter rateLimiter = new AdaptiveRateLimiter(rateLimit(100, 100, Duration.ofSeconds(2)));
+        prhClient = client(rateLimiter, CircuitBreakerConfig.ofDefaults(), RetryConfig.custom().maxAttempts(1).build());
+        mockPrhApi.enqueue(new MockResponse()
+                .setResponseCode(429)
+                .addHeader("Content-Type", "text/plain")
+                .addHeader("Retry-After", "1")
+                .setBody("Too many requests"));
+        mockPrhApi.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .addHeader("Content-Type", "application/json")
+                .setBody("{\"totalResults\":0,\"companies\":[]}"));
+
+        StepVerifier.create(prhClient.getCompaniesByBusinessId("0100002-9"))
+                .expectError(PrhThrottledException.class)
+                .verify();
+        long start = System.nanoTime();
+        StepVerifier.create(prhClient.getCompaniesByBusinessId("0112038-9"))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(900));
+        assertThat(rateLimiter.currentRate()).isLessThan(51);
+        assertThat(meterRegistry.get("prh.ratelimiter.capacity").gauge().value()).isEqualTo(100);
+        assertThat(meterRegistry.get("prh.ratelimiter.backoffs").tag("reason", "throttled").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should retry a refused connection and serve last-known-good details once PRH stays unreachable")
+    void getCompaniesByBusinessId_shouldBeUnavailable_whenConnectionIsRefused() throws IOException {
+        MockWebServer stopped = new MockWebServer();
+        stopped.start();
+        String baseUrl = String.format("http://localhost:%s", stopped.getPort());
+        stopped.shutdown();
+        prhClient = transportClient(baseUrl, Duration.ofSeconds(1));
+
+        StepVerifier.create(prhClient.getCompaniesByBusinessId("0112038-9"))
+                .expectErrorMatches(e -> e instanceof PrhUnavailableException
+                        && e.getCause() instanceof WebClientRequestException)
+                .verify(Duration.ofSeconds(5));
+        assertThat(meterRegistry.get("prh.retry.attempts").tag("outcome", "exhausted").counter().count()).isEqualTo(1);
+
+        StepVerifier.create(serviceWithLastKnownGood(prhClient, "0112038-9").getCompanyLookupResult("0112038-9"))
+                .expectNextMatches(result -> result.status() == 200 && result.age() != null
+                        && result.company().name().equals("Example Oyj"))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should retry a response slower than the timeout and serve last-known-good details once retries run out")
+    void getCompaniesByBusinessId_shouldBeUnavailable_whenResponseTimesOut() {
+        prhClient = transportClient(String.format("http://localhost:%s", mockPrhApi.getPort()), Duration.ofMillis(200));
+        for (int i = 0; i < 4; i++) {
+            mockPrhApi.enqueue(new MockResponse()
+                    .setHeadersDelay(1, TimeUnit.SECONDS)
+                    .addHeader("Content-Type", "application/json")
+                    .setBody("{\"totalResults\":0,\"companies\":[]}"));
+        }
+
+        StepVerifier.create(prhClient.getCompaniesByBusinessId("0112038-9"))
+                .expectErrorMatches(e -> e instanceof PrhUnavailableException
+                        && e.getCause() instanceof WebClientRequestException)
+                .verify(Duration.ofSeconds(5));
+        assertThat(meterRegistry.get("prh.retry.attempts").tag("outcome", "exhausted").counter().count()).isEqualTo(1);
+
+        StepVerifier.create(serviceWithLastKnownGood(prhClient, "0112038-9").getCompanyLookupResult("0112038-9"))
+                .expectNextMatches(result -> result.status() == 200 && result.age() != null)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should send one hedge when PRH is slow to answer and return whichever response arrives first")
+    void getCompaniesByBusinessId_shouldReturnHedgedResponse_whenFirstRequestIsSlow() {
+        prhClient = client(new AdaptiveRateLimiter(rateLimit(1000, 100, Duration.ofSeconds(1))),
+                new PrhHedgingProperties(true, Duration.ofMillis(100), 0.95, Duration.ofMillis(50), Duration.ofSeconds(2), 1),
+                CircuitBreakerConfig.ofDefaults(), RetryConfig.custom().maxAttempts(1).build());
+        mockPrhApi.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .addHeader("Content-Type", "application/json")
+                .setHeadersDelay(3, TimeUnit.SECONDS)
+                .setBody("{\"totalResults\":1,\"companies\":[{\"businessId\":{\"value\":\"0100002-9\"}}]}"));
+        mockPrhApi.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .addHeader("Content-Type", "application/json")
+                .setBody("{\"totalResults\":1,\"companies\":[{\"businessId\":{\"value\":\"0100002-9\"}}]}"));
+
+        StepVerifier.create(prhClient.getCompaniesByBusinessId("0100002-9"))
+                .expectNextMatches(dto -> dto.totalResults() == 1)
+                .expectComplete()
+                .verify(Duration.ofSeconds(2));
+
+        assertThat(meterRegistry.get("prh.hedge.requests").tag("result", "sent").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("prh.hedge.requests").tag("result", "won").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should ask PRH for gzip and decode the compressed response, counting bytes before and after inflating")
+    void getCompaniesByBusinessId_shouldDecodeGzipResponse() throws IOException, InterruptedException {
+        PrhMetrics metrics = new PrhMetrics(meterRegistry);
+        WebClientConfig config = new WebClientConfig(new PrhHttpProperties(10, 10, Duration.ofSeconds(1),
+                Duration.ofSeconds(30), Duration.ofMinutes(5), Duration.ofSeconds(30), Duration.ofSeconds(2),
+                Duration.ofSeconds(5), Duration.ofSeconds(5), false, false, 0, false, true), metrics);
+        ReflectionTestUtils.setField(config, "prhApiBaseUrl", String.format("http://localhost:%s", mockPrhApi.getPort()));
+        ConnectionProvider connectionProvider = config.prhConnectionProvider();
+        prhClient = new PrhClientImpl(config.prhWebClient(config.prhHttpClient(connectionProvider), metrics),
+                Jackson2ObjectMapperBuilder.json().build(), metrics,
+                new AdaptiveRateLimiter(rateLimit(1000, 100, Duration.ofSeconds(1))),
+                new RequestHedger(new PrhHedgingProperties(false, null, 0.95, Duration.ofMillis(50), Duration.ofSeconds(2), 0.05), meterRegistry),
+                CircuitBreakerRegistry.ofDefaults(), RetryRegistry.of(RetryConfig.custom().maxAttempts(1).build()));
+        byte[] body = companiesResponse().getBytes(StandardCharsets.UTF_8);
+        Buffer gzipped = new Buffer();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped.outputStream())) {
+            gzip.write(body);
+        }
+        mockPrhApi.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .addHeader("Content-Type", "application/json")
+                .addHeader("Content-Encoding", "gzip")
+                .setBody(gzipped));
+
+        try {
+            StepVerifier.create(prhClient.getCompaniesByBusinessId("0112038-9"))
+                    .expectNextMatches(dto -> dto.totalResults() > 0 && !dto.results().isEmpty())
+                    .verifyComplete();
+        } finally {
+            connectionProvider.dispose();
+        }
+
+        assertThat(lastRequest().getHeader("Accept-Encoding")).contains("gzip");
+        double wireBytes = meterRegistry.get("prh.upstream.bytes").tag("stage", "wire").counter().count();
+        double bodyBytes = meterRegistry.get("prh.upstream.bytes").tag("stage", "body").counter().count();
+        assertThat(bodyBytes).isEqualTo(body.length);
+        assertThat(wireBytes).isPositive().isLessThan(bodyBytes);
+    }
+
+    private static RecordedRequest lastRequest() throws InterruptedException {
+        RecordedRequest last = null;
+        for (RecordedRequest request; (request = mockPrhApi.takeRequest(100, TimeUnit.MILLISECONDS)) != null; ) {
+            last = request;
+        }
+        return last;
+    }
+
+    private static String companiesResponse() throws IOException {
+        return new ClassPathResource("prh/companies-response.json").getContentAsString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,97 @@
+package com.accountor.prh.client;
+
+import com.accountor.prh.config.PrhHedgingProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestHedgerTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private RequestHedger hedger(Duration delay, double budget) {
+        return new RequestHedger(new PrhHedgingProperties(true, delay, 0.95, Duration.ofMillis(50), Duration.ofSeconds(2), budget),
+                meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Should learn the hedge delay as the configured percentile of recent response times")
+    void recordLatency_shouldLearnPercentileDelay() {
+        RequestHedger hedger = hedger(null, 0.05);
+        assertThat(hedger.delay()).isEqualTo(Duration.ofSeconds(2));
+
+        for (int i = 1; i <= RequestHedger.WINDOW; i++) {
+            hedger.recordLatency(Duration.ofMillis(i).toNanos());
+        }
+
+        assertThat(hedger.delay()).isEqualTo(Duration.ofMillis(973));
+        assertThat(meterRegistry.get("prh.hedge.delay").gauge().value()).isEqualTo(Duration.ofMillis(973).toNanos());
+    }
+
+    @Test
+    @DisplayName("Should stop hedging once the budget earned per call is spent")
+    void hedge_shouldRespectBudget() {
+        RequestHedger hedger = hedger(Duration.ofMillis(100), 0.5);
+
+        for (String expected : new String[]{"backup", "backup", "primary"}) {
+            StepVerifier.withVirtualTime(() -> hedger.hedge(Mono.delay(Duration.ofSeconds(10)).thenReturn("primary"),
+                            Mono.just("backup")))
+                    .thenAwait(Duration.ofSeconds(10))
+                    .expectNext(expected)
+                    .verifyComplete();
+        }
+
+        assertThat(meterRegistry.get("prh.hedge.requests").tag("result", "sent").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("prh.hedge.requests").tag("result", "over_budget").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should return the primary error without hedging when the primary call fails first")
+    void hedge_shouldPropagatePrimaryError() {
+        RequestHedger hedger = hedger(Duration.ofMillis(100), 1);
+
+        StepVerifier.create(hedger.hedge(Mono.<String>error(new IllegalStateException("boom")), Mono.just("backup")))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        assertThat(meterRegistry.get("prh.hedge.requests").tag("result", "sent").counter().count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should count a hedge the rate limiter turns away as rate_limited, not sent, and refund its budget")
+    void hedge_shouldRefundBudget_whenAdmissionIsRefused() {
+        RequestHedger hedger = hedger(Duration.ofMillis(100), 0);
+        AtomicInteger backupCalls = new AtomicInteger();
+        Mono<String> backup = Mono.fromCallable(() -> {
+            backupCalls.incrementAndGet();
+            return "backup";
+        });
+
+        StepVerifier.withVirtualTime(() -> hedger.hedge(Mono.delay(Duration.ofSeconds(10)).thenReturn("primary"),
+                        backup, call -> Mono.empty()))
+                .thenAwait(Duration.ofSeconds(10))
+                .expectNext("primary")
+                .verifyComplete();
+
+        assertThat(backupCalls).hasValue(0);
+        assertThat(meterRegistry.get("prh.hedge.requests").tag("result", "sent").counter().count()).isZero();
+        assertThat(meterRegistry.get("prh.hedge.requests").tag("result", "rate_limited").counter().count()).isEqualTo(1);
+
+        StepVerifier.withVirtualTime(() -> hedger.hedge(Mono.delay(Duration.ofSeconds(10)).thenReturn("primary"),
+                        backup, UnaryOperator.identity()))
+                .thenAwait(Duration.ofSeconds(10))
+                .expectNext("backup")
+                .verifyComplete();
+
+        assertThat(meterRegistry.get("prh.hedge.requests").tag("result", "sent").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("prh.hedge.requests").tag("result", "over_budget").counter().count()).isZero();
+    }
+}
@@ -0,0 +1,108 @@
+package com.accountor.prh.config;
+
+import com.accountor.prh.metrics.PrhMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.handler.codec.compression.Brotli;
+import io.netty.handler.codec.http.HttpHeaders;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ServerCompressionConfigTests {
+
+    private static final String COMPANY_JSON = "{\"businessId\":\"0112038-9\",\"name\":\"" + "Nokia Oyj ".repeat(200) + "\"}";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private DisposableServer server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.disposeNow();
+        }
+    }
+
+    private HttpClient start(boolean brotli) {
+        PrhCompressionProperties properties = new PrhCompressionProperties(true, brotli, DataSize.ofKilobytes(1),
+                List.of("application/json"));
+        HttpServer httpServer = new ServerCompressionConfig()
+                .prhServerCompression(properties, new PrhMetrics(meterRegistry))
+                .apply(HttpServer.create().port(0));
+        server = httpServer
+                .route(routes -> routes
+                        .get("/company", (request, response) -> response
+                                .header("Content-Type", "application/json")
+                                .header("Content-Length", String.valueOf(COMPANY_JSON.length()))
+                                .header("ETag", "\"abc\"")
+                                .sendString(Mono.just(COMPANY_JSON)))
+                        .get("/small", (request, response) -> response
+                                .header("Content-Type", "application/json")
+                                .header("Content-Length", "2")
+                                .sendString(Mono.just("{}")))
+                        .get("/encoded", (request, response) -> response
+                                .header("Content-Type", "application/json")
+                                .header("Content-Encoding", "gzip")
+                                .header("Content-Length", String.valueOf(COMPANY_JSON.length()))
+                                .header("ETag", "\"abc-gzip\"")
+                                .sendString(Mono.just(COMPANY_JSON))))
+                .bindNow();
+        return HttpClient.create().port(server.port());
+    }
+
+    private static HttpHeaders get(HttpClient client, String uri, String acceptEncoding) {
+        return client.headers(headers -> headers.set("Accept-Encoding", acceptEncoding))
+                .get()
+                .uri(uri)
+                .responseSingle((response, body) -> body.thenReturn(response.responseHeaders()))
+                .block();
+    }
+
+    @Test
+    @DisplayName("Should gzip large JSON responses, weaken their ETag and leave small or already encoded ones alone")
+    void compress_shouldCompressOnlyEligibleResponses() {
+        HttpClient client = start(false);
+
+        HttpHeaders compressed = get(client, "/company", "br, gzip");
+        assertThat(compressed.get("Content-Encoding")).isEqualTo("gzip");
+        assertThat(compressed.get("ETag")).isEqualTo("W/\"abc\"");
+
+        HttpHeaders small = get(client, "/small", "gzip");
+        assertThat(small.get("Content-Encoding")).isNull();
+
+        HttpHeaders encoded = get(client, "/encoded", "gzip");
+        assertThat(encoded.get("Content-Encoding")).isEqualTo("gzip");
+        assertThat(encoded.get("Content-Length")).isEqualTo(String.valueOf(COMPANY_JSON.length()));
+        assertThat(encoded.get("ETag")).isEqualTo("\"abc-gzip\"");
+
+        assertThat(meterRegistry.get("prh.server.bytes").tag("stage", "wire").counter().count())
+                .isLessThan(2.0 * COMPANY_JSON.length());
+    }
+
+    @Test
+    @DisplayName("Should prefer Brotli when it is enabled and the client accepts it")
+    void compress_shouldUseBrotli_whenEnabled() {
+        assumeTrue(Brotli.isAvailable(), "Brotli native library not available");
+        HttpClient client = start(true);
+
+        assertThat(get(client, "/company", "gzip, deflate, br").get("Content-Encoding")).isEqualTo("br");
+        assertThat(get(client, "/company", "gzip").get("Content-Encoding")).isEqualTo("gzip");
+    }
+
+    @Test
+    @DisplayName("Should drop br from Accept-Encoding when Brotli is disabled, also for a wildcard")
+    void withoutBrotli_shouldRemoveBrotli() {
+        assertThat(ServerCompressionConfig.withoutBrotli("br;q=1.0, gzip;q=0.8")).isEqualTo("gzip;q=0.8");
+        assertThat(ServerCompressionConfig.withoutBrotli("*")).isEqualTo("*, br;q=0");
+        assertThat(ServerCompressionConfig.withoutBrotli("gzip, deflate")).isEqualTo("gzip, deflate");
+    }
+}
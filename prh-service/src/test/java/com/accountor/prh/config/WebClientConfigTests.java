@@ -0,0 +1,131 @@
+package com.accountor.prh.config;
+
+import com.accountor.prh.metrics.PrhMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.channel.Channel;
+import io.netty.handler.timeout.ReadTimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.ConnectionObserver;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebClientConfigTests {
+
+    private DisposableServer server;
+    private ConnectionProvider connectionProvider;
+
+    @AfterEach
+    void tearDown() {
+        if (connectionProvider != null) {
+            connectionProvider.dispose();
+        }
+        if (server != null) {
+            server.disposeNow();
+        }
+    }
+
+    @Configuration
+    @EnableConfigurationProperties(PrhHttpProperties.class)
+    static class PropertiesConfig {
+    }
+
+    private static PrhHttpProperties properties(Duration readTimeout) {
+        return new PrhHttpProperties(1, 10, Duration.ofSeconds(1), Duration.ofSeconds(30), Duration.ofMinutes(5),
+                Duration.ofSeconds(30), Duration.ofSeconds(2), readTimeout, Duration.ofSeconds(5), false, false, 0, false,
+                false);
+    }
+
+    private HttpClient client(PrhHttpProperties properties) {
+        server = HttpServer.create()
+                .port(0)
+                .route(routes -> routes
+                        .get("/ok", (request, response) -> response.sendString(Mono.just("{}")))
+                        .get("/error", (request, response) -> response.status(500).sendString(Mono.just("{}")))
+                        .get("/stalled", (request, response) -> response
+                                .header("Content-Length", "100")
+                                .sendString(Flux.concat(Mono.just("{"), Mono.never()))))
+                .bindNow();
+        WebClientConfig config = new WebClientConfig(properties, new PrhMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(config, "prhApiBaseUrl", "http://localhost:" + server.port());
+        connectionProvider = config.prhConnectionProvider();
+        return config.prhHttpClient(connectionProvider).baseUrl("http://localhost:" + server.port());
+    }
+
+    @Test
+    @DisplayName("Should bind prh.http.* into the pool and timeout settings")
+    void prhHttpProperties_shouldBind() {
+        new ApplicationContextRunner()
+                .withUserConfiguration(PropertiesConfig.class)
+                .withPropertyValues("prh.http.max-connections=7", "prh.http.pending-acquire-timeout=250ms",
+                        "prh.http.read-timeout=3s", "prh.http.prewarm-connections=2", "prh.http.http2=true")
+                .run(context -> {
+                    PrhHttpProperties properties = context.getBean(PrhHttpProperties.class);
+                    assertThat(properties.maxConnections()).isEqualTo(7);
+                    assertThat(properties.pendingAcquireTimeout()).isEqualTo(Duration.ofMillis(250));
+                    assertThat(properties.readTimeout()).isEqualTo(Duration.ofSeconds(3));
+                    assertThat(properties.prewarmConnections()).isEqualTo(2);
+                    assertThat(properties.http2()).isTrue();
+                    assertThat(properties.responseTimeout()).isEqualTo(Duration.ofSeconds(5));
+                    assertThat(properties.warmup()).isTrue();
+
+                    ConnectionProvider provider = new WebClientConfig(properties, new PrhMetrics(new SimpleMeterRegistry()))
+                            .prhConnectionProvider();
+                    assertThat(provider.maxConnections()).isEqualTo(7);
+                    provider.dispose();
+                });
+    }
+
+    @Test
+    @DisplayName("Should fail an exchange whose response stalls for longer than the read timeout")
+    void prhHttpClient_shouldTimeOutStalledResponse() {
+        HttpClient client = client(properties(Duration.ofMillis(200)));
+
+        StepVerifier.create(client.get().uri("/stalled").responseSingle((response, body) -> body.asString()))
+                .expectError(ReadTimeoutException.class)
+                .verify(Duration.ofSeconds(3));
+    }
+
+    @Test
+    @DisplayName("Should leave no read timeout on a connection released to the pool after a failed exchange")
+    void prhHttpClient_shouldRemoveReadTimeoutOnRelease() throws Exception {
+        CompletableFuture<Channel> released = new CompletableFuture<>();
+        HttpClient client = client(properties(Duration.ofMillis(200)))
+                .observe((connection, state) -> {
+                    if (state == ConnectionObserver.State.RELEASED) {
+                        released.complete(connection.channel());
+                    }
+                });
+
+        StepVerifier.create(client.get().uri("/error")
+                        .responseSingle((response, body) -> body.asString()
+                                .then(Mono.error(new IllegalStateException("PRH answered " + response.status())))))
+                .expectError(IllegalStateException.class)
+                .verify(Duration.ofSeconds(3));
+
+        Channel channel = released.get(3, TimeUnit.SECONDS);
+        assertThat(channel.pipeline().get("prhReadTimeout")).isNull();
+
+        Thread.sleep(400);
+        assertThat(channel.isActive()).isTrue();
+        StepVerifier.create(client.get().uri("/ok").responseSingle((response, body) -> body.asString()))
+                .expectNext("{}")
+                .verifyComplete();
+    }
+}
@@ -1,32 +1,70 @@
 package com.accountor.prh.controller;
 
+import com.accountor.prh.cache.CompanyCache;
+import com.accountor.prh.cache.EncodedCompany;
+import com.accountor.prh.config.PrhCacheProperties;
+import com.accountor.prh.config.PrhResponseCacheProperties;
 import com.accountor.prh.domain.CompanyDetailsDto;
+import com.accountor.prh.domain.CompanyLookupResultDto;
 import com.accountor.prh.domain.CompanyMapper;
+import com.accountor.prh.domain.CompanyRegisterEntryDto;
+import com.accountor.prh.domain.CompanySearchCriteria;
+import com.accountor.prh.domain.CompanySection;
+import com.accountor.prh.domain.CompanySectionsDto;
+import com.accountor.prh.domain.CompanySuggestionDto;
+import com.accountor.prh.domain.LastKnownCompanyDetails;
 import com.accountor.prh.dto.*;
 import com.accountor.prh.exception.CompanyNotFoundException;
 import com.accountor.prh.exception.ExternalApiException;
 import com.accountor.prh.exception.GlobalExceptionHandler;
+import com.accountor.prh.exception.InvalidInputException;
 import com.accountor.prh.exception.MappingException;
+import com.accountor.prh.exception.PrhUnavailableException;
 import com.accountor.prh.service.PrhService;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.when;
 
 @WebFluxTest(CompanyController.class)
 @Import(GlobalExceptionHandler.class)
+@EnableConfigurationProperties(PrhResponseCacheProperties.class)
 class CompanyControllerTests {
 
     @Autowired
@@ -35,6 +73,9 @@ class CompanyControllerTests {
     @MockBean
     private PrhService prhService;
 
+    @MockBean
+    private CompanyResponseEncoder responseEncoder;
+
     @Test
     @DisplayName("Should return 200 OK with company details when service is successful")
     void getCompanyDetails_shouldReturn200_whenServiceSucceeds() {
@@ -56,7 +97,8 @@ class CompanyControllerTests {
                 new MainBusinessLineApiDto("29120", List.of(new DescriptionApiDto("3", "Manufacture of pumps and compressors"),
                         new DescriptionApiDto("2", "Tillv av pumpar och kompressorer"))),
                 null,
-                Optional.of(new WebsiteApiDto("wwww.test.com")));
+                Optional.of(new WebsiteApiDto("wwww.test.com")),
+                null);
 
         CompanyDetailsDto expectedDto = CompanyMapper.toCompanyDetailsDto(
                 CompanyMapper.toCompanyDetails(mockCompany));
@@ -73,6 +115,258 @@ class CompanyControllerTests {
                 .isEqualTo(expectedDto);
     }
 
+    @Test
+    @DisplayName("Should send a strong ETag, Last-Modified and Cache-Control with company details")
+    void getCompanyDetails_shouldSendValidatorsAndCacheControl() {
+        CompanyDetailsDto company = new CompanyDetailsDto("0100002-9", "Test Company", null, null,
+                "Hunyani Street", null, "02240", "29120", "Manufacture of pumps and compressors",
+                LocalDateTime.of(2024, 6, 1, 10, 15, 30));
+        when(prhService.getCompanyDetails(anyString())).thenReturn(Mono.just(company));
+
+        webTestClient.get().uri("/api/v1/prh/companies/{businessId}", "0100002-9")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueMatches(HttpHeaders.ETAG, "\"[0-9a-f]{16}\"")
+                .expectHeader().valueEquals(HttpHeaders.LAST_MODIFIED, "Sat, 01 Jun 2024 07:15:30 GMT")
+                .expectHeader().cacheControl(CacheControl.maxAge(Duration.ofMinutes(5)).cachePublic());
+    }
+
+    @Test
+    @DisplayName("Should return only the requested fields and included sections under a projection-specific ETag")
+    void getCompanyDetails_shouldProjectFieldsAndIncludeSections() {
+        CompanyDetailsDto company = new CompanyDetailsDto("0100002-9", "Test Company", null, null,
+                "Hunyani Street", null, "02240", "29120", "Manufacture of pumps and compressors", null);
+        when(prhService.getCompanySections("0100002-9", EnumSet.of(CompanySection.COMPANY_FORMS)))
+                .thenReturn(Mono.just(new CompanySectionsDto(List.of(new CompanyRegisterEntryDto("OY",
+                        Map.of("fi", "Osakeyhtiö"), null, null, null, null)), null, null, null)));
+        when(prhService.getCompanyDetails("0100002-9")).thenReturn(Mono.just(company));
+
+        webTestClient.get().uri("/api/v1/prh/companies/{businessId}?fields=businessId, name&include=companyForms", "0100002-9")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueMatches(HttpHeaders.ETAG, "\"[0-9a-f]{16}-p[0-9a-f]+\"")
+                .expectBody()
+                .json("{\"businessId\":\"0100002-9\",\"name\":\"Test Company\","
+                        + "\"companyForms\":[{\"type\":\"OY\",\"descriptions\":{\"fi\":\"Osakeyhtiö\"}}]}", true);
+
+        webTestClient.get().uri("/api/v1/prh/companies/{businessId}?fields=name,revenue", "0100002-9")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.detail").isEqualTo("Unknown field 'revenue'.");
+    }
+
+    @Test
+    @DisplayName("Should write the pre-encoded body of a cached company, gzip-compressed when the client accepts gzip")
+    void getCompanyDetails_shouldWritePreEncodedBody_whenCached() {
+        CompanyDetailsDto company = new CompanyDetailsDto("0100002-9", "Test Company", null, null,
+                "Hunyani Street", null, "02240", "29120", "Manufacture of pumps and compressors", null);
+        PrhCacheProperties cacheProperties = new PrhCacheProperties(10, Duration.ofMinutes(10), Duration.ofMinutes(1),
+                Duration.ofMinutes(5), true, true, 10);
+        EncodedCompany encoded = new CompanyResponseEncoder(cacheProperties,
+                new CompanyCache(cacheProperties, new SimpleMeterRegistry()), Jackson2ObjectMapperBuilder.json().build())
+                .encode(company);
+        when(prhService.getCompanyDetails(anyString())).thenReturn(Mono.just(company));
+        when(responseEncoder.cached(company)).thenReturn(encoded);
+
+        webTestClient.get().uri("/api/v1/prh/companies/{businessId}", "0100002-9")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectHeader().valueEquals(HttpHeaders.ETAG, CompanyETags.of(company))
+                .expectHeader().valueEquals(HttpHeaders.VARY, "Accept, Accept-Encoding")
+                .expectHeader().doesNotExist(HttpHeaders.CONTENT_ENCODING)
+                .expectBody(CompanyDetailsDto.class)
+                .isEqualTo(company);
+
+        webTestClient.get().uri("/api/v1/prh/companies/{businessId}", "0100002-9")
+                .header(HttpHeaders.ACCEPT_ENCODING, "br;q=1.0, gzip;q=0.8")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .expectHeader().valueEquals(HttpHeaders.ETAG, encoded.gzipETag())
+                .expectBody(byte[].class)
+                .isEqualTo(encoded.gzip());
+    }
+
+    @Test
+    @DisplayName("Should encode a cached company on its first hit only and keep the bytes in the cache entry")
+    void cached_shouldEncodeOnFirstHitAndMemoize() {
+        CompanyDetailsDto company = new CompanyDetailsDto("0100002-9", "Test Company", null, null,
+                null, null, null, null, null, null);
+        PrhCacheProperties cacheProperties = new PrhCacheProperties(10, Duration.ofMinutes(10), Duration.ofMinutes(1),
+                Duration.ofMinutes(5), true, false, 10);
+        CompanyCache companyCache = new CompanyCache(cacheProperties, new SimpleMeterRegistry());
+        CompanyResponseEncoder encoder = new CompanyResponseEncoder(cacheProperties, companyCache,
+                Jackson2ObjectMapperBuilder.json().build());
+
+        companyCache.put("0100002-9", company);
+        EncodedCompany first = encoder.cached(company);
+
+        assertThat(first).isNotNull();
+        assertThat(first.eTag()).isEqualTo(CompanyETags.of(company));
+        assertThat(encoder.cached(company)).isSameAs(first);
+        assertThat(encoder.cached(new CompanyDetailsDto("0100002-9", "Test Company", null, null,
+                null, null, null, null, null, null))).isNull();
+    }
+
+    @Test
+    @DisplayName("Should negotiate CBOR, Smile and Protobuf by Accept, bypassing the pre-encoded JSON, with JSON as the default")
+    void getCompanyDetails_shouldNegotiateBinaryFormats() throws IOException {
+        CompanyDetailsDto company = new CompanyDetailsDto("0100002-9", "Test Company", LocalDate.of(2020, 1, 1), null,
+                "Hunyani Street", null, "02240", "29120", "Manufacture of pumps and compressors",
+                LocalDateTime.of(2024, 5, 1, 12, 0));
+        when(prhService.getCompanyDetails(anyString())).thenReturn(Mono.just(company));
+        when(responseEncoder.cached(company)).thenReturn(new EncodedCompany("{}".getBytes(), "\"encoded\"", null, null));
+
+        byte[] cbor = webTestClient.get().uri("/api/v1/prh/companies/{businessId}", "0100002-9")
+                .header(HttpHeaders.ACCEPT, "application/json;q=0.5, application/cbor")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_CBOR)
+                .expectHeader().valueEquals(HttpHeaders.ETAG, CompanyMediaTypes.eTag(CompanyETags.of(company), MediaType.APPLICATION_CBOR))
+                .expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .expectBody(byte[].class)
+                .returnResult().getResponseBody();
+        assertThat(Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build()
+                .readValue(cbor, CompanyDetailsDto.class)).isEqualTo(company);
+
+        byte[] smile = webTestClient.get().uri("/api/v1/prh/companies/{businessId}", "0100002-9")
+                .accept(CompanyMediaTypes.APPLICATION_SMILE)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(CompanyMediaTypes.APPLICATION_SMILE)
+                .expectBody(byte[].class)
+                .returnResult().getResponseBody();
+        assertThat(Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build()
+                .readValue(smile, CompanyDetailsDto.class)).isEqualTo(company);
+
+        byte[] protobuf = webTestClient.get().uri("/api/v1/prh/companies/{businessId}", "0100002-9")
+                .accept(CompanyMediaTypes.APPLICATION_PROTOBUF)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(CompanyMediaTypes.APPLICATION_PROTOBUF)
+                .expectBody(byte[].class)
+                .returnResult().getResponseBody();
+        assertThat(protobufStrings(CodedInputStream.newInstance(protobuf))).containsExactly(
+                Map.entry(1, "0100002-9"), Map.entry(2, "Test Company"), Map.entry(3, "2020-01-01"),
+                Map.entry(5, "Hunyani Street"), Map.entry(7, "02240"), Map.entry(8, "29120"),
+                Map.entry(9, "Manufacture of pumps and compressors"), Map.entry(10, "2024-05-01T12:00:00"));
+
+        webTestClient.get().uri("/api/v1/prh/companies/{businessId}", "0100002-9")
+                .header(HttpHeaders.ACCEPT, "*/*")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"encoded\"");
+
+        webTestClient.get().uri("/api/v1/prh/companies/{businessId}?fields=name", "0100002-9")
+                .accept(CompanyMediaTypes.APPLICATION_PROTOBUF)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.NOT_ACCEPTABLE);
+    }
+
+    @Test
+    @DisplayName("Should stream batch results as length-delimited Protobuf messages")
+    void getCompanyDetailsBatch_shouldStreamDelimitedProtobuf() throws IOException {
+        CompanyDetailsDto company = new CompanyDetailsDto("0100002-9", "Test Company", null, null,
+                null, null, null, null, null, null);
+        when(prhService.getCompanyDetailsBatch(anyList())).thenReturn(Flux.just(
+                CompanyLookupResultDto.found("0100002-9", company),
+                CompanyLookupResultDto.failed("0000000-0", 404, "Company not found")));
+
+        byte[] body = webTestClient.post().uri("/api/v1/prh/companies/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(CompanyMediaTypes.APPLICATION_PROTOBUF)
+                .bodyValue(List.of("0100002-9", "0000000-0"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(CompanyMediaTypes.APPLICATION_PROTOBUF)
+                .expectBody(byte[].class)
+                .returnResult().getResponseBody();
+
+        CodedInputStream in = CodedInputStream.newInstance(body);
+        int found = in.pushLimit(in.readRawVarint32());
+        assertThat(WireFormat.getTagFieldNumber(in.readTag())).isEqualTo(1);
+        assertThat(in.readString()).isEqualTo("0100002-9");
+        assertThat(WireFormat.getTagFieldNumber(in.readTag())).isEqualTo(2);
+        assertThat(in.readInt32()).isEqualTo(200);
+        assertThat(WireFormat.getTagFieldNumber(in.readTag())).isEqualTo(3);
+        int details = in.pushLimit(in.readRawVarint32());
+        assertThat(protobufStrings(in)).containsExactly(Map.entry(1, "0100002-9"), Map.entry(2, "Test Company"));
+        in.popLimit(details);
+        assertThat(in.isAtEnd()).isTrue();
+        in.popLimit(found);
+        int failed = in.pushLimit(in.readRawVarint32());
+        in.skipMessage();
+        in.popLimit(failed);
+        assertThat(in.isAtEnd()).isTrue();
+    }
+
+    private static List<Map.Entry<Integer, String>> protobufStrings(CodedInputStream in) throws IOException {
+        List<Map.Entry<Integer, String>> fields = new ArrayList<>();
+        for (int tag; (tag = in.readTag()) != 0; ) {
+            fields.add(Map.entry(WireFormat.getTagFieldNumber(tag), in.readString()));
+        }
+        return fields;
+    }
+
+    @Test
+    @DisplayName("Should only accept gzip when Accept-Encoding lists it, or *, without q=0")
+    void acceptsGzip_shouldHonourQualityValues() {
+        assertThat(CompanyController.acceptsGzip("gzip, deflate, br")).isTrue();
+        assertThat(CompanyController.acceptsGzip("*")).isTrue();
+        assertThat(CompanyController.acceptsGzip("gzip;q=0, *")).isFalse();
+        assertThat(CompanyController.acceptsGzip("br, *;q=0.0")).isFalse();
+        assertThat(CompanyController.acceptsGzip(null)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should answer 304 Not Modified without a body when If-None-Match matches the current ETag")
+    void getCompanyDetails_shouldReturn304_whenETagMatches() {
+        CompanyDetailsDto company = new CompanyDetailsDto("0100002-9", "Test Company", null, null,
+                "Hunyani Street", null, "02240", "29120", "Manufacture of pumps and compressors", null);
+        when(prhService.getCompanyDetails(anyString())).thenReturn(Mono.just(company));
+
+        String eTag = webTestClient.get().uri("/api/v1/prh/companies/{businessId}", "0100002-9")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(CompanyDetailsDto.class)
+                .getResponseHeaders()
+                .getETag();
+
+        webTestClient.get().uri("/api/v1/prh/companies/{businessId}", "0100002-9")
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, eTag)
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should return the full body again once the company details no longer match If-None-Match")
+    void getCompanyDetails_shouldReturn200_whenETagNoLongerMatches() {
+        CompanyDetailsDto before = new CompanyDetailsDto("0100002-9", "Test Company", null, null,
+                "Hunyani Street", null, "02240", "29120", "Manufacture of pumps and compressors", null);
+        CompanyDetailsDto after = new CompanyDetailsDto("0100002-9", "Test Company Oy", null, null,
+                "Hunyani Street", null, "02240", "29120", "Manufacture of pumps and compressors", null);
+        when(prhService.getCompanyDetails(anyString())).thenReturn(Mono.just(before), Mono.just(after));
+
+        String eTag = webTestClient.get().uri("/api/v1/prh/companies/{businessId}", "0100002-9")
+                .exchange()
+                .returnResult(CompanyDetailsDto.class)
+                .getResponseHeaders()
+                .getETag();
+
+        webTestClient.get().uri("/api/v1/prh/companies/{businessId}", "0100002-9")
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().value(HttpHeaders.ETAG, value -> assertThat(value).isNotEqualTo(eTag))
+                .expectBody(CompanyDetailsDto.class)
+                .isEqualTo(after);
+    }
+
     @Test
     @DisplayName("Should return 404 Not Found with JSON ProblemDetail when service throws CompanyNotFoundException")
     void getCompanyDetails_shouldReturn404_whenServiceThrowsCompanyNotFound() {
@@ -140,6 +434,40 @@ class CompanyControllerTests {
                 .jsonPath("$.instance").exists();
     }
 
+    @Test
+    @DisplayName("Should serve last-known-good details with staleness and age headers while PRH is unavailable")
+    void getCompanyDetails_shouldServeLastKnownDetails_whenPrhIsUnavailable() {
+        CompanyDetailsDto company = new CompanyDetailsDto("0100002-9", "Test Company", null, null,
+                "Hunyani Street", null, "02240", "29120", "Manufacture of pumps and compressors", null);
+        when(prhService.getCompanyDetails(anyString()))
+                .thenReturn(Mono.error(new PrhUnavailableException("PRH API is currently unavailable. The circuit is open.", null)));
+        when(prhService.getLastKnownCompanyDetails(anyString()))
+                .thenReturn(Mono.just(new LastKnownCompanyDetails(company, Instant.now().minusSeconds(90))));
+
+        webTestClient.get().uri("/api/v1/prh/companies/{businessId}", "0100002-9")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(CompanyController.STALE_HEADER, "true")
+                .expectHeader().value(HttpHeaders.AGE, age -> assertThat(Long.parseLong(age)).isBetween(90L, 100L))
+                .expectHeader().cacheControl(CacheControl.noCache())
+                .expectHeader().exists(HttpHeaders.ETAG)
+                .expectBody(CompanyDetailsDto.class)
+                .isEqualTo(company);
+    }
+
+    @Test
+    @DisplayName("Should return 503 when PRH is unavailable and no earlier details are known")
+    void getCompanyDetails_shouldReturn503_whenPrhIsUnavailableAndNothingIsKnown() {
+        when(prhService.getCompanyDetails(anyString()))
+                .thenReturn(Mono.error(new PrhUnavailableException("PRH API is currently unavailable. The circuit is open.", null)));
+        when(prhService.getLastKnownCompanyDetails(anyString())).thenReturn(Mono.empty());
+
+        webTestClient.get().uri("/api/v1/prh/companies/{businessId}", "0100002-9")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE)
+                .expectHeader().doesNotExist(CompanyController.STALE_HEADER);
+    }
+
     @Test
     @DisplayName("Should return 400 Bad Request with JSON ProblemDetail when service throws IllegalArgumentException")
     void getCompanyDetails_shouldReturn400_whenServiceThrowsIllegalArgumentException() {
@@ -183,4 +511,106 @@ class CompanyControllerTests {
                 .jsonPath("$.detail").isEqualTo(errorMessage)
                 .jsonPath("$.instance").exists();
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should stream batch lookup results as newline-delimited JSON")
+    void getCompanyDetailsBatch_shouldStreamNdjson_whenServiceSucceeds() {
+        CompanyDetailsDto company = new CompanyDetailsDto("0100002-9", "Test Company", null,
+                null, "Hunyani Street", null, "02240", "29120", "Manufacture of pumps and compressors", null);
+
+        when(prhService.getCompanyDetailsBatch(anyList()))
+                .thenReturn(Flux.just(
+                        CompanyLookupResultDto.found("0100002-9", company),
+                        CompanyLookupResultDto.failed("0112038-9", 404, "Company not found for business ID: 0112038-9")));
+
+        webTestClient.post().uri("/api/v1/prh/companies/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(List.of("0100002-9", "0112038-9"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(CompanyLookupResultDto.class)
+                .contains(CompanyLookupResultDto.found("0100002-9", company),
+                        CompanyLookupResultDto.failed("0112038-9", 404, "Company not found for business ID: 0112038-9"));
+    }
+
+    @Test
+    @DisplayName("Should return 400 Bad Request with JSON ProblemDetail when the batch is rejected")
+    void getCompanyDetailsBatch_shouldReturn400_whenServiceRejectsBatch() {
+        String errorMessage = "At least one business ID must be provided.";
+
+        when(prhService.getCompanyDetailsBatch(anyList()))
+                .thenReturn(Flux.error(new InvalidInputException(errorMessage)));
+
+        webTestClient.post().uri("/api/v1/prh/companies/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(List.of())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(400)
+                .jsonPath("$.detail").isEqualTo(errorMessage);
+    }
+
+    @Test
+    @DisplayName("Should stream search results as newline-delimited JSON")
+    void searchCompanies_shouldStreamNdjson_whenServiceSucceeds() {
+        CompanyDetailsDto first = new CompanyDetailsDto("0100002-9", "Test Company", null,
+                null, "Hunyani Street", "Helsinki", "02240", "29120", "Manufacture of pumps and compressors", null);
+        CompanyDetailsDto second = new CompanyDetailsDto("0112038-9", "Test Company Two", null,
+                null, "Karakaari", "Helsinki", "02610", "70100", null, null);
+
+        when(prhService.searchCompanies(eq(new CompanySearchCriteria("Test", "Helsinki", null)), isNull()))
+                .thenReturn(Flux.just(first, second));
+
+        webTestClient.get().uri("/api/v1/prh/companies/search?name=Test&location=Helsinki")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(CompanyDetailsDto.class)
+                .isEqualTo(List.of(first, second));
+    }
+
+    @Test
+    @DisplayName("Should stream search results as Smile values when asked for a Smile stream")
+    void searchCompanies_shouldStreamSmile() throws IOException {
+        CompanyDetailsDto first = new CompanyDetailsDto("0100002-9", "Test Company", null,
+                null, "Hunyani Street", "Helsinki", "02240", "29120", "Manufacture of pumps and compressors", null);
+        CompanyDetailsDto second = new CompanyDetailsDto("0112038-9", "Test Company Two", null,
+                null, "Karakaari", "Helsinki", "02610", "70100", null, null);
+        when(prhService.searchCompanies(eq(new CompanySearchCriteria("Test", "Helsinki", null)), isNull()))
+                .thenReturn(Flux.just(first, second));
+
+        byte[] body = webTestClient.get().uri("/api/v1/prh/companies/search?name=Test&location=Helsinki")
+                .accept(MediaType.parseMediaType(CompanyMediaTypes.APPLICATION_STREAM_SMILE_VALUE))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(CompanyMediaTypes.APPLICATION_STREAM_SMILE_VALUE)
+                .expectBody(byte[].class)
+                .returnResult().getResponseBody();
+
+        ObjectMapper smileMapper = Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build();
+        try (MappingIterator<CompanyDetailsDto> values = smileMapper.readerFor(CompanyDetailsDto.class).readValues(body)) {
+            assertThat(values.readAll()).containsExactly(first, second);
+        }
+    }
+
+    @Test
+    @DisplayName("Should return suggestions for the typed text as a JSON array")
+    void suggestCompanies_shouldReturnSuggestions() {
+        when(prhService.suggestCompanies("ääne", 5))
+                .thenReturn(Mono.just(List.of(new CompanySuggestionDto("0100002-9", "Äänekosken Öljy Oy"))));
+
+        webTestClient.get().uri(uriBuilder -> uriBuilder.path("/api/v1/prh/companies/suggest")
+                        .queryParam("q", "ääne")
+                        .queryParam("limit", 5)
+                        .build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].businessId").isEqualTo("0100002-9")
+                .jsonPath("$[0].name").isEqualTo("Äänekosken Öljy Oy");
+    }
+}
@@ -0,0 +1,112 @@
+package com.accountor.prh.controller;
+
+import com.accountor.prh.domain.EnrichmentJobDto;
+import com.accountor.prh.domain.EnrichmentJobDto.Status;
+import com.accountor.prh.exception.GlobalExceptionHandler;
+import com.accountor.prh.exception.JobNotFoundException;
+import com.accountor.prh.exception.JobStorageFullException;
+import com.accountor.prh.exception.TooManyJobsException;
+import com.accountor.prh.jobs.EnrichmentJobs;
+import com.accountor.prh.jobs.JobInputFormat;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(EnrichmentJobController.class)
+@Import(GlobalExceptionHandler.class)
+class EnrichmentJobControllerTests {
+
+    private static final String JOB_ID = "4b0f3f43-3d6a-4c55-9d3e-9b8c2c0f4a11";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private EnrichmentJobs enrichmentJobs;
+
+    @Test
+    @DisplayName("Should answer 202 Accepted with the queued job and its location for a CSV upload")
+    void createJob_shouldReturn202_whenUploadIsStored() {
+        EnrichmentJobDto queued = new EnrichmentJobDto(JOB_ID, Status.QUEUED, Instant.parse("2024-05-01T10:00:00Z"),
+                null, 0, 0, 0, null);
+        when(enrichmentJobs.create(any(), eq(JobInputFormat.CSV))).thenReturn(Mono.just(queued));
+
+        webTestClient.post().uri("/api/v1/prh/companies/jobs")
+                .contentType(JobInputFormat.TEXT_CSV)
+                .bodyValue("businessId\n0112038-9\n")
+                .exchange()
+                .expectStatus().isAccepted()
+                .expectHeader().location("/api/v1/prh/companies/jobs/" + JOB_ID)
+                .expectBody(EnrichmentJobDto.class)
+                .isEqualTo(queued);
+    }
+
+    @Test
+    @DisplayName("Should return 400 Bad Request for an upload that is neither CSV nor NDJSON")
+    void createJob_shouldReturn400_whenContentTypeIsUnsupported() {
+        webTestClient.post().uri("/api/v1/prh/companies/jobs")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[\"0112038-9\"]")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    @DisplayName("Should return 429 while too many jobs are active and 507 once job storage is full")
+    void createJob_shouldReturn429Or507_whenJobLimitsAreReached() {
+        when(enrichmentJobs.create(any(), eq(JobInputFormat.CSV)))
+                .thenReturn(Mono.error(new TooManyJobsException("At most 4 enrichment jobs may be queued or running.")))
+                .thenReturn(Mono.error(new JobStorageFullException("Enrichment jobs may take at most 1GB of storage.")));
+
+        webTestClient.post().uri("/api/v1/prh/companies/jobs")
+                .contentType(JobInputFormat.TEXT_CSV)
+                .bodyValue("0112038-9\n")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        webTestClient.post().uri("/api/v1/prh/companies/jobs")
+                .contentType(JobInputFormat.TEXT_CSV)
+                .bodyValue("0112038-9\n")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.INSUFFICIENT_STORAGE);
+    }
+
+    @Test
+    @DisplayName("Should stream a job's results as newline-delimited JSON and 404 for unknown jobs")
+    void getJobResults_shouldStreamNdjson() {
+        String results = "{\"businessId\":\"0112038-9\",\"status\":404,\"error\":\"Company not found\"}\n";
+        when(enrichmentJobs.results(JOB_ID)).thenReturn(Flux.just(
+                DefaultDataBufferFactory.sharedInstance.wrap(results.getBytes(StandardCharsets.UTF_8))));
+        when(enrichmentJobs.status("missing")).thenReturn(Mono.error(new JobNotFoundException("No enrichment job found with ID: missing")));
+
+        webTestClient.get().uri("/api/v1/prh/companies/jobs/{jobId}/results", JOB_ID)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .isEqualTo(results);
+
+        webTestClient.get().uri("/api/v1/prh/companies/jobs/{jobId}", "missing")
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectHeader().contentType(MediaType.APPLICATION_PROBLEM_JSON)
+                .expectBody()
+                .jsonPath("$.detail").isEqualTo("No enrichment job found with ID: missing");
+    }
+}
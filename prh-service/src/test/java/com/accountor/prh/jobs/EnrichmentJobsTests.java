@@ -0,0 +1,232 @@
+package com.accountor.prh.jobs;
+
+import com.accountor.prh.client.AdaptiveRateLimiter;
+import com.accountor.prh.config.PrhJobProperties;
+import com.accountor.prh.domain.CompanyDetailsDto;
+import com.accountor.prh.domain.CompanyLookupResultDto;
+import com.accountor.prh.domain.EnrichmentJobDto;
+import com.accountor.prh.domain.EnrichmentJobDto.Status;
+import com.accountor.prh.exception.InvalidInputException;
+import com.accountor.prh.exception.JobNotFoundException;
+import com.accountor.prh.exception.JobStorageFullException;
+import com.accountor.prh.exception.TooManyJobsException;
+import com.accountor.prh.service.PrhService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EnrichmentJobsTests {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final PrhService prhService = mock(PrhService.class);
+    private final AdaptiveRateLimiter rateLimiter = mock(AdaptiveRateLimiter.class);
+
+    @TempDir
+    Path tempDir;
+
+    private EnrichmentJobs jobs;
+
+    @BeforeEach
+    void setUp() {
+        when(prhService.getCompanyLookupResult(anyString())).thenAnswer(invocation -> {
+            String businessId = invocation.getArgument(0);
+            return Mono.just(businessId.endsWith("-9")
+                    ? CompanyLookupResultDto.found(businessId, company(businessId))
+                    : CompanyLookupResultDto.failed(businessId, 400, "Business ID must be in the format XXXXXXX-X."));
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (jobs != null) {
+            jobs.destroy();
+        }
+    }
+
+    private EnrichmentJobs newJobs(int checkpointEvery) {
+        return newJobs(checkpointEvery, 4, DataSize.ofMegabytes(1));
+    }
+
+    private EnrichmentJobs newJobs(int checkpointEvery, int maxActiveJobs, DataSize maxTotalSize) {
+        return new EnrichmentJobs(new PrhJobProperties(tempDir, 2, 8, checkpointEvery, 3, Duration.ofMillis(10),
+                DataSize.ofKilobytes(1), Duration.ofDays(7), maxActiveJobs, 100, maxTotalSize), prhService, rateLimiter,
+                objectMapper, new SimpleMeterRegistry());
+    }
+
+    private static CompanyDetailsDto company(String businessId) {
+        return new CompanyDetailsDto(businessId, "Company " + businessId, null, null, null, null, null, null, null, null);
+    }
+
+    private static Flux<DataBuffer> upload(String content) {
+        return Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private EnrichmentJobDto awaitFinished(String id) {
+        return Flux.interval(Duration.ofMillis(20))
+                .concatMap(tick -> jobs.status(id))
+                .filter(job -> job.status() == Status.COMPLETED || job.status() == Status.FAILED)
+                .blockFirst(Duration.ofSeconds(10));
+    }
+
+    private List<CompanyLookupResultDto> results(String id) {
+        return DataBufferUtils.join(jobs.results(id))
+                .map(buffer -> {
+                    String text = buffer.toString(StandardCharsets.UTF_8);
+                    DataBufferUtils.release(buffer);
+                    return text.lines().map(line -> {
+                        try {
+                            return objectMapper.readValue(line, CompanyLookupResultDto.class);
+                        } catch (IOException ex) {
+                            throw new IllegalStateException(ex);
+                        }
+                    }).toList();
+                })
+                .defaultIfEmpty(List.of())
+                .block();
+    }
+
+    @Test
+    @DisplayName("Should look up every row of a CSV upload and write the results in upload order")
+    void create_shouldProcessCsvUpload() {
+        jobs = newJobs(2);
+
+        EnrichmentJobDto created = jobs.create(upload("businessId;name\n0112038-9;Example Oyj\n\n\"0100002-9\",x\r\nnot-an-id\n"),
+                JobInputFormat.CSV).block();
+
+        assertThat(created.status()).isEqualTo(Status.QUEUED);
+        EnrichmentJobDto finished = awaitFinished(created.id());
+        assertThat(finished.status()).isEqualTo(Status.COMPLETED);
+        assertThat(finished.progress()).isEqualTo(1.0);
+        assertThat(finished.processed()).isEqualTo(3);
+        assertThat(finished.failed()).isEqualTo(1);
+        assertThat(results(created.id()))
+                .extracting(CompanyLookupResultDto::businessId, CompanyLookupResultDto::status)
+                .containsExactly(
+                        tuple("0112038-9", 200),
+                        tuple("0100002-9", 200),
+                        tuple("not-an-id", 400));
+        assertThat(tempDir.resolve(created.id()).resolve(EnrichmentJobs.INPUT_FILE)).doesNotExist();
+    }
+
+    @Test
+    @DisplayName("Should read business IDs from NDJSON strings and objects and retry while PRH is unavailable")
+    void create_shouldProcessNdjsonUploadAndRetryUnavailable() {
+        AtomicInteger attempts = new AtomicInteger();
+        when(prhService.getCompanyLookupResult("0116297-6")).thenAnswer(invocation -> Mono.just(
+                attempts.incrementAndGet() < 2
+                        ? CompanyLookupResultDto.failed("0116297-6", 503, "PRH API is currently unavailable.")
+                        : CompanyLookupResultDto.found("0116297-6", company("0116297-6"))));
+        jobs = newJobs(500);
+
+        EnrichmentJobDto created = jobs.create(upload("\"0112038-9\"\n{\"businessId\":\"0116297-6\"}\n"),
+                JobInputFormat.NDJSON).block();
+
+        EnrichmentJobDto finished = awaitFinished(created.id());
+        assertThat(finished.processed()).isEqualTo(2);
+        assertThat(finished.failed()).isZero();
+        assertThat(attempts).hasValue(2);
+        assertThat(results(created.id()))
+                .extracting(CompanyLookupResultDto::businessId)
+                .containsExactly("0112038-9", "0116297-6");
+    }
+
+    @Test
+    @DisplayName("Should resume an interrupted job from its checkpoint, dropping results written after it")
+    void resume_shouldContinueFromCheckpoint() throws IOException {
+        String id = "4b0f3f43-3d6a-4c55-9d3e-9b8c2c0f4a11";
+        Path directory = Files.createDirectories(tempDir.resolve(id));
+        String input = "0112038-9\n0100002-9\n";
+        Files.writeString(directory.resolve(EnrichmentJobs.INPUT_FILE), input);
+        String firstResult = objectMapper.writeValueAsString(CompanyLookupResultDto.found("0112038-9", company("0112038-9"))) + "\n";
+        Files.writeString(directory.resolve(EnrichmentJobs.RESULTS_FILE), firstResult + "{\"torn\":");
+        Files.write(directory.resolve(EnrichmentJobs.CHECKPOINT_FILE), objectMapper.writeValueAsBytes(new JobCheckpoint(
+                id, JobInputFormat.CSV, Status.RUNNING, Instant.now(), null, input.length(), "0112038-9\n".length(),
+                firstResult.length(), 1, 0, null)));
+        jobs = newJobs(500);
+
+        jobs.resume();
+
+        EnrichmentJobDto finished = awaitFinished(id);
+        assertThat(finished.processed()).isEqualTo(2);
+        verify(prhService, never()).getCompanyLookupResult("0112038-9");
+        assertThat(results(id))
+                .extracting(CompanyLookupResultDto::businessId)
+                .containsExactly("0112038-9", "0100002-9");
+    }
+
+    @Test
+    @DisplayName("Should reject empty and oversized uploads and unknown job IDs")
+    void create_shouldRejectInvalidUploads() {
+        jobs = newJobs(500);
+
+        StepVerifier.create(jobs.create(upload(""), JobInputFormat.CSV))
+                .expectError(InvalidInputException.class)
+                .verify();
+        StepVerifier.create(jobs.create(upload("0112038-9\n".repeat(200)), JobInputFormat.CSV))
+                .expectError(InvalidInputException.class)
+                .verify();
+        StepVerifier.create(jobs.status("missing"))
+                .expectError(JobNotFoundException.class)
+                .verify();
+        assertThat(tempDir).isEmptyDirectory();
+    }
+
+    @Test
+    @DisplayName("Should refuse uploads with TooManyJobsException while max-active-jobs jobs are unfinished")
+    void create_shouldRejectUploadBeyondMaxActiveJobs() {
+        when(prhService.getCompanyLookupResult("0100002-9")).thenReturn(Mono.never());
+        jobs = newJobs(500, 1, DataSize.ofMegabytes(1));
+
+        EnrichmentJobDto running = jobs.create(upload("0100002-9\n"), JobInputFormat.CSV).block();
+
+        StepVerifier.create(jobs.create(upload("0112038-9\n"), JobInputFormat.CSV))
+                .expectError(TooManyJobsException.class)
+                .verify();
+        assertThat(jobs.status(running.id()).block().status()).isIn(Status.QUEUED, Status.RUNNING);
+        assertThat(tempDir).isDirectoryContaining(path -> path.getFileName().toString().equals(running.id()));
+        assertThat(tempDir.toFile().list()).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Should refuse uploads with JobStorageFullException once the stored jobs take max-total-size")
+    void create_shouldRejectUploadBeyondMaxTotalSize() {
+        jobs = newJobs(500, 4, DataSize.ofBytes(200));
+
+        EnrichmentJobDto created = jobs.create(upload("0112038-9\n0100002-9\n"), JobInputFormat.CSV).block();
+        awaitFinished(created.id());
+
+        StepVerifier.create(jobs.create(upload("0112038-9\n"), JobInputFormat.CSV))
+                .expectError(JobStorageFullException.class)
+                .verify();
+        assertThat(tempDir.toFile().list()).containsExactly(created.id());
+    }
+}
@@ -0,0 +1,162 @@
+package com.accountor.prh.mirror;
+
+import com.accountor.prh.config.PrhMirrorProperties;
+import com.accountor.prh.domain.CompanyDetailsDto;
+import com.accountor.prh.domain.CompanyMapper;
+import com.accountor.prh.dto.CompanyResultApiDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompanyMirrorTests {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @TempDir
+    Path tempDir;
+
+    private CompanyMirror mirror;
+
+    @AfterEach
+    void tearDown() {
+        if (mirror != null) {
+            mirror.destroy();
+        }
+    }
+
+    private CompanyMirror newMirror(Duration maxAge) {
+        return new CompanyMirror(new PrhMirrorProperties(true, tempDir.resolve("mirror"), null, maxAge),
+                objectMapper, new SimpleMeterRegistry());
+    }
+
+    private Path copyResponse() throws IOException {
+        Path dump = tempDir.resolve("companies.json");
+        try (InputStream in = getClass().getResourceAsStream("/prh/companies-response.json")) {
+            Files.copy(in, dump);
+        }
+        return dump;
+    }
+
+    @Test
+    @DisplayName("Should import a /companies response and serve its companies by business ID")
+    void importDump_shouldServeImportedCompanies() throws IOException {
+        mirror = newMirror(Duration.ofDays(30));
+
+        Path dump = copyResponse();
+        MirrorImportResult result = mirror.importDump(dump);
+
+        assertThat(result.imported()).isEqualTo(2);
+        assertThat(mirror.size()).isEqualTo(2);
+        CompanyResultApiDto response = objectMapper.readValue(dump.toFile(), CompanyResultApiDto.class);
+        assertThat(mirror.find("0112038-9")).get()
+                .isEqualTo(CompanyMapper.toCompanyDetailsDto(CompanyMapper.toCompanyDetails(response.results().get(0))))
+                .extracting(CompanyDetailsDto::name, CompanyDetailsDto::registrationDate, CompanyDetailsDto::city)
+                .containsExactly("Example Oyj", LocalDate.of(1978, 3, 15), "ESPOO");
+        assertThat(mirror.find("0100002-9")).get()
+                .extracting(CompanyDetailsDto::businessId)
+                .isEqualTo("0100002-9");
+        assertThat(mirror.find("0123456-7")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should list every mirrored company in business ID order and notify the import listener")
+    void companies_shouldReadEveryCompanyAfterImport() throws IOException {
+        mirror = newMirror(Duration.ofDays(30));
+        AtomicInteger imports = new AtomicInteger();
+        mirror.onImport(imports::incrementAndGet);
+
+        mirror.importDump(copyResponse());
+
+        assertThat(imports).hasValue(1);
+        assertThat(mirror.companies().map(CompanyDetailsDto::businessId).collectList().block())
+                .containsExactly("0100002-9", "0112038-9");
+    }
+
+    @Test
+    @DisplayName("Should keep reading the previous mirror in a stream started before a new import")
+    void companies_shouldFinishStream_whenMirrorIsReplacedMidway() throws IOException {
+        mirror = newMirror(Duration.ofDays(30));
+        Path dump = copyResponse();
+        mirror.importDump(dump);
+
+        StepVerifier.create(mirror.companies().map(CompanyDetailsDto::businessId), 1)
+                .expectNext("0100002-9")
+                .then(() -> {
+                    try {
+                        mirror.importDump(dump);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                })
+                .thenRequest(Long.MAX_VALUE)
+                .expectNext("0112038-9")
+                .verifyComplete();
+        assertThat(mirror.find("0112038-9")).isPresent();
+    }
+
+    @Test
+    @DisplayName("Should import a gzipped JSON array, keep the last duplicate and reopen the mirror from disk")
+    void importDump_shouldImportGzippedArrayAndReopen() throws IOException {
+        Path dump = tempDir.resolve("companies.json.gz");
+        String json = """
+                [
+                  {"businessId": {"value": "0112038-9"}, "names": [{"name": "First", "type": "1"}]},
+                  {"businessId": {"value": "not-an-id"}, "names": [{"name": "Skipped", "type": "1"}]},
+                  {"businessId": {"value": "0112038-9"}, "names": [{"name": "Second", "type": "1"}]}
+                ]
+                """;
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(dump))) {
+            out.write(json.getBytes(StandardCharsets.UTF_8));
+        }
+
+        mirror = newMirror(Duration.ofDays(30));
+        MirrorImportResult result = mirror.importDump(dump);
+        mirror.destroy();
+
+        assertThat(result.imported()).isEqualTo(1);
+        assertThat(result.skipped()).isEqualTo(1);
+
+        mirror = newMirror(Duration.ofDays(30));
+        assertThat(mirror.size()).isEqualTo(1);
+        assertThat(mirror.find("0112038-9")).get()
+                .isEqualTo(new CompanyDetailsDto("0112038-9", "Second", null, null, null, null, null, null, null, null));
+    }
+
+    @Test
+    @DisplayName("Should not serve entries once the mirror is older than the configured maximum age")
+    void find_shouldReturnEmpty_whenMirrorIsStale() throws IOException {
+        mirror = newMirror(Duration.ZERO);
+        mirror.importDump(copyResponse());
+
+        assertThat(mirror.size()).isEqualTo(2);
+        assertThat(mirror.find("0112038-9")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should serve nothing when no mirror has been imported")
+    void find_shouldReturnEmpty_whenNoMirrorExists() {
+        mirror = newMirror(Duration.ofDays(30));
+
+        assertThat(mirror.size()).isZero();
+        assertThat(mirror.find("0112038-9")).isEmpty();
+    }
+}
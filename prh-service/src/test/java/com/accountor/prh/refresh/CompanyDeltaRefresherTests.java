@@ -0,0 +1,149 @@
+package com.accountor.prh.refresh;
+
+import com.accountor.prh.api.PrhClient;
+import com.accountor.prh.autocomplete.CompanyNameIndex;
+import com.accountor.prh.cache.CompanyCache;
+import com.accountor.prh.cache.LastKnownGoodStore;
+import com.accountor.prh.config.PrhCacheProperties;
+import com.accountor.prh.config.PrhDeltaRefreshProperties;
+import com.accountor.prh.config.PrhFallbackProperties;
+import com.accountor.prh.domain.CompanyDetailsDto;
+import com.accountor.prh.domain.CompanySearchCriteria;
+import com.accountor.prh.dto.*;
+import com.accountor.prh.exception.CompanyNotFoundException;
+import com.accountor.prh.exception.PrhUnavailableException;
+import com.accountor.prh.utils.PrhValidator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CompanyDeltaRefresherTests {
+
+    private static final LocalDate TODAY = LocalDate.now(ZoneId.of("Europe/Helsinki"));
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PrhClient prhClient = mock(PrhClient.class);
+    private final CompanyNameIndex nameIndex = mock(CompanyNameIndex.class);
+    private final CompanyCache companyCache = new CompanyCache(new PrhCacheProperties(100, Duration.ofMinutes(10),
+            Duration.ofMinutes(1), Duration.ofMinutes(5), false, false, 100), meterRegistry);
+    private final LastKnownGoodStore lastKnownGood = new LastKnownGoodStore(
+            new PrhFallbackProperties(true, 100, Duration.ofHours(24)), meterRegistry);
+
+    @TempDir
+    Path tempDir;
+
+    private CompanyDeltaRefresher newRefresher(Duration overlap) {
+        return new CompanyDeltaRefresher(new PrhDeltaRefreshProperties(true, Duration.ofHours(1),
+                tempDir.resolve("delta/watermark.json"), Duration.ofDays(2), overlap, "Europe/Helsinki"),
+                prhClient, new PrhValidator(), companyCache, lastKnownGood, nameIndex, objectMapper, meterRegistry);
+    }
+
+    private static CompanyApiDto companyApiDto(String businessId, String name) {
+        return new CompanyApiDto(new BusinessIdApiDto(businessId, "2020-01-01"),
+                List.of(new NameApiDto(name, "1", 3)),
+                List.of(new AddressApiDto("1", "Hunyani Street", "02240", null)),
+                null, null, null, null, null, null, null, null, null);
+    }
+
+    private static CompanyDetailsDto company(String businessId) {
+        return new CompanyDetailsDto(businessId, "Old Name", null, null, null, null, null, null, null, null);
+    }
+
+    private static CompanySearchCriteria day(LocalDate date) {
+        return CompanySearchCriteria.registeredBetween(date, date);
+    }
+
+    private DeltaWatermark savedWatermark() throws IOException {
+        return objectMapper.readValue(tempDir.resolve("delta/watermark.json").toFile(), DeltaWatermark.class);
+    }
+
+    @Test
+    @DisplayName("Should page through each day since the watermark, update only the companies held locally and index every name")
+    void refresh_shouldUpdateLocalEntriesAndAdvanceWatermark() throws IOException {
+        companyCache.put("0112038-9", company("0112038-9"));
+        lastKnownGood.put("0100002-9", company("0100002-9"));
+        when(prhClient.searchCompanies(eq(day(TODAY.minusDays(2))), anyInt()))
+                .thenReturn(Mono.error(new CompanyNotFoundException("No companies found")));
+        when(prhClient.searchCompanies(day(TODAY.minusDays(1)), 1)).thenReturn(Mono.just(new CompanyResultApiDto(3,
+                List.of(companyApiDto("0112038-9", "New Name"), companyApiDto("0116297-6", "Unknown Oy")))));
+        when(prhClient.searchCompanies(day(TODAY.minusDays(1)), 2)).thenReturn(Mono.just(new CompanyResultApiDto(3,
+                List.of(companyApiDto("0100002-9", "New Name")))));
+        when(prhClient.searchCompanies(eq(day(TODAY)), anyInt()))
+                .thenReturn(Mono.just(new CompanyResultApiDto(0, List.of())));
+        CompanyDeltaRefresher refresher = newRefresher(Duration.ZERO);
+
+        StepVerifier.create(refresher.refresh())
+                .expectNext(2L)
+                .verifyComplete();
+
+        assertThat(companyCache.peek("0112038-9")).get().extracting(entry -> entry.details().name()).isEqualTo("New Name");
+        assertThat(companyCache.peek("0116297-6")).isEmpty();
+        assertThat(lastKnownGood.find("0100002-9")).get().extracting(lastKnown -> lastKnown.details().name())
+                .isEqualTo("New Name");
+        assertThat(lastKnownGood.find("0116297-6")).isEmpty();
+        verify(nameIndex).add(eq("0116297-6"), argThat(details -> details.name().equals("Unknown Oy")));
+        DeltaWatermark saved = savedWatermark();
+        assertThat(saved.registeredFrom()).isEqualTo(TODAY);
+        assertThat(saved.refreshedAt()).isNotNull();
+        assertThat(meterRegistry.get("prh.delta.records").tag("result", "updated").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("prh.delta.records").tag("result", "skipped").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("prh.delta.lag").gauge().value()).isBetween(0.0, 60.0);
+    }
+
+    @Test
+    @DisplayName("Should keep the days completed before a failure and continue from the saved watermark")
+    void refresh_shouldResumeFromSavedWatermark() throws IOException {
+        Files.createDirectories(tempDir.resolve("delta"));
+        Files.write(tempDir.resolve("delta/watermark.json"),
+                objectMapper.writeValueAsBytes(new DeltaWatermark(TODAY.minusDays(3), null)));
+        when(prhClient.searchCompanies(any(), anyInt())).thenReturn(Mono.just(new CompanyResultApiDto(0, List.of())));
+        when(prhClient.searchCompanies(eq(day(TODAY.minusDays(2))), anyInt()))
+                .thenReturn(Mono.error(new PrhUnavailableException("PRH API is currently unavailable.", null)));
+
+        StepVerifier.create(newRefresher(Duration.ofDays(1)).refresh())
+                .expectError(PrhUnavailableException.class)
+                .verify();
+
+        verify(prhClient).searchCompanies(day(TODAY.minusDays(4)), 1);
+        verify(prhClient, never()).searchCompanies(day(TODAY.minusDays(1)), 1);
+        assertThat(savedWatermark()).isEqualTo(new DeltaWatermark(TODAY.minusDays(2), null));
+        assertThat(meterRegistry.get("prh.delta.runs").tag("result", "failure").counter().count()).isEqualTo(1);
+
+        when(prhClient.searchCompanies(eq(day(TODAY.minusDays(2))), anyInt()))
+                .thenReturn(Mono.just(new CompanyResultApiDto(0, List.of())));
+        Instant beforeRun = Instant.now();
+
+        StepVerifier.create(newRefresher(Duration.ZERO).refresh())
+                .expectNext(0L)
+                .verifyComplete();
+
+        verify(prhClient).searchCompanies(day(TODAY.minusDays(1)), 1);
+        assertThat(savedWatermark().registeredFrom()).isEqualTo(TODAY);
+        assertThat(savedWatermark().refreshedAt()).isAfterOrEqualTo(beforeRun);
+    }
+}
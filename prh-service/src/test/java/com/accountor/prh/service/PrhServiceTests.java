@@ -1,13 +1,27 @@
 package com.accountor.prh.service;
 
 import com.accountor.prh.api.PrhClient;
+import com.accountor.prh.autocomplete.CompanyNameIndex;
+import com.accountor.prh.cache.CompanyCache;
+import com.accountor.prh.cache.LastKnownGoodStore;
+import com.accountor.prh.config.PrhBatchProperties;
+import com.accountor.prh.config.PrhCacheProperties;
+import com.accountor.prh.config.PrhFallbackProperties;
+import com.accountor.prh.config.PrhSearchProperties;
 import com.accountor.prh.domain.CompanyDetailsDto;
+import com.accountor.prh.domain.CompanyLookupResultDto;
 import com.accountor.prh.domain.CompanyMapper;
+import com.accountor.prh.domain.CompanySearchCriteria;
+import com.accountor.prh.domain.CompanySection;
+import com.accountor.prh.domain.CompanySuggestionDto;
 import com.accountor.prh.dto.*;
 import com.accountor.prh.exception.CompanyNotFoundException;
 import com.accountor.prh.exception.ExternalApiException;
 import com.accountor.prh.exception.InvalidInputException;
 import com.accountor.prh.exception.MappingException;
+import com.accountor.prh.exception.PrhUnavailableException;
+import com.accountor.prh.metrics.PrhMetrics;
+import com.accountor.prh.mirror.CompanyMirror;
 import com.accountor.prh.service.impl.PrhServiceImpl;
 import com.accountor.prh.utils.PrhValidator;
 import org.junit.jupiter.api.DisplayName;
@@ -15,15 +29,25 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -38,6 +62,57 @@ class PrhServiceTests {
     @Mock
     private PrhValidator validator;
 
+    @Spy
+    private CompanyCache companyCache = new CompanyCache(
+            new PrhCacheProperties(100, Duration.ofMinutes(10), Duration.ofMinutes(1), Duration.ofMinutes(5),
+                    false, false, 100),
+            new SimpleMeterRegistry());
+
+    @Mock
+    private CompanyMirror companyMirror;
+
+    @Spy
+    private LastKnownGoodStore lastKnownGood = new LastKnownGoodStore(
+            new PrhFallbackProperties(true, 100, Duration.ofHours(24)),
+            new SimpleMeterRegistry());
+
+    @Mock
+    private CompanyNameIndex nameIndex;
+
+    @Spy
+    private PrhBatchProperties batchProperties = new PrhBatchProperties(3, 2);
+
+    @Spy
+    private PrhSearchProperties searchProperties = new PrhSearchProperties(3, 5, 1);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private PrhMetrics metrics = new PrhMetrics(meterRegistry);
+
+    private static CompanyApiDto companyApiDto(String businessId) {
+        return new CompanyApiDto(new BusinessIdApiDto(businessId, "2020-01-01"),
+                List.of(new NameApiDto("Test Company", "1", 3)),
+                List.of(new AddressApiDto("1", "Hunyani Street", "02240", null)),
+                null,
+                null,
+                null,
+                null,
+                null,
+                new MainBusinessLineApiDto("29120", List.of(new DescriptionApiDto("3", "Manufacture of pumps and compressors"))),
+                null,
+                Optional.of(new WebsiteApiDto("wwww.test.com")),
+                null);
+    }
+
+    private PrhServiceImpl serviceRefreshingOnEveryHit() {
+        CompanyCache refreshingCache = new CompanyCache(
+                new PrhCacheProperties(100, Duration.ofMinutes(10), Duration.ofMinutes(1), Duration.ZERO, false, false, 100),
+                meterRegistry);
+        return new PrhServiceImpl(prhClient, validator, refreshingCache, companyMirror, lastKnownGood, nameIndex,
+                batchProperties, searchProperties, metrics);
+    }
+
     @Test
     @DisplayName("Should return company details when client call is successful and data is valid")
     void getCompanyDetails_shouldReturnCompany_whenClientSucceeds() {
@@ -59,7 +134,8 @@ class PrhServiceTests {
                 new MainBusinessLineApiDto("29120", List.of(new DescriptionApiDto("3", "Manufacture of pumps and compressors"),
                         new DescriptionApiDto("2", "Tillv av pumpar och kompressorer"))),
                 null,
-                Optional.of(new WebsiteApiDto("wwww.test.com")));
+                Optional.of(new WebsiteApiDto("wwww.test.com")),
+                null);
 
         CompanyResultApiDto mockApiDto = new CompanyResultApiDto(1, List.of(mockCompany));
 
@@ -69,7 +145,7 @@ class PrhServiceTests {
         when(prhClient.getCompaniesByBusinessId(anyString()))
                 .thenReturn(Mono.just(mockApiDto));
 
-        when(validator.validate(anyString())).thenReturn(true);
+        when(validator.normalize(anyString())).thenAnswer(returnsFirstArg());
 
 
         Mono<CompanyDetailsDto> result = prhService.getCompanyDetails(businessIdValue);
@@ -81,6 +157,72 @@ class PrhServiceTests {
     }
 
 
+    @Test
+    @DisplayName("Should fetch a company's sections once, map only those requested and cache its details")
+    void getCompanySections_shouldMapRequestedSectionsFromOneFetch() {
+        String businessId = "0112038-9";
+        CompanyApiDto fullCompany = new CompanyApiDto(new BusinessIdApiDto(businessId, "1978-03-15"),
+                List.of(new NameApiDto("Example Oyj", "1", 3)),
+                null,
+                null,
+                null,
+                List.of(new CompanyFormApiDto("OYJ", List.of(new DescriptionApiDto("1", "Julkinen osakeyhtiö"),
+                        new DescriptionApiDto("3", "Public limited company")), null, 1, "1")),
+                null,
+                "1",
+                new MainBusinessLineApiDto("62010", List.of(new DescriptionApiDto("1", "Ohjelmistojen suunnittelu"),
+                        new DescriptionApiDto("3", "Computer programming"))),
+                List.of(new RegisteredEntryApiDto("1", List.of(new DescriptionApiDto("1", "Rekisterissä")),
+                        null, null, "1", "2")),
+                null,
+                null);
+        when(validator.normalize(anyString())).thenAnswer(returnsFirstArg());
+        when(prhClient.getFullCompaniesByBusinessId(businessId))
+                .thenReturn(Mono.just(new CompanyResultApiDto(1, List.of(fullCompany))));
+
+        StepVerifier.create(prhService.getCompanySections(businessId,
+                        EnumSet.of(CompanySection.COMPANY_FORMS, CompanySection.DESCRIPTIONS)))
+                .assertNext(sections -> {
+                    assertThat(sections.companyForms()).singleElement().satisfies(form -> {
+                        assertThat(form.type()).isEqualTo("OYJ");
+                        assertThat(form.descriptions()).containsEntry("fi", "Julkinen osakeyhtiö")
+                                .containsEntry("en", "Public limited company");
+                    });
+                    assertThat(sections.mainBusinessLineDescriptions()).containsEntry("fi", "Ohjelmistojen suunnittelu");
+                    assertThat(sections.companySituations()).isNull();
+                    assertThat(sections.registeredEntries()).isNull();
+                })
+                .verifyComplete();
+        StepVerifier.create(prhService.getCompanySections(businessId, EnumSet.of(CompanySection.REGISTERED_ENTRIES)))
+                .assertNext(sections -> assertThat(sections.registeredEntries()).singleElement()
+                        .satisfies(entry -> assertThat(entry.descriptions()).containsEntry("fi", "Rekisterissä")))
+                .verifyComplete();
+        StepVerifier.create(prhService.getCompanyDetails(businessId))
+                .assertNext(details -> assertThat(details.name()).isEqualTo("Example Oyj"))
+                .verifyComplete();
+
+        verify(prhClient, times(1)).getFullCompaniesByBusinessId(businessId);
+        verify(prhClient, never()).getCompaniesByBusinessId(anyString());
+    }
+
+    @Test
+    @DisplayName("Should fail a sections lookup of a business ID cached as not found without fetching it")
+    void getCompanySections_shouldUseNegativeCache() {
+        String businessId = "0123456-7";
+        when(validator.normalize(anyString())).thenAnswer(returnsFirstArg());
+        when(prhClient.getCompaniesByBusinessId(businessId))
+                .thenReturn(Mono.just(new CompanyResultApiDto(0, Collections.emptyList())));
+
+        StepVerifier.create(prhService.getCompanyDetails(businessId))
+                .expectError(CompanyNotFoundException.class)
+                .verify();
+        StepVerifier.create(prhService.getCompanySections(businessId, EnumSet.of(CompanySection.COMPANY_FORMS)))
+                .expectError(CompanyNotFoundException.class)
+                .verify();
+
+        verify(prhClient, never()).getFullCompaniesByBusinessId(anyString());
+    }
+
     @Test
     @DisplayName("Should propagate CompanyNotFoundException when client returns empty results")
     void getCompanyDetails_shouldPropagateCompanyNotFound_whenClientReturnsEmptyResults() {
@@ -90,13 +232,13 @@ class PrhServiceTests {
         when(prhClient.getCompaniesByBusinessId(anyString()))
                 .thenReturn(Mono.just(emptyResultsDto));
 
-        when(validator.validate(anyString())).thenReturn(true);
+        when(validator.normalize(anyString())).thenAnswer(returnsFirstArg());
 
-        Mono<CompanyDetailsDto> result = prhService.getCompanyDetails(anyString());
+        Mono<CompanyDetailsDto> result = prhService.getCompanyDetails("0123456-7");
 
         StepVerifier.create(result)
                 .expectErrorMatches(e -> e instanceof CompanyNotFoundException &&
-                        e.getMessage().equals("Company not found for business ID: " + anyString()))
+                        e.getMessage().equals("Company not found for business ID: 0123456-7"))
                 .verify();
     }
 
@@ -108,9 +250,9 @@ class PrhServiceTests {
 
         when(prhClient.getCompaniesByBusinessId(anyString()))
                 .thenReturn(Mono.just(inconsistentDto));
-        when(validator.validate(anyString())).thenReturn(true);
+        when(validator.normalize(anyString())).thenAnswer(returnsFirstArg());
 
-        Mono<CompanyDetailsDto> result = prhService.getCompanyDetails(anyString());
+        Mono<CompanyDetailsDto> result = prhService.getCompanyDetails("0123456-7");
 
         StepVerifier.create(result)
                 .expectErrorMatches(e -> e instanceof MappingException &&
@@ -124,7 +266,7 @@ class PrhServiceTests {
 
         when(prhClient.getCompaniesByBusinessId(anyString()))
                 .thenReturn(Mono.error(new CompanyNotFoundException("Company not found")));
-        when(validator.validate(anyString())).thenReturn(true);
+        when(validator.normalize(anyString())).thenAnswer(returnsFirstArg());
 
         Mono<CompanyDetailsDto> result = prhService.getCompanyDetails("non-existent-id");
 
@@ -139,9 +281,9 @@ class PrhServiceTests {
 
         when(prhClient.getCompaniesByBusinessId(anyString()))
                 .thenReturn(Mono.error(new ExternalApiException("Bad Request", "400", "Invalid business ID Sequence")));
-        when(validator.validate(anyString())).thenReturn(true);
+        when(validator.normalize(anyString())).thenAnswer(returnsFirstArg());
 
-        Mono<CompanyDetailsDto> result = prhService.getCompanyDetails(anyString());
+        Mono<CompanyDetailsDto> result = prhService.getCompanyDetails("0123456-7");
 
         StepVerifier.create(result)
                 .expectErrorMatches(e -> e instanceof ExternalApiException && e.getMessage().contains("Bad Request"))
@@ -155,11 +297,11 @@ class PrhServiceTests {
         when(prhClient.getCompaniesByBusinessId(anyString()))
                 .thenReturn(Mono.error(new ExternalApiException("Internal Server Error", "500", "Upstream server issue")));
 
-        when(validator.validate(anyString())).thenReturn(true);
+        when(validator.normalize(anyString())).thenAnswer(returnsFirstArg());
 
 
 
-        Mono<CompanyDetailsDto> result = prhService.getCompanyDetails(anyString());
+        Mono<CompanyDetailsDto> result = prhService.getCompanyDetails("0123456-7");
 
         StepVerifier.create(result)
                 .expectErrorMatches(e -> e instanceof ExternalApiException && e.getMessage().contains("Internal Server Error"))
@@ -171,7 +313,7 @@ class PrhServiceTests {
     void getCompanyDetails_shouldThrowException_whenBusinessIdIsInvalid() {
         String invalidBusinessId = "invalid-id";
 
-        when(validator.validate(invalidBusinessId)).thenReturn(false);
+        when(validator.normalize(invalidBusinessId)).thenReturn(null);
 
         Mono<CompanyDetailsDto> result = prhService.getCompanyDetails(invalidBusinessId);
 
@@ -181,5 +323,380 @@ class PrhServiceTests {
                 .verify();
     }
 
-}
+    @Test
+    @DisplayName("Should serve repeat lookups from the cache without calling the client again")
+    void getCompanyDetails_shouldServeFromCache_onRepeatLookup() {
+        String businessId = "0100002-9";
+        CompanyApiDto company = companyApiDto(businessId);
+        CompanyDetailsDto expectedDto = CompanyMapper.toCompanyDetailsDto(CompanyMapper.toCompanyDetails(company));
+
+        when(prhClient.getCompaniesByBusinessId(businessId))
+                .thenReturn(Mono.just(new CompanyResultApiDto(1, List.of(company))));
+        when(validator.normalize(businessId)).thenAnswer(returnsFirstArg());
+
+        StepVerifier.create(prhService.getCompanyDetails(businessId))
+                .expectNext(expectedDto)
+                .verifyComplete();
+        StepVerifier.create(prhService.getCompanyDetails(businessId))
+                .expectNext(expectedDto)
+                .verifyComplete();
+
+        verify(prhClient, times(1)).getCompaniesByBusinessId(businessId);
+        assertThat(meterRegistry.get("prh.lookup").tag("source", "upstream").tag("outcome", "found").timer().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("prh.lookup").tag("source", "cache").tag("outcome", "found").timer().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("prh.mapping").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should serve a stale cached company immediately and refresh it once in the background")
+    void getCompanyDetails_shouldRefreshStaleEntryInBackground() {
+        String businessId = "0100002-9";
+        CompanyApiDto company = companyApiDto(businessId);
+        CompanyDetailsDto cachedDto = CompanyMapper.toCompanyDetailsDto(CompanyMapper.toCompanyDetails(company));
+        Sinks.One<CompanyResultApiDto> refresh = Sinks.one();
+        PrhServiceImpl service = serviceRefreshingOnEveryHit();
+
+        when(prhClient.getCompaniesByBusinessId(businessId))
+                .thenReturn(Mono.just(new CompanyResultApiDto(1, List.of(company))))
+                .thenReturn(refresh.asMono());
+        when(validator.normalize(businessId)).thenAnswer(returnsFirstArg());
+
+        StepVerifier.create(service.getCompanyDetails(businessId))
+                .expectNext(cachedDto)
+                .verifyComplete();
+        StepVerifier.create(service.getCompanyDetails(businessId))
+                .expectNext(cachedDto)
+                .verifyComplete();
+        StepVerifier.create(service.getCompanyDetails(businessId))
+                .expectNext(cachedDto)
+                .verifyComplete();
+
+        CompanyApiDto renamed = new CompanyApiDto(new BusinessIdApiDto(businessId, "2020-01-01"),
+                List.of(new NameApiDto("Renamed Company", "1", 4)),
+                company.addresses(), null, null, null, null, null,
+                company.mainBusinessLine(), null, company.website(), null);
+        refresh.tryEmitValue(new CompanyResultApiDto(1, List.of(renamed)));
+
+        StepVerifier.create(service.getCompanyDetails(businessId))
+                .expectNextMatches(details -> details.name().equals("Renamed Company"))
+                .verifyComplete();
+
+        // Initial load, one refresh shared by the second and third lookup, and one started by the fourth.
+        verify(prhClient, times(3)).getCompaniesByBusinessId(businessId);
+        assertThat(meterRegistry.get("prh.cache.refreshes").tag("result", "found").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("prh.cache.refreshes.coalesced").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should keep serving a stale cached company when its background refresh fails")
+    void getCompanyDetails_shouldKeepStaleEntry_whenRefreshFails() {
+        String businessId = "0100002-9";
+        CompanyApiDto company = companyApiDto(businessId);
+        CompanyDetailsDto cachedDto = CompanyMapper.toCompanyDetailsDto(CompanyMapper.toCompanyDetails(company));
+        PrhServiceImpl service = serviceRefreshingOnEveryHit();
+
+        when(prhClient.getCompaniesByBusinessId(businessId))
+                .thenReturn(Mono.just(new CompanyResultApiDto(1, List.of(company))))
+                .thenReturn(Mono.error(new ExternalApiException("Internal Server Error", "500", "Upstream server issue")));
+        when(validator.normalize(businessId)).thenAnswer(returnsFirstArg());
+
+        StepVerifier.create(service.getCompanyDetails(businessId))
+                .expectNext(cachedDto)
+                .verifyComplete();
+        StepVerifier.create(service.getCompanyDetails(businessId))
+                .expectNext(cachedDto)
+                .verifyComplete();
+        StepVerifier.create(service.getCompanyDetails(businessId))
+                .expectNext(cachedDto)
+                .verifyComplete();
+
+        assertThat(meterRegistry.get("prh.cache.refreshes").tag("result", "error").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should serve companies found in the local mirror without calling the client")
+    void getCompanyDetails_shouldServeFromMirror_whenMirrorHasCompany() {
+        String businessId = "0100002-9";
+        CompanyDetailsDto mirrored = CompanyMapper.toCompanyDetailsDto(
+                CompanyMapper.toCompanyDetails(companyApiDto(businessId)));
+
+        when(validator.normalize(businessId)).thenAnswer(returnsFirstArg());
+        when(companyMirror.size()).thenReturn(1L);
+        when(companyMirror.find(businessId)).thenReturn(Optional.of(mirrored));
+
+        StepVerifier.create(prhService.getCompanyDetails(businessId))
+                .expectNext(mirrored)
+                .verifyComplete();
+        StepVerifier.create(prhService.getCompanyDetails(businessId))
+                .expectNext(mirrored)
+                .verifyComplete();
+
+        verify(companyMirror, times(1)).find(businessId);
+        verify(prhClient, never()).getCompaniesByBusinessId(anyString());
+    }
+
+    @Test
+    @DisplayName("Should cache CompanyNotFoundException results and replay them without calling the client again")
+    void getCompanyDetails_shouldCacheNotFound_onRepeatLookup() {
+        String businessId = "0100002-9";
+
+        when(prhClient.getCompaniesByBusinessId(businessId))
+                .thenReturn(Mono.just(new CompanyResultApiDto(0, Collections.emptyList())));
+        when(validator.normalize(businessId)).thenAnswer(returnsFirstArg());
+
+        StepVerifier.create(prhService.getCompanyDetails(businessId))
+                .expectError(CompanyNotFoundException.class)
+                .verify();
+        StepVerifier.create(prhService.getCompanyDetails(businessId))
+                .expectErrorMatches(e -> e instanceof CompanyNotFoundException &&
+                        e.getMessage().equals("Company not found for business ID: " + businessId))
+                .verify();
+
+        verify(prhClient, times(1)).getCompaniesByBusinessId(businessId);
+    }
+
+    @Test
+    @DisplayName("Should not cache ExternalApiException results")
+    void getCompanyDetails_shouldNotCacheExternalApiErrors() {
+        String businessId = "0100002-9";
 
+        when(prhClient.getCompaniesByBusinessId(businessId))
+                .thenReturn(Mono.error(new ExternalApiException("Internal Server Error", "500", "Upstream server issue")));
+        when(validator.normalize(businessId)).thenAnswer(returnsFirstArg());
+
+        StepVerifier.create(prhService.getCompanyDetails(businessId))
+                .expectError(ExternalApiException.class)
+                .verify();
+        StepVerifier.create(prhService.getCompanyDetails(businessId))
+                .expectError(ExternalApiException.class)
+                .verify();
+
+        verify(prhClient, times(2)).getCompaniesByBusinessId(businessId);
+    }
+
+    @Test
+    @DisplayName("Should look up each distinct business ID of a batch once and report failures in-line")
+    void getCompanyDetailsBatch_shouldDeduplicateAndReportFailuresInline() {
+        String foundId = "0100002-9";
+        String missingId = "0112038-9";
+        CompanyApiDto company = companyApiDto(foundId);
+
+        when(prhClient.getCompaniesByBusinessId(foundId))
+                .thenReturn(Mono.just(new CompanyResultApiDto(1, List.of(company))));
+        when(prhClient.getCompaniesByBusinessId(missingId))
+                .thenReturn(Mono.error(new CompanyNotFoundException("Company not found for business ID: " + missingId)));
+        PrhValidator realValidator = new PrhValidator();
+        when(validator.normalize(anyString())).thenAnswer(invocation -> realValidator.normalize(invocation.getArgument(0)));
+
+        StepVerifier.create(prhService.getCompanyDetailsBatch(List.of(foundId, missingId, " " + foundId + " ", "FI01000029", foundId))
+                        .collectMap(CompanyLookupResultDto::businessId))
+                .expectNextMatches(results -> results.size() == 2
+                        && results.get(foundId).status() == 200
+                        && results.get(foundId).company().businessId().equals(foundId)
+                        && results.get(missingId).status() == 404
+                        && results.get(missingId).company() == null)
+                .verifyComplete();
+
+        verify(prhClient, times(1)).getCompaniesByBusinessId(foundId);
+        verify(prhClient, times(1)).getCompaniesByBusinessId(missingId);
+    }
+
+    @Test
+    @DisplayName("Should answer with the last details fetched from PRH while PRH is unavailable")
+    void getLastKnownCompanyDetails_shouldReturnLastFetchedDetails() {
+        String businessId = "0100002-9";
+        CompanyApiDto company = companyApiDto(businessId);
+        CompanyDetailsDto expectedDto = CompanyMapper.toCompanyDetailsDto(CompanyMapper.toCompanyDetails(company));
+
+        when(prhClient.getCompaniesByBusinessId(businessId))
+                .thenReturn(Mono.just(new CompanyResultApiDto(1, List.of(company))))
+                .thenReturn(Mono.error(new PrhUnavailableException("PRH API is currently unavailable. The circuit is open.", null)));
+        when(validator.normalize(businessId)).thenAnswer(returnsFirstArg());
+
+        StepVerifier.create(prhService.getCompanyDetails(businessId))
+                .expectNext(expectedDto)
+                .verifyComplete();
+        companyCache.invalidate(businessId);
+
+        StepVerifier.create(prhService.getCompanyDetailsBatch(List.of(businessId)))
+                .expectNextMatches(result -> result.status() == 200
+                        && result.company().equals(expectedDto)
+                        && result.age() != null)
+                .verifyComplete();
+        StepVerifier.create(prhService.getLastKnownCompanyDetails(businessId))
+                .expectNextMatches(lastKnown -> lastKnown.details().equals(expectedDto))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should not fall back to last-known-good details for companies PRH reports as not found")
+    void getLastKnownCompanyDetails_shouldForgetCompany_whenPrhReportsNotFound() {
+        String businessId = "0100002-9";
+        CompanyApiDto company = companyApiDto(businessId);
+
+        when(prhClient.getCompaniesByBusinessId(businessId))
+                .thenReturn(Mono.just(new CompanyResultApiDto(1, List.of(company))))
+                .thenReturn(Mono.just(new CompanyResultApiDto(0, Collections.emptyList())));
+        when(validator.normalize(businessId)).thenAnswer(returnsFirstArg());
+
+        StepVerifier.create(prhService.getCompanyDetails(businessId))
+                .expectNextCount(1)
+                .verifyComplete();
+        companyCache.invalidate(businessId);
+        StepVerifier.create(prhService.getCompanyDetails(businessId))
+                .expectError(CompanyNotFoundException.class)
+                .verify();
+
+        StepVerifier.create(prhService.getLastKnownCompanyDetails(businessId))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should report invalid business IDs of a batch in-line with status 400")
+    void getCompanyDetailsBatch_shouldReportInvalidIdsInline() {
+        PrhValidator realValidator = new PrhValidator();
+        when(validator.normalize(anyString())).thenAnswer(invocation -> realValidator.normalize(invocation.getArgument(0)));
+
+        StepVerifier.create(prhService.getCompanyDetailsBatch(List.of("0100002-8")))
+                .expectNext(CompanyLookupResultDto.failed("0100002-8", 400, "Business ID must be in the format XXXXXXX-X."))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should look up and cache a business ID under its canonical form")
+    void getCompanyDetails_shouldUseCanonicalBusinessId() {
+        String canonicalId = "0100002-9";
+        CompanyApiDto company = companyApiDto(canonicalId);
+        PrhValidator realValidator = new PrhValidator();
+
+        when(validator.normalize(anyString())).thenAnswer(invocation -> realValidator.normalize(invocation.getArgument(0)));
+        when(prhClient.getCompaniesByBusinessId(canonicalId))
+                .thenReturn(Mono.just(new CompanyResultApiDto(1, List.of(company))));
+
+        StepVerifier.create(prhService.getCompanyDetails("FI01000029"))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier.create(prhService.getCompanyDetails(" 100002-9 "))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        verify(prhClient, times(1)).getCompaniesByBusinessId(canonicalId);
+    }
+
+    @Test
+    @DisplayName("Should stream search results page by page, stop at the limit and cache every company")
+    void searchCompanies_shouldStreamPagesUpToLimitAndFillCache() {
+        CompanySearchCriteria criteria = new CompanySearchCriteria("Test", "Helsinki", null);
+        when(prhClient.searchCompanies(criteria, 1)).thenReturn(Mono.just(new CompanyResultApiDto(250,
+                List.of(companyApiDto("0100002-9"), companyApiDto("0112038-9")))));
+        when(prhClient.searchCompanies(criteria, 2)).thenReturn(Mono.just(new CompanyResultApiDto(250,
+                List.of(companyApiDto("0116297-6"), companyApiDto("0109862-8")))));
+        when(validator.normalize(anyString())).thenAnswer(returnsFirstArg());
+
+        StepVerifier.create(prhService.searchCompanies(criteria, 4).map(CompanyDetailsDto::businessId))
+                .expectNext("0100002-9", "0112038-9", "0116297-6", "0109862-8")
+                .verifyComplete();
+
+        verify(prhClient, never()).searchCompanies(criteria, 3);
+        assertThat(companyCache.get("0116297-6")).isPresent();
+        assertThat(lastKnownGood.find("0109862-8")).isPresent();
+    }
+
+    @Test
+    @DisplayName("Should end a search without matches with an empty stream")
+    void searchCompanies_shouldCompleteEmpty_whenPrhFindsNothing() {
+        CompanySearchCriteria criteria = new CompanySearchCriteria(null, null, "99999");
+        when(prhClient.searchCompanies(criteria, 1))
+                .thenReturn(Mono.error(new CompanyNotFoundException("No companies found")));
+
+        StepVerifier.create(prhService.searchCompanies(criteria, null))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should reject a search without filters or with a limit above the maximum")
+    void searchCompanies_shouldThrowException_whenCriteriaEmptyOrLimitTooLarge() {
+        StepVerifier.create(prhService.searchCompanies(new CompanySearchCriteria(" ", null, ""), null))
+                .expectError(InvalidInputException.class)
+                .verify();
+        StepVerifier.create(prhService.searchCompanies(new CompanySearchCriteria("Test", null, null), 6))
+                .expectErrorMatches(e -> e instanceof InvalidInputException &&
+                        e.getMessage().equals("The limit must be between 1 and 5."))
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Should answer suggestions from the name index with the default limit")
+    void suggestCompanies_shouldUseNameIndexWithDefaultLimit() {
+        List<CompanySuggestionDto> suggestions = List.of(new CompanySuggestionDto("0100002-9", "Test Company"));
+        when(nameIndex.defaultLimit()).thenReturn(10);
+        when(nameIndex.maxLimit()).thenReturn(50);
+        when(nameIndex.suggest("tes", 10)).thenReturn(suggestions);
+
+        StepVerifier.create(prhService.suggestCompanies("tes", null))
+                .expectNext(suggestions)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should reject a blank suggestion query or a limit above the maximum")
+    void suggestCompanies_shouldThrowException_whenQueryBlankOrLimitTooLarge() {
+        when(nameIndex.maxLimit()).thenReturn(50);
+
+        StepVerifier.create(prhService.suggestCompanies(" ", null))
+                .expectError(InvalidInputException.class)
+                .verify();
+        StepVerifier.create(prhService.suggestCompanies("tes", 51))
+                .expectErrorMatches(e -> e instanceof InvalidInputException &&
+                        e.getMessage().equals("The limit must be between 1 and 50."))
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Should reject an empty batch with InvalidInputException")
+    void getCompanyDetailsBatch_shouldThrowException_whenBatchIsEmpty() {
+        StepVerifier.create(prhService.getCompanyDetailsBatch(List.of()))
+                .expectError(InvalidInputException.class)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Should reject a batch with more distinct IDs than the configured maximum")
+    void getCompanyDetailsBatch_shouldThrowException_whenBatchIsTooLarge() {
+        StepVerifier.create(prhService.getCompanyDetailsBatch(List.of("0100002-9", "0112038-9", "0116297-6", "0109862-8")))
+                .expectErrorMatches(e -> e instanceof InvalidInputException &&
+                        e.getMessage().equals("A batch may contain at most 3 distinct business IDs."))
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Should map street, post code and city from the first address and the English business line description")
+    void getCompanyDetails_shouldMapFirstAddressAndEnglishDescription() {
+        String businessId = "0100002-9";
+        CompanyApiDto company = new CompanyApiDto(new BusinessIdApiDto(businessId, "2020-01-01"),
+                List.of(new NameApiDto("Old Name", "3", 1), new NameApiDto("Test Company", "1", 2)),
+                List.of(new AddressApiDto("1", "Hunyani Street", "02240", List.of(new PostOfficeApiDto("ESPOO"))),
+                        new AddressApiDto("2", "PL 10", "00101", List.of(new PostOfficeApiDto("HELSINKI")))),
+                null,
+                null,
+                null,
+                null,
+                null,
+                new MainBusinessLineApiDto("29120", List.of(new DescriptionApiDto("1", "Pumppujen valmistus"),
+                        new DescriptionApiDto("3", "Manufacture of pumps and compressors"))),
+                null,
+                Optional.empty(),
+                null);
+
+        when(prhClient.getCompaniesByBusinessId(businessId))
+                .thenReturn(Mono.just(new CompanyResultApiDto(1, List.of(company))));
+        when(validator.normalize(businessId)).thenAnswer(returnsFirstArg());
+
+        StepVerifier.create(prhService.getCompanyDetails(businessId))
+                .expectNext(new CompanyDetailsDto(businessId, "Test Company", null, null,
+                        "Hunyani Street", "ESPOO", "02240", "29120", "Manufacture of pumps and compressors", null))
+                .verifyComplete();
+    }
+}
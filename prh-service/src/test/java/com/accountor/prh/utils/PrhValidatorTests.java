@@ -0,0 +1,46 @@
+package com.accountor.prh.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.NullAndEmptySource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrhValidatorTests {
+
+    private final PrhValidator validator = new PrhValidator();
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0112038-9", "0100002-9", "1572860-0", "2331972-7"})
+    @DisplayName("Should accept canonical business IDs with a correct check digit")
+    void validate_shouldAcceptValidBusinessIds(String businessId) {
+        assertThat(validator.validate(businessId)).isTrue();
+    }
+
+    @ParameterizedTest
+    @NullAndEmptySource
+    @ValueSource(strings = {"0112038-8", "0112038-X", "011203-89", "01120389-1", "123456-7", "0000001-1",
+            "abcdefg-h", "0112038--9", "-01120389", "FI", "SE01120389"})
+    @DisplayName("Should reject malformed business IDs and IDs with a wrong check digit")
+    void validate_shouldRejectInvalidBusinessIds(String businessId) {
+        assertThat(validator.validate(businessId)).isFalse();
+        assertThat(validator.normalize(businessId)).isNull();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {" 0112038-9 ", "0112038 - 9", "112038-9", "01120389", "FI01120389", "fi 0112038 9"})
+    @DisplayName("Should normalise common input variants to the canonical form")
+    void normalize_shouldReturnCanonicalForm(String businessId) {
+        assertThat(validator.normalize(businessId)).isEqualTo("0112038-9");
+    }
+
+    @Test
+    @DisplayName("Should return the same instance for an already canonical business ID")
+    void normalize_shouldReturnSameInstance_whenAlreadyCanonical() {
+        String businessId = "0112038-9";
+
+        assertThat(validator.normalize(businessId)).isSameAs(businessId);
+    }
+}
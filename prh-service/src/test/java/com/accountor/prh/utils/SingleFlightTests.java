@@ -0,0 +1,90 @@
+package com.accountor.prh.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SingleFlightTests {
+
+    private Counter collapsed;
+    private SingleFlight<String, String> singleFlight;
+
+    @BeforeEach
+    void setUp() {
+        collapsed = new SimpleMeterRegistry().counter("collapsed");
+        singleFlight = new SingleFlight<>(collapsed);
+    }
+
+    @Test
+    @DisplayName("Should keep the shared call running when only one of several callers cancels")
+    void execute_shouldKeepCallRunning_whenOneCallerCancels() {
+        Sinks.One<String> upstream = Sinks.one();
+        AtomicInteger subscriptions = new AtomicInteger();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Mono<String> call = upstream.asMono()
+                .doOnSubscribe(s -> subscriptions.incrementAndGet())
+                .doOnCancel(() -> cancelled.set(true));
+
+        Disposable first = singleFlight.execute("key", k -> call).subscribe();
+        Mono<String> second = singleFlight.execute("key", k -> call);
+
+        StepVerifier.create(second)
+                .then(first::dispose)
+                .then(() -> upstream.tryEmitValue("value"))
+                .expectNext("value")
+                .verifyComplete();
+
+        assertThat(subscriptions.get()).isEqualTo(1);
+        assertThat(cancelled.get()).isFalse();
+        assertThat(collapsed.count()).isEqualTo(1.0);
+        assertThat(singleFlight.inFlightCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should cancel the shared call and release the key once every caller has cancelled")
+    void execute_shouldCancelCall_whenAllCallersCancel() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Mono<String> call = Mono.<String>never().doOnCancel(() -> cancelled.set(true));
+
+        Disposable first = singleFlight.execute("key", k -> call).subscribe();
+        Disposable second = singleFlight.execute("key", k -> call).subscribe();
+        first.dispose();
+        second.dispose();
+
+        assertThat(cancelled.get()).isTrue();
+        assertThat(singleFlight.inFlightCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should start a fresh call once the previous one has terminated with an error")
+    void execute_shouldStartFreshCall_afterPreviousCallFailed() {
+        AtomicInteger calls = new AtomicInteger();
+
+        StepVerifier.create(singleFlight.execute("key", k -> {
+                    calls.incrementAndGet();
+                    return Mono.error(new IllegalStateException("boom"));
+                }))
+                .expectError(IllegalStateException.class)
+                .verify();
+        StepVerifier.create(singleFlight.execute("key", k -> {
+                    calls.incrementAndGet();
+                    return Mono.just("value");
+                }))
+                .expectNext("value")
+                .verifyComplete();
+
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(collapsed.count()).isZero();
+    }
+}